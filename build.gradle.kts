@@ -133,6 +133,17 @@ tasks.register<JavaExec>("runSim") {
     }
 }
 
+// Run a saved workspace headless with a parameter sweep. See BatchRunner.kt for options.
+// gradle runBatch -Pargs="simulations/workspaces/hebbFF.zip --iterations 500 --replicas 20 --measure Network1/Neuron_2/getActivation"
+tasks.register<JavaExec>("runBatch") {
+    jvmArgs(simbrainJvmArgs + "-Djava.awt.headless=true")
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("org.simbrain.workspace.batch.BatchRunnerKt")
+    if (project.hasProperty("args")) {
+        args((project.property("args") as String).split(Regex("\\s+")).filter { it.isNotEmpty() })
+    }
+}
+
 tasks.withType<KotlinCompile>().configureEach {
     kotlinOptions {
         jvmTarget = "17"
@@ -18,14 +18,19 @@
 package org.simbrain.network;
 
 import org.simbrain.network.core.Network;
+import org.simbrain.network.core.NetworkSnapshot;
 import org.simbrain.network.events.NetworkEvents2;
+import org.simbrain.network.gui.dialogs.NetworkPreferences;
 import org.simbrain.network.groups.NeuronGroup;
 import org.simbrain.util.XStreamUtils;
 import org.simbrain.workspace.AttributeContainer;
 import org.simbrain.workspace.WorkspaceComponent;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -109,14 +114,43 @@ public final class NetworkComponent extends WorkspaceComponent {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Format name for networks saved as binary snapshots. See {@link NetworkSnapshot}.
+     */
+    public static final String SNAPSHOT_FORMAT = "sbn";
+
     public static NetworkComponent open(final InputStream input, final String name, final String format) {
-        Network newNetwork = (Network) getNetworkXStream().fromXML(input);
-        return new NetworkComponent(name, newNetwork);
+        try {
+            BufferedInputStream buffered = new BufferedInputStream(input);
+            Network newNetwork;
+            if (NetworkSnapshot.isSnapshot(buffered)) {
+                newNetwork = NetworkSnapshot.read(buffered);
+            } else {
+                newNetwork = (Network) getNetworkXStream().fromXML(buffered);
+            }
+            return new NetworkComponent(name, newNetwork);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     @Override
     public void save(final OutputStream output, final String format) {
-        getNetworkXStream().toXML(network, output);
+        boolean snapshot = format == null ? NetworkPreferences.INSTANCE.getSaveAsSnapshot() : SNAPSHOT_FORMAT.equals(format);
+        if (snapshot) {
+            try {
+                NetworkSnapshot.write(network, output);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            getNetworkXStream().toXML(network, output);
+        }
+    }
+
+    @Override
+    public String getDefaultFormat() {
+        return NetworkPreferences.INSTANCE.getSaveAsSnapshot() ? SNAPSHOT_FORMAT : "xml";
     }
 
     /**
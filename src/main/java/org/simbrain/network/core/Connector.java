@@ -53,6 +53,14 @@ public abstract class Connector extends NetworkModel implements EditableObject,
      */
     public abstract Matrix getOutput();
 
+    /**
+     * Add the output of this connector to a column vector in place. Override to avoid allocating a new output
+     * matrix on every update.
+     */
+    public void addOutputTo(Matrix result) {
+        result.add(getOutput());
+    }
+
     protected void initEvents() {
 
         // When the parents of the matrix are deleted, delete the matrix
@@ -124,6 +132,12 @@ public abstract class Connector extends NetworkModel implements EditableObject,
                 return "Dense matrix";
             }
         },
+        SPARSE {
+            @Override
+            public String toString() {
+                return "Sparse matrix";
+            }
+        },
         ZOE {
             @Override
             public String toString() {
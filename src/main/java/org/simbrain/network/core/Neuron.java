@@ -112,20 +112,25 @@ public class Neuron extends LocatableModel implements EditableObject, AttributeC
     private final Network parent;
 
     /**
-     * Pre-allocates the number of bins in this neuron's fanIn/Out for
-     * efficiency.
+     * Store for this neuron's fan-in and fan-out. Shared with other neurons in the parent network. See {@link
+     * SynapseAdjacency}.
      */
-    public static final int PRE_ALLOCATED_NUM_SYNAPSES = (int) Math.ceil(500 / 0.75);
+    private transient SynapseAdjacency adjacency;
 
     /**
-     * Fan-out in the form of a map from target neurons to synapses.
+     * Index of this neuron in {@link #adjacency}.
      */
-    private transient Map<Neuron, Synapse> fanOut = new HashMap<>(PRE_ALLOCATED_NUM_SYNAPSES);
+    private transient int adjacencyIndex;
 
     /**
-     * List of synapses attaching to this neuron.
+     * Fan-out in the form of a map from target neurons to synapses. A read-only view of {@link #adjacency}.
      */
-    private transient ArrayList<Synapse> fanIn = new ArrayList<>(PRE_ALLOCATED_NUM_SYNAPSES);
+    private transient Map<Neuron, Synapse> fanOut;
+
+    /**
+     * List of synapses attaching to this neuron. A read-only view of {@link #adjacency}.
+     */
+    private transient List<Synapse> fanIn;
 
     /**
      * Central x-coordinate of this neuron in 2-space.
@@ -208,6 +213,7 @@ public class Neuron extends LocatableModel implements EditableObject, AttributeC
      */
     public Neuron(final Network parent, final NeuronUpdateRule updateRule) {
         this.parent = parent;
+        initAdjacency();
         setUpdateRule(updateRule);
     }
 
@@ -231,6 +237,7 @@ public class Neuron extends LocatableModel implements EditableObject, AttributeC
      */
     public Neuron(final Network parent, final Neuron n) {
         this.parent = parent;
+        initAdjacency();
         setUpdateRule(n.getUpdateRule().deepCopy());
         setDataHolder(n.getDataHolder().copy());
         setClamped(n.isClamped());
@@ -262,13 +269,27 @@ public class Neuron extends LocatableModel implements EditableObject, AttributeC
     @Override
     public void postOpenInit() {
         events = new NeuronEvents2();
-        fanOut = new HashMap<>();
-        fanIn = new ArrayList<>();
+        initAdjacency();
         if (polarity == null) {
             polarity = Polarity.BOTH;
         }
     }
 
+    /**
+     * Register this neuron with the parent network's {@link SynapseAdjacency}, starting with an empty fan-in and
+     * fan-out. Neurons without a parent network (e.g. templates) get a store of their own.
+     */
+    private void initAdjacency() {
+        initAdjacency(parent != null ? parent.getAdjacency() : new SynapseAdjacency());
+    }
+
+    private void initAdjacency(SynapseAdjacency store) {
+        adjacency = store;
+        adjacencyIndex = adjacency.register();
+        fanIn = adjacency.fanInView(adjacencyIndex);
+        fanOut = adjacency.fanOutView(adjacencyIndex);
+    }
+
     /**
      * Returns the time type of this neuron's update rule.
      *
@@ -308,6 +329,7 @@ public class Neuron extends LocatableModel implements EditableObject, AttributeC
         dataHolder = updateRule.createScalarData();
 
         if (getNetwork() != null) {
+            getNetwork().structureChanged();
             getNetwork().updateTimeType();
             events.getUpdateRuleChanged().fireAndForget(oldRule, updateRule);
         }
@@ -329,7 +351,10 @@ public class Neuron extends LocatableModel implements EditableObject, AttributeC
 
     @Override
     public void updateInputs() {
-        fanIn.forEach(Synapse::updateOutput);
+        int n = adjacency.fanInSize(adjacencyIndex);
+        for (int i = 0; i < n; i++) {
+            adjacency.fanIn(adjacencyIndex, i).updateOutput();
+        }
         addInputValue(getWeightedInputs());
     }
 
@@ -385,30 +410,28 @@ public class Neuron extends LocatableModel implements EditableObject, AttributeC
     }
 
     /**
-     * @return an unmodifiable version of the fanIn list.
+     * @return an unmodifiable, live view of the fanIn list.
      */
     public List<Synapse> getFanIn() {
-        return Collections.unmodifiableList(fanIn);
+        return fanIn;
     }
 
     /**
-     * @return an unmodifiable version of the fanOut map.
+     * @return an unmodifiable, live view of the fanOut map. Lookups by target neuron scan the fan-out.
      */
     public Map<Neuron, Synapse> getFanOut() {
-        return Collections.unmodifiableMap(fanOut);
+        return fanOut;
     }
 
     /**
-     * @return the fan out map. Unsafe because the fan out map and the returned map are the same and thus modifications
-     * to one will affect the other. Here for performance reasons.
+     * @return the fan out map. Now the same as {@link #getFanOut()}, since the fan out is always a read-only view.
      */
     public Map<Neuron, Synapse> getFanOutUnsafe() {
         return fanOut;
     }
 
     /**
-     * @return the fan in list. Unsafe because the fan in list and the returned list are the same and thus modifications
-     * to one will affect the other. Here for performance reasons.
+     * @return the fan in list. Now the same as {@link #getFanIn()}, since the fan in is always a read-only view.
      */
     public List<Synapse> getFanInUnsafe() {
         return fanIn;
@@ -426,8 +449,8 @@ public class Neuron extends LocatableModel implements EditableObject, AttributeC
      * @param synapse the synapse for which this neuron is a source to add.
      */
     public void addToFanOut(final Synapse synapse) {
-        if (fanOut != null) {
-            fanOut.put(synapse.getTarget(), synapse);
+        if (adjacency != null) {
+            adjacency.addToFanOut(adjacencyIndex, synapse);
         }
     }
 
@@ -436,8 +459,8 @@ public class Neuron extends LocatableModel implements EditableObject, AttributeC
      * directly.
      */
     public void removeFromFanOut(final Synapse synapse) {
-        if (fanOut != null) {
-            fanOut.remove(synapse.getTarget());
+        if (adjacency != null) {
+            adjacency.removeFromFanOut(adjacencyIndex, synapse);
         }
     }
 
@@ -448,8 +471,8 @@ public class Neuron extends LocatableModel implements EditableObject, AttributeC
      * Does <b>NOT</b> add this synapse to the network or any intermediate bodies.
      */
     public void addToFanIn(final Synapse source) {
-        if (fanIn != null) {
-            fanIn.add(source);
+        if (adjacency != null) {
+            adjacency.addToFanIn(adjacencyIndex, source);
         }
     }
 
@@ -458,8 +481,8 @@ public class Neuron extends LocatableModel implements EditableObject, AttributeC
      * directly.
      */
     public void removeFromFanIn(final Synapse synapse) {
-        if (fanIn != null) {
-            fanIn.remove(synapse);
+        if (adjacency != null) {
+            adjacency.removeFromFanIn(adjacencyIndex, synapse);
         }
     }
 
@@ -469,8 +492,9 @@ public class Neuron extends LocatableModel implements EditableObject, AttributeC
      */
     public double getWeightedInputs() {
         double wtdSum = 0;
-        for (Synapse synapse : fanIn) {
-            wtdSum += synapse.getPsr();
+        int n = adjacency.fanInSize(adjacencyIndex);
+        for (int i = 0; i < n; i++) {
+            wtdSum += adjacency.fanIn(adjacencyIndex, i).getPsr();
         }
         return wtdSum;
     }
@@ -525,9 +549,9 @@ public class Neuron extends LocatableModel implements EditableObject, AttributeC
 
         System.out.println("fan out");
 
-        for (int i = 0; i < fanOut.size(); i++) {
-            Synapse tempRef = fanOut.get(i);
-            System.out.println("fanOut [" + i + "]:" + tempRef);
+        int i = 0;
+        for (Synapse tempRef : fanOut.values()) {
+            System.out.println("fanOut [" + i++ + "]:" + tempRef);
         }
     }
 
@@ -658,7 +682,7 @@ public class Neuron extends LocatableModel implements EditableObject, AttributeC
      */
     private void deleteFanOut() {
         List<Synapse> fanOutList = getFanOutList();
-        fanOut.clear();
+        adjacency.clearFanOut(adjacencyIndex);
         for (Synapse s : fanOutList) {
             s.delete();
         }
@@ -670,7 +694,7 @@ public class Neuron extends LocatableModel implements EditableObject, AttributeC
      */
     private void deleteFanIn() {
         List<Synapse> fanInList = getFanInList();
-        fanIn.clear();
+        adjacency.clearFanIn(adjacencyIndex);
         for (Synapse synapse : fanInList) {
             synapse.delete();
         }
@@ -1034,6 +1058,9 @@ public class Neuron extends LocatableModel implements EditableObject, AttributeC
     public void delete() {
         getNetwork().updatePriorityList();
         deleteConnectedSynapses();
+        adjacency.release(adjacencyIndex);
+        // The released index may be reused, so detach from the shared store
+        initAdjacency(new SynapseAdjacency());
         events.getDeleted().fireAndBlock(this);
     }
 
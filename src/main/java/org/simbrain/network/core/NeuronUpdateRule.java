@@ -256,6 +256,15 @@ public abstract class NeuronUpdateRule<DS extends ScalarDataHolder, DM extends M
         return false;
     }
 
+    /**
+     * Override to return true if the rule reads the state of individual incoming synapses (e.g. their post-synaptic
+     * responses), rather than just the summed input to the neuron. Incoming synapses of such neurons are not compiled
+     * by {@link CompiledNetwork}.
+     */
+    public boolean usesSynapseState() {
+        return false;
+    }
+
     public double getGraphicalValue(Neuron n) {
         return n.getActivation();
     }
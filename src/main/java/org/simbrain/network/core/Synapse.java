@@ -461,6 +461,9 @@ public class Synapse extends NetworkModel implements EditableObject, AttributeCo
 
     public void forceSetStrength(final double wt) {
         strength = wt;
+        if (parentNetwork != null) {
+            parentNetwork.weightsChanged();
+        }
         events.getStrengthUpdated().fireAndForget();
     }
 
@@ -613,6 +616,9 @@ public class Synapse extends NetworkModel implements EditableObject, AttributeCo
     public void setSpikeResponder(final SpikeResponder sr) {
         this.spikeResponder = sr;
         spikeResponderData = sr.createResponderData();
+        if (parentNetwork != null) {
+            parentNetwork.structureChanged();
+        }
     }
 
     /**
@@ -625,6 +631,9 @@ public class Synapse extends NetworkModel implements EditableObject, AttributeCo
             return;
         }
         delay = dly;
+        if (parentNetwork != null) {
+            parentNetwork.structureChanged();
+        }
 
         if (delay <= 0) {
             delayManager = null;
@@ -695,6 +704,9 @@ public class Synapse extends NetworkModel implements EditableObject, AttributeCo
      */
     public void setEnabled(final boolean enabled) {
         this.enabled = enabled;
+        if (parentNetwork != null) {
+            parentNetwork.structureChanged();
+        }
     }
 
     /**
@@ -734,6 +746,9 @@ public class Synapse extends NetworkModel implements EditableObject, AttributeCo
     public void setLearningRule(SynapseUpdateRule newLearningRule) {
         SynapseUpdateRule oldRule = learningRule;
         this.learningRule = newLearningRule.deepCopy();
+        if (parentNetwork != null) {
+            parentNetwork.structureChanged();
+        }
         // TODO: Needed for calls to SynapseGroup.postOpenInit, which calls
         // SynapseGroup.setAndComformToTemplate. Template synapses don't seem to have
         // change support initialized.
@@ -835,6 +850,10 @@ public class Synapse extends NetworkModel implements EditableObject, AttributeCo
         }
     }
 
+    public ScalarDataHolder getSpikeResponderData() {
+        return spikeResponderData;
+    }
+
     public double getPsr() {
         return psr;
     }
@@ -253,6 +253,16 @@ public abstract class AbstractNeuronCollection extends Layer implements Copyable
         neuronList.add(neuron);
         neuron.setId(getParentNetwork().getIdManager().getAndIncrementId(Neuron.class));
         addListener(neuron);
+        neuronsChanged();
+    }
+
+    /**
+     * Tell the parent network that the neurons of this collection changed, so that its flat neuron list is rebuilt.
+     */
+    protected void neuronsChanged() {
+        if (getParentNetwork() != null) {
+            getParentNetwork().groupContentsChanged();
+        }
     }
 
     /**
@@ -275,6 +285,7 @@ public abstract class AbstractNeuronCollection extends Layer implements Copyable
         });
         n.getEvents().getDeleted().on(neuron-> {
             neuronList.remove(neuron);
+            neuronsChanged();
             if (isEmpty()) {
                 delete();
             }
@@ -288,6 +299,7 @@ public abstract class AbstractNeuronCollection extends Layer implements Copyable
      */
     public void removeNeuron(Neuron neuron) {
         neuronList.remove(neuron);
+        neuronsChanged();
     }
 
     /**
@@ -295,6 +307,7 @@ public abstract class AbstractNeuronCollection extends Layer implements Copyable
      */
     public void removeAllNeurons() {
         neuronList.clear();
+        neuronsChanged();
     }
 
     /**
@@ -774,7 +787,7 @@ public abstract class AbstractNeuronCollection extends Layer implements Copyable
                 .map(a -> a + amount)
                 .toArray();
         setActivations(newActivations);
-        events.getUpdated().fireAndForget();
+        getNetwork().fireUpdated(this);
     }
 
     /**
@@ -786,7 +799,7 @@ public abstract class AbstractNeuronCollection extends Layer implements Copyable
                 .map(a -> a - amount)
                 .toArray();
         setActivations(newActivations);
-        events.getUpdated().fireAndForget();
+        getNetwork().fireUpdated(this);
     }
 
     /**
@@ -795,7 +808,7 @@ public abstract class AbstractNeuronCollection extends Layer implements Copyable
     public void clearArray() {
         double[] newActivations = new double[getActivations().length];
         setActivations(newActivations);
-        events.getUpdated().fireAndForget();
+        getNetwork().fireUpdated(this);
     }
 
     @Override
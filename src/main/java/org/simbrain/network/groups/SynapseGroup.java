@@ -421,6 +421,7 @@ public class SynapseGroup extends NetworkModel implements EditableObject, Attrib
             toDelete.getTarget().removeFromFanIn(toDelete);
         }
         this.excitatoryRatio = getExcitatoryRatioPrecise();
+        synapsesChanged();
         if (isDisplaySynapses()) {
             fireSynapseRemoved(toDelete);
         }
@@ -440,6 +441,7 @@ public class SynapseGroup extends NetworkModel implements EditableObject, Attrib
                 removeSynapse(s);
             }
         }
+        synapsesChanged();
     }
 
     public void hardClear() {
@@ -462,10 +464,12 @@ public class SynapseGroup extends NetworkModel implements EditableObject, Attrib
     // TODO: Checks.
     public void addExcitatorySynapse(final Synapse s) {
         exSynapseSet.add(s);
+        synapsesChanged();
     }
 
     public void addInhibitorySynapse(final Synapse s) {
         inSynapseSet.add(s);
+        synapsesChanged();
     }
 
     /**
@@ -491,6 +495,16 @@ public class SynapseGroup extends NetworkModel implements EditableObject, Attrib
                 addNewInhibitorySynapse(synapse);
             }
         }
+        synapsesChanged();
+    }
+
+    /**
+     * Tell the parent network that the synapses of this group changed, so that its flat synapse list is rebuilt.
+     */
+    private void synapsesChanged() {
+        if (getParentNetwork() != null) {
+            getParentNetwork().groupContentsChanged();
+        }
     }
 
     /**
@@ -187,8 +187,9 @@ public abstract class AbstractNeuronCollectionNode extends ScreenElement {
                 if (nc.getActivationRecorder().isRecording()) {
                     nc.getActivationRecorder().stopRecording();
                 } else {
-                    SFileChooser chooser = new SFileChooser(".", "comma-separated-values (csv)", "csv");
-                        File theFile = chooser.showSaveDialog("Recording_" + Utils.getTimeString() + ".csv");
+                    SFileChooser chooser = new SFileChooser(".", "Simbrain recording (sbr)", "sbr");
+                    chooser.addExtension("comma-separated-values (csv)", "csv");
+                    File theFile = chooser.showSaveDialog("Recording_" + Utils.getTimeString() + ".sbr");
                     if (theFile != null) {
                         nc.getActivationRecorder().startRecording(theFile);
                     }
@@ -11,6 +11,7 @@ import org.simbrain.network.gui.actions.edit.CopyAction;
 import org.simbrain.network.gui.actions.edit.CutAction;
 import org.simbrain.network.gui.actions.edit.PasteAction;
 import org.simbrain.network.matrix.WeightMatrix;
+import org.simbrain.network.matrix.SparseWeightMatrix;
 import org.simbrain.network.matrix.ZoeConnector;
 import org.simbrain.util.ImageKt;
 import org.simbrain.util.ResourceManager;
@@ -60,6 +61,12 @@ public class WeightMatrixNode extends ScreenElement implements PropertyChangeLis
      */
     private int imageHeight = 90;
 
+    /**
+     * Maximum number of rows and columns of pixels rendered for a {@link SparseWeightMatrix}. Larger matrices are
+     * downsampled.
+     */
+    private int sparseImageSize = 200;
+
     /**
      * Parent network panel.
      */
@@ -112,6 +119,10 @@ public class WeightMatrixNode extends ScreenElement implements PropertyChangeLis
                 double[] tempArray = new double[100];
                 Arrays.fill(tempArray, .1);
                 img = ImageKt.toSimbrainColorImage(tempArray, 10, 10);
+            } else if (weightMatrix instanceof SparseWeightMatrix sparse) {
+                int rows = Math.min(sparseImageSize, sparse.getNumRows());
+                int cols = Math.min(sparseImageSize, sparse.getNumCols());
+                img = ImageKt.toSimbrainColorImage(sparse.downsample(rows, cols), cols, rows);
             } else {
                 double[] pixelArray = ((WeightMatrix)weightMatrix).getWeights();
                 img = ImageKt.toSimbrainColorImage(pixelArray, ((WeightMatrix)weightMatrix).getWeightMatrix().ncol(),
@@ -3,6 +3,7 @@ package org.simbrain.network.matrix;
 
 import org.jetbrains.annotations.NotNull;
 import org.simbrain.network.core.ArrayLayer;
+import org.simbrain.network.core.Connector;
 import org.simbrain.network.core.Layer;
 import org.simbrain.network.core.Network;
 import org.simbrain.network.core.NeuronUpdateRule;
@@ -12,7 +13,6 @@ import org.simbrain.network.util.MatrixDataHolder;
 import org.simbrain.util.SmileUtilsKt;
 import org.simbrain.util.UserParameter;
 import org.simbrain.util.Utils;
-import org.simbrain.util.math.SimbrainMath;
 import org.simbrain.util.propertyeditor.EditableObject;
 import org.simbrain.workspace.AttributeContainer;
 import org.simbrain.workspace.Producible;
@@ -117,7 +117,7 @@ public class NeuronArray extends ArrayLayer implements EditableObject, Attribute
     public void randomize() {
         activations = Matrix.rand(size(),1,
                 new GaussianDistribution(0, 1));
-        getEvents().getUpdated().fireAndForget();
+        getNetwork().fireUpdated(this);
     }
 
     @Override
@@ -158,7 +158,7 @@ public class NeuronArray extends ArrayLayer implements EditableObject, Attribute
      */
     public void offset(final double offsetX, final double offsetY) {
         setLocation(getX() + offsetX, getY() + offsetY);
-        getEvents().getUpdated().fireAndForget();
+        getNetwork().fireUpdated(this);
     }
 
     /**
@@ -197,12 +197,12 @@ public class NeuronArray extends ArrayLayer implements EditableObject, Attribute
         }
         updateRule.apply(this, dataHolder);
         getInputs().mul(0); // clear inputs
-        getEvents().getUpdated().fireAndForget();
+        getNetwork().fireUpdated(this);
     }
 
     public void setActivations(Matrix newActivations) {
         activations = newActivations;
-        getEvents().getUpdated().fireAndForget();
+        getNetwork().fireUpdated(this);
     }
 
     /**
@@ -246,25 +246,25 @@ public class NeuronArray extends ArrayLayer implements EditableObject, Attribute
     @Override
     public void clear() {
         activations.mul(0);
-        getEvents().getUpdated().fireAndForget();
+        getNetwork().fireUpdated(this);
     }
 
     @Override
     public void increment() {
         activations.add(getIncrement());
-        getEvents().getUpdated().fireAndForget();
+        getNetwork().fireUpdated(this);
     }
 
     @Override
     public void decrement() {
         activations.sub(getIncrement());
-        getEvents().getUpdated().fireAndForget();
+        getNetwork().fireUpdated(this);
     }
 
     public void setUpdateRule(NeuronUpdateRule updateRule) {
         this.updateRule = updateRule;
         dataHolder = updateRule.createMatrixData(size());
-        getEvents().getUpdated().fireAndForget();
+        getNetwork().fireUpdated(this);
     }
 
     public NeuronUpdateRule getUpdateRule() {
@@ -306,18 +306,29 @@ public class NeuronArray extends ArrayLayer implements EditableObject, Attribute
     }
 
     public double[] getExcitatoryInputs() {
-        return getIncomingConnectors().stream()
-                .filter(wm -> wm instanceof WeightMatrix)
-                .map(wm -> ((WeightMatrix) wm).getExcitatoryOutputs())
-                .reduce(SimbrainMath::addVector)
-                .orElse(new double[inputSize()]);
+        double[] excitatory = new double[inputSize()];
+        addSignedInputsTo(excitatory, null);
+        return excitatory;
     }
+
     public double[] getInhibitoryInputs() {
-        return getIncomingConnectors().stream()
-                .filter(wm -> wm instanceof WeightMatrix)
-                .map(wm -> ((WeightMatrix) wm).getInhibitoryOutputs())
-                .reduce(SimbrainMath::addVector)
-                .orElse(new double[inputSize()]);
+        double[] inhibitory = new double[inputSize()];
+        addSignedInputsTo(null, inhibitory);
+        return inhibitory;
+    }
+
+    /**
+     * Adds excitatory and inhibitory inputs from incoming weight matrices to the given arrays, making one pass over
+     * each matrix. Either array can be null.
+     */
+    public void addSignedInputsTo(double[] excitatory, double[] inhibitory) {
+        for (Connector c : getIncomingConnectors()) {
+            if (c instanceof WeightMatrix wm) {
+                wm.addSignedOutputsTo(excitatory, inhibitory);
+            } else if (c instanceof SparseWeightMatrix wm) {
+                wm.addSignedOutputsTo(excitatory, inhibitory);
+            }
+        }
     }
 
 }
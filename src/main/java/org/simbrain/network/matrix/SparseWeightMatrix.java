@@ -0,0 +1,472 @@
+package org.simbrain.network.matrix;
+
+import org.simbrain.network.core.Connector;
+import org.simbrain.network.core.Layer;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.SynapseUpdateRule;
+import org.simbrain.network.spikeresponders.NonResponder;
+import org.simbrain.network.synapse_update_rules.StaticSynapseRule;
+import org.simbrain.network.synapse_update_rules.spikeresponders.SpikeResponder;
+import org.simbrain.network.util.EmptyMatrixData;
+import org.simbrain.network.util.MatrixDataHolder;
+import org.simbrain.util.UserParameter;
+import org.simbrain.workspace.Producible;
+import smile.math.matrix.Matrix;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.simbrain.util.SmileUtilsKt.flatten;
+import static org.simbrain.util.StripedProductKt.PARALLEL_PRODUCT_THRESHOLD;
+
+/**
+ * A sparse weight matrix that connects a source and target {@link Layer}. Like {@link WeightMatrix} it has as many
+ * rows as the target layer and as many columns as the source layer, but only stores its non-zero entries, in
+ * compressed sparse row (CSR) format: the entries of row i are at indices rowStart[i] until rowStart[i + 1] of the
+ * columns and values arrays, sorted by column.
+ *
+ * The set of entries is fixed when the matrix is created. Learning rules and spike responders only change the values
+ * of existing entries, and post synaptic responses are stored per entry.
+ */
+public class SparseWeightMatrix extends Connector {
+
+    @UserParameter(label = "Increment amount", increment = .1, order = 20)
+    private double increment = .1;
+
+    @UserParameter(label = "Learning Rule", useSetter = true, isObjectType = true, order = 100)
+    SynapseUpdateRule learningRule = new StaticSynapseRule();
+
+    /**
+     * Only used if source connector's rule is spiking.
+     */
+    @UserParameter(label = "Spike Responder", isObjectType = true,
+            useSetter = true, showDetails = false, order = 200)
+    private SpikeResponder spikeResponder = new NonResponder();
+
+    /**
+     * Holds data for prototype rule.
+     */
+    private MatrixDataHolder dataHolder = EmptyMatrixData.INSTANCE;
+
+    /**
+     * Holds data for spike responder. Created with one row and one column per entry.
+     */
+    public MatrixDataHolder spikeResponseData = EmptyMatrixData.INSTANCE;
+
+    private final int numCols;
+
+    /**
+     * Start of each row in {@link #columns} and {@link #values}, plus the total number of entries at the end.
+     */
+    private int[] rowStart;
+
+    /**
+     * Column of each entry.
+     */
+    private int[] columns;
+
+    /**
+     * Value of each entry.
+     */
+    private double[] values;
+
+    /**
+     * Post synaptic response of each entry. Only used with spike responders.
+     */
+    private double[] psrs;
+
+    /**
+     * Construct a sparse matrix with ones on the diagonal, like a new {@link WeightMatrix}.
+     *
+     * @param net parent network
+     * @param source source layer
+     * @param target target layer
+     */
+    public SparseWeightMatrix(Network net, Layer source, Layer target) {
+        super(source, target, net);
+        numCols = source.outputSize();
+        int rows = target.inputSize();
+        int diagonal = Math.min(rows, numCols);
+        rowStart = new int[rows + 1];
+        for (int i = 0; i < rows; i++) {
+            rowStart[i + 1] = Math.min(i + 1, diagonal);
+        }
+        columns = new int[diagonal];
+        values = new double[diagonal];
+        for (int i = 0; i < diagonal; i++) {
+            columns[i] = i;
+            values[i] = 1;
+        }
+        init();
+    }
+
+    /**
+     * Construct a sparse matrix with the non-zero entries of a dense matrix.
+     *
+     * @param net parent network
+     * @param source source layer
+     * @param target target layer
+     * @param weights a target size x source size matrix
+     */
+    public SparseWeightMatrix(Network net, Layer source, Layer target, Matrix weights) {
+        super(source, target, net);
+        numCols = source.outputSize();
+        int rows = target.inputSize();
+        if (weights.nrow() != rows || weights.ncol() != numCols) {
+            throw new IllegalArgumentException("Weights are " + weights.nrow() + "x" + weights.ncol() + " but " +
+                    "layers need " + rows + "x" + numCols);
+        }
+        rowStart = new int[rows + 1];
+        for (int i = 0; i < rows; i++) {
+            int count = 0;
+            for (int j = 0; j < numCols; j++) {
+                if (weights.get(i, j) != 0) {
+                    count++;
+                }
+            }
+            rowStart[i + 1] = rowStart[i] + count;
+        }
+        columns = new int[rowStart[rows]];
+        values = new double[rowStart[rows]];
+        int k = 0;
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < numCols; j++) {
+                if (weights.get(i, j) != 0) {
+                    columns[k] = j;
+                    values[k++] = weights.get(i, j);
+                }
+            }
+        }
+        init();
+    }
+
+    /**
+     * Construct a sparse matrix where each entry is present with the given probability, with weights drawn from the
+     * network's weight randomizer. Only the entries that are present are visited, so creating the matrix takes time
+     * proportional to the number of entries.
+     *
+     * @param net parent network
+     * @param source source layer
+     * @param target target layer
+     * @param connectionProbability probability that each entry is present
+     * @param random source of randomness for choosing entries
+     */
+    public SparseWeightMatrix(Network net, Layer source, Layer target, double connectionProbability, Random random) {
+        super(source, target, net);
+        numCols = source.outputSize();
+        int rows = target.inputSize();
+        long size = (long) rows * numCols;
+        int expected = (int) Math.min(Integer.MAX_VALUE - 8, size * Math.max(0, connectionProbability) * 1.1 + 16);
+        int[] foundColumns = new int[expected];
+        rowStart = new int[rows + 1];
+        int count = 0;
+        double logSkip = Math.log1p(-Math.min(connectionProbability, 1));
+        long index = -1;
+        while (connectionProbability > 0) {
+            // Skip ahead a geometrically distributed number of entries
+            long skip = connectionProbability >= 1 ? 0 : (long) (Math.log1p(-random.nextDouble()) / logSkip);
+            index += skip + 1;
+            if (index >= size || index < 0) {
+                break;
+            }
+            if (count == foundColumns.length) {
+                foundColumns = Arrays.copyOf(foundColumns, count * 2);
+            }
+            foundColumns[count++] = (int) (index % numCols);
+            rowStart[(int) (index / numCols) + 1]++;
+        }
+        for (int i = 0; i < rows; i++) {
+            rowStart[i + 1] += rowStart[i];
+        }
+        columns = Arrays.copyOf(foundColumns, count);
+        values = new double[count];
+        for (int k = 0; k < count; k++) {
+            values[k] = net.getWeightRandomizer().sampleDouble();
+        }
+        init();
+    }
+
+    public SparseWeightMatrix(Network net, Layer source, Layer target, double connectionProbability) {
+        this(net, source, target, connectionProbability, new Random());
+    }
+
+    private void init() {
+        psrs = new double[values.length];
+        source.addOutgoingConnector(this);
+        target.addIncomingConnector(this);
+    }
+
+    public int getNumRows() {
+        return rowStart.length - 1;
+    }
+
+    public int getNumCols() {
+        return numCols;
+    }
+
+    public int getNumEntries() {
+        return values.length;
+    }
+
+    /**
+     * Start index of each row's entries, followed by the number of entries. Should not be modified.
+     */
+    public int[] getRowStart() {
+        return rowStart;
+    }
+
+    /**
+     * Column of each entry. Should not be modified.
+     */
+    public int[] getColumns() {
+        return columns;
+    }
+
+    /**
+     * Value of each entry. Can be modified in place, followed by an update event.
+     */
+    @Producible(description = "Entry values")
+    public double[] getValues() {
+        return values;
+    }
+
+    public double[] getPsrs() {
+        return psrs;
+    }
+
+    /**
+     * Index of the entry at the given row and column, or a negative number if there is none.
+     */
+    public int indexOf(int row, int col) {
+        int index = Arrays.binarySearch(columns, rowStart[row], rowStart[row + 1], col);
+        return index < 0 ? -1 : index;
+    }
+
+    /**
+     * Returns the value at a row and column, which is 0 if there is no entry there.
+     */
+    public double get(int row, int col) {
+        int index = indexOf(row, col);
+        return index < 0 ? 0 : values[index];
+    }
+
+    /**
+     * Set the value of an existing entry.
+     *
+     * @throws IllegalArgumentException if there is no entry at the given row and column
+     */
+    public void set(int row, int col, double value) {
+        int index = indexOf(row, col);
+        if (index < 0) {
+            throw new IllegalArgumentException("No entry at (" + row + ", " + col + ")");
+        }
+        values[index] = value;
+    }
+
+    /**
+     * Returns a dense copy of this matrix.
+     */
+    public Matrix toDense() {
+        var dense = new Matrix(getNumRows(), numCols);
+        for (int i = 0; i < getNumRows(); i++) {
+            for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+                dense.set(i, columns[k], values[k]);
+            }
+        }
+        return dense;
+    }
+
+    /**
+     * Returns a dense, row major copy of the weights. Hidden from couplings by default since it takes time and memory
+     * proportional to rows x columns; prefer {@link #getValues()}.
+     */
+    @Producible(defaultVisibility = false)
+    public double[] getWeights() {
+        return flatten(toDense());
+    }
+
+    /**
+     * Returns a row major grid of at most maxRows x maxCols cells covering this matrix, for rendering large matrices
+     * without a dense copy. Each cell holds the entry of largest magnitude in its block of rows and columns, so that
+     * sparse entries stay visible, or 0 if the block has no entries. Takes time proportional to the number of entries
+     * plus the number of cells.
+     *
+     * @param maxRows maximum number of rows in the grid
+     * @param maxCols maximum number of columns in the grid
+     * @return the cells; the grid has {@code min(maxRows, numRows)} rows and {@code min(maxCols, numCols)} columns
+     */
+    public double[] downsample(int maxRows, int maxCols) {
+        int rows = Math.min(maxRows, getNumRows());
+        int cols = Math.min(maxCols, numCols);
+        double[] cells = new double[rows * cols];
+        if (rows == 0 || cols == 0) {
+            return cells;
+        }
+        int[] cellColumn = new int[numCols];
+        for (int j = 0; j < numCols; j++) {
+            cellColumn[j] = (int) ((long) j * cols / numCols);
+        }
+        for (int i = 0; i < getNumRows(); i++) {
+            int rowOffset = (int) ((long) i * rows / getNumRows()) * cols;
+            for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+                int cell = rowOffset + cellColumn[columns[k]];
+                if (Math.abs(values[k]) > Math.abs(cells[cell])) {
+                    cells[cell] = values[k];
+                }
+            }
+        }
+        return cells;
+    }
+
+    @Override
+    public void update() {
+        if (!(learningRule instanceof StaticSynapseRule)) {
+            learningRule.apply(this, dataHolder);
+            parent.fireUpdated(this);
+        }
+    }
+
+    /**
+     * Returns the product of this matrix and its source activations, or the summed psrs if the source array's rule is
+     * spiking.
+     */
+    @Override
+    public Matrix getOutput() {
+        var output = new Matrix(getNumRows(), 1);
+        addOutputTo(output);
+        return output;
+    }
+
+    @Override
+    public void addOutputTo(Matrix result) {
+        if (spikeResponder instanceof NonResponder) {
+            Matrix sourceOutputs = source.getOutputs();
+            if (values.length < PARALLEL_PRODUCT_THRESHOLD) {
+                for (int i = 0; i < getNumRows(); i++) {
+                    result.add(i, 0, rowProduct(i, sourceOutputs));
+                }
+            } else {
+                IntStream.range(0, getNumRows()).parallel()
+                        .forEach(i -> result.add(i, 0, rowProduct(i, sourceOutputs)));
+            }
+        } else {
+            spikeResponder.apply(this, spikeResponseData);
+            for (int i = 0; i < getNumRows(); i++) {
+                double sum = 0;
+                for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+                    sum += psrs[k];
+                }
+                result.add(i, 0, sum);
+            }
+        }
+    }
+
+    private double rowProduct(int row, Matrix sourceOutputs) {
+        double sum = 0;
+        for (int k = rowStart[row]; k < rowStart[row + 1]; k++) {
+            sum += values[k] * sourceOutputs.get(columns[k], 0);
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the sum of the psr's for all excitatory (> 0) entries of each row. In the connectionist case the psr of
+     * an entry is its value times its source's output.
+     */
+    public double[] getExcitatoryOutputs() {
+        double[] excitatory = new double[getNumRows()];
+        addSignedOutputsTo(excitatory, null);
+        return excitatory;
+    }
+
+    /**
+     * Returns the sum of the psr's for all inhibitory (< 0) entries of each row.
+     */
+    public double[] getInhibitoryOutputs() {
+        double[] inhibitory = new double[getNumRows()];
+        addSignedOutputsTo(null, inhibitory);
+        return inhibitory;
+    }
+
+    /**
+     * Adds the excitatory and inhibitory sums of each row to the given arrays in one pass. Either can be null.
+     *
+     * @see WeightMatrix#addSignedOutputsTo(double[], double[])
+     */
+    public void addSignedOutputsTo(double[] excitatory, double[] inhibitory) {
+        boolean connectionist = spikeResponder instanceof NonResponder;
+        Matrix sourceOutputs = source.getOutputs();
+        for (int i = 0; i < getNumRows(); i++) {
+            for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+                double psr = connectionist ? values[k] * sourceOutputs.get(columns[k], 0) : psrs[k];
+                if (values[k] > 0) {
+                    if (excitatory != null) {
+                        excitatory[i] += psr;
+                    }
+                } else if (values[k] < 0) {
+                    if (inhibitory != null) {
+                        inhibitory[i] += psr;
+                    }
+                }
+            }
+        }
+    }
+
+    public SynapseUpdateRule getLearningRule() {
+        return learningRule;
+    }
+
+    public void setLearningRule(SynapseUpdateRule learningRule) {
+        this.learningRule = learningRule;
+    }
+
+    public SpikeResponder getSpikeResponder() {
+        return spikeResponder;
+    }
+
+    public void setSpikeResponder(SpikeResponder spikeResponder) {
+        this.spikeResponder = spikeResponder;
+        spikeResponseData = spikeResponder.createMatrixData(1, values.length);
+    }
+
+    @Override
+    public void randomize() {
+        for (int k = 0; k < values.length; k++) {
+            values[k] = parent.getWeightRandomizer().sampleDouble();
+        }
+        parent.fireUpdated(this);
+    }
+
+    @Override
+    public void increment() {
+        for (int k = 0; k < values.length; k++) {
+            values[k] += increment;
+        }
+        parent.fireUpdated(this);
+    }
+
+    @Override
+    public void decrement() {
+        for (int k = 0; k < values.length; k++) {
+            values[k] -= increment;
+        }
+        parent.fireUpdated(this);
+    }
+
+    /**
+     * Set all entries to 0, keeping them in the matrix.
+     */
+    public void hardClear() {
+        Arrays.fill(values, 0);
+        parent.fireUpdated(this);
+    }
+
+    @Override
+    public String toString() {
+        return getId()
+                + " (" + getNumRows() + "x" + numCols + ", " + values.length + " entries) "
+                + "connecting " + source.getId() + " to " + target.getId();
+    }
+
+}
@@ -7,6 +7,7 @@ import org.simbrain.network.synapse_update_rules.spikeresponders.SpikeResponder;
 import org.simbrain.network.util.EmptyMatrixData;
 import org.simbrain.network.util.MatrixDataHolder;
 import org.simbrain.util.SmileUtilsKt;
+import org.simbrain.util.StripedProduct;
 import org.simbrain.util.UserParameter;
 import org.simbrain.workspace.Consumable;
 import org.simbrain.workspace.Producible;
@@ -66,16 +67,9 @@ public class WeightMatrix extends Connector {
     private Matrix psrMatrix;
 
     /**
-     * A binary matrix with 1s corresponding to entries of the weight matrix that are greater than 1 and thus
-     * excitatory, and 0s otherwise. Used by {@link #getExcitatoryOutputs()}
+     * Reusable product of the weight matrix and source outputs, used by {@link #addOutputTo(Matrix)}.
      */
-    private transient Matrix excitatoryMask;
-
-    /**
-     * A binary matrix with 1s corresponding to entries of the weight matrix that are less than 1 and thus
-     * inhibitory, and 0s otherwise. Used by {@link #getInhibitoryOutputs()} }
-     */
-    private transient Matrix inhibitoryMask;
+    private transient StripedProduct product;
 
     /**
      * Construct the matrix.
@@ -94,13 +88,6 @@ public class WeightMatrix extends Connector {
         diagonalize();
 
         psrMatrix = new Matrix(target.inputSize(), source.outputSize());
-
-        getEvents().getUpdated().on(null, true, () -> {
-           updateExcitatoryMask();
-           updateInhibitoryMask();
-        });
-        updateExcitatoryMask();
-        updateInhibitoryMask();
     }
 
     @Producible
@@ -130,13 +117,13 @@ public class WeightMatrix extends Connector {
         for (int i = 0; i < len; i++) {
             weightMatrix.set(i / weightMatrix.ncol(), i % weightMatrix.ncol(), newWeights[i]);
         }
-        getEvents().getUpdated().fireAndForget();
+        parent.fireUpdated(this);
     }
 
     @Consumable
     public void setMatrixValues(Matrix otherWeightMatrix) {
         SmileUtilsKt.copy(weightMatrix, otherWeightMatrix);
-        getEvents().getUpdated().fireAndForget();
+        parent.fireUpdated(this);
     }
 
     /**
@@ -146,7 +133,7 @@ public class WeightMatrix extends Connector {
         clear();
         var diag = Matrix.eye(target.inputSize(), source.outputSize());
         SmileUtilsKt.copy(weightMatrix, diag);
-        getEvents().getUpdated().fireAndForget();
+        parent.fireUpdated(this);
     }
 
     @Override
@@ -156,7 +143,7 @@ public class WeightMatrix extends Connector {
 
         if (!(learningRule instanceof StaticSynapseRule)){
             learningRule.apply(this, dataHolder);
-            getEvents().getUpdated().fireAndForget();
+            parent.fireUpdated(this);
         }
     }
 
@@ -180,6 +167,26 @@ public class WeightMatrix extends Connector {
         }
     }
 
+    /**
+     * Adds the output to the given vector without allocating. Large matrices are multiplied in parallel stripes.
+     */
+    @Override
+    public void addOutputTo(Matrix result) {
+        if (spikeResponder instanceof NonResponder) {
+            if (product == null || product.getRows() != weightMatrix.nrow() || product.getCols() != weightMatrix.ncol()) {
+                product = new StripedProduct(weightMatrix.nrow(), weightMatrix.ncol());
+            }
+            product.addProduct(weightMatrix, source.getOutputs(), result);
+        } else {
+            spikeResponder.apply(this, spikeResponseData);
+            for (int j = 0; j < psrMatrix.ncol(); j++) {
+                for (int i = 0; i < psrMatrix.nrow(); i++) {
+                    result.add(i, 0, psrMatrix.get(i, j));
+                }
+            }
+        }
+    }
+
     /**
      * Update the psr matrix in the connectionist case.
      */
@@ -199,22 +206,27 @@ public class WeightMatrix extends Connector {
         }
     }
 
-    private void updateExcitatoryMask() {
-        excitatoryMask = weightMatrix.clone();
-        for (int i = 0; i <  excitatoryMask.nrow(); i++) {
-            for (int j = 0; j < excitatoryMask.ncol(); j++) {
-                var newVal = (excitatoryMask.get(i,j) > 0) ? 1 : 0;
-                excitatoryMask.set(i,j, newVal);
-            }
-        }
-    }
-
-    private void updateInhibitoryMask() {
-        inhibitoryMask = weightMatrix.clone();
-        for (int i = 0; i <  inhibitoryMask.nrow(); i++) {
-            for (int j = 0; j < inhibitoryMask.ncol(); j++) {
-                var newVal = (inhibitoryMask.get(i,j) < 0) ? 1 : 0;
-                inhibitoryMask.set(i,j, newVal);
+    /**
+     * Adds the sums of the psr's for excitatory (> 0) and inhibitory (< 0) pre-synaptic weights of each row to the
+     * given arrays, in a single pass over the matrix. In the connectionist case the psr of an entry is its weight
+     * times the source output. Either array can be null if it is not needed.
+     */
+    public void addSignedOutputsTo(double[] excitatory, double[] inhibitory) {
+        boolean connectionist = spikeResponder instanceof NonResponder;
+        Matrix output = source.getOutputs();
+        for (int j = 0; j < weightMatrix.ncol(); j++) {
+            double sourceOutput = output.get(j, 0);
+            for (int i = 0; i < weightMatrix.nrow(); i++) {
+                double weight = weightMatrix.get(i, j);
+                if (weight > 0) {
+                    if (excitatory != null) {
+                        excitatory[i] += connectionist ? weight * sourceOutput : psrMatrix.get(i, j);
+                    }
+                } else if (weight < 0) {
+                    if (inhibitory != null) {
+                        inhibitory[i] += connectionist ? weight * sourceOutput : psrMatrix.get(i, j);
+                    }
+                }
             }
         }
     }
@@ -223,22 +235,18 @@ public class WeightMatrix extends Connector {
      * Returns an array representing the sum of the psr's for all excitatory (> 0) pre-synaptic weights
      */
     public double[] getExcitatoryOutputs() {
-        updateConnectionistPSR();
-        if (excitatoryMask == null) {
-            updateExcitatoryMask();
-        }
-        return excitatoryMask.clone().mul(psrMatrix).rowSums();
+        double[] excitatory = new double[weightMatrix.nrow()];
+        addSignedOutputsTo(excitatory, null);
+        return excitatory;
     }
 
     /**
      * Returns an array representing the sum of the psr's for all inhibitory (< 0) pre-synaptic weights
      */
     public double[] getInhibitoryOutputs() {
-        updateConnectionistPSR();
-        if (inhibitoryMask == null) {
-            updateInhibitoryMask();
-        }
-        return inhibitoryMask.clone().mul(psrMatrix).rowSums();
+        double[] inhibitory = new double[weightMatrix.nrow()];
+        addSignedOutputsTo(null, inhibitory);
+        return inhibitory;
     }
 
 
@@ -257,19 +265,19 @@ public class WeightMatrix extends Connector {
                 weightMatrix.set(i,j, parent.getWeightRandomizer().sampleDouble());
             }
         }
-        getEvents().getUpdated().fireAndForget();
+        parent.fireUpdated(this);
     }
 
     @Override
     public void increment() {
         weightMatrix.add(increment);
-        getEvents().getUpdated().fireAndForget();
+        parent.fireUpdated(this);
     }
 
     @Override
     public void decrement() {
         weightMatrix.sub(increment);
-        getEvents().getUpdated().fireAndForget();
+        parent.fireUpdated(this);
     }
 
     /**
@@ -277,7 +285,7 @@ public class WeightMatrix extends Connector {
      */
     public void hardClear() {
         SmileUtilsKt.copy(weightMatrix, new Matrix(weightMatrix.nrow(), weightMatrix.ncol()));
-        getEvents().getUpdated().fireAndForget();
+        parent.fireUpdated(this);
     }
 
     @Override
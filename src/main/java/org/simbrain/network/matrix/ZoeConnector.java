@@ -67,24 +67,24 @@ public class ZoeConnector extends Connector {
 
     @Override
     public void randomize() {
-        getEvents().getUpdated().fireAndForget();
+        parent.fireUpdated(this);
     }
 
     @Override
     public void increment() {
-        getEvents().getUpdated().fireAndForget();
+        parent.fireUpdated(this);
     }
 
     @Override
     public void decrement() {
-        getEvents().getUpdated().fireAndForget();
+        parent.fireUpdated(this);
     }
 
     /**
      * Set all entries to 0.
      */
     public void hardClear() {
-        getEvents().getUpdated().fireAndForget();
+        parent.fireUpdated(this);
     }
 
     @Override
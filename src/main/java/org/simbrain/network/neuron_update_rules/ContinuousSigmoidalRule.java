@@ -18,13 +18,17 @@
  */
 package org.simbrain.network.neuron_update_rules;
 
+import org.simbrain.network.core.Layer;
 import org.simbrain.network.core.Network;
 import org.simbrain.network.core.Network.TimeType;
 import org.simbrain.network.core.Neuron;
+import org.simbrain.network.util.BiasedMatrixData;
 import org.simbrain.network.util.BiasedScalarData;
+import org.simbrain.network.util.ContinuousSigmoidalMatrixData;
 import org.simbrain.util.UserParameter;
 import org.simbrain.util.math.SigmoidFunctionEnum;
 import org.simbrain.util.stats.ProbabilityDistribution;
+import smile.math.matrix.Matrix;
 
 /**
  * <b>Continuous Sigmoidal Rule</b> provides various squashing function
@@ -137,6 +141,28 @@ public class ContinuousSigmoidalRule extends AbstractSigmoidalRule {
 
     }
 
+    @Override
+    public void apply(Layer array, BiasedMatrixData data) {
+        double dt = array.getNetwork().getTimeStep();
+        double[] netActivations = ((ContinuousSigmoidalMatrixData) data).getNetActivations();
+        Matrix biases = data.getBiases();
+        Matrix inputs = array.getInputs();
+        Matrix outputs = array.getOutputs();
+        for (int i = 0; i < outputs.nrow(); i++) {
+            double input = inputs.get(i, 0) + biases.get(i, 0);
+            if (addNoise) {
+                input += noiseGenerator.sampleDouble();
+            }
+            netActivations[i] = netActivations[i] * (1 - (leak * dt / tau)) + (dt / tau) * input;
+            outputs.set(i, 0, sFunction.valueOf(netActivations[i], getUpperBound(), getLowerBound(), getSlope()));
+        }
+    }
+
+    @Override
+    public ContinuousSigmoidalMatrixData createMatrixData(int size) {
+        return new ContinuousSigmoidalMatrixData(size);
+    }
+
     public int getNoBytes() { // bump to interface...
         // [ buff | netInp | netAct | leak | tau | UB | LB | slope ]
         return 56 + 8; // Do some reflection here... 8 is for buffer
@@ -18,14 +18,20 @@
  */
 package org.simbrain.network.neuron_update_rules;
 
+import org.simbrain.network.core.Layer;
 import org.simbrain.network.core.Network.TimeType;
 import org.simbrain.network.core.Neuron;
 import org.simbrain.network.core.NeuronUpdateRule;
 import org.simbrain.network.updaterules.interfaces.NoisyUpdateRule;
+import org.simbrain.network.util.HodgkinHuxleyMatrixData;
+import org.simbrain.network.util.MatrixDataHolder;
 import org.simbrain.network.util.ScalarDataHolder;
 import org.simbrain.util.UserParameter;
 import org.simbrain.util.stats.ProbabilityDistribution;
 import org.simbrain.util.stats.distributions.UniformRealDistribution;
+import smile.math.matrix.Matrix;
+
+import java.util.Arrays;
 
 // TODO: deal with ENa, EK
 /**
@@ -163,6 +169,52 @@ public class HodgkinHuxleyRule extends NeuronUpdateRule implements NoisyUpdateRu
 
     }
 
+    @Override
+    public void apply(Layer array, MatrixDataHolder data) {
+        HodgkinHuxleyMatrixData hhData = (HodgkinHuxleyMatrixData) data;
+        double[] n = hhData.getN();
+        double[] m = hhData.getM();
+        double[] h = hhData.getH();
+        double dt = array.getNetwork().getTimeStep();
+        Matrix inputs = array.getInputs();
+        Matrix outputs = array.getOutputs();
+        for (int i = 0; i < outputs.nrow(); i++) {
+            double v = inputs.get(i, 0);
+            double bh = 1 / (Math.exp((v + 30) / 10) + 1);
+            double ah = 0.07 * Math.exp(v / 20);
+            double bm = 4 * Math.exp(v / 18);
+            double am = 0.1 * (v + 25) / (Math.exp((v + 25) / 10) - 1);
+            double bn = 0.125 * Math.exp(v / 80);
+            double an = 0.01 * (v + 10) / (Math.exp((v + 10) / 10) - 1);
+            double n4 = n[i] * n[i] * n[i] * n[i];
+            double m3h = m[i] * m[i] * m[i] * h[i];
+            double dv = -1 * dt * (gk * n4 * (v - vk) + gna * m3h * (v - vna) + gl * (v - vl)) / cm;
+            outputs.set(i, 0, -1 * (v + dv + resting_v));
+            h[i] += (ah * (1 - h[i]) - bh * h[i]) * dt;
+            m[i] += (am * (1 - m[i]) - bm * m[i]) * dt;
+            n[i] += (an * (1 - n[i]) - bn * n[i]) * dt;
+        }
+    }
+
+    /**
+     * Gating parameters for each neuron, starting in the same steady state as the scalar rule.
+     */
+    @Override
+    public MatrixDataHolder createMatrixData(int size) {
+        double v = -70;
+        double bh = 1 / (Math.exp((v + 30) / 10) + 1);
+        double ah = 0.07 * Math.exp(v / 20);
+        double bm = 4 * Math.exp(v / 18);
+        double am = 0.1 * (v + 25) / (Math.exp((v + 25) / 10) - 1);
+        double bn = 0.125 * Math.exp(v / 80);
+        double an = 0.01 * (v + 10) / (Math.exp((v + 10) / 10) - 1);
+        HodgkinHuxleyMatrixData data = new HodgkinHuxleyMatrixData(size);
+        Arrays.fill(data.getN(), an / (an + bn));
+        Arrays.fill(data.getM(), am / (am + bm));
+        Arrays.fill(data.getH(), ah / (ah + bh));
+        return data;
+    }
+
     // Initializer quickly hacked from old init. Zoë this is in your hands to fix! :)
     {
         cm = 1.0;
@@ -18,6 +18,7 @@
  */
 package org.simbrain.network.neuron_update_rules;
 
+import org.simbrain.network.core.Layer;
 import org.simbrain.network.core.Network.TimeType;
 import org.simbrain.network.core.Neuron;
 import org.simbrain.network.core.NeuronUpdateRule;
@@ -29,6 +30,7 @@ import org.simbrain.network.util.EmptyScalarData;
 import org.simbrain.util.UserParameter;
 import org.simbrain.util.stats.ProbabilityDistribution;
 import org.simbrain.util.stats.distributions.UniformRealDistribution;
+import smile.math.matrix.Matrix;
 
 /**
  * <b>IACNeuron</b> implements an Interactive Activation and Competition neuron.
@@ -140,6 +142,32 @@ public class IACRule extends NeuronUpdateRule<EmptyScalarData, EmptyMatrixData>
         neuron.clip();
     }
 
+    /**
+     * Array version of the rule. Array inputs are already weighted sums over all sources, so unlike the neuron
+     * version, inputs from inactive sources are not filtered out.
+     */
+    @Override
+    public void apply(Layer array, EmptyMatrixData data) {
+        double dt = array.getNetwork().getTimeStep();
+        Matrix inputs = array.getInputs();
+        Matrix outputs = array.getOutputs();
+        for (int i = 0; i < outputs.nrow(); i++) {
+            double netInput = inputs.get(i, 0);
+            double activation = outputs.get(i, 0);
+            double effect;
+            if (netInput >= 0) {
+                effect = (getUpperBound() - activation) * netInput;
+            } else {
+                effect = (activation - getLowerBound()) * netInput;
+            }
+            double act = activation + dt * (effect - decay * (activation - rest));
+            if (addNoise) {
+                act += noiseGenerator.sampleDouble();
+            }
+            outputs.set(i, 0, clip(act));
+        }
+    }
+
     public double getDecay() {
         return decay;
     }
@@ -31,6 +31,7 @@ import org.simbrain.util.UserParameter;
 import org.simbrain.util.math.SimbrainMath;
 import org.simbrain.util.stats.ProbabilityDistribution;
 import org.simbrain.util.stats.distributions.UniformRealDistribution;
+import smile.math.matrix.Matrix;
 
 import java.util.Map;
 import java.util.function.Function;
@@ -114,6 +115,16 @@ public class LinearRule extends NeuronUpdateRule<BiasedScalarData, BiasedMatrixD
         }
     }
 
+    @Override
+    public boolean applyToBatch(Matrix inputs, Matrix biases, Matrix outputs) {
+        for (int j = 0; j < inputs.ncol(); j++) {
+            for (int i = 0; i < inputs.nrow(); i++) {
+                outputs.set(i, j, linearRule(inputs.get(i, j), biases == null ? 0 : biases.get(i, 0)));
+            }
+        }
+        return true;
+    }
+
     public double linearRule(double input, double bias) {
         double ret = input * slope + bias;
         if (addNoise) {
@@ -633,6 +633,11 @@ public class PointNeuronRule extends NeuronUpdateRule<BiasedScalarData, BiasedMa
     // }
 
 
+    @Override
+    public boolean usesSynapseState() {
+        return true;
+    }
+
     @Override
     public String getName() {
         return "Point Neuron";
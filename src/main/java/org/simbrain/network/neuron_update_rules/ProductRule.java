@@ -90,6 +90,11 @@ public class ProductRule extends LinearRule {
         this.useWeights = useWeights;
     }
 
+    @Override
+    public boolean usesSynapseState() {
+        return true;
+    }
+
     @Override
     public String getName() {
         return "Product";
@@ -18,10 +18,13 @@
  */
 package org.simbrain.network.neuron_update_rules;
 
+import org.simbrain.network.core.Layer;
 import org.simbrain.network.core.Network.TimeType;
 import org.simbrain.network.core.Neuron;
 import org.simbrain.network.core.NeuronUpdateRule;
+import org.simbrain.network.util.MatrixDataHolder;
 import org.simbrain.network.util.ScalarDataHolder;
+import smile.math.matrix.Matrix;
 
 /**
  * <b>RunningAverageNeuron</b> keeps a running average of current and past
@@ -66,6 +69,16 @@ public class RunningAverageRule extends NeuronUpdateRule {
         neuron.setActivation(val);
     }
 
+    @Override
+    public void apply(Layer array, MatrixDataHolder data) {
+        // The activations at the last time step are the running averages
+        Matrix inputs = array.getInputs();
+        Matrix outputs = array.getOutputs();
+        for (int i = 0; i < outputs.nrow(); i++) {
+            outputs.set(i, 0, rateConstant * inputs.get(i, 0) + (1 - rateConstant) * outputs.get(i, 0));
+        }
+    }
+
     /**
      * @return Rate constant.
      */
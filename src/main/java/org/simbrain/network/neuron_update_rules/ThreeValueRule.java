@@ -18,12 +18,16 @@
  */
 package org.simbrain.network.neuron_update_rules;
 
+import org.simbrain.network.core.Layer;
 import org.simbrain.network.core.Network.TimeType;
 import org.simbrain.network.core.Neuron;
 import org.simbrain.network.core.NeuronUpdateRule;
+import org.simbrain.network.util.MatrixDataHolder;
 import org.simbrain.network.util.ScalarDataHolder;
 import org.simbrain.util.UserParameter;
 
+import smile.math.matrix.Matrix;
+
 import java.util.Random;
 
 /**
@@ -125,6 +129,22 @@ public class ThreeValueRule extends NeuronUpdateRule {
         }
     }
 
+    @Override
+    public void apply(Layer array, MatrixDataHolder data) {
+        Matrix inputs = array.getInputs();
+        Matrix outputs = array.getOutputs();
+        for (int i = 0; i < outputs.nrow(); i++) {
+            double wtdInput = inputs.get(i, 0);
+            if (wtdInput < lowerThreshold) {
+                outputs.set(i, 0, lowerValue);
+            } else if (wtdInput > upperThreshold) {
+                outputs.set(i, 0, upperValue);
+            } else {
+                outputs.set(i, 0, middleValue);
+            }
+        }
+    }
+
     @Override
     public double getRandomValue() {
         Random rand = new Random();
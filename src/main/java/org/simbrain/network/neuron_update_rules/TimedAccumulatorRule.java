@@ -202,6 +202,11 @@ public class TimedAccumulatorRule extends SpikingThresholdRule {
         this.b = b;
     }
 
+    @Override
+    public boolean usesSynapseState() {
+        return true;
+    }
+
     @Override
     public String getName() {
         return "Timed Accumulator";
@@ -36,11 +36,32 @@ public interface DifferentiableUpdateRule {
      * Array based derivative. By default forwards to scalar derivative.
      */
     default Matrix getDerivative(Matrix input) {
-        var derivatives = new Matrix(input.nrow(), 1);
-        for (int i = 0; i < derivatives.nrow() ; i++) {
-            derivatives.set(i, 0, getDerivative(input.get(i, 0)));
-        }
+        var derivatives = new Matrix(input.nrow(), input.ncol());
+        getDerivative(input, derivatives);
         return derivatives;
     }
 
+    /**
+     * Array based derivative written into an existing matrix with the same shape as the input, which may be the input
+     * itself. By default forwards to scalar derivative.
+     */
+    default void getDerivative(Matrix input, Matrix output) {
+        for (int j = 0; j < input.ncol(); j++) {
+            for (int i = 0; i < input.nrow(); i++) {
+                output.set(i, j, getDerivative(input.get(i, j)));
+            }
+        }
+    }
+
+    /**
+     * Apply the activation function to a batch of weighted inputs with one column per input, as when training on
+     * several rows of a dataset at once. The biases (one per row, or null for none) are added to each column, and the
+     * activations are written into outputs, which has the same shape as inputs.
+     *
+     * @return false if the rule cannot be applied to a batch, e.g. because activations depend on previous state.
+     */
+    default boolean applyToBatch(Matrix inputs, Matrix biases, Matrix outputs) {
+        return false;
+    }
+
 }
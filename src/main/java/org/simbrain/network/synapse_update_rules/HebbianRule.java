@@ -23,6 +23,7 @@ import org.simbrain.network.core.Synapse;
 import org.simbrain.network.core.SynapseUpdateRule;
 import org.simbrain.network.gui.dialogs.NetworkPreferences;
 import org.simbrain.network.matrix.NeuronArray;
+import org.simbrain.network.matrix.SparseWeightMatrix;
 import org.simbrain.network.matrix.WeightMatrix;
 import org.simbrain.network.util.EmptyMatrixData;
 import org.simbrain.network.util.EmptyScalarData;
@@ -62,6 +63,19 @@ public class HebbianRule extends SynapseUpdateRule<EmptyScalarData, EmptyMatrixD
             Matrix output = ((NeuronArray)connector.getTarget()).getActivations();
             // delta = rate * (input * output^T)
             wm.add(output.mt(input).mul(learningRate));
+        } else if (connector instanceof SparseWeightMatrix sparse) {
+            // Only existing entries change
+            Matrix input = connector.getSource().getOutputs();
+            Matrix output = connector.getTarget().getOutputs();
+            int[] rowStart = sparse.getRowStart();
+            int[] columns = sparse.getColumns();
+            double[] values = sparse.getValues();
+            for (int i = 0; i < sparse.getNumRows(); i++) {
+                double rateTimesOutput = learningRate * output.get(i, 0);
+                for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+                    values[k] += rateTimesOutput * input.get(columns[k], 0);
+                }
+            }
         }
     }
 
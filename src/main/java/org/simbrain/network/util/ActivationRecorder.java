@@ -9,7 +9,9 @@ import java.io.IOException;
 import java.io.PrintWriter;
 
 /**
- * Manages recording activations or spike histories.
+ * Manages recording activations or spike histories. Files ending in ".csv" are written as text; anything else is written
+ * as a compressed binary recording by an {@link ActivationRecordingWriter}, which can be read back with an
+ * {@link ActivationRecordingReader}.
  */
 public class ActivationRecorder {
 
@@ -30,6 +32,22 @@ public class ActivationRecorder {
      */
     private PrintWriter valueWriter;
 
+    /**
+     * Writes binary recordings in the background. Null when recording as text.
+     */
+    private transient ActivationRecordingWriter binaryWriter;
+
+    /**
+     * Whether binary recordings of activations use doubles rather than floats.
+     */
+    private boolean doublePrecision = false;
+
+    /**
+     * Activations or spiking indices of the current step, reused across steps.
+     */
+    private transient double[] activationBuffer;
+    private transient int[] spikeBuffer;
+
     /**
      * Whether or not this group is in a state that allows recording.
      */
@@ -76,16 +94,23 @@ public class ActivationRecorder {
             }
         }
         recordAsSpikes = spikeRecord;
-        recording = true;
+        closeWriters();
         try {
-            if (valueWriter != null) {
-                valueWriter.close();
+            if (outputFile.getName().toLowerCase().endsWith(".csv")) {
+                FileWriter fw = new FileWriter(outputFile);
+                valueWriter = new PrintWriter(fw);
+            } else {
+                RecordingFormat format = recordAsSpikes ? RecordingFormat.SPIKES
+                        : doublePrecision ? RecordingFormat.FLOAT64 : RecordingFormat.FLOAT32;
+                binaryWriter = new ActivationRecordingWriter(outputFile, nc.size(), format);
+                activationBuffer = new double[nc.size()];
+                spikeBuffer = new int[nc.size()];
             }
-            FileWriter fw = new FileWriter(outputFile);
-            valueWriter = new PrintWriter(fw);
         } catch (IOException e) {
             e.printStackTrace();
+            return;
         }
+        recording = true;
 
         nc.getEvents().getRecordingStarted().fireAndForget();
     }
@@ -94,12 +119,24 @@ public class ActivationRecorder {
      * Halts recording of activations. Closes all involved output streams.
      */
     public void stopRecording() {
+        closeWriters();
+        recording = false;
+        nc.getEvents().getRecordingStopped().fireAndBlock();
+    }
+
+    private void closeWriters() {
         if (valueWriter != null) {
             valueWriter.close();
             valueWriter = null;
         }
-        recording = false;
-        nc.getEvents().getRecordingStopped().fireAndBlock();
+        if (binaryWriter != null) {
+            try {
+                binaryWriter.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            binaryWriter = null;
+        }
     }
 
     /**
@@ -110,8 +147,16 @@ public class ActivationRecorder {
      * id][spk time] couplets. Otherwise it writes the neurons' activation
      * values as a state matrix to the file. Flushes the output stream every
      * {@link #FLUSH_FREQUENCY} invocations.
+     * <p>
+     * Binary recordings only copy the activations (or spiking indices) of
+     * the step here; compression and file output happen on a background
+     * thread.
      */
     public void writeActsToFile() {
+        if (binaryWriter != null) {
+            writeBinary();
+            return;
+        }
         try {
             if (writeCounter >= FLUSH_FREQUENCY) {
                 valueWriter.flush();
@@ -152,6 +197,31 @@ public class ActivationRecorder {
         }
     }
 
+    private void writeBinary() {
+        double time = nc.getParentNetwork().getTime();
+        try {
+            if (recordAsSpikes) {
+                int count = 0;
+                for (int i = 0, n = nc.size(); i < n; i++) {
+                    if (nc.getNeuron(i).isSpike()) {
+                        spikeBuffer[count++] = i;
+                    }
+                }
+                if (count > 0) {
+                    binaryWriter.writeSpikes(time, spikeBuffer, count);
+                }
+            } else {
+                for (int i = 0, n = nc.size(); i < n; i++) {
+                    activationBuffer[i] = nc.getNeuron(i).getActivation();
+                }
+                binaryWriter.writeActivations(time, activationBuffer);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            stopRecording();
+        }
+    }
+
     public boolean isRecording() {
         return recording;
     }
@@ -167,4 +237,12 @@ public class ActivationRecorder {
     public void setRecordAsSpikes(boolean recordAsSpikes) {
         this.recordAsSpikes = recordAsSpikes;
     }
+
+    public boolean isDoublePrecision() {
+        return doublePrecision;
+    }
+
+    public void setDoublePrecision(boolean doublePrecision) {
+        this.doublePrecision = doublePrecision;
+    }
 }
@@ -0,0 +1,156 @@
+package org.simbrain.workspace;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Creates fast accessors for the getter and setter methods of {@link Producer}s and {@link Consumer}s.
+ * <p>
+ * Calling a {@link Method} reflectively allocates an argument array and boxes primitive values on each call. Here
+ * {@link LambdaMetafactory} is used to generate a lambda that calls the method directly, so that after warm-up a
+ * coupling update costs about the same as a normal method call. Separate accessors are provided for
+ * {@code double}-valued methods so that the value is never boxed; reference types such as {@code double[]} and
+ * {@code Matrix} are passed through the generic accessors without boxing or copying.
+ * <p>
+ * Generating an accessor is relatively expensive, so they are created once per method and cached by
+ * {@link org.simbrain.workspace.couplings.CouplingCache}. When a method cannot be linked directly (for example
+ * because its class is not public or was loaded by another class loader) a reflective accessor is returned instead.
+ */
+public final class AttributeAccessors {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private AttributeAccessors() {
+    }
+
+    /**
+     * Returns true if values of the given type can use the double accessors.
+     */
+    public static boolean isDouble(Class<?> type) {
+        return type == double.class;
+    }
+
+    /**
+     * Returns an accessor that calls a getter on a base object and returns its value.
+     */
+    @SuppressWarnings("unchecked")
+    public static Function<Object, Object> getter(Method method) {
+        if (canLink(method)) {
+            try {
+                MethodHandle impl = LOOKUP.unreflect(method);
+                CallSite site = LambdaMetafactory.metafactory(LOOKUP, "apply",
+                        MethodType.methodType(Function.class),
+                        MethodType.methodType(Object.class, Object.class),
+                        impl, impl.type().wrap());
+                return (Function<Object, Object>) site.getTarget().invoke();
+            } catch (Throwable ignored) {
+                // Fall back to reflection below
+            }
+        }
+        return target -> invoke(method, target);
+    }
+
+    /**
+     * Returns an accessor that calls a double getter on a base object without boxing its value.
+     */
+    @SuppressWarnings("unchecked")
+    public static ToDoubleFunction<Object> doubleGetter(Method method) {
+        checkDouble(method.getReturnType(), method);
+        if (canLink(method)) {
+            try {
+                MethodHandle impl = LOOKUP.unreflect(method);
+                CallSite site = LambdaMetafactory.metafactory(LOOKUP, "applyAsDouble",
+                        MethodType.methodType(ToDoubleFunction.class),
+                        MethodType.methodType(double.class, Object.class),
+                        impl, impl.type());
+                return (ToDoubleFunction<Object>) site.getTarget().invoke();
+            } catch (Throwable ignored) {
+                // Fall back to reflection below
+            }
+        }
+        return target -> (Double) invoke(method, target);
+    }
+
+    /**
+     * Returns an accessor that calls a setter on a base object.
+     */
+    @SuppressWarnings("unchecked")
+    public static BiConsumer<Object, Object> setter(Method method) {
+        if (canLink(method)) {
+            try {
+                MethodHandle impl = LOOKUP.unreflect(method);
+                CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept",
+                        MethodType.methodType(BiConsumer.class),
+                        MethodType.methodType(void.class, Object.class, Object.class),
+                        impl, impl.type().wrap().changeReturnType(void.class));
+                return (BiConsumer<Object, Object>) site.getTarget().invoke();
+            } catch (Throwable ignored) {
+                // Fall back to reflection below
+            }
+        }
+        return (target, value) -> invoke(method, target, value);
+    }
+
+    /**
+     * Returns an accessor that calls a double setter on a base object without boxing the value.
+     */
+    @SuppressWarnings("unchecked")
+    public static ObjDoubleConsumer<Object> doubleSetter(Method method) {
+        checkDouble(method.getParameterTypes()[0], method);
+        if (canLink(method)) {
+            try {
+                MethodHandle impl = LOOKUP.unreflect(method);
+                CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept",
+                        MethodType.methodType(ObjDoubleConsumer.class),
+                        MethodType.methodType(void.class, Object.class, double.class),
+                        impl, impl.type().changeReturnType(void.class));
+                return (ObjDoubleConsumer<Object>) site.getTarget().invoke();
+            } catch (Throwable ignored) {
+                // Fall back to reflection below
+            }
+        }
+        return (target, value) -> invoke(method, target, value);
+    }
+
+    /**
+     * Generated lambdas are defined in this class's class loader, so the method's class must be public, visible from
+     * here, and the method must be an instance method.
+     */
+    private static boolean canLink(Method method) {
+        Class<?> declaringClass = method.getDeclaringClass();
+        if (Modifier.isStatic(method.getModifiers()) || !Modifier.isPublic(declaringClass.getModifiers())) {
+            return false;
+        }
+        try {
+            return Class.forName(declaringClass.getName(), false, AttributeAccessors.class.getClassLoader())
+                    == declaringClass;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static void checkDouble(Class<?> type, Method method) {
+        if (!isDouble(type)) {
+            throw new IllegalArgumentException("Method " + method.getName() + " does not use double values");
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException ex) {
+            // Should never happen
+            throw new RuntimeException(ex);
+        }
+    }
+}
@@ -2,9 +2,10 @@ package org.simbrain.workspace;
 
 import org.simbrain.workspace.couplings.Coupling;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.util.function.BiConsumer;
+import java.util.function.ObjDoubleConsumer;
 
 /**
  * The part of a {@link Coupling} that receives values from a {@link Producer}.
@@ -12,6 +13,16 @@ import java.lang.reflect.Type;
  */
 public class Consumer extends Attribute {
 
+    /**
+     * Compiled accessor for the setter. See {@link AttributeAccessors}.
+     */
+    private BiConsumer<Object, Object> setter;
+
+    /**
+     * Compiled accessor for the setter if it takes a double, otherwise null.
+     */
+    private ObjDoubleConsumer<Object> doubleSetter;
+
     /**
      * Contruct a consumer.
      *
@@ -39,12 +50,30 @@ public class Consumer extends Attribute {
      * @param value the value to set
      */
     public void setValue(Object value) {
-        try {
-            method.invoke(baseObject, value);
-        } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException ex) {
-            // Should never happen
-            throw new RuntimeException(ex);
+        if (setter == null) {
+            setter = AttributeAccessors.setter(method);
+        }
+        setter.accept(baseObject, value);
+    }
+
+    /**
+     * Update a double consumer without boxing the value.
+     *
+     * @param value the value to set
+     * @throws IllegalArgumentException if the consumer's setter does not take a double
+     */
+    public void setDoubleValue(double value) {
+        if (doubleSetter == null) {
+            doubleSetter = AttributeAccessors.doubleSetter(method);
         }
+        doubleSetter.accept(baseObject, value);
+    }
+
+    /**
+     * Returns true if this consumer's setter takes a double, so that {@link #setDoubleValue(double)} can be used.
+     */
+    public boolean isDoubleValued() {
+        return AttributeAccessors.isDouble(method.getParameterTypes()[0]);
     }
 
     @Override
@@ -83,6 +112,20 @@ public class Consumer extends Attribute {
             product = new Consumer(baseObject, method);
         }
 
+        /**
+         * Set compiled accessors for the setter, so that they do not have to be created for each consumer. The
+         * double accessor may be null. See {@link AttributeAccessors}.
+         *
+         * @param setter the setter accessor
+         * @param doubleSetter the double setter accessor, or null if the setter does not take a double
+         * @return the Builder instance (for use in chained initialization)
+         */
+        public ConsumerBuilder accessors(BiConsumer<Object, Object> setter, ObjDoubleConsumer<Object> doubleSetter) {
+            product.setter = setter;
+            product.doubleSetter = doubleSetter;
+            return this;
+        }
+
         @Override
         protected Consumer product() {
             return product;
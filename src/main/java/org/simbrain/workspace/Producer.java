@@ -5,6 +5,8 @@ import org.simbrain.workspace.couplings.Coupling;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
 
 /**
  * The part of a {@link Coupling} that send values to a {@link Consumable}.
@@ -19,6 +21,16 @@ public class Producer extends Attribute {
      */
     private Method arrayDescriptionMethod;
 
+    /**
+     * Compiled accessor for the getter. See {@link AttributeAccessors}.
+     */
+    private Function<Object, Object> getter;
+
+    /**
+     * Compiled accessor for the getter if it returns a double, otherwise null.
+     */
+    private ToDoubleFunction<Object> doubleGetter;
+
     /**
      * Contruct a producer.
      *
@@ -46,12 +58,30 @@ public class Producer extends Attribute {
      * @return current value
      */
     public Object getValue() {
-        try {
-            return method.invoke(baseObject);
-        } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException ex) {
-            // Should never happen
-            throw new RuntimeException(ex);
+        if (getter == null) {
+            getter = AttributeAccessors.getter(method);
+        }
+        return getter.apply(baseObject);
+    }
+
+    /**
+     * Return the value of a double producer without boxing it.
+     *
+     * @return current value
+     * @throws IllegalArgumentException if the producer's getter does not return a double
+     */
+    public double getDoubleValue() {
+        if (doubleGetter == null) {
+            doubleGetter = AttributeAccessors.doubleGetter(method);
         }
+        return doubleGetter.applyAsDouble(baseObject);
+    }
+
+    /**
+     * Returns true if this producer's getter returns a double, so that {@link #getDoubleValue()} can be used.
+     */
+    public boolean isDoubleValued() {
+        return AttributeAccessors.isDouble(method.getReturnType());
     }
 
     @Override
@@ -119,6 +149,20 @@ public class Producer extends Attribute {
             return this;
         }
 
+        /**
+         * Set compiled accessors for the getter, so that they do not have to be created for each producer. The
+         * double accessor may be null. See {@link AttributeAccessors}.
+         *
+         * @param getter the getter accessor
+         * @param doubleGetter the double getter accessor, or null if the getter does not return a double
+         * @return the Builder instance (for use in chained initialization)
+         */
+        public ProducerBuilder accessors(Function<Object, Object> getter, ToDoubleFunction<Object> doubleGetter) {
+            product.getter = getter;
+            product.doubleGetter = doubleGetter;
+            return this;
+        }
+
         @Override
         protected Producer product() {
             return product;
@@ -23,8 +23,8 @@ import org.simbrain.workspace.gui.DesktopComponent;
 
 import java.io.InputStream;
 import java.lang.reflect.Method;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Class used to assist with deserializing workspace components.
@@ -49,7 +49,7 @@ public class WorkspaceComponentDeserializer {
     /**
      * A map used to retrieve workspace components given their uris.
      */
-    private final Map<String, WorkspaceComponent> componentKeys = new HashMap<String, WorkspaceComponent>();
+    private final Map<String, WorkspaceComponent> componentKeys = new ConcurrentHashMap<>();
 
     /**
      * Returns the workspace component associated with the given uri.
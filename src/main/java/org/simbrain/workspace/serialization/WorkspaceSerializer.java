@@ -18,6 +18,7 @@
  */
 package org.simbrain.workspace.serialization;
 
+import org.pmw.tinylog.Logger;
 import org.simbrain.util.SFileChooser;
 import org.simbrain.util.XStreamUtils;
 import org.simbrain.workspace.*;
@@ -31,9 +32,15 @@ import javax.swing.*;
 import java.awt.*;
 import java.io.*;
 import java.lang.reflect.Method;
+import java.time.Duration;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
@@ -64,15 +71,20 @@ import java.util.zip.ZipOutputStream;
 public class WorkspaceSerializer {
 
     /**
-     * The number of bytes to attempt to read at a time from an InputStream.
+     * Buffer size used when reading archive entries.
      */
-    private static final int BUFFER_SIZE = 1024;
+    private static final int BUFFER_SIZE = 1 << 16;
 
     /**
      * The current workspace.
      */
     private Workspace workspace;
 
+    /**
+     * Load time of each component in the last deserialized workspace.
+     */
+    private final Map<String, Duration> componentLoadTimes = new LinkedHashMap<>();
+
     /**
      * Creates a new serializer.
      *
@@ -224,18 +236,48 @@ public class WorkspaceSerializer {
     }
 
     /**
-     * Creates a workspace from a zip compressed input stream.
+     * Creates a workspace from a zip compressed input stream. The stream is read once, keeping only the uncompressed
+     * entries in memory.
      *
-     * @param stream The stream to read from. This is expected to be zip compressed.
+     * @param stream   The stream to read from. This is expected to be zip compressed.
+     * @param headless If true, desktop component bounds are ignored and components that fail to load are reported by
+     *                 exception rather than a dialog, so that no gui is created.
      * @throws IOException if an IO error occurs.
      */
-    @SuppressWarnings("unchecked")
+    public void deserialize(InputStream stream, boolean headless) throws IOException {
+        deserialize(new StreamEntries(stream), headless);
+    }
+
     public void deserialize(InputStream stream) throws IOException {
-        Map<String, byte[]> byteArrays = processInputStream(stream);
-        ArchivedWorkspace archive = (ArchivedWorkspace) ArchivedWorkspace.xstream().fromXML(new ByteArrayInputStream(byteArrays.get("contents.xml")));
+        deserialize(stream, false);
+    }
+
+    /**
+     * Creates a workspace from a zip file. Entries are read directly from the file as each component is loaded, rather
+     * than being buffered first.
+     *
+     * @param file     The workspace zip file.
+     * @param headless See {@link #deserialize(InputStream, boolean)}.
+     * @throws IOException if an IO error occurs.
+     */
+    public void deserialize(File file, boolean headless) throws IOException {
+        try (ZipFileEntries entries = new ZipFileEntries(new ZipFile(file))) {
+            deserialize(entries, headless);
+        }
+    }
+
+    public void deserialize(File file) throws IOException {
+        deserialize(file, false);
+    }
+
+    private void deserialize(ArchiveEntries entries, boolean headless) throws IOException {
+        ArchivedWorkspace archive;
+        try (InputStream contents = entries.open("contents.xml")) {
+            archive = (ArchivedWorkspace) ArchivedWorkspace.xstream().fromXML(contents);
+        }
 
         WorkspaceComponentDeserializer deserializer = new WorkspaceComponentDeserializer();
-        deserializeComponents(archive, deserializer, byteArrays);
+        deserializeComponents(archive, deserializer, entries, headless);
 
         deserializeCouplings(archive);
         // deserializeUpdateActions(archive, deserializer);
@@ -243,72 +285,189 @@ public class WorkspaceSerializer {
 
     }
 
-    private Map<String, byte[]> processInputStream(InputStream stream) throws IOException {
-        // Populate the byte stream BUFFER_SIZE at a time and create a zip input
-        // stream (currently 1 kb at a time).
-        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-        byte[] buffer = new byte[BUFFER_SIZE];
-        for (int read; (read = stream.read(buffer)) >= 0; ) {
-            bytes.write(buffer, 0, read);
-        }
-        ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(bytes.toByteArray()));
-
-        // Populate a map from zip entries (strings containing path+file info in
-        // zip archive) to the associated data
-        Map<String, byte[]> byteArrays = new HashMap<String, byte[]>();
-        ZipEntry entry = zip.getNextEntry();
-        // Initialize byte arrays
-        for (ZipEntry next; entry != null; entry = next) {
-            next = zip.getNextEntry();
-            byteArrays.put(entry.getName(), new byte[(int) entry.getSize()]);
-        }
-        zip = new ZipInputStream(new ByteArrayInputStream(bytes.toByteArray()));
-        // Populate byte arrays
-        while ((entry = zip.getNextEntry()) != null) {
-            byte[] data = byteArrays.get(entry.getName());
-            read(zip, data);
-        }
+    /**
+     * Returns how long each component took to load in the last call to deserialize, by component name, in the order
+     * the components were added to the workspace.
+     */
+    public Map<String, Duration> getComponentLoadTimes() {
+        return Collections.unmodifiableMap(componentLoadTimes);
+    }
 
-        // Find the contents.xml file and set the zip entries relative to that
-        Set<String> zipEntries = new HashSet<String>(byteArrays.keySet());
-        String contentsFile = "contents.xml";
-        String contentsPath = "";
-        for (String entryName : zipEntries) {
-            if (entryName.endsWith(contentsFile)) {
-                contentsPath = entryName.substring(0, entryName.length() - contentsFile.length());
-            }
+    /**
+     * Components do not refer to each other (couplings are created once all components are loaded), so they are
+     * loaded in parallel. They are added to the workspace on the calling thread, in archive order, as they were when
+     * they were loaded one at a time.
+     */
+    private void deserializeComponents(ArchivedWorkspace archive, WorkspaceComponentDeserializer deserializer, ArchiveEntries entries, boolean headless) throws IOException {
+        componentLoadTimes.clear();
+        List<ArchivedWorkspaceComponent> archivedComponents = archive.getArchivedComponents();
+        if (archivedComponents == null || archivedComponents.isEmpty()) {
+            return;
         }
-
-        // Remove the contents path from all entries that have it
-        if (!contentsPath.isEmpty()) {
-            for (String entryName : zipEntries) {
-                if (entryName.startsWith(contentsPath)) {
-                    byteArrays.put(entryName.replace(contentsPath, ""), byteArrays.get(entryName));
-                    byteArrays.remove(entryName);
-                }
+        int threads = Math.min(archivedComponents.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<LoadedComponent>> loads = new ArrayList<>();
+            for (ArchivedWorkspaceComponent archivedComponent : archivedComponents) {
+                loads.add(executor.submit(() -> {
+                    long start = System.nanoTime();
+                    try (InputStream input = entries.open(archivedComponent.getUri())) {
+                        WorkspaceComponent wc = deserializer.deserializeWorkspaceComponent(archivedComponent, input);
+                        return new LoadedComponent(wc, Duration.ofNanos(System.nanoTime() - start));
+                    }
+                }));
             }
-        }
-        return byteArrays;
-    }
-
-    private void deserializeComponents(ArchivedWorkspace archive, WorkspaceComponentDeserializer deserializer, Map<String, byte[]> byteArrays) {
-        if (archive.getArchivedComponents() != null) {
-            for (ArchivedWorkspaceComponent archivedComponent : archive.getArchivedComponents()) {
+            for (int i = 0; i < archivedComponents.size(); i++) {
+                ArchivedWorkspaceComponent archivedComponent = archivedComponents.get(i);
                 try {
-                    WorkspaceComponent wc = deserializer.deserializeWorkspaceComponent(archivedComponent, new ByteArrayInputStream(byteArrays.get(archivedComponent.getUri())));
+                    LoadedComponent loaded = getLoaded(loads.get(i));
+                    WorkspaceComponent wc = loaded.component;
                     workspace.addWorkspaceComponent(wc);
-                    if (archivedComponent.getDesktopComponent() != null) {
-                        Rectangle bounds =
-                                (Rectangle) XStreamUtils.getSimbrainXStream().fromXML(new ByteArrayInputStream(byteArrays.get(archivedComponent.getDesktopComponent().getUri())));
+                    componentLoadTimes.put(archivedComponent.getName(), loaded.time);
+                    Logger.debug("Loaded " + archivedComponent.getName() + " in " + loaded.time.toMillis() + " ms");
+                    if (!headless && archivedComponent.getDesktopComponent() != null) {
+                        Rectangle bounds;
+                        try (InputStream input = entries.open(archivedComponent.getDesktopComponent().getUri())) {
+                            bounds = (Rectangle) XStreamUtils.getSimbrainXStream().fromXML(input);
+                        }
                         DesktopComponent<?> desktopComponent = SimbrainDesktop.INSTANCE.getDesktopComponent(wc);
                         desktopComponent.parentFrame.setBounds(bounds);
                     }
                 } catch (Exception ex) {
-                    ex.printStackTrace();
                     String message = String.format("Failed to deserialize component %s.", archivedComponent.getName());
+                    if (headless) {
+                        throw new IOException(message, ex);
+                    }
+                    ex.printStackTrace();
                     JOptionPane.showMessageDialog(null, message);
                 }
             }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for a component to load, rethrowing whatever it failed with.
+     */
+    private static LoadedComponent getLoaded(Future<LoadedComponent> load) throws Exception {
+        try {
+            return load.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw ex;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw ex;
+        }
+    }
+
+    /**
+     * A component and how long it took to load.
+     */
+    private static class LoadedComponent {
+
+        private final WorkspaceComponent component;
+
+        private final Duration time;
+
+        LoadedComponent(WorkspaceComponent component, Duration time) {
+            this.component = component;
+            this.time = time;
+        }
+    }
+
+    /**
+     * The entries of a workspace archive, by their path relative to contents.xml. Archives may be zipped with
+     * contents.xml in a subdirectory.
+     */
+    private interface ArchiveEntries {
+
+        /**
+         * Opens an entry. Safe to call from several threads.
+         */
+        InputStream open(String uri) throws IOException;
+
+        /**
+         * Returns the directory part of the contents.xml entry, which is removed from all entry names.
+         */
+        static String contentsPath(Collection<String> entryNames) {
+            String contentsFile = "contents.xml";
+            for (String entryName : entryNames) {
+                if (entryName.endsWith(contentsFile)) {
+                    return entryName.substring(0, entryName.length() - contentsFile.length());
+                }
+            }
+            return "";
+        }
+
+        static Map<String, String> relativeNames(Collection<String> entryNames) {
+            String contentsPath = contentsPath(entryNames);
+            Map<String, String> names = new HashMap<>();
+            for (String entryName : entryNames) {
+                names.put(entryName.startsWith(contentsPath) ? entryName.substring(contentsPath.length()) : entryName, entryName);
+            }
+            return names;
+        }
+    }
+
+    /**
+     * Entries read in one pass from a zip stream.
+     */
+    private static class StreamEntries implements ArchiveEntries {
+
+        private final Map<String, byte[]> data = new HashMap<>();
+
+        StreamEntries(InputStream stream) throws IOException {
+            ZipInputStream zip = new ZipInputStream(new BufferedInputStream(stream, BUFFER_SIZE));
+            Map<String, byte[]> byName = new HashMap<>();
+            for (ZipEntry entry; (entry = zip.getNextEntry()) != null; ) {
+                byName.put(entry.getName(), zip.readAllBytes());
+            }
+            ArchiveEntries.relativeNames(byName.keySet()).forEach((uri, name) -> data.put(uri, byName.get(name)));
+        }
+
+        @Override
+        public InputStream open(String uri) throws IOException {
+            byte[] bytes = data.get(uri);
+            if (bytes == null) {
+                throw new FileNotFoundException(uri);
+            }
+            return new ByteArrayInputStream(bytes);
+        }
+    }
+
+    /**
+     * Entries read on demand from a zip file.
+     */
+    private static class ZipFileEntries implements ArchiveEntries, Closeable {
+
+        private final ZipFile zipFile;
+
+        private final Map<String, String> names;
+
+        ZipFileEntries(ZipFile zipFile) {
+            this.zipFile = zipFile;
+            List<String> entryNames = new ArrayList<>();
+            zipFile.stream().forEach(entry -> entryNames.add(entry.getName()));
+            names = ArchiveEntries.relativeNames(entryNames);
+        }
+
+        @Override
+        public InputStream open(String uri) throws IOException {
+            String name = names.get(uri);
+            if (name == null) {
+                throw new FileNotFoundException(uri);
+            }
+            return new BufferedInputStream(zipFile.getInputStream(zipFile.getEntry(name)), BUFFER_SIZE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            zipFile.close();
         }
     }
 
@@ -340,24 +499,6 @@ public class WorkspaceSerializer {
         }
     }
 
-    /**
-     * Helper method that will read the InputStream repeatedly until the given array is filled.
-     *
-     * @param istream the InputStream to read from.
-     * @param bytes   the array to write to
-     * @throws IOException if there is an IO error
-     */
-    private static void read(InputStream istream, byte[] bytes) throws IOException {
-        int pos = 0;
-        while (pos < bytes.length) {
-            int read = istream.read(bytes, pos, bytes.length - pos);
-            if (read < 0) {
-                throw new RuntimeException("premature EOF");
-            }
-            pos += read;
-        }
-    }
-
     public static <T> WorkspaceComponent showOpenComponentDialog(Class<T> type) {
         String defaultDirectory = WorkspacePreferences.INSTANCE.getBaseDirectory();
         SFileChooser chooser = new SFileChooser(defaultDirectory, "XML File", "xml");
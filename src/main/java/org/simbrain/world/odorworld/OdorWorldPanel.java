@@ -30,6 +30,7 @@ import org.simbrain.network.gui.nodes.NodeHandle;
 import org.simbrain.util.StandardDialog;
 import org.simbrain.util.piccolo.SceneGraphBrowser;
 import org.simbrain.util.piccolo.Tile;
+import org.simbrain.util.piccolo.TileMapLayer;
 import org.simbrain.workspace.gui.CouplingMenu;
 import org.simbrain.world.odorworld.actions.*;
 import org.simbrain.world.odorworld.entities.OdorWorldEntity;
@@ -276,6 +277,17 @@ public class OdorWorldPanel extends JPanel {
                     canvas.getLayer().addChild(newImage);
                 }
             });
+
+            // Tiles redrawn in place; only repaint their region
+            world.getTileMap().getEvents().getTilesChanged().on(Dispatchers.getMain(), () -> {
+                for (TileMapLayer layer : world.getTileMap().getLayers()) {
+                    Rectangle region = layer.takeDirtyRegion();
+                    PImage image = layer.getLayerImage();
+                    if (region != null && image != null) {
+                        image.repaintFrom(new PBounds(region), image);
+                    }
+                }
+            });
             renderAllLayers(world);
         });
 
@@ -22,10 +22,10 @@ import org.simbrain.network.core.Neuron
 import org.simbrain.network.core.Synapse
 import org.simbrain.network.util.SimnetUtils.getEuclideanDist
 import org.simbrain.util.UserParameter
-import org.simbrain.util.cartesianProduct
 import org.simbrain.util.decayfunctions.DecayFunction
 import org.simbrain.util.decayfunctions.GaussianDecayFunction
 import org.simbrain.util.propertyeditor.EditableObject
+import java.util.*
 
 class DistanceBased (
 
@@ -75,19 +75,18 @@ class DistanceBased (
     }
 }
 
+/**
+ * Create synapses between distinct neurons with probability given by the decay function of their distance. Pairs less
+ * likely to connect than [probabilityCutoff] are skipped; see [createSynapsesWithinRadius].
+ */
 fun createRadialSynapses (
     source: List<Neuron>,
     target: List<Neuron>,
-    decay: DecayFunction
+    decay: DecayFunction,
+    random: SplittableRandom = SplittableRandom(),
+    probabilityCutoff: Double = DEFAULT_PROBABILITY_CUTOFF
 ): List<Synapse> {
-    val syns = ArrayList<Synapse>()
-    (source cartesianProduct target).forEach{ (src, tar) ->
-        if (src != tar) {
-            val p = decay.getScalingFactor(getEuclideanDist(src, tar))
-            if (Math.random() < p) {
-                syns.add(Synapse(src, tar))
-            }
-        }
+    return createSynapsesWithinRadius(source, target, decay.cutoffDistance(probabilityCutoff), random) { src, tar ->
+        if (src != tar) decay.getScalingFactor(getEuclideanDist(src, tar)) else 0.0
     }
-    return syns
 }
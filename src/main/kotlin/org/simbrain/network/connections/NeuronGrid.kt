@@ -0,0 +1,141 @@
+package org.simbrain.network.connections
+
+import org.simbrain.network.core.Neuron
+import org.simbrain.network.core.Synapse
+import java.util.*
+import java.util.stream.IntStream
+import kotlin.math.floor
+
+/**
+ * Probability below which a pair of neurons is treated as unconnectable by distance based connection strategies, used
+ * to find the radius beyond which pairs are not considered.
+ */
+const val DEFAULT_PROBABILITY_CUTOFF = 1e-6
+
+/**
+ * Neurons bucketed by their x-y location into the square cells of a uniform grid, so that the neurons near a point can
+ * be found without checking every neuron. Locations are copied when the grid is built.
+ */
+class NeuronGrid(val neurons: List<Neuron>, cellSize: Double) {
+
+    private val xs = DoubleArray(neurons.size) { neurons[it].x }
+    private val ys = DoubleArray(neurons.size) { neurons[it].y }
+
+    private val minX = xs.minOrNull() ?: 0.0
+    private val minY = ys.minOrNull() ?: 0.0
+
+    val cellSize: Double
+
+    private val columns: Int
+    private val rows: Int
+
+    /**
+     * Neuron indices sorted by cell, with the neurons of cell c in cellNeurons[cellStart[c] until cellStart[c + 1]].
+     */
+    private val cellStart: IntArray
+    private val cellNeurons: IntArray
+
+    init {
+        val width = (xs.maxOrNull() ?: 0.0) - minX
+        val height = (ys.maxOrNull() ?: 0.0) - minY
+        // Grow cells until there are not many more cells than neurons
+        var size = if (cellSize > 0 && cellSize.isFinite()) cellSize else maxOf(width, height, 1.0)
+        while ((floor(width / size) + 1) * (floor(height / size) + 1) > 4.0 * neurons.size + 16) {
+            size *= 2
+        }
+        this.cellSize = size
+        columns = floor(width / size).toInt() + 1
+        rows = floor(height / size).toInt() + 1
+
+        val cellOf = IntArray(neurons.size) { cellIndex(column(xs[it]), row(ys[it])) }
+        cellStart = IntArray(columns * rows + 1)
+        cellOf.forEach { cellStart[it + 1]++ }
+        for (c in 0 until columns * rows) {
+            cellStart[c + 1] += cellStart[c]
+        }
+        val next = cellStart.copyOf()
+        cellNeurons = IntArray(neurons.size)
+        cellOf.forEachIndexed { i, c -> cellNeurons[next[c]++] = i }
+    }
+
+    private fun column(x: Double) = floor((x - minX) / cellSize).coerceIn(0.0, columns - 1.0).toInt()
+
+    private fun row(y: Double) = floor((y - minY) / cellSize).coerceIn(0.0, rows - 1.0).toInt()
+
+    private fun cellIndex(column: Int, row: Int) = row * columns + column
+
+    /**
+     * Call [block] with the index of each neuron whose x-y location is within [radius] of (x, y), in no particular
+     * order. Since z is ignored, this includes every neuron within the radius in three dimensions.
+     */
+    fun forEachWithin(x: Double, y: Double, radius: Double, block: (Int) -> Unit) {
+        val radiusSquared = radius * radius
+        for (row in row(y - radius)..row(y + radius)) {
+            for (column in column(x - radius)..column(x + radius)) {
+                val cell = cellIndex(column, row)
+                for (k in cellStart[cell] until cellStart[cell + 1]) {
+                    val i = cellNeurons[k]
+                    val dx = xs[i] - x
+                    val dy = ys[i] - y
+                    if (dx * dx + dy * dy <= radiusSquared) {
+                        block(i)
+                    }
+                }
+            }
+        }
+    }
+
+    fun forEachWithin(neuron: Neuron, radius: Double, block: (Int) -> Unit) =
+        forEachWithin(neuron.x, neuron.y, radius, block)
+}
+
+/**
+ * Create synapses from source to target neurons, where each pair is connected with the given probability. Only pairs
+ * within [radius] of each other are considered, so [probability] should be negligible beyond it.
+ *
+ * Candidate pairs are found using a [NeuronGrid] over the targets, and sampled in parallel over blocks of source
+ * neurons, each with its own generator split from [random]. The result is therefore the same for a given seed
+ * regardless of the number of threads. Synapses are ordered by source.
+ */
+fun createSynapsesWithinRadius(
+    source: List<Neuron>,
+    target: List<Neuron>,
+    radius: Double,
+    random: SplittableRandom = SplittableRandom(),
+    probability: (src: Neuron, tar: Neuron) -> Double
+): List<Synapse> {
+    if (source.isEmpty() || target.isEmpty() || radius < 0 || radius.isNaN()) {
+        return listOf()
+    }
+    val grid = NeuronGrid(target, radius)
+    val blockSize = 256
+    val numBlocks = (source.size + blockSize - 1) / blockSize
+    val randoms = Array(numBlocks) { random.split() }
+    val pairs = arrayOfNulls<IntArray>(numBlocks)
+    IntStream.range(0, numBlocks).parallel().forEach { b ->
+        val blockRandom = randoms[b]
+        var found = IntArray(64)
+        var size = 0
+        for (s in b * blockSize until minOf(source.size, (b + 1) * blockSize)) {
+            val src = source[s]
+            grid.forEachWithin(src, radius) { t ->
+                val p = probability(src, target[t])
+                if (p > 0 && blockRandom.nextDouble() < p) {
+                    if (size + 2 > found.size) {
+                        found = found.copyOf(found.size * 2)
+                    }
+                    found[size++] = s
+                    found[size++] = t
+                }
+            }
+        }
+        pairs[b] = found.copyOf(size)
+    }
+    val synapses = ArrayList<Synapse>(pairs.sumOf { it!!.size / 2 })
+    for (found in pairs) {
+        for (k in found!!.indices step 2) {
+            synapses.add(Synapse(source[found[k]], target[found[k + 1]]))
+        }
+    }
+    return synapses
+}
@@ -24,7 +24,10 @@ import org.simbrain.util.SimbrainConstants.Polarity
 import org.simbrain.util.UserParameter
 import org.simbrain.util.propertyeditor.EditableObject
 import org.simbrain.util.stats.distributions.UniformRealDistribution
+import java.util.*
 import java.util.concurrent.Callable
+import kotlin.math.ln
+import kotlin.math.sqrt
 
 const val DEFAULT_DIST_CONST: Double = 0.25
 
@@ -261,6 +264,10 @@ class RadialGaussian(
     }
 }
 
+/**
+ * Create synapses with the probability of [RadialGaussian], and strength 1 or -1 depending on the polarity of the
+ * source. Pairs less likely to connect than [probabilityCutoff] are skipped; see [createSynapsesWithinRadius].
+ */
 fun createRadialPolarizedSynapses(
     source: List<Neuron>,
     target: List<Neuron>,
@@ -269,44 +276,38 @@ fun createRadialPolarizedSynapses(
     ieDistConst: Double = DEFAULT_IE_CONST,
     iiDistConst: Double = DEFAULT_II_CONST,
     distConst: Double = DEFAULT_DIST_CONST,
-    lambda: Double = DEFAULT_LAMBDA
+    lambda: Double = DEFAULT_LAMBDA,
+    random: SplittableRandom = SplittableRandom(),
+    probabilityCutoff: Double = DEFAULT_PROBABILITY_CUTOFF
 ): List<Synapse> {
-    // Pre-allocating assuming that if one is using this as a connector
-    // then they are probably not going to have greater than 25%
-    // connectivity
-    val synapses: MutableList<Synapse> = ArrayList(source!!.size * target!!.size / 4)
-    for (src: Neuron in source) {
-        for (tar: Neuron in target) {
-            val randVal: Double = Math.random()
-            var probability: Double
-            if (src.getPolarity() === Polarity.EXCITATORY) {
-                if (tar.getPolarity() === Polarity.EXCITATORY) {
-                    probability = calcConnectProb(src, tar, eeDistConst, lambda)
-                } else if (tar.getPolarity() === Polarity.INHIBITORY) {
-                    probability = calcConnectProb(src, tar, eiDistConst, lambda)
-                } else {
-                    probability = calcConnectProb(src, tar, distConst, lambda)
-                }
-            } else if (src.getPolarity() === Polarity.INHIBITORY) {
-                if (tar.getPolarity() === Polarity.EXCITATORY) {
-                    probability = calcConnectProb(src, tar, ieDistConst, lambda)
-                } else if (tar.getPolarity() === Polarity.INHIBITORY) {
-                    probability = calcConnectProb(src, tar, iiDistConst, lambda)
-                } else {
-                    probability = calcConnectProb(src, tar, distConst, lambda)
-                }
+    val maxConst = maxOf(eeDistConst, eiDistConst, ieDistConst, iiDistConst, distConst)
+    val radius = cutoffRadius(maxConst, lambda, probabilityCutoff)
+    val synapses = createSynapsesWithinRadius(source, target, radius, random) { src, tar ->
+        if (src.polarity === Polarity.EXCITATORY) {
+            if (tar.polarity === Polarity.EXCITATORY) {
+                calcConnectProb(src, tar, eeDistConst, lambda)
+            } else if (tar.polarity === Polarity.INHIBITORY) {
+                calcConnectProb(src, tar, eiDistConst, lambda)
             } else {
-                probability = calcConnectProb(src, tar, distConst, lambda)
+                calcConnectProb(src, tar, distConst, lambda)
             }
-            if (randVal < probability) {
-                val s = Synapse(src, tar)
-                if (src.polarity === Polarity.INHIBITORY) {
-                    s.forceSetStrength(-1.0)
-                } else {
-                    s.forceSetStrength(1.0)
-                }
-                synapses.add(s)
+        } else if (src.polarity === Polarity.INHIBITORY) {
+            if (tar.polarity === Polarity.EXCITATORY) {
+                calcConnectProb(src, tar, ieDistConst, lambda)
+            } else if (tar.polarity === Polarity.INHIBITORY) {
+                calcConnectProb(src, tar, iiDistConst, lambda)
+            } else {
+                calcConnectProb(src, tar, distConst, lambda)
             }
+        } else {
+            calcConnectProb(src, tar, distConst, lambda)
+        }
+    }
+    synapses.forEach { s ->
+        if (s.source.polarity === Polarity.INHIBITORY) {
+            s.forceSetStrength(-1.0)
+        } else {
+            s.forceSetStrength(1.0)
         }
     }
     return synapses
@@ -321,23 +322,25 @@ fun createRadialNoPolaritySynapses(
     source: List<Neuron>,
     target: List<Neuron>,
     distConst: Double,
-    lambda: Double
+    lambda: Double,
+    random: SplittableRandom = SplittableRandom(),
+    probabilityCutoff: Double = DEFAULT_PROBABILITY_CUTOFF
 ): List<Synapse> {
-    // Pre-allocating assuming that if one is using this as a connector
-    // then they are probably not going to have greater than 25%
-    // connectivity
-    val synapses: MutableList<Synapse> = ArrayList(source.size * target.size / 4)
-    for (src: Neuron in source) {
-        for (tar: Neuron in target) {
-            val randVal: Double = Math.random()
-            val probability: Double = calcConnectProb(src, tar, distConst, lambda)
-            if (randVal < probability) {
-                val s = Synapse(src, tar)
-                synapses.add(s)
-            }
-        }
+    val radius = cutoffRadius(distConst, lambda, probabilityCutoff)
+    return createSynapsesWithinRadius(source, target, radius, random) { src, tar ->
+        calcConnectProb(src, tar, distConst, lambda)
     }
-    return synapses
+}
+
+/**
+ * Distance beyond which the connection probability distConst * exp(-(d / lambda)^2) is less than the cutoff, or -1 if
+ * it is less at every distance.
+ */
+private fun cutoffRadius(distConst: Double, lambda: Double, probabilityCutoff: Double): Double {
+    if (distConst <= probabilityCutoff) {
+        return -1.0
+    }
+    return lambda * sqrt(ln(distConst / probabilityCutoff))
 }
 
 /**
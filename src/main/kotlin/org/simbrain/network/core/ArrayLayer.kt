@@ -36,12 +36,13 @@ abstract class ArrayLayer(
         return inputs.size().toInt()
     }
 
+    /**
+     * Add the outputs of incoming connectors directly to the input vector.
+     */
     override fun updateInputs() {
-        val wtdInputs = Matrix(inputSize(), 1)
         for (c in incomingConnectors) {
-            wtdInputs.add(c.output)
+            c.addOutputTo(inputs)
         }
-        addInputs(wtdInputs)
     }
 
     @Consumable
@@ -57,22 +58,22 @@ abstract class ArrayLayer(
     override fun randomize() {
         // TODO: Find non-obtrusive way to set randomizer for cases besides neuronarray
         inputs.randomize(UniformRealDistribution())
-        events.updated.fireAndForget()
+        network.fireUpdated(this)
     }
 
     override fun clear() {
         inputs.mul(0.0)
-        events.updated.fireAndForget()
+        network.fireUpdated(this)
     }
 
     override fun increment() {
         inputs.add(increment)
-        events.updated.fireAndForget()
+        network.fireUpdated(this)
     }
 
     override fun decrement() {
         inputs.sub(increment)
-        events.updated.fireAndForget()
+        network.fireUpdated(this)
     }
 
     override fun toggleClamping() {
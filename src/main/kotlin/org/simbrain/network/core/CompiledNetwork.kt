@@ -0,0 +1,245 @@
+package org.simbrain.network.core
+
+import org.simbrain.network.spikeresponders.NonResponder
+import org.simbrain.network.synapse_update_rules.StaticSynapseRule
+
+/**
+ * A "compiled" struct-of-arrays form of the free neurons of a [Network] and their incoming synapses, used by
+ * [org.simbrain.network.update_actions.CompiledUpdate].
+ *
+ * Synaptic propagation, which dominates the cost of updating large networks of loose neurons, is done against flat
+ * arrays: activations of all source neurons, summed inputs of all free neurons, and the weights and source indices of
+ * every compiled synapse in compressed sparse row form (one row per target neuron). Neuron update rules and their data
+ * holders are per-neuron objects, so those are still applied through [Neuron.update], after the summed input has been
+ * written to each neuron.
+ *
+ * Only "connectionist" synapses are compiled: enabled, with no spike responder and no delay. Their post-synaptic
+ * response is only written back to the synapse object if it has a learning rule. Other synapses, and all incoming
+ * synapses of neurons whose rule reads synapse state directly (see [NeuronUpdateRule.usesSynapseState]), are updated
+ * using their objects as usual.
+ *
+ * The arrays are rebuilt when the structure of the network changes (see [Network.structureVersion] and
+ * [SynapseAdjacency.version]), and weights are re-read when any synapse strength changes ([Network.weightVersion]).
+ */
+class CompiledNetwork(val network: Network) {
+
+    /**
+     * Free neurons, in compiled order.
+     */
+    private var neurons = arrayOf<Neuron>()
+
+    /**
+     * Neurons whose activation is read by compiled synapses. Free neurons come first, in the same order as [neurons],
+     * followed by any neurons outside the free neuron list (e.g. in neuron groups) that project to free neurons.
+     */
+    private var sources = arrayOf<Neuron>()
+
+    /**
+     * Activations of [sources].
+     */
+    private var activations = DoubleArray(0)
+
+    /**
+     * Summed inputs to [neurons].
+     */
+    private var inputs = DoubleArray(0)
+
+    /**
+     * Start of each neuron's row in [sourceIndices] and [weights]. Has one more entry than there are neurons.
+     */
+    private var rowStart = IntArray(1)
+
+    /**
+     * Index into [sources] for each compiled synapse.
+     */
+    private var sourceIndices = IntArray(0)
+
+    /**
+     * Strength of each compiled synapse.
+     */
+    private var weights = DoubleArray(0)
+
+    /**
+     * The compiled synapses, in the same order as [weights].
+     */
+    private var compiledSynapses = arrayOf<Synapse>()
+
+    /**
+     * Indices into [compiledSynapses] of synapses that have a learning rule, and so need their psr written back.
+     */
+    private var learningSynapses = IntArray(0)
+
+    /**
+     * Synapses that must be updated using their objects, and the index of their target in [neurons].
+     */
+    private var objectSynapses = arrayOf<Synapse>()
+    private var objectSynapseTargets = IntArray(0)
+
+    /**
+     * Free synapses whose target is not a free neuron. Their output is computed by the target's own update, but their
+     * learning rule is applied here.
+     */
+    private var otherFreeSynapses = arrayOf<Synapse>()
+
+    private var compiledStructureVersion = -1L
+    private var compiledAdjacencyVersion = -1L
+    private var compiledWeightVersion = -1L
+
+    val numCompiledSynapses get() = weights.size
+
+    val numObjectSynapses get() = objectSynapses.size
+
+    /**
+     * Rebuild the arrays if the network has changed since they were last built.
+     */
+    fun compileIfNeeded() {
+        if (compiledStructureVersion != network.structureVersion ||
+            compiledAdjacencyVersion != network.adjacency.version) {
+            compile()
+        } else if (compiledWeightVersion != network.weightVersion) {
+            for (i in compiledSynapses.indices) {
+                weights[i] = compiledSynapses[i].strength
+            }
+            compiledWeightVersion = network.weightVersion
+        }
+    }
+
+    /**
+     * Build the arrays from the current free neurons and their fan-in.
+     */
+    fun compile() {
+        compiledStructureVersion = network.structureVersion
+        compiledAdjacencyVersion = network.adjacency.version
+        compiledWeightVersion = network.weightVersion
+
+        neurons = network.freeNeurons.toTypedArray()
+        val sourceIndex = HashMap<Neuron, Int>(neurons.size * 2)
+        val sourceList = ArrayList<Neuron>(neurons.size)
+        neurons.forEach {
+            sourceIndex[it] = sourceList.size
+            sourceList.add(it)
+        }
+
+        val rows = IntArray(neurons.size + 1)
+        val indices = IntArrayBuilder()
+        val compiled = ArrayList<Synapse>()
+        val learning = IntArrayBuilder()
+        val objects = ArrayList<Synapse>()
+        val objectTargets = IntArrayBuilder()
+
+        for ((i, neuron) in neurons.withIndex()) {
+            rows[i] = compiled.size
+            val compileFanIn = !neuron.updateRule.usesSynapseState()
+            for (synapse in neuron.fanIn) {
+                if (compileFanIn && synapse.isCompilable()) {
+                    indices.add(sourceIndex.getOrPut(synapse.source) {
+                        sourceList.add(synapse.source)
+                        sourceList.size - 1
+                    })
+                    if (synapse.learningRule !is StaticSynapseRule) {
+                        learning.add(compiled.size)
+                    }
+                    compiled.add(synapse)
+                } else {
+                    objects.add(synapse)
+                    objectTargets.add(i)
+                }
+            }
+        }
+        rows[neurons.size] = compiled.size
+
+        sources = sourceList.toTypedArray()
+        activations = DoubleArray(sources.size)
+        inputs = DoubleArray(neurons.size)
+        rowStart = rows
+        sourceIndices = indices.toIntArray()
+        compiledSynapses = compiled.toTypedArray()
+        weights = DoubleArray(compiledSynapses.size) { compiledSynapses[it].strength }
+        learningSynapses = learning.toIntArray()
+        objectSynapses = objects.toTypedArray()
+        objectSynapseTargets = objectTargets.toIntArray()
+        otherFreeSynapses = network.freeSynapses.filter { it.target !in sourceIndex || sourceIndex[it.target]!! >= neurons.size }
+            .toTypedArray()
+    }
+
+    /**
+     * First pass of a buffered update. Computes the weighted input of every free neuron from current activations and
+     * adds it to the neuron's input.
+     */
+    fun updateInputs() {
+        compileIfNeeded()
+
+        for (i in sources.indices) {
+            activations[i] = sources[i].activation
+        }
+
+        inputs.fill(0.0)
+        for (i in neurons.indices) {
+            var sum = 0.0
+            for (k in rowStart[i] until rowStart[i + 1]) {
+                sum += weights[k] * activations[sourceIndices[k]]
+            }
+            inputs[i] = sum
+        }
+
+        for (k in learningSynapses) {
+            compiledSynapses[k].psr = weights[k] * activations[sourceIndices[k]]
+        }
+
+        for (j in objectSynapses.indices) {
+            val synapse = objectSynapses[j]
+            synapse.updateOutput()
+            inputs[objectSynapseTargets[j]] += synapse.psr
+        }
+
+        for (i in neurons.indices) {
+            neurons[i].addInputValue(inputs[i])
+        }
+    }
+
+    /**
+     * Second pass of a buffered update. Applies each neuron's update rule, then each synapse's learning rule.
+     */
+    fun update() {
+        for (neuron in neurons) {
+            neuron.update()
+        }
+        // If weights were current before learning, only the learning synapses need to be re-read afterwards
+        val weightsWereCurrent = compiledWeightVersion == network.weightVersion
+        for (k in learningSynapses) {
+            compiledSynapses[k].update()
+            weights[k] = compiledSynapses[k].strength
+        }
+        for (synapse in objectSynapses) {
+            synapse.update()
+        }
+        for (synapse in otherFreeSynapses) {
+            synapse.update()
+        }
+        if (weightsWereCurrent) {
+            compiledWeightVersion = network.weightVersion
+        }
+    }
+
+    private fun Synapse.isCompilable() = isEnabled && delay == 0 && spikeResponder is NonResponder
+
+}
+
+/**
+ * Minimal growable int array used while compiling.
+ */
+private class IntArrayBuilder {
+
+    private var data = IntArray(16)
+
+    private var size = 0
+
+    fun add(value: Int) {
+        if (size == data.size) {
+            data = data.copyOf(size * 2)
+        }
+        data[size++] = value
+    }
+
+    fun toIntArray() = data.copyOf(size)
+}
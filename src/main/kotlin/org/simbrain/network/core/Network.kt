@@ -22,7 +22,10 @@ import org.simbrain.util.stats.ProbabilityDistribution
 import org.simbrain.util.stats.distributions.NormalDistribution
 import org.simbrain.util.stats.distributions.UniformRealDistribution
 import org.simbrain.workspace.updater.PerformanceMonitor
+import org.simbrain.workspace.updater.PerformanceTimer
 import org.simbrain.workspace.updater.UpdateAction
+import java.util.Collections
+import java.util.IdentityHashMap
 import java.util.concurrent.atomic.AtomicBoolean
 import kotlin.math.abs
 import kotlin.math.ceil
@@ -78,6 +81,55 @@ class Network: CoroutineScope, EditableObject {
      */
     private val networkModels = NetworkModelList()
 
+    /**
+     * Fan-in and fan-out of all neurons in this network.
+     */
+    @Transient
+    var adjacency = SynapseAdjacency()
+        private set
+
+    /**
+     * Incremented when models are added or removed, or when a change is made to a neuron or synapse that affects how
+     * it is updated (e.g. a new update rule). Used to invalidate [compiledNetwork].
+     */
+    @Transient
+    var structureVersion = 0L
+        private set
+
+    /**
+     * Incremented when the strength of any synapse in this network changes.
+     */
+    @Transient
+    var weightVersion = 0L
+        private set
+
+    /**
+     * Struct-of-arrays form of the free neurons and synapses, used by [compiledUpdate]. Created when first needed.
+     */
+    @Transient
+    private var compiledNetwork: CompiledNetwork? = null
+
+    /**
+     * Event-driven form of the free spiking neurons and synapses, used by [eventDrivenUpdate]. Created when first needed.
+     */
+    @Transient
+    private var spikePropagator: SpikePropagator? = null
+
+    /**
+     * True while [update] is running. Update events fired through [fireUpdated] during that time are deferred to the
+     * end of the step.
+     */
+    @Transient
+    @Volatile
+    var isUpdateInProgress = false
+        private set
+
+    /**
+     * Models whose update events have been deferred during the current step, in the order they were first updated.
+     */
+    @Transient
+    private var dirtyModels: MutableSet<NetworkModel> = Collections.synchronizedSet(LinkedHashSet())
+
     /**
      * The update manager for this network.
      */
@@ -173,6 +225,18 @@ class Network: CoroutineScope, EditableObject {
     @Transient
     var placementManager = PlacementManager()
 
+    /**
+     * Performance timers for [update], by update action. See [updateTimer].
+     */
+    @Transient
+    private var updateTimers: IdentityHashMap<Any, PerformanceTimer>? = null
+
+    /**
+     * Name passed to [update] when [updateTimers] was made.
+     */
+    @Transient
+    private var updateTimersName: String? = null
+
     /**
      * Returns a linked hash set of models of the specified type.
      */
@@ -202,18 +266,70 @@ class Network: CoroutineScope, EditableObject {
 
     fun update(name: String = "") {
 
+        val start = System.nanoTime()
+
         // Main update
-        updateManager.actionList.forEach {
-            runBlocking {
-                PerformanceMonitor.record(it, "${name}:${it.description}") {
-                    it.run()
+        isUpdateInProgress = true
+        try {
+            updateManager.actionList.forEach {
+                runBlocking {
+                    PerformanceMonitor.record(updateTimer(it, name) { "${name}:${it.description}" }) {
+                        it.run()
+                    }
                 }
             }
+        } finally {
+            isUpdateInProgress = false
         }
 
         updateTime()
         setUpdateCompleted(true)
+        fireDeferredUpdates()
         events.updated.fireAndBlock()
+        if (PerformanceMonitor.enabled) {
+            PerformanceMonitor.report(updateTimer(this, name) { "${name}:Network update" }, System.nanoTime() - start)
+        }
+    }
+
+    /**
+     * Returns the performance timer for an update action, or for the whole update when the key is this network,
+     * resolving it on first use. All timers are resolved again when the name passed to [update] changes.
+     */
+    private inline fun updateTimer(key: Any, name: String, timerName: () -> String): PerformanceTimer {
+        val timers = updateTimers?.takeIf { name == updateTimersName } ?: IdentityHashMap<Any, PerformanceTimer>().also {
+            updateTimers = it
+            updateTimersName = name
+        }
+        return timers.getOrPut(key) { PerformanceMonitor.timer(timerName()) }
+    }
+
+    /**
+     * Fire the updated event of a model in this network. If the network is in the middle of an [update], the model is
+     * instead marked dirty, and its updated event is fired once at the end of the step, however many times it was
+     * updated. Models should call this rather than firing their updated event directly from anything that can run
+     * during an update.
+     */
+    fun fireUpdated(model: NetworkModel) {
+        if (isUpdateInProgress) {
+            dirtyModels.add(model)
+        } else {
+            model.events.updated.fireAndBlock()
+        }
+    }
+
+    /**
+     * Fire the updated event of every model marked dirty during the last step, then a single
+     * [NetworkEvents2.modelsUpdated] event listing them.
+     */
+    private fun fireDeferredUpdates() {
+        val dirty = synchronized(dirtyModels) {
+            dirtyModels.toList().also { dirtyModels.clear() }
+        }
+        if (dirty.isEmpty()) {
+            return
+        }
+        dirty.forEach { it.events.updated.fireAndBlock() }
+        events.modelsUpdated.fireAndBlock(dirty)
     }
 
     /**
@@ -273,15 +389,84 @@ class Network: CoroutineScope, EditableObject {
      * Default asynchronous update method called by [org.simbrain.network.update_actions.BufferedUpdate].
      */
     fun bufferedUpdate() {
-        networkModels.all.forEach { it.updateInputs() }
-        networkModels.all.forEach { it.update() }
+        val models = networkModels.all
+        for (i in models.indices) {
+            models[i].updateInputs()
+        }
+        for (i in models.indices) {
+            models[i].update()
+        }
+    }
+
+    /**
+     * Buffered update in which free neurons and their incoming synapses are updated using a [CompiledNetwork]. Used by
+     * [org.simbrain.network.update_actions.CompiledUpdate].
+     */
+    fun compiledUpdate() {
+        val compiled = compiledNetwork ?: CompiledNetwork(this).also { compiledNetwork = it }
+        val others = networkModels.allButNeuronsAndSynapses
+        compiled.updateInputs()
+        for (i in others.indices) {
+            others[i].updateInputs()
+        }
+        compiled.update()
+        for (i in others.indices) {
+            others[i].update()
+        }
+    }
+
+    /**
+     * Buffered update in which free spiking neurons and the synapses between them are updated event by event using a
+     * [SpikePropagator]. Used by [org.simbrain.network.update_actions.EventDrivenUpdate].
+     */
+    fun eventDrivenUpdate() {
+        val propagator = spikePropagator ?: SpikePropagator(this).also { spikePropagator = it }
+        val others = networkModels.allButNeuronsAndSynapses
+        propagator.updateInputs()
+        for (i in others.indices) {
+            others[i].updateInputs()
+        }
+        propagator.update()
+        for (i in others.indices) {
+            others[i].update()
+        }
+    }
+
+    /**
+     * Called when a change is made that affects how models are updated. See [structureVersion]. The flat views of
+     * [networkModels] used by the update loop are kept, since they only change when models are added or removed (which
+     * [networkModels] tracks itself) or by [groupContentsChanged].
+     */
+    fun structureChanged() {
+        structureVersion++
+    }
+
+    /**
+     * Called when the neurons or synapses of a group change, which [networkModels] can't see by itself.
+     */
+    fun groupContentsChanged() {
+        networkModels.invalidate()
+        structureChanged()
+    }
+
+    /**
+     * Called when the strength of a synapse changes. See [weightVersion].
+     */
+    fun weightsChanged() {
+        weightVersion++
     }
 
     suspend fun asyncBufferedUpdate()  = coroutineScope {
-        networkModels.getAsyncModels().map { async { it.updateInputs() } }.awaitAll()
-        networkModels.getNonAsyncModels().forEach { it.updateInputs() }
-        networkModels.getAsyncModels().map { async { it.update() } }.awaitAll()
-        networkModels.getNonAsyncModels().forEach { it.update() }
+        val asyncModels = networkModels.getAsyncModels()
+        val nonAsyncModels = networkModels.getNonAsyncModels()
+        asyncModels.map { async { it.updateInputs() } }.awaitAll()
+        for (i in nonAsyncModels.indices) {
+            nonAsyncModels[i].updateInputs()
+        }
+        asyncModels.map { async { it.update() } }.awaitAll()
+        for (i in nonAsyncModels.indices) {
+            nonAsyncModels[i].update()
+        }
     }
 
     /**
@@ -289,6 +474,11 @@ class Network: CoroutineScope, EditableObject {
      */
     fun clearActivations() {
         flatNeuronList.forEach(Neuron::clear)
+        // Synapse responses are not cleared, so write the event-driven ones back before rebuilding from the synapses
+        spikePropagator?.let {
+            it.syncSynapses()
+            it.invalidate()
+        }
     }
 
     val freeNeurons get() = networkModels.get<Neuron>()
@@ -296,34 +486,22 @@ class Network: CoroutineScope, EditableObject {
     val freeSynapses get() = networkModels.get<Synapse>()
 
     /**
-     * Create "flat" list of neurons, which includes the top-level neurons plus all group neurons.
+     * Cached "flat" list of neurons, which includes the top-level neurons plus all group neurons. See
+     * [NetworkModelList.flatNeurons].
      *
      * @return the flat list
      */
     val flatNeuronList: List<Neuron>
-        get() = sequence {
-            yieldAll(networkModels.get<Neuron>())
-            for (neuronGroup in networkModels.get<NeuronGroup>()) {
-                yieldAll(neuronGroup.neuronList)
-            }
-            for (subnetwork in networkModels.get<Subnetwork>()) {
-                yieldAll(subnetwork.modelList.get<NeuronGroup>().flatMap { it.neuronList })
-            }
-        }.toList()
+        get() = networkModels.flatNeurons
 
     /**
-     * Create "flat" list of synapses, which includes the top-level synapses plus all subnet synapses.
+     * Cached "flat" list of synapses, which includes the top-level synapses plus all subnet synapses. See
+     * [NetworkModelList.flatSynapses].
      *
      * @return the flat list
      */
     val flatSynapseList: List<Synapse>
-        get() = sequence {
-            yieldAll(networkModels.get<Synapse>())
-            yieldAll(networkModels.get<SynapseGroup2>().flatMap { sg -> sg.synapses })
-            yieldAll(networkModels.get<Subnetwork>().flatMap { subnetwork ->
-                subnetwork.modelList.get<SynapseGroup>().flatMap { it.allSynapses }
-            })
-        }.toList()
+        get() = networkModels.flatSynapses
 
     /**
      * Returns a list of all neuron groups including those in subnetworks.
@@ -361,15 +539,8 @@ class Network: CoroutineScope, EditableObject {
      */
     fun addNetworkModelAsync(model: NetworkModel): Job? {
         if (model.shouldAdd()) {
-            model.id = idManager.getAndIncrementId(model.javaClass)
-            networkModels.add(model)
-            if (model is LocatableModel && model.shouldBePlaced) {
-                placementManager.placeObject(model)
-            }
-            model.events.deleted.on(wait = true) {
-                networkModels.remove(it)
-                events.modelRemoved.fire(it)
-            }
+            registerModel(model)
+            structureChanged()
             val job = events.modelAdded.fire(model)
             if (model is Neuron) updatePriorityList()
             return job
@@ -377,6 +548,51 @@ class Network: CoroutineScope, EditableObject {
         return null
     }
 
+    /**
+     * Give a model an id, put it in [networkModels], place it, and remove it again when it is deleted. Does not fire
+     * any network events.
+     */
+    private fun registerModel(model: NetworkModel) {
+        model.id = idManager.getAndIncrementId(model.javaClass)
+        networkModels.add(model)
+        if (model is LocatableModel && model.shouldBePlaced) {
+            placementManager.placeObject(model)
+        }
+        model.events.deleted.on(wait = true) {
+            networkModels.remove(it)
+            structureChanged()
+            events.modelRemoved.fire(it)
+        }
+    }
+
+    /**
+     * Add many models at once. Each model is checked with [NetworkModel.shouldAdd] and registered as in
+     * [addNetworkModelAsync], but the structure version is bumped once, the priority list is rebuilt and sorted once,
+     * and a single [NetworkEvents2.modelAdded] event is fired for all added models. Use this when building large
+     * networks programmatically.
+     *
+     * @return a job that completes when the added event has been handled
+     */
+    fun addNetworkModelsInBulk(toAdd: Collection<NetworkModel>): Job {
+        val added = ArrayList<NetworkModel>(toAdd.size)
+        var neuronAdded = false
+        for (model in toAdd) {
+            // Checked one at a time so that models earlier in the batch are taken into account
+            if (model.shouldAdd()) {
+                registerModel(model)
+                added.add(model)
+                neuronAdded = neuronAdded || model is Neuron
+            }
+        }
+        if (added.isNotEmpty()) {
+            structureChanged()
+        }
+        if (neuronAdded) {
+            updatePriorityList()
+        }
+        return events.modelAdded.fireAll(added)
+    }
+
     /**
      * Returns the precision of the current time step.
      *
@@ -391,14 +607,11 @@ class Network: CoroutineScope, EditableObject {
     }
 
     /**
-     * Returns a copy of this network based on its xml rep.
+     * Returns a copy of this network based on its binary snapshot. See [NetworkSnapshot].
      *
      * @return the copied network.
      */
-    fun copy(): Network {
-        val xmlRepresentation = getNetworkXStream().toXML(this)
-        return getNetworkXStream().fromXML(xmlRepresentation) as Network
-    }
+    fun copy(): Network = NetworkSnapshot.copy(this)
 
     /**
      * See {@link org.simbrain.workspace.serialization.WorkspaceComponentDeserializer}
@@ -409,6 +622,10 @@ class Network: CoroutineScope, EditableObject {
 
         coroutineContext = Dispatchers.Default + job
 
+        adjacency = SynapseAdjacency()
+
+        dirtyModels = Collections.synchronizedSet(LinkedHashSet())
+
         placementManager = PlacementManager()
 
         events = NetworkEvents2()
@@ -421,6 +638,7 @@ class Network: CoroutineScope, EditableObject {
         networkModels.allInReconstructionOrder.forEach { model ->
             model.events.deleted.on(wait = true) {
                 networkModels.remove(it)
+                structureChanged()
                 events.modelRemoved.fire(it)
             }
         }
@@ -530,12 +748,11 @@ class Network: CoroutineScope, EditableObject {
      * @param toAdd list of objects to add.
      */
     fun addNetworkModelsAsync(toAdd: List<NetworkModel>): Job {
-        val jobs = toAdd.mapNotNull { addNetworkModelAsync(it) }
-        return launch { jobs.joinAll() }
+        return addNetworkModelsInBulk(toAdd)
     }
 
     suspend fun addNetworkModels(vararg toAdd: NetworkModel) {
-        toAdd.mapNotNull { addNetworkModelAsync(it) }.joinAll()
+        addNetworkModelsInBulk(toAdd.asList()).join()
     }
 
     /**
@@ -544,7 +761,7 @@ class Network: CoroutineScope, EditableObject {
      * Ex: addNetworkModels(synapse1, synapse2, neuron1, neuron2, ...)
      */
     fun addNetworkModelsAsync(vararg toAdd: NetworkModel) {
-        toAdd.forEach { addNetworkModelAsync(it) }
+        addNetworkModelsInBulk(toAdd.asList())
     }
 
     suspend fun selectModels(models: List<NetworkModel>) {
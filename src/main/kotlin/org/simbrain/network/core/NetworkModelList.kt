@@ -8,16 +8,63 @@ import com.thoughtworks.xstream.io.HierarchicalStreamReader
 import com.thoughtworks.xstream.io.HierarchicalStreamWriter
 import org.simbrain.network.NetworkModel
 import org.simbrain.network.groups.AbstractNeuronCollection
+import org.simbrain.network.groups.NeuronGroup
 import org.simbrain.network.groups.Subnetwork
+import org.simbrain.network.groups.SynapseGroup
+import java.util.Collections
 
 /**
  * The main data structure for [NetworkModel]s. Wraps a map from classes to ordered sets of those objects.
  * Backed by a linked hash set.  Hash set deals with duplication; linked provides an iterator.
  *
  * Used both by [Network] and by [Subnetwork].
+ *
+ * Flat views of the models ([all], [getAsyncModels], [flatNeurons], etc.) are snapshots that are cached until the list
+ * changes or [invalidate] is called, so that they can be iterated on every update without copying.
  */
 class NetworkModelList {
 
+    /**
+     * Incremented whenever the models, or the contents of the groups among them, change.
+     */
+    @Volatile
+    @Transient
+    var version = 0L
+        private set
+
+    /**
+     * A cached list and the [version] it was made at.
+     */
+    private class Snapshot<T>(val version: Long, val list: List<T>)
+
+    @Volatile @Transient private var allSnapshot: Snapshot<NetworkModel>? = null
+    @Volatile @Transient private var asyncSnapshot: Snapshot<NetworkModel>? = null
+    @Volatile @Transient private var nonAsyncSnapshot: Snapshot<NetworkModel>? = null
+    @Volatile @Transient private var othersSnapshot: Snapshot<NetworkModel>? = null
+    @Volatile @Transient private var neuronSnapshot: Snapshot<Neuron>? = null
+    @Volatile @Transient private var synapseSnapshot: Snapshot<Synapse>? = null
+
+    /**
+     * Returns the list in [snapshot] if it is current, and otherwise computes, stores, and returns a new one.
+     */
+    private inline fun <T> cached(snapshot: Snapshot<T>?, store: (Snapshot<T>) -> Unit, compute: () -> List<T>): List<T> {
+        val currentVersion = version
+        if (snapshot != null && snapshot.version == currentVersion) {
+            return snapshot.list
+        }
+        val list = Collections.unmodifiableList(ArrayList(compute()))
+        store(Snapshot(currentVersion, list))
+        return list
+    }
+
+    /**
+     * Discard the cached flat views. Called when the contents of a group in this list change, which this list can't
+     * see by itself.
+     */
+    fun invalidate() {
+        version++
+    }
+
     /**
      * Backing for the collection: a map from model types to linked hash sets.
      */
@@ -35,6 +82,7 @@ class NetworkModelList {
             newSet.add(model)
             networkModels[modelClass] = newSet as LinkedHashSet<NetworkModel>
         }
+        version++
         if (model is ArrayLayer || model is AbstractNeuronCollection) {
             shouldAsync.getOrPut(true) { LinkedHashSet() }
         } else {
@@ -54,6 +102,7 @@ class NetworkModelList {
             newSet.add(model)
             networkModels[modelClass] = newSet
         }
+        version++
         if (model is ArrayLayer || model is AbstractNeuronCollection) {
             shouldAsync.getOrPut(true) { LinkedHashSet() }
         } else {
@@ -106,8 +155,52 @@ class NetworkModelList {
         }
     }
 
+    /**
+     * All models in this list. A cached snapshot; see the class comment.
+     */
     val all: List<NetworkModel>
-        get() = networkModels.values.flatMap { it?.map { item -> item } ?: listOf() }
+        get() = cached(allSnapshot, { allSnapshot = it }) {
+            networkModels.values.flatMap { it?.map { item -> item } ?: listOf() }
+        }
+
+    /**
+     * All models other than free neurons and synapses, which are updated separately by compiled and event driven
+     * updates.
+     */
+    val allButNeuronsAndSynapses: List<NetworkModel>
+        get() = cached(othersSnapshot, { othersSnapshot = it }) {
+            all.filter { it !is Neuron && it !is Synapse }
+        }
+
+    /**
+     * Neurons in this list plus the neurons of its neuron groups and of the neuron groups of its subnetworks.
+     */
+    val flatNeurons: List<Neuron>
+        get() = cached(neuronSnapshot, { neuronSnapshot = it }) {
+            sequence {
+                yieldAll(get<Neuron>())
+                for (neuronGroup in get<NeuronGroup>()) {
+                    yieldAll(neuronGroup.neuronList)
+                }
+                for (subnetwork in get<Subnetwork>()) {
+                    yieldAll(subnetwork.modelList.get<NeuronGroup>().flatMap { it.neuronList })
+                }
+            }.toList()
+        }
+
+    /**
+     * Synapses in this list plus the synapses of its synapse groups and of the synapse groups of its subnetworks.
+     */
+    val flatSynapses: List<Synapse>
+        get() = cached(synapseSnapshot, { synapseSnapshot = it }) {
+            sequence {
+                yieldAll(get<Synapse>())
+                yieldAll(get<SynapseGroup2>().flatMap { sg -> sg.synapses })
+                yieldAll(get<Subnetwork>().flatMap { subnetwork ->
+                    subnetwork.modelList.get<SynapseGroup>().flatMap { it.allSynapses }
+                })
+            }.toList()
+        }
 
     /**
      * Returns a list of network models in the order required for proper reconstruction of all network models.
@@ -123,10 +216,21 @@ class NetworkModelList {
         } else {
             networkModels[model.javaClass]?.remove(model)
         }
+        shouldAsync.values.forEach { it.remove(model) }
+        version++
     }
 
-    fun getAsyncModels() = shouldAsync[true] ?: LinkedHashSet()
-    fun getNonAsyncModels() = shouldAsync[false] ?: LinkedHashSet()
+    /**
+     * Models that can be updated concurrently with each other. A cached snapshot; see the class comment.
+     */
+    fun getAsyncModels() = cached(asyncSnapshot, { asyncSnapshot = it }) { shouldAsync[true]?.toList() ?: listOf() }
+
+    /**
+     * Models that must be updated one at a time. A cached snapshot; see the class comment.
+     */
+    fun getNonAsyncModels() = cached(nonAsyncSnapshot, { nonAsyncSnapshot = it }) {
+        shouldAsync[false]?.toList() ?: listOf()
+    }
 
     override fun toString(): String =  all.joinToString("\n") { "$it" }
 
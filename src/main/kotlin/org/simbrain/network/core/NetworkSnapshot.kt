@@ -0,0 +1,760 @@
+package org.simbrain.network.core
+
+import com.thoughtworks.xstream.XStream
+import com.thoughtworks.xstream.converters.Converter
+import com.thoughtworks.xstream.converters.MarshallingContext
+import com.thoughtworks.xstream.converters.UnmarshallingContext
+import com.thoughtworks.xstream.converters.reflection.ReflectionConverter
+import com.thoughtworks.xstream.io.HierarchicalStreamReader
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter
+import com.thoughtworks.xstream.io.binary.BinaryStreamDriver
+import org.simbrain.network.NetworkModel
+import org.simbrain.util.stats.ProbabilityDistribution
+import smile.math.matrix.Matrix
+import java.io.*
+import java.lang.reflect.Field
+import java.lang.reflect.Modifier
+import java.nio.ByteBuffer
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import java.util.zip.Deflater
+import java.util.zip.DeflaterOutputStream
+import java.util.zip.Inflater
+import java.util.zip.InflaterInputStream
+import kotlin.reflect.full.primaryConstructor
+
+/**
+ * A compact binary format for networks, used by [Network.copy], for checkpoints, and optionally when saving (see
+ * [org.simbrain.network.gui.dialogs.NetworkPreferences.saveAsSnapshot]).
+ *
+ * Most of a large network is free neurons and synapses and the objects they own (update rules, data holders, spike
+ * responders). These are written as typed columns: for each class, every field is one block of doubles, ints,
+ * dictionary coded strings, or references, covering all objects of that class. Everything else (groups, arrays,
+ * subnetworks, the network's own settings) is written by the usual network [XStream], but in XStream's binary
+ * format and with double arrays and matrices moved to raw primitive blocks. Objects written as columns are referenced
+ * from the XStream part by index.
+ *
+ * An object is written as columns only if XStream would handle it with its plain reflection converter (or the
+ * constructor calling converter used for [ProbabilityDistribution]) and everything it refers to can be written the
+ * same way, so both parts restore exactly the fields the xml format does. A neuron in a group, for example, is left
+ * to XStream along with its group.
+ *
+ * The stream starts with a magic number and [SCHEMA_VERSION]. Column fields are identified by name, so fields that
+ * have been added or removed since a snapshot was written are handled like the xml format handles them: missing
+ * fields keep their defaults and unknown fields are skipped.
+ */
+object NetworkSnapshot {
+
+    const val MAGIC = 0x53424e53 // "SBNS"
+
+    const val SCHEMA_VERSION = 1
+
+    private const val COMPRESSED = 1
+
+    /**
+     * Node name used in the XStream part for models written as columns.
+     */
+    private const val SNAPSHOT_NODE = "snapshot"
+
+    private const val NULL_REF = -1
+
+    private const val ROOT_REF = -2
+
+    /**
+     * Used to check how XStream would convert a class.
+     */
+    private val networkXStream by lazy { getNetworkXStream() }
+
+    /**
+     * XStream for the non-column part of a snapshot.
+     */
+    private val snapshotXStream by lazy {
+        getNetworkXStream().apply {
+            registerConverter(SnapshotModelListConverter())
+            registerConverter(ColumnReferenceConverter(this))
+            registerConverter(PrimitiveBlockConverter())
+        }
+    }
+
+    private val binaryDriver = BinaryStreamDriver()
+
+    /**
+     * Column layouts by class, or empty if a class can not be written as columns.
+     */
+    private val layouts = ConcurrentHashMap<Class<*>, Optional<ClassLayout>>()
+
+    /**
+     * State shared with the converters of [snapshotXStream] while a snapshot is written or read.
+     */
+    private val currentContext = ThreadLocal<SnapshotContext>()
+
+    /**
+     * Write a snapshot of a network.
+     *
+     * @param compress whether to deflate the snapshot. Useful for files, but not for in memory copies.
+     */
+    @JvmStatic
+    @JvmOverloads
+    @Throws(IOException::class)
+    fun write(network: Network, output: OutputStream, compress: Boolean = true) {
+        val header = DataOutputStream(output)
+        header.writeInt(MAGIC)
+        header.writeInt(SCHEMA_VERSION)
+        header.writeInt(if (compress) COMPRESSED else 0)
+        header.flush()
+        if (compress) {
+            val deflater = Deflater(Deflater.BEST_SPEED)
+            try {
+                val body = DeflaterOutputStream(NonClosingOutputStream(output), deflater, 1 shl 16)
+                Encoder(network).write(DataOutputStream(BufferedOutputStream(body, 1 shl 16)))
+                body.finish()
+            } finally {
+                deflater.end()
+            }
+        } else {
+            Encoder(network).write(DataOutputStream(BufferedOutputStream(NonClosingOutputStream(output), 1 shl 16)))
+        }
+        output.flush()
+    }
+
+    /**
+     * Read a network from a snapshot written by [write].
+     */
+    @JvmStatic
+    @Throws(IOException::class)
+    fun read(input: InputStream): Network {
+        val header = DataInputStream(input)
+        if (header.readInt() != MAGIC) {
+            throw IOException("Not a network snapshot")
+        }
+        val version = header.readInt()
+        if (version > SCHEMA_VERSION) {
+            throw IOException("Snapshot schema version $version is newer than supported version $SCHEMA_VERSION")
+        }
+        val flags = header.readInt()
+        if (flags and COMPRESSED == 0) {
+            return Decoder().read(DataInputStream(BufferedInputStream(input, 1 shl 16)))
+        }
+        val inflater = Inflater()
+        try {
+            val body = InflaterInputStream(input, inflater, 1 shl 16)
+            return Decoder().read(DataInputStream(BufferedInputStream(body, 1 shl 16)))
+        } finally {
+            inflater.end()
+        }
+    }
+
+    @JvmStatic
+    @Throws(IOException::class)
+    fun write(network: Network, file: File) = FileOutputStream(file).use { write(network, it) }
+
+    @JvmStatic
+    @Throws(IOException::class)
+    fun read(file: File): Network = FileInputStream(file).use { read(it) }
+
+    /**
+     * True if the stream starts with a snapshot. The stream must support mark and reset; it is left where it was.
+     */
+    @JvmStatic
+    @Throws(IOException::class)
+    fun isSnapshot(input: InputStream): Boolean {
+        require(input.markSupported()) { "Stream must support mark" }
+        input.mark(4)
+        val bytes = input.readNBytes(4)
+        input.reset()
+        return bytes.size == 4 && ByteBuffer.wrap(bytes).int == MAGIC
+    }
+
+    /**
+     * Copy a network through an uncompressed snapshot.
+     */
+    internal fun copy(network: Network): Network {
+        val bytes = ByteArrayOutputStream()
+        write(network, bytes, false)
+        return read(ByteArrayInputStream(bytes.toByteArray()))
+    }
+
+    private enum class Kind {
+        DOUBLE, FLOAT, LONG, INT, SHORT, CHAR, BYTE, BOOLEAN, STRING, ENUM, BOXED, DOUBLE_ARRAY, INT_ARRAY, REF
+    }
+
+    private fun kindOf(type: Class<*>) = when {
+        type == Double::class.javaPrimitiveType -> Kind.DOUBLE
+        type == Float::class.javaPrimitiveType -> Kind.FLOAT
+        type == Long::class.javaPrimitiveType -> Kind.LONG
+        type == Int::class.javaPrimitiveType -> Kind.INT
+        type == Short::class.javaPrimitiveType -> Kind.SHORT
+        type == Char::class.javaPrimitiveType -> Kind.CHAR
+        type == Byte::class.javaPrimitiveType -> Kind.BYTE
+        type == Boolean::class.javaPrimitiveType -> Kind.BOOLEAN
+        type == String::class.java -> Kind.STRING
+        type.isEnum -> Kind.ENUM
+        type == java.lang.Double::class.java || type == java.lang.Float::class.java ||
+                type == java.lang.Long::class.java || type == java.lang.Integer::class.java ||
+                type == java.lang.Short::class.java || type == java.lang.Character::class.java ||
+                type == java.lang.Byte::class.java || type == java.lang.Boolean::class.java -> Kind.BOXED
+        type == DoubleArray::class.java -> Kind.DOUBLE_ARRAY
+        type == IntArray::class.java -> Kind.INT_ARRAY
+        else -> Kind.REF
+    }
+
+    private class ClassLayout(val type: Class<*>, val fields: List<Field>, val callsConstructor: Boolean) {
+        val kinds = fields.map { kindOf(it.type) }
+        val refFields = fields.filter { kindOf(it.type) == Kind.REF }
+        val fieldsByName = fields.associateBy { it.name }
+    }
+
+    private fun layoutFor(type: Class<*>): ClassLayout? =
+        layouts.computeIfAbsent(type) { Optional.ofNullable(createLayout(it)) }.orElse(null)
+
+    private fun createLayout(type: Class<*>): ClassLayout? {
+        if (type.isArray || type.isInterface || type.isEnum || Modifier.isAbstract(type.modifiers)) {
+            return null
+        }
+        val hierarchy = generateSequence(type) { it.superclass }.takeWhile { it != Any::class.java }.toList().asReversed()
+        if (hierarchy.any { !it.name.startsWith("org.simbrain.") }) {
+            return null
+        }
+        val customSerialization = setOf("readResolve", "writeReplace", "readObject", "writeObject")
+        if (hierarchy.any { cls -> cls.declaredMethods.any { it.name in customSerialization } }) {
+            return null
+        }
+        val callsConstructor = ProbabilityDistribution::class.java.isAssignableFrom(type)
+        if (!callsConstructor && networkXStream.converterLookup.lookupConverterForType(type).javaClass != ReflectionConverter::class.java) {
+            return null
+        }
+        val fields = hierarchy.flatMap { cls ->
+            cls.declaredFields.filter {
+                !Modifier.isStatic(it.modifiers) && !Modifier.isTransient(it.modifiers) &&
+                        networkXStream.mapper.shouldSerializeMember(cls, it.name)
+            }
+        }
+        if (fields.map { it.name }.distinct().size != fields.size) {
+            return null
+        }
+        if (callsConstructor && (fields.any { kindOf(it.type) == Kind.REF } || type.kotlin.primaryConstructor == null)) {
+            return null
+        }
+        fields.forEach { it.isAccessible = true }
+        return ClassLayout(type, fields, callsConstructor)
+    }
+
+    private class SnapshotContext(
+        val refOf: (Any) -> String?,
+        val resolve: (String) -> Any,
+        val blocks: MutableList<Any>
+    )
+
+    /**
+     * Objects of one class written as columns.
+     */
+    private class ObjectTable(val index: Int, val layout: ClassLayout) {
+        val objects = ArrayList<Any>()
+    }
+
+    private class Encoder(val network: Network) {
+
+        val tables = LinkedHashMap<Class<*>, ObjectTable>()
+
+        /**
+         * Table and position of each object written as columns.
+         */
+        val positions = IdentityHashMap<Any, Long>()
+
+        val rejected: MutableSet<Any> = Collections.newSetFromMap(IdentityHashMap())
+
+        /**
+         * Add an object and everything it refers to to the tables, if all of them can be written as columns.
+         */
+        fun tryAdd(root: Any): Boolean {
+            val visited = IdentityHashMap<Any, ClassLayout>()
+            val order = ArrayList<Any>()
+            val stack = ArrayDeque<Any>()
+            stack.push(root)
+            while (stack.isNotEmpty()) {
+                val obj = stack.pop()
+                if (obj in positions || obj in visited) {
+                    continue
+                }
+                val layout = if (obj in rejected) null else layoutFor(obj.javaClass)
+                if (layout == null) {
+                    rejected.add(obj)
+                    return false
+                }
+                visited[obj] = layout
+                order.add(obj)
+                for (field in layout.refFields) {
+                    val value = field.get(obj)
+                    if (value != null && value !== network) {
+                        stack.push(value)
+                    }
+                }
+            }
+            for (obj in order) {
+                val table = tables.getOrPut(obj.javaClass) { ObjectTable(tables.size, visited[obj]!!) }
+                positions[obj] = (table.index.toLong() shl 32) or table.objects.size.toLong()
+                table.objects.add(obj)
+            }
+            return true
+        }
+
+        fun write(out: DataOutputStream) {
+            network.allModels.forEach { model ->
+                if (model.javaClass == Neuron::class.java || model.javaClass == Synapse::class.java) {
+                    tryAdd(model)
+                }
+            }
+
+            // The xstream part is written first so that its primitive blocks are known
+            val blocks = ArrayList<Any>()
+            val structure = ByteArrayOutputStream()
+            withContext(SnapshotContext(
+                refOf = { obj -> positions[obj]?.let { "${it ushr 32},${it and 0xffffffffL}" } },
+                resolve = { throw IllegalStateException() },
+                blocks = blocks
+            )) {
+                snapshotXStream.marshal(network, binaryDriver.createWriter(structure))
+            }
+
+            out.writeInt(tables.size)
+            tables.values.forEach { table ->
+                out.writeUTF(table.layout.type.name)
+                out.writeInt(table.objects.size)
+                out.writeInt(table.layout.fields.size)
+                table.layout.fields.forEachIndexed { i, field ->
+                    out.writeUTF(field.name)
+                    out.writeByte(table.layout.kinds[i].ordinal)
+                }
+            }
+            tables.values.forEach { table ->
+                table.layout.fields.forEachIndexed { i, field ->
+                    writeColumn(out, field, table.layout.kinds[i], table.objects)
+                }
+            }
+
+            out.writeInt(blocks.size)
+            blocks.forEach { block ->
+                when (block) {
+                    is DoubleArray -> {
+                        out.writeByte(0)
+                        out.writeInt(block.size)
+                        out.writeDoubles(block)
+                    }
+                    is Matrix -> {
+                        out.writeByte(1)
+                        out.writeInt(block.nrow())
+                        out.writeInt(block.ncol())
+                        val data = DoubleArray(block.nrow() * block.ncol())
+                        var k = 0
+                        for (j in 0 until block.ncol()) {
+                            for (i in 0 until block.nrow()) {
+                                data[k++] = block.get(i, j)
+                            }
+                        }
+                        out.writeDoubles(data)
+                    }
+                }
+            }
+
+            out.writeInt(structure.size())
+            structure.writeTo(out)
+            out.flush()
+        }
+
+        fun writeColumn(out: DataOutputStream, field: Field, kind: Kind, objects: List<Any>) {
+            val n = objects.size
+            when (kind) {
+                Kind.DOUBLE -> out.writeDoubles(DoubleArray(n) { field.getDouble(objects[it]) })
+                Kind.FLOAT -> out.writeInts(IntArray(n) { java.lang.Float.floatToRawIntBits(field.getFloat(objects[it])) })
+                Kind.LONG -> out.writeLongs(LongArray(n) { field.getLong(objects[it]) })
+                Kind.INT -> out.writeInts(IntArray(n) { field.getInt(objects[it]) })
+                Kind.SHORT -> out.writeInts(IntArray(n) { field.getShort(objects[it]).toInt() })
+                Kind.CHAR -> out.writeInts(IntArray(n) { field.getChar(objects[it]).code })
+                Kind.BYTE -> out.write(ByteArray(n) { field.getByte(objects[it]) })
+                Kind.BOOLEAN -> out.write(ByteArray(n) { if (field.getBoolean(objects[it])) 1 else 0 })
+                Kind.STRING, Kind.ENUM -> {
+                    val dictionary = LinkedHashMap<String, Int>()
+                    val indices = IntArray(n) {
+                        when (val value = field.get(objects[it])) {
+                            null -> -1
+                            is Enum<*> -> dictionary.getOrPut(value.name) { dictionary.size }
+                            else -> dictionary.getOrPut(value as String) { dictionary.size }
+                        }
+                    }
+                    out.writeInt(dictionary.size)
+                    dictionary.keys.forEach { out.writeString(it) }
+                    out.writeInts(indices)
+                }
+                Kind.BOXED -> objects.forEach { obj ->
+                    when (val value = field.get(obj)) {
+                        null -> out.writeByte(0)
+                        is Double -> { out.writeByte('D'.code); out.writeDouble(value) }
+                        is Float -> { out.writeByte('F'.code); out.writeFloat(value) }
+                        is Long -> { out.writeByte('J'.code); out.writeLong(value) }
+                        is Int -> { out.writeByte('I'.code); out.writeInt(value) }
+                        is Short -> { out.writeByte('S'.code); out.writeShort(value.toInt()) }
+                        is Char -> { out.writeByte('C'.code); out.writeChar(value.code) }
+                        is Byte -> { out.writeByte('B'.code); out.writeByte(value.toInt()) }
+                        is Boolean -> { out.writeByte('Z'.code); out.writeBoolean(value) }
+                    }
+                }
+                Kind.DOUBLE_ARRAY -> {
+                    val arrays = Array(n) { field.get(objects[it]) as DoubleArray? }
+                    out.writeInts(IntArray(n) { arrays[it]?.size ?: -1 })
+                    arrays.forEach { if (it != null) out.writeDoubles(it) }
+                }
+                Kind.INT_ARRAY -> {
+                    val arrays = Array(n) { field.get(objects[it]) as IntArray? }
+                    out.writeInts(IntArray(n) { arrays[it]?.size ?: -1 })
+                    arrays.forEach { if (it != null) out.writeInts(it) }
+                }
+                Kind.REF -> {
+                    val tableIndices = IntArray(n)
+                    val objectIndices = IntArray(n)
+                    for (i in 0 until n) {
+                        val value = field.get(objects[i])
+                        when {
+                            value == null -> tableIndices[i] = NULL_REF
+                            value === network -> tableIndices[i] = ROOT_REF
+                            else -> {
+                                val position = positions[value]!!
+                                tableIndices[i] = (position ushr 32).toInt()
+                                objectIndices[i] = position.toInt()
+                            }
+                        }
+                    }
+                    out.writeInts(tableIndices)
+                    out.writeInts(objectIndices)
+                }
+            }
+        }
+    }
+
+    private class Decoder {
+
+        /**
+         * A field of a snapshot table and its values. The field is null if the class no longer has it.
+         */
+        private class Column(val field: Field?, val kind: Kind, val values: Any)
+
+        private class Table(val layout: ClassLayout, val size: Int) {
+            lateinit var columns: List<Column>
+            lateinit var objects: Array<Any?>
+        }
+
+        fun read(input: DataInputStream): Network {
+            val tables = List(input.readInt()) {
+                val className = input.readUTF()
+                val type = try {
+                    Class.forName(className)
+                } catch (e: ClassNotFoundException) {
+                    throw IOException("Snapshot refers to unknown class $className", e)
+                }
+                val layout = layoutFor(type) ?: throw IOException("$className can no longer be read from a snapshot")
+                val size = input.readInt()
+                val fields = List(input.readInt()) { input.readUTF() to Kind.values()[input.readByte().toInt()] }
+                Table(layout, size) to fields
+            }
+            tables.forEach { (table, fields) ->
+                table.columns = fields.map { (name, kind) ->
+                    val values = readColumn(input, kind, table.size)
+                    val field = table.layout.fieldsByName[name]?.takeIf { kindOf(it.type) == kind }
+                    Column(field, kind, values)
+                }
+            }
+
+            val blocks = MutableList<Any>(input.readInt()) {
+                when (input.readByte().toInt()) {
+                    0 -> input.readDoubles(input.readInt())
+                    else -> {
+                        val rows = input.readInt()
+                        val cols = input.readInt()
+                        val data = input.readDoubles(rows * cols)
+                        Matrix(rows, cols).apply {
+                            var k = 0
+                            for (j in 0 until cols) {
+                                for (i in 0 until rows) {
+                                    set(i, j, data[k++])
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            val structure = ByteArray(input.readInt())
+            input.readFully(structure)
+
+            val network = snapshotXStream.reflectionProvider.newInstance(Network::class.java) as Network
+            val reflectionProvider = snapshotXStream.reflectionProvider
+            tables.forEach { (table) ->
+                table.objects = if (table.layout.callsConstructor) {
+                    Array(table.size) { construct(table, it) }
+                } else {
+                    Array(table.size) { reflectionProvider.newInstance(table.layout.type) }
+                }
+            }
+            val objects = tables.map { it.first.objects }
+            tables.forEach { (table) ->
+                if (!table.layout.callsConstructor) {
+                    table.columns.forEach { column ->
+                        column.field?.let { applyColumn(it, column.kind, column.values, table.objects, objects, network) }
+                    }
+                }
+            }
+
+            withContext(SnapshotContext(
+                refOf = { null },
+                resolve = { ref ->
+                    val (tableIndex, objectIndex) = ref.split(",").map { it.toInt() }
+                    objects[tableIndex][objectIndex]!!
+                },
+                blocks = blocks
+            )) {
+                snapshotXStream.unmarshal(binaryDriver.createReader(ByteArrayInputStream(structure)), network)
+            }
+            return network
+        }
+
+        /**
+         * Create an object the way the constructor calling converter does: call the primary constructor with the
+         * fields that match its parameters, then set all fields.
+         */
+        private fun construct(table: Table, index: Int): Any {
+            val values = table.columns
+                .filter { it.field != null }
+                .associate { it.field!!.name to valueAt(it.kind, it.values, index) }
+                .filterValues { it != null }
+            val constructor = table.layout.type.kotlin.primaryConstructor!!
+            val obj = constructor.callBy(constructor.parameters.filter { it.name in values }.associateWith { values[it.name] })!!
+            values.forEach { (name, value) -> table.layout.fieldsByName[name]!!.set(obj, value) }
+            return obj
+        }
+
+        private fun valueAt(kind: Kind, values: Any, i: Int): Any? = when (kind) {
+            Kind.DOUBLE -> (values as DoubleArray)[i]
+            Kind.FLOAT -> java.lang.Float.intBitsToFloat((values as IntArray)[i])
+            Kind.LONG -> (values as LongArray)[i]
+            Kind.INT -> (values as IntArray)[i]
+            Kind.SHORT -> (values as IntArray)[i].toShort()
+            Kind.CHAR -> (values as IntArray)[i].toChar()
+            Kind.BYTE -> (values as ByteArray)[i]
+            Kind.BOOLEAN -> (values as ByteArray)[i] != 0.toByte()
+            Kind.STRING, Kind.ENUM, Kind.BOXED, Kind.DOUBLE_ARRAY, Kind.INT_ARRAY -> (values as Array<*>)[i]
+            Kind.REF -> throw IllegalArgumentException("References are not passed to constructors")
+        }
+
+        private fun readColumn(input: DataInputStream, kind: Kind, n: Int): Any = when (kind) {
+            Kind.DOUBLE -> input.readDoubles(n)
+            Kind.LONG -> input.readLongs(n)
+            Kind.FLOAT, Kind.INT, Kind.SHORT, Kind.CHAR -> input.readInts(n)
+            Kind.BYTE, Kind.BOOLEAN -> ByteArray(n).also { input.readFully(it) }
+            Kind.STRING, Kind.ENUM -> {
+                val dictionary = Array(input.readInt()) { input.readString() }
+                val indices = input.readInts(n)
+                Array(n) { if (indices[it] < 0) null else dictionary[indices[it]] }
+            }
+            Kind.BOXED -> Array<Any?>(n) {
+                when (input.readByte().toInt().toChar()) {
+                    'D' -> input.readDouble()
+                    'F' -> input.readFloat()
+                    'J' -> input.readLong()
+                    'I' -> input.readInt()
+                    'S' -> input.readShort()
+                    'C' -> input.readChar()
+                    'B' -> input.readByte()
+                    'Z' -> input.readBoolean()
+                    else -> null
+                }
+            }
+            Kind.DOUBLE_ARRAY -> {
+                val lengths = input.readInts(n)
+                Array(n) { if (lengths[it] < 0) null else input.readDoubles(lengths[it]) }
+            }
+            Kind.INT_ARRAY -> {
+                val lengths = input.readInts(n)
+                Array(n) { if (lengths[it] < 0) null else input.readInts(lengths[it]) }
+            }
+            Kind.REF -> Pair(input.readInts(n), input.readInts(n))
+        }
+
+        private fun applyColumn(
+            field: Field,
+            kind: Kind,
+            values: Any,
+            targets: Array<Any?>,
+            objects: List<Array<Any?>>,
+            network: Network
+        ) {
+            when (kind) {
+                Kind.DOUBLE -> (values as DoubleArray).forEachIndexed { i, v -> field.setDouble(targets[i], v) }
+                Kind.FLOAT -> (values as IntArray).forEachIndexed { i, v -> field.setFloat(targets[i], java.lang.Float.intBitsToFloat(v)) }
+                Kind.LONG -> (values as LongArray).forEachIndexed { i, v -> field.setLong(targets[i], v) }
+                Kind.INT -> (values as IntArray).forEachIndexed { i, v -> field.setInt(targets[i], v) }
+                Kind.SHORT -> (values as IntArray).forEachIndexed { i, v -> field.setShort(targets[i], v.toShort()) }
+                Kind.CHAR -> (values as IntArray).forEachIndexed { i, v -> field.setChar(targets[i], v.toChar()) }
+                Kind.BYTE -> (values as ByteArray).forEachIndexed { i, v -> field.setByte(targets[i], v) }
+                Kind.BOOLEAN -> (values as ByteArray).forEachIndexed { i, v -> field.setBoolean(targets[i], v != 0.toByte()) }
+                Kind.ENUM -> {
+                    val constants = field.type.enumConstants.associateBy { (it as Enum<*>).name }
+                    (values as Array<*>).forEachIndexed { i, name ->
+                        field.set(targets[i], name?.let {
+                            constants[it] ?: throw IOException("${field.type.simpleName} has no constant $it")
+                        })
+                    }
+                }
+                Kind.STRING, Kind.BOXED, Kind.DOUBLE_ARRAY, Kind.INT_ARRAY ->
+                    (values as Array<*>).forEachIndexed { i, v -> field.set(targets[i], v) }
+                Kind.REF -> {
+                    @Suppress("UNCHECKED_CAST")
+                    val (tableIndices, objectIndices) = values as Pair<IntArray, IntArray>
+                    for (i in targets.indices) {
+                        field.set(targets[i], when (val tableIndex = tableIndices[i]) {
+                            NULL_REF -> null
+                            ROOT_REF -> network
+                            else -> objects[tableIndex][objectIndices[i]]
+                        })
+                    }
+                }
+            }
+        }
+    }
+
+    private inline fun <T> withContext(context: SnapshotContext, block: () -> T): T {
+        val previous = currentContext.get()
+        currentContext.set(context)
+        try {
+            return block()
+        } finally {
+            currentContext.set(previous)
+        }
+    }
+
+    private fun snapshotContext() = currentContext.get() ?: throw IllegalStateException("No snapshot is being written or read")
+
+    /**
+     * Writes the model list with models that are written as columns replaced by references to them.
+     */
+    private class SnapshotModelListConverter : Converter {
+
+        override fun canConvert(type: Class<*>?) = NetworkModelList::class.java == type
+
+        override fun marshal(source: Any?, writer: HierarchicalStreamWriter, context: MarshallingContext) {
+            val snapshot = snapshotContext()
+            (source as NetworkModelList).allInReconstructionOrder.forEach { model ->
+                val ref = snapshot.refOf(model)
+                if (ref != null) {
+                    writer.startNode(SNAPSHOT_NODE)
+                    writer.setValue(ref)
+                } else {
+                    writer.startNode(model::class.java.name)
+                    context.convertAnother(model)
+                }
+                writer.endNode()
+            }
+        }
+
+        override fun unmarshal(reader: HierarchicalStreamReader, context: UnmarshallingContext): Any {
+            val snapshot = snapshotContext()
+            val modelList = NetworkModelList()
+            while (reader.hasMoreChildren()) {
+                reader.moveDown()
+                val model = if (reader.nodeName == SNAPSHOT_NODE) {
+                    snapshot.resolve(reader.value) as NetworkModel
+                } else {
+                    context.convertAnother(modelList, Class.forName(reader.nodeName)) as NetworkModel
+                }
+                modelList.putUnsafe(model.javaClass, model)
+                reader.moveUp()
+            }
+            return modelList
+        }
+    }
+
+    /**
+     * Replaces neurons and synapses that are written as columns with references, e.g. where a neuron collection
+     * refers to free neurons.
+     */
+    private class ColumnReferenceConverter(xstream: XStream) :
+        ReflectionConverter(xstream.mapper, xstream.reflectionProvider) {
+
+        override fun canConvert(type: Class<*>?) = type == Neuron::class.java || type == Synapse::class.java
+
+        override fun marshal(original: Any, writer: HierarchicalStreamWriter, context: MarshallingContext) {
+            val ref = snapshotContext().refOf(original)
+            if (ref != null) {
+                writer.addAttribute(SNAPSHOT_NODE, ref)
+            } else {
+                super.marshal(original, writer, context)
+            }
+        }
+
+        override fun unmarshal(reader: HierarchicalStreamReader, context: UnmarshallingContext): Any {
+            val ref = reader.getAttribute(SNAPSHOT_NODE)
+            return if (ref != null) snapshotContext().resolve(ref) else super.unmarshal(reader, context)
+        }
+    }
+
+    /**
+     * Moves double arrays and matrices out of the XStream part into raw blocks.
+     */
+    private class PrimitiveBlockConverter : Converter {
+
+        override fun canConvert(type: Class<*>?) = type == DoubleArray::class.java || type == Matrix::class.java
+
+        override fun marshal(source: Any, writer: HierarchicalStreamWriter, context: MarshallingContext) {
+            val blocks = snapshotContext().blocks
+            writer.setValue(blocks.size.toString())
+            blocks.add(source)
+        }
+
+        override fun unmarshal(reader: HierarchicalStreamReader, context: UnmarshallingContext): Any {
+            return snapshotContext().blocks[reader.value.toInt()]
+        }
+    }
+
+    /**
+     * Lets the deflater be finished without closing the caller's stream.
+     */
+    private class NonClosingOutputStream(out: OutputStream) : FilterOutputStream(out) {
+        override fun write(b: ByteArray, off: Int, len: Int) = out.write(b, off, len)
+        override fun close() = flush()
+    }
+
+    private fun DataOutputStream.writeString(value: String) {
+        val bytes = value.toByteArray(Charsets.UTF_8)
+        writeInt(bytes.size)
+        write(bytes)
+    }
+
+    private fun DataInputStream.readString(): String {
+        val bytes = ByteArray(readInt())
+        readFully(bytes)
+        return String(bytes, Charsets.UTF_8)
+    }
+
+    private fun DataOutputStream.writeDoubles(values: DoubleArray) {
+        val buffer = ByteBuffer.allocate(values.size * 8)
+        buffer.asDoubleBuffer().put(values)
+        write(buffer.array())
+    }
+
+    private fun DataOutputStream.writeLongs(values: LongArray) {
+        val buffer = ByteBuffer.allocate(values.size * 8)
+        buffer.asLongBuffer().put(values)
+        write(buffer.array())
+    }
+
+    private fun DataOutputStream.writeInts(values: IntArray) {
+        val buffer = ByteBuffer.allocate(values.size * 4)
+        buffer.asIntBuffer().put(values)
+        write(buffer.array())
+    }
+
+    private fun DataInputStream.readBlock(size: Int) = ByteBuffer.wrap(ByteArray(size).also { readFully(it) })
+
+    private fun DataInputStream.readDoubles(n: Int) = DoubleArray(n).also { readBlock(n * 8).asDoubleBuffer().get(it) }
+
+    private fun DataInputStream.readLongs(n: Int) = LongArray(n).also { readBlock(n * 8).asLongBuffer().get(it) }
+
+    private fun DataInputStream.readInts(n: Int) = IntArray(n).also { readBlock(n * 4).asIntBuffer().get(it) }
+}
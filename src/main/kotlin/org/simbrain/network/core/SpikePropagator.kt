@@ -0,0 +1,532 @@
+package org.simbrain.network.core
+
+import org.simbrain.network.spikeresponders.JumpAndDecay
+import org.simbrain.network.spikeresponders.StepResponder
+import org.simbrain.network.spikeresponders.StepResponderData
+import org.simbrain.network.synapse_update_rules.STDPRule
+import org.simbrain.network.synapse_update_rules.StaticSynapseRule
+import kotlin.math.pow
+
+/**
+ * Event-driven update of the free spiking neurons of a [Network] and the synapses between them, used by
+ * [org.simbrain.network.update_actions.EventDrivenUpdate].
+ *
+ * In a buffered update every synapse runs its [org.simbrain.network.synapse_update_rules.spikeresponders.SpikeResponder]
+ * and learning rule on every step, although for spiking sources both only do something interesting when a neuron
+ * fires. Here a spike is instead propagated only along the fan-out of the neuron that fired, and arrives after the
+ * synapse's delay through a timing wheel (a ring of per-step event lists), which replaces the per-synapse delay
+ * buffers.
+ *
+ * Post-synaptic responses are not stored per synapse each step:
+ *  - [JumpAndDecay] responses of all synapses onto a neuron that share a time constant and baseline are summed in one
+ *    "channel", which decays geometrically each step. The response of a single synapse is computed analytically from
+ *    its last jump when it is needed, i.e. when it jumps again or when [syncSynapses] writes it back.
+ *  - [StepResponder] responses are added to the target's input when they arrive and removed by an expiry event.
+ *
+ * [STDPRule] is applied only to synapses whose source or target spiked in the current step. Synapses with other
+ * learning rules are updated every step.
+ *
+ * Neurons that are not spiking, or whose rule reads synapse state, and incoming synapses that cannot be handled this
+ * way (e.g. other responders, disabled synapses, or sources outside the free neurons), are updated using their
+ * objects, as in a buffered update. Results match a buffered update up to rounding, except that the STDP rule's
+ * adjustment on steps with no spike is not applied, and that a delayed spike produces the full response once it
+ * arrives, where a synapse's delay buffer delays its response one sample at a time.
+ *
+ * Everything is rebuilt when the structure of the network changes ([Network.structureVersion] and
+ * [SynapseAdjacency.version]). Responses are written back to the synapses first so they carry over, but spikes still
+ * in transit through a delay are dropped. Responder parameters are read when rebuilding.
+ */
+class SpikePropagator(val network: Network) {
+
+    /**
+     * Free spiking neurons, handled event by event.
+     */
+    private var neurons = arrayOf<Neuron>()
+
+    /**
+     * Other free neurons, updated using their objects.
+     */
+    private var otherNeurons = arrayOf<Neuron>()
+
+    /**
+     * Synapses between [neurons] whose responses are handled by events.
+     */
+    private var synapses = arrayOf<Synapse>()
+
+    /**
+     * For each event synapse, true if it uses a [StepResponder], false for [JumpAndDecay].
+     */
+    private var isStep = BooleanArray(0)
+
+    /**
+     * For each event synapse, its channel (jump and decay) or the index of its target (step).
+     */
+    private var synapseChannel = IntArray(0)
+
+    /**
+     * Response of each event synapse as of [lastStep]. For step responses, the response while active.
+     */
+    private var lastPsr = DoubleArray(0)
+
+    /**
+     * Step at which [lastPsr] was set.
+     */
+    private var lastStep = LongArray(0)
+
+    /**
+     * Step at which a step response stops. Responses are active if this is after the current step.
+     */
+    private var expiry = LongArray(0)
+
+    /**
+     * Last step in which a spike-triggered learning rule was applied to each event synapse, so it is only applied
+     * once per step.
+     */
+    private var learnedAt = LongArray(0)
+
+    /**
+     * Response duration of each step synapse, read when compiling since it determines how far ahead events are
+     * scheduled.
+     */
+    private var durations = IntArray(0)
+
+    /**
+     * Event synapses leaving each neuron, in compressed sparse row form.
+     */
+    private var fanOutStart = IntArray(1)
+    private var fanOut = IntArray(0)
+
+    /**
+     * Event synapses entering or leaving each neuron that have an [STDPRule], in compressed sparse row form.
+     */
+    private var stdpStart = IntArray(1)
+    private var stdpSynapses = IntArray(0)
+
+    /**
+     * Event synapses with learning rules that must be applied every step.
+     */
+    private var steppedLearningSynapses = arrayOf<Synapse>()
+
+    /**
+     * Target neuron of each jump and decay channel.
+     */
+    private var channelNeuron = IntArray(0)
+
+    /**
+     * Responder whose time constant and baseline are shared by the synapses of each channel.
+     */
+    private var channelResponder = arrayOf<JumpAndDecay>()
+
+    /**
+     * Number of synapses in each channel.
+     */
+    private var channelCount = IntArray(0)
+
+    /**
+     * Sum over the synapses of each channel of their response minus the baseline.
+     */
+    private var channelExcess = DoubleArray(0)
+
+    /**
+     * Summed active step responses onto each neuron.
+     */
+    private var stepInputs = DoubleArray(0)
+
+    /**
+     * Summed inputs to [neurons].
+     */
+    private var inputs = DoubleArray(0)
+
+    /**
+     * Incoming synapses of [neurons] that are updated using their objects, and the index of their target.
+     */
+    private var objectSynapses = arrayOf<Synapse>()
+    private var objectSynapseTargets = IntArray(0)
+
+    /**
+     * Free synapses not onto [neurons]. Their output is computed by the target's own update, but their learning rule is
+     * applied here.
+     */
+    private var otherFreeSynapses = arrayOf<Synapse>()
+
+    /**
+     * Indices of neurons that spiked in the last step.
+     */
+    private var spiked = IntArray(0)
+    private var spikedCount = 0
+
+    private val wheel = TimingWheel()
+
+    /**
+     * Number of steps updated.
+     */
+    var step = 0L
+        private set
+
+    private var compiledStructureVersion = -1L
+    private var compiledAdjacencyVersion = -1L
+
+    /**
+     * False if the synapses were changed directly since the last build, so their responses should not be overwritten.
+     */
+    private var syncSynapsesNeeded = true
+
+    val numEventSynapses get() = synapses.size
+
+    val numObjectSynapses get() = objectSynapses.size
+
+    /**
+     * Rebuild if the network has changed since the last build.
+     */
+    fun compileIfNeeded() {
+        if (compiledStructureVersion != network.structureVersion ||
+            compiledAdjacencyVersion != network.adjacency.version) {
+            if (syncSynapsesNeeded) {
+                syncSynapses()
+            }
+            compile()
+        }
+    }
+
+    /**
+     * Build the event structures from the current free neurons and synapses, starting from the responses stored in the
+     * synapses.
+     */
+    fun compile() {
+        compiledStructureVersion = network.structureVersion
+        compiledAdjacencyVersion = network.adjacency.version
+        syncSynapsesNeeded = true
+
+        val freeNeurons = network.freeNeurons
+        neurons = freeNeurons.filter { it.updateRule.isSpikingRule && !it.updateRule.usesSynapseState() }.toTypedArray()
+        otherNeurons = freeNeurons.filter { !it.updateRule.isSpikingRule || it.updateRule.usesSynapseState() }
+            .toTypedArray()
+        val index = HashMap<Neuron, Int>(neurons.size * 2)
+        neurons.forEachIndexed { i, neuron -> index[neuron] = i }
+
+        val eventSynapses = ArrayList<Synapse>()
+        val objects = ArrayList<Synapse>()
+        val objectTargets = ArrayList<Int>()
+        val channels = ArrayList<JumpAndDecay>()
+        val channelTargets = ArrayList<Int>()
+        val channelOf = ArrayList<Int>()
+        for ((i, neuron) in neurons.withIndex()) {
+            // Channels of this neuron, by time constant and baseline
+            val neuronChannels = HashMap<Pair<Double, Double>, Int>()
+            for (synapse in neuron.fanIn) {
+                val responder = synapse.spikeResponder
+                if (synapse.isEnabled && synapse.source in index &&
+                    (responder is JumpAndDecay || responder is StepResponder)) {
+                    if (responder is JumpAndDecay) {
+                        channelOf.add(neuronChannels.getOrPut(responder.timeConstant to responder.baseLine) {
+                            channels.add(responder)
+                            channelTargets.add(i)
+                            channels.size - 1
+                        })
+                    } else {
+                        channelOf.add(i)
+                    }
+                    eventSynapses.add(synapse)
+                } else {
+                    objects.add(synapse)
+                    objectTargets.add(i)
+                }
+            }
+        }
+
+        synapses = eventSynapses.toTypedArray()
+        val n = synapses.size
+        isStep = BooleanArray(n) { synapses[it].spikeResponder is StepResponder }
+        synapseChannel = channelOf.toIntArray()
+        lastPsr = DoubleArray(n)
+        lastStep = LongArray(n) { step }
+        expiry = LongArray(n) { step }
+        learnedAt = LongArray(n) { -1 }
+        durations = IntArray(n) { (synapses[it].spikeResponder as? StepResponder)?.responseDuration ?: 0 }
+
+        channelNeuron = channelTargets.toIntArray()
+        channelResponder = channels.toTypedArray()
+        channelCount = IntArray(channels.size)
+        channelExcess = DoubleArray(channels.size)
+        stepInputs = DoubleArray(neurons.size)
+        inputs = DoubleArray(neurons.size)
+
+        val synapseIndex = HashMap<Synapse, Int>(n * 2)
+        var horizon = 0
+        for ((s, synapse) in synapses.withIndex()) {
+            synapseIndex[synapse] = s
+            val responder = synapse.spikeResponder
+            if (responder is JumpAndDecay) {
+                val c = synapseChannel[s]
+                channelCount[c]++
+                lastPsr[s] = synapse.psr
+                channelExcess[c] += synapse.psr - responder.baseLine
+                horizon = maxOf(horizon, synapse.delay)
+            } else if (responder is StepResponder) {
+                val counter = (synapse.spikeResponderData as? StepResponderData)?.counter ?: 0
+                if (counter > 0 && synapse.psr != 0.0) {
+                    lastPsr[s] = synapse.psr
+                    expiry[s] = step + counter
+                    stepInputs[synapseChannel[s]] += synapse.psr
+                }
+                horizon = maxOf(horizon, synapse.delay, responder.responseDuration, counter)
+            }
+        }
+        wheel.reset(horizon + 1)
+        for (s in synapses.indices) {
+            if (isStep[s] && expiry[s] > step) {
+                wheel.add(expiry[s], -(s + 1), 0.0)
+            }
+        }
+
+        // Fan-out, and synapses with spike-triggered learning, as compressed rows
+        val outRows = Array(neurons.size) { ArrayList<Int>() }
+        val stdpRows = Array(neurons.size) { ArrayList<Int>() }
+        val stepped = ArrayList<Synapse>()
+        for ((s, synapse) in synapses.withIndex()) {
+            val source = index[synapse.source]!!
+            val target = index[synapse.target]!!
+            outRows[source].add(s)
+            when (synapse.learningRule) {
+                is StaticSynapseRule -> {}
+                is STDPRule -> {
+                    stdpRows[source].add(s)
+                    if (target != source) stdpRows[target].add(s)
+                }
+                else -> stepped.add(synapse)
+            }
+        }
+        fanOutStart = rowStarts(outRows)
+        fanOut = outRows.flatMap { it }.toIntArray()
+        stdpStart = rowStarts(stdpRows)
+        stdpSynapses = stdpRows.flatMap { it }.toIntArray()
+        steppedLearningSynapses = stepped.toTypedArray()
+
+        objectSynapses = objects.toTypedArray()
+        objectSynapseTargets = objectTargets.toIntArray()
+        otherFreeSynapses = network.freeSynapses.filter { it.target !in index }.toTypedArray()
+
+        // Spikes from the last step are delivered in the next one
+        spiked = IntArray(neurons.size)
+        spikedCount = 0
+        neurons.forEachIndexed { i, neuron ->
+            if (neuron.isSpike) spiked[spikedCount++] = i
+        }
+    }
+
+    private fun rowStarts(rows: Array<ArrayList<Int>>) = IntArray(rows.size + 1).also { starts ->
+        for (i in rows.indices) {
+            starts[i + 1] = starts[i] + rows[i].size
+        }
+    }
+
+    /**
+     * Decay factor per step of a jump and decay response.
+     */
+    private fun JumpAndDecay.decay() = 1 - network.timeStep / timeConstant
+
+    /**
+     * Current response of a jump and decay synapse.
+     */
+    private fun jumpPsr(s: Int): Double {
+        val responder = channelResponder[synapseChannel[s]]
+        val base = responder.baseLine
+        return base + (lastPsr[s] - base) * responder.decay().pow((step - lastStep[s]).toDouble())
+    }
+
+    /**
+     * First pass of a buffered update. Delivers spikes that arrive in this step and adds the summed response to each
+     * neuron's input.
+     */
+    fun updateInputs() {
+        compileIfNeeded()
+        step++
+
+        // Schedule spikes from the last step
+        for (k in 0 until spikedCount) {
+            val source = spiked[k]
+            for (j in fanOutStart[source] until fanOutStart[source + 1]) {
+                val s = fanOut[j]
+                val synapse = synapses[s]
+                val height = when (val responder = synapse.spikeResponder) {
+                    is JumpAndDecay -> responder.jumpHeight
+                    is StepResponder -> responder.responseHeight
+                    else -> 0.0
+                }
+                wheel.add(step + synapse.delay, s, height * synapse.strength)
+            }
+        }
+        spikedCount = 0
+
+        for (c in channelExcess.indices) {
+            channelExcess[c] *= channelResponder[c].decay()
+        }
+
+        wheel.drain(step) { s, value ->
+            if (s < 0) {
+                // Expiry of a step response, unless it was renewed since
+                val expired = -s - 1
+                if (expiry[expired] == step) {
+                    stepInputs[synapseChannel[expired]] -= lastPsr[expired]
+                    lastPsr[expired] = 0.0
+                }
+            } else if (isStep[s]) {
+                val target = synapseChannel[s]
+                // Replace the current response, including one whose expiry in this step is not yet processed
+                if (expiry[s] >= step) {
+                    stepInputs[target] -= lastPsr[s]
+                }
+                val duration = durations[s]
+                if (duration > 0) {
+                    lastPsr[s] = value
+                    expiry[s] = step + duration
+                    stepInputs[target] += value
+                    wheel.add(expiry[s], -(s + 1), 0.0)
+                } else {
+                    lastPsr[s] = 0.0
+                    expiry[s] = step
+                }
+            } else {
+                val c = synapseChannel[s]
+                val base = channelResponder[c].baseLine
+                channelExcess[c] += (value - base) - (jumpPsr(s) - base)
+                lastPsr[s] = value
+                lastStep[s] = step
+            }
+        }
+
+        for (i in neurons.indices) {
+            inputs[i] = stepInputs[i]
+        }
+        for (c in channelExcess.indices) {
+            inputs[channelNeuron[c]] += channelExcess[c] + channelCount[c] * channelResponder[c].baseLine
+        }
+        for (j in objectSynapses.indices) {
+            val synapse = objectSynapses[j]
+            synapse.updateOutput()
+            inputs[objectSynapseTargets[j]] += synapse.psr
+        }
+        for (i in neurons.indices) {
+            neurons[i].addInputValue(inputs[i])
+        }
+        for (neuron in otherNeurons) {
+            neuron.updateInputs()
+        }
+    }
+
+    /**
+     * Second pass of a buffered update. Applies each neuron's update rule, then learning rules: spike-triggered ones
+     * only for synapses of neurons that spiked.
+     */
+    fun update() {
+        for (i in neurons.indices) {
+            val neuron = neurons[i]
+            neuron.update()
+            if (neuron.isSpike) {
+                spiked[spikedCount++] = i
+            }
+        }
+        for (neuron in otherNeurons) {
+            neuron.update()
+        }
+        for (k in 0 until spikedCount) {
+            val i = spiked[k]
+            for (j in stdpStart[i] until stdpStart[i + 1]) {
+                val s = stdpSynapses[j]
+                if (learnedAt[s] != step) {
+                    learnedAt[s] = step
+                    synapses[s].update()
+                }
+            }
+        }
+        for (synapse in steppedLearningSynapses) {
+            synapse.update()
+        }
+        for (synapse in objectSynapses) {
+            synapse.update()
+        }
+        for (synapse in otherFreeSynapses) {
+            synapse.update()
+        }
+    }
+
+    /**
+     * Discard all event state, so that the next update rebuilds from the synapses as they are, e.g. after they have
+     * been cleared.
+     */
+    fun invalidate() {
+        syncSynapsesNeeded = false
+        compiledStructureVersion = -1
+    }
+
+    /**
+     * Write the current response of every event synapse back to the synapse object, e.g. before inspecting it.
+     */
+    fun syncSynapses() {
+        for (s in synapses.indices) {
+            val synapse = synapses[s]
+            if (isStep[s]) {
+                val remaining = expiry[s] - step
+                synapse.psr = if (remaining > 0) lastPsr[s] else 0.0
+                (synapse.spikeResponderData as? StepResponderData)?.counter = maxOf(0L, remaining).toInt()
+            } else {
+                synapse.psr = jumpPsr(s)
+            }
+        }
+    }
+
+    /**
+     * A ring of event lists, one per step, covering a fixed number of steps ahead. Each event is an int and a double.
+     */
+    private class TimingWheel {
+
+        var slots = Array(1) { Slot() }
+
+        var mask = 0L
+
+        /**
+         * Remove all events, and make room for events up to the given number of steps ahead.
+         */
+        fun reset(horizon: Int) {
+            var size = 1
+            while (size <= horizon) {
+                size = size shl 1
+            }
+            if (size != slots.size) {
+                slots = Array(size) { Slot() }
+            } else {
+                slots.forEach { it.size = 0 }
+            }
+            mask = size - 1L
+        }
+
+        fun add(step: Long, id: Int, value: Double) = slots[(step and mask).toInt()].add(id, value)
+
+        /**
+         * Process and remove the events of a step. Events added to other steps while draining are kept.
+         */
+        inline fun drain(step: Long, handler: (id: Int, value: Double) -> Unit) {
+            val slot = slots[(step and mask).toInt()]
+            for (k in 0 until slot.size) {
+                handler(slot.ids[k], slot.values[k])
+            }
+            slot.size = 0
+        }
+
+        class Slot {
+            var ids = IntArray(4)
+            var values = DoubleArray(4)
+            var size = 0
+
+            fun add(id: Int, value: Double) {
+                if (size == ids.size) {
+                    ids = ids.copyOf(size * 2)
+                    values = values.copyOf(size * 2)
+                }
+                ids[size] = id
+                values[size] = value
+                size++
+            }
+        }
+    }
+}
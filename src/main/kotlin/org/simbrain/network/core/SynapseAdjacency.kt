@@ -0,0 +1,381 @@
+package org.simbrain.network.core
+
+import java.util.IdentityHashMap
+
+/**
+ * Compact storage for the fan-in and fan-out of all [Neuron]s in a [Network].
+ *
+ * Rather than each neuron owning its own hash map and array list, the synapses of every neuron are stored in two
+ * shared pools (one for fan-in, one for fan-out). Each neuron is assigned an integer "node" index, and for each node
+ * the pools record the start, size, and capacity of a contiguous segment. This is a compressed sparse row (CSR)
+ * layout with some slack at the end of each segment so that synapses can be added without rebuilding the whole
+ * structure. When a segment fills it is moved to the end of its pool with double the capacity, and the pool is
+ * compacted once more than half of it is unused.
+ *
+ * A neuron with no synapses costs a few ints here, as opposed to a pre-allocated map and list.
+ *
+ * Neurons access their segments through [Neuron.getFanIn] and [Neuron.getFanOut], which return read-only views
+ * backed by this structure.
+ */
+class SynapseAdjacency {
+
+    /**
+     * Incoming synapses, one segment per node.
+     */
+    private val fanIn = SegmentPool()
+
+    /**
+     * Outgoing synapses, one segment per node.
+     */
+    private val fanOut = SegmentPool()
+
+    /**
+     * Number of node indices handed out so far.
+     */
+    private var nodeCount = 0
+
+    /**
+     * Indices of nodes that have been released and can be reused.
+     */
+    private var freeNodes = IntArray(0)
+
+    private var numFreeNodes = 0
+
+    /**
+     * Outgoing synapses by target, for nodes whose fan-out has reached [FAN_OUT_INDEX_THRESHOLD]. Small fan-outs are
+     * scanned instead, which is faster and keeps them compact.
+     */
+    private val fanOutIndex = HashMap<Int, IdentityHashMap<Neuron, Synapse>>()
+
+    /**
+     * Incremented whenever a fan-in or fan-out changes, so that cached views of the structure (see [CompiledNetwork])
+     * can tell when they are stale.
+     */
+    @Volatile
+    var version = 0L
+        private set
+
+    /**
+     * Number of nodes currently in use.
+     */
+    val numNodes get() = nodeCount - numFreeNodes
+
+    /**
+     * Total number of fan-in entries, which is also the number of synapses stored here.
+     */
+    val numSynapses get() = fanIn.liveSlots
+
+    /**
+     * Register a new node (i.e. a neuron) and return its index.
+     */
+    @Synchronized
+    fun register(): Int {
+        if (numFreeNodes > 0) {
+            return freeNodes[--numFreeNodes]
+        }
+        val node = nodeCount++
+        fanIn.ensureNodeCapacity(nodeCount)
+        fanOut.ensureNodeCapacity(nodeCount)
+        return node
+    }
+
+    /**
+     * Release a node so that its index can be reused. Its segments are discarded.
+     */
+    @Synchronized
+    fun release(node: Int) {
+        fanIn.release(node)
+        fanOut.release(node)
+        fanOutIndex.remove(node)
+        version++
+        if (numFreeNodes == freeNodes.size) {
+            freeNodes = freeNodes.copyOf(maxOf(4, freeNodes.size * 2))
+        }
+        freeNodes[numFreeNodes++] = node
+    }
+
+    fun fanInSize(node: Int) = fanIn.size(node)
+
+    fun fanIn(node: Int, index: Int) = fanIn[node, index]
+
+    @Synchronized
+    fun addToFanIn(node: Int, synapse: Synapse) {
+        fanIn.append(node, synapse)
+        version++
+    }
+
+    @Synchronized
+    fun removeFromFanIn(node: Int, synapse: Synapse) {
+        fanIn.remove(node, synapse)
+        version++
+    }
+
+    @Synchronized
+    fun clearFanIn(node: Int) {
+        fanIn.clear(node)
+        version++
+    }
+
+    fun fanOutSize(node: Int) = fanOut.size(node)
+
+    fun fanOut(node: Int, index: Int) = fanOut[node, index]
+
+    /**
+     * Add an outgoing synapse. If there is already an outgoing synapse to the same target it is replaced.
+     */
+    @Synchronized
+    fun addToFanOut(node: Int, synapse: Synapse) {
+        val index = fanOutIndex[node]
+        // With an index, only scan for the slot when there is something to replace
+        val existing = if (index == null || synapse.target in index) fanOutIndexOf(node, synapse.target) else -1
+        if (existing >= 0) {
+            fanOut[node, existing] = synapse
+        } else {
+            fanOut.append(node, synapse)
+        }
+        if (index != null) {
+            index[synapse.target] = synapse
+        } else if (fanOut.size(node) >= FAN_OUT_INDEX_THRESHOLD) {
+            fanOutIndex[node] = IdentityHashMap<Neuron, Synapse>().also { newIndex ->
+                for (i in 0 until fanOut.size(node)) {
+                    fanOut[node, i].let { newIndex[it.target] = it }
+                }
+            }
+        }
+        version++
+    }
+
+    @Synchronized
+    fun removeFromFanOut(node: Int, synapse: Synapse) {
+        fanOut.remove(node, synapse)
+        fanOutIndex[node]?.remove(synapse.target, synapse)
+        version++
+    }
+
+    @Synchronized
+    fun clearFanOut(node: Int) {
+        fanOut.clear(node)
+        fanOutIndex.remove(node)
+        version++
+    }
+
+    /**
+     * Returns the outgoing synapse from the node to the target neuron, or null if there is none.
+     */
+    fun findFanOut(node: Int, target: Neuron?): Synapse? {
+        fanOutIndex[node]?.let { return it[target] }
+        val index = fanOutIndexOf(node, target)
+        return if (index >= 0) fanOut[node, index] else null
+    }
+
+    private fun fanOutIndexOf(node: Int, target: Neuron?): Int {
+        for (i in 0 until fanOut.size(node)) {
+            if (fanOut[node, i].target === target) {
+                return i
+            }
+        }
+        return -1
+    }
+
+    /**
+     * Read-only list view of a node's fan-in.
+     */
+    fun fanInView(node: Int): List<Synapse> = object : AbstractList<Synapse>() {
+        override val size get() = fanIn.size(node)
+        override fun get(index: Int): Synapse {
+            checkIndex(index, size)
+            return fanIn[node, index]
+        }
+    }
+
+    /**
+     * Read-only map view of a node's fan-out, from target neurons to synapses.
+     */
+    fun fanOutView(node: Int): Map<Neuron, Synapse> = FanOutMap(node)
+
+    /**
+     * Approximate number of bytes used by the arrays backing this structure, not counting the synapses themselves.
+     * Assumes 4-byte references (compressed oops), and about two table slots per entry in the fan-out indices.
+     */
+    val estimatedSizeInBytes: Long
+        get() = fanIn.estimatedSizeInBytes + fanOut.estimatedSizeInBytes + 4L * freeNodes.size +
+                fanOutIndex.values.sumOf { 16L * it.size }
+
+    private inner class FanOutMap(private val node: Int) : AbstractMap<Neuron, Synapse>() {
+
+        override val size get() = fanOut.size(node)
+
+        override fun get(key: Neuron) = findFanOut(node, key)
+
+        override fun containsKey(key: Neuron) = findFanOut(node, key) != null
+
+        override val values: Collection<Synapse> = object : AbstractList<Synapse>() {
+            override val size get() = fanOut.size(node)
+            override fun get(index: Int): Synapse {
+                checkIndex(index, size)
+                return fanOut[node, index]
+            }
+        }
+
+        override val entries: Set<Map.Entry<Neuron, Synapse>> = object : AbstractSet<Map.Entry<Neuron, Synapse>>() {
+            override val size get() = fanOut.size(node)
+            override fun iterator() = object : Iterator<Map.Entry<Neuron, Synapse>> {
+                var i = 0
+                override fun hasNext() = i < fanOut.size(node)
+                override fun next(): Map.Entry<Neuron, Synapse> {
+                    if (!hasNext()) throw NoSuchElementException()
+                    val synapse = fanOut[node, i++]
+                    return java.util.AbstractMap.SimpleImmutableEntry(synapse.target, synapse)
+                }
+            }
+        }
+    }
+
+    private fun checkIndex(index: Int, size: Int) {
+        if (index < 0 || index >= size) {
+            throw IndexOutOfBoundsException("Index $index out of bounds for length $size")
+        }
+    }
+
+    companion object {
+
+        /**
+         * Fan-out size at which a node gets a hash index by target, so that connecting densely is not quadratic.
+         */
+        const val FAN_OUT_INDEX_THRESHOLD = 16
+    }
+
+}
+
+/**
+ * A pool of synapse references divided into per-node segments.
+ */
+private class SegmentPool {
+
+    private var start = IntArray(0)
+    private var size = IntArray(0)
+    private var capacity = IntArray(0)
+
+    private var slots = arrayOfNulls<Synapse>(0)
+
+    /**
+     * End of the used region of [slots]. New and moved segments are placed here.
+     */
+    private var top = 0
+
+    /**
+     * Number of slots below [top] that no longer belong to any segment.
+     */
+    private var garbage = 0
+
+    var liveSlots = 0
+        private set
+
+    val estimatedSizeInBytes: Long
+        get() = 12L * start.size + 4L * slots.size
+
+    fun ensureNodeCapacity(numNodes: Int) {
+        if (numNodes > start.size) {
+            val newSize = maxOf(numNodes, start.size * 2, 16)
+            start = start.copyOf(newSize)
+            size = size.copyOf(newSize)
+            capacity = capacity.copyOf(newSize)
+        }
+    }
+
+    fun size(node: Int) = size[node]
+
+    operator fun get(node: Int, index: Int): Synapse = slots[start[node] + index]!!
+
+    operator fun set(node: Int, index: Int, synapse: Synapse) {
+        slots[start[node] + index] = synapse
+    }
+
+    fun append(node: Int, synapse: Synapse) {
+        if (size[node] == capacity[node]) {
+            grow(node)
+        }
+        slots[start[node] + size[node]] = synapse
+        size[node]++
+        liveSlots++
+    }
+
+    /**
+     * Remove the first occurrence of a synapse from a segment, preserving the order of the rest.
+     */
+    fun remove(node: Int, synapse: Synapse) {
+        val base = start[node]
+        val n = size[node]
+        for (i in 0 until n) {
+            if (slots[base + i] === synapse) {
+                System.arraycopy(slots, base + i + 1, slots, base + i, n - i - 1)
+                slots[base + n - 1] = null
+                size[node]--
+                liveSlots--
+                return
+            }
+        }
+    }
+
+    fun clear(node: Int) {
+        slots.fill(null, start[node], start[node] + size[node])
+        liveSlots -= size[node]
+        size[node] = 0
+    }
+
+    fun release(node: Int) {
+        clear(node)
+        garbage += capacity[node]
+        start[node] = 0
+        capacity[node] = 0
+        compactIfNeeded()
+    }
+
+    /**
+     * Double the capacity of a segment. A segment at the end of the pool grows in place; otherwise it is moved to the
+     * end and its old slots become garbage.
+     */
+    private fun grow(node: Int) {
+        val oldCapacity = capacity[node]
+        val newCapacity = maxOf(4, oldCapacity * 2)
+        if (oldCapacity > 0 && start[node] + oldCapacity == top) {
+            ensureSlotCapacity(top + newCapacity - oldCapacity)
+            top += newCapacity - oldCapacity
+        } else {
+            ensureSlotCapacity(top + newCapacity)
+            System.arraycopy(slots, start[node], slots, top, size[node])
+            slots.fill(null, start[node], start[node] + size[node])
+            garbage += oldCapacity
+            start[node] = top
+            top += newCapacity
+        }
+        capacity[node] = newCapacity
+        compactIfNeeded()
+    }
+
+    private fun ensureSlotCapacity(required: Int) {
+        if (required > slots.size) {
+            slots = slots.copyOf(maxOf(required, slots.size + (slots.size shr 1), 64))
+        }
+    }
+
+    /**
+     * Copy all live segments to the front of a new pool once more than half the used region is garbage.
+     */
+    private fun compactIfNeeded() {
+        if (garbage < 1024 || garbage * 2 < top) {
+            return
+        }
+        val newSlots = arrayOfNulls<Synapse>(maxOf(64, top - garbage + (top - garbage shr 1)))
+        var newTop = 0
+        for (node in start.indices) {
+            if (capacity[node] == 0) continue
+            System.arraycopy(slots, start[node], newSlots, newTop, size[node])
+            start[node] = newTop
+            newTop += capacity[node]
+        }
+        slots = newSlots
+        top = newTop
+        garbage = 0
+    }
+}
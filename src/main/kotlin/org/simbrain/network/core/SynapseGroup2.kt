@@ -88,11 +88,13 @@ class SynapseGroup2 @JvmOverloads constructor(
     fun addSynapse(syn: Synapse) {
         syn.isVisible = displaySynapses
         this.synapses.add(syn)
+        source.network.groupContentsChanged()
         events.synapseAdded.fireAndForget(syn)
     }
 
     fun removeSynapse(syn: Synapse) {
         this.synapses.remove(syn)
+        source.network.groupContentsChanged()
         events.synapseRemoved.fireAndForget(syn)
     }
 
@@ -10,6 +10,7 @@ import org.simbrain.util.Events2
 class NetworkEvents2: Events2() {
     val zoomToFitPage = NoArgEvent(interval = 20)
     val updated = NoArgEvent()
+    val modelsUpdated = AddedEvent<List<NetworkModel>>()
     val modelAdded = BatchAddedEvent<NetworkModel>(interval = 20)
     val modelRemoved = RemovedEvent<NetworkModel>()
     val updateActionsChanged = NoArgEvent()
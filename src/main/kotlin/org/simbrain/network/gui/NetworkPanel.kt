@@ -82,6 +82,11 @@ class NetworkPanel constructor(val networkComponent: NetworkComponent) : JPanel(
 
     val timeLabel = TimeLabel(this).apply { update() }
 
+    /**
+     * Redraws the panel at a fixed frame rate while the network runs.
+     */
+    val renderer = NetworkRenderer(this)
+
     var autoZoom = true
         set(value) {
             field = value
@@ -150,6 +155,7 @@ class NetworkPanel constructor(val networkComponent: NetworkComponent) : JPanel(
 
         canvas.background = NetworkPreferences.backgroundColor
         nudgeAmount = NetworkPreferences.nudgeAmount
+        renderer.frameRate = NetworkPreferences.frameRate
         editMode.resetWandCursor()
 
         NeuronNode.hotColor = NetworkPreferences.hotNodeColor
@@ -243,6 +249,16 @@ class NetworkPanel constructor(val networkComponent: NetworkComponent) : JPanel(
 
     }
 
+    override fun addNotify() {
+        super.addNotify()
+        renderer.start()
+    }
+
+    override fun removeNotify() {
+        renderer.stop()
+        super.removeNotify()
+    }
+
     /**
      * Returns all nodes in the canvas.
      */
@@ -696,10 +712,8 @@ class NetworkPanel constructor(val networkComponent: NetworkComponent) : JPanel(
                 modelNodeMap.remove(it)
             }
             updateActionsChanged.on(Dispatchers.Swing) { timeLabel.update() }
-            updated.on(Dispatchers.Swing, wait = true) {
-                repaint()
-                timeLabel.update()
-            }
+            // Runs on the updating thread; the renderer draws on the Swing thread at its own rate
+            updated.on(wait = true, handler = Runnable { renderer.networkUpdated() })
             zoomToFitPage.on(Dispatchers.Swing) {
                 if (autoZoom) {
                     val filtered = screenElements.unionOfGlobalFullBounds()
@@ -0,0 +1,185 @@
+package org.simbrain.network.gui
+
+import org.simbrain.network.gui.dialogs.NetworkPreferences
+import org.simbrain.network.gui.nodes.NeuronNode
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicReference
+import javax.swing.Timer
+
+/**
+ * Redraws a [NetworkPanel] at a fixed frame rate, so that network updates never wait on the Swing thread.
+ *
+ * At the end of a network update, at most once per frame interval, the state of every neuron node is copied into a
+ * frame buffer on the simulation thread, so each frame shows a single time step. Frames are handed to the Swing thread
+ * through one pending slot. If the Swing thread has not drawn a frame by the time the next one is captured, the old
+ * frame is dropped and its buffer reused, so drawing falls behind gracefully instead of slowing the simulation.
+ *
+ * Changes made while the network is not being updated, e.g. editing activations, call [requestFrame]. A frame is then
+ * captured on the Swing thread once updates have stopped for a frame interval.
+ */
+class NetworkRenderer(private val networkPanel: NetworkPanel) {
+
+    /**
+     * Frames per second. Frames are only drawn when something has changed.
+     */
+    var frameRate = NetworkPreferences.frameRate.coerceIn(1, 240)
+        set(value) {
+            field = value.coerceIn(1, 240)
+            timer.delay = 1000 / field
+        }
+
+    private val frameIntervalNanos get() = 1_000_000_000L / frameRate
+
+    private val timer = Timer(1000 / frameRate) { drawFrame() }.apply { isCoalesce = true }
+
+    /**
+     * Neuron nodes to capture, guarded by itself. Copied to [nodeArray] when changed.
+     */
+    private val nodes = LinkedHashSet<NeuronNode>()
+
+    @Volatile
+    private var nodesChanged = false
+
+    @Volatile
+    private var nodeArray = arrayOf<NeuronNode>()
+
+    /**
+     * The last captured frame, if not yet drawn.
+     */
+    private val pending = AtomicReference<Frame?>()
+
+    /**
+     * Frame buffers not in use.
+     */
+    private val spareFrames = ConcurrentLinkedQueue<Frame>()
+
+    /**
+     * Earliest time the simulation thread captures another frame. Only used on the simulation thread.
+     */
+    private var nextCaptureTime = 0L
+
+    @Volatile
+    private var lastUpdateTime = 0L
+
+    /**
+     * True if the model has changed since the last captured frame.
+     */
+    @Volatile
+    private var stale = true
+
+    /**
+     * Number of captured frames replaced before they were drawn.
+     */
+    @Volatile
+    var droppedFrames = 0L
+        private set
+
+    fun add(node: NeuronNode) {
+        synchronized(nodes) {
+            nodes.add(node)
+            nodesChanged = true
+        }
+        stale = true
+    }
+
+    fun remove(node: NeuronNode) {
+        synchronized(nodes) {
+            nodes.remove(node)
+            nodesChanged = true
+        }
+    }
+
+    private fun currentNodes(): Array<NeuronNode> {
+        if (nodesChanged) {
+            synchronized(nodes) {
+                nodeArray = nodes.toTypedArray()
+                nodesChanged = false
+            }
+        }
+        return nodeArray
+    }
+
+    /**
+     * Called on the simulation thread at the end of each network update.
+     */
+    fun networkUpdated() {
+        val now = System.nanoTime()
+        lastUpdateTime = now
+        if (now < nextCaptureTime) {
+            stale = true
+            return
+        }
+        nextCaptureTime = now + frameIntervalNanos
+        stale = false
+        val frame = spareFrames.poll() ?: Frame()
+        frame.capture(currentNodes())
+        pending.getAndSet(frame)?.let {
+            droppedFrames++
+            spareFrames.add(it)
+        }
+    }
+
+    /**
+     * Request that the panel be redrawn with the current state of the model. Can be called from any thread.
+     */
+    fun requestFrame() {
+        stale = true
+    }
+
+    private fun drawFrame() {
+        if (!networkPanel.guiOn) {
+            return
+        }
+        var frame = pending.getAndSet(null)
+        if (frame == null && stale && System.nanoTime() - lastUpdateTime > frameIntervalNanos) {
+            stale = false
+            frame = (spareFrames.poll() ?: Frame()).also { it.capture(currentNodes()) }
+        }
+        if (frame == null) {
+            return
+        }
+        frame.draw()
+        spareFrames.add(frame)
+        networkPanel.timeLabel.update()
+        networkPanel.repaint()
+    }
+
+    fun start() = timer.start()
+
+    fun stop() = timer.stop()
+
+    /**
+     * Neuron states at one time step.
+     */
+    private class Frame {
+
+        var nodes = arrayOf<NeuronNode>()
+
+        var activations = DoubleArray(0)
+
+        var graphicalValues = DoubleArray(0)
+
+        var spikes = BooleanArray(0)
+
+        fun capture(nodes: Array<NeuronNode>) {
+            this.nodes = nodes
+            if (activations.size < nodes.size) {
+                activations = DoubleArray(nodes.size)
+                graphicalValues = DoubleArray(nodes.size)
+                spikes = BooleanArray(nodes.size)
+            }
+            for (i in nodes.indices) {
+                val neuron = nodes[i].neuron
+                activations[i] = neuron.activation
+                graphicalValues[i] = neuron.updateRule.getGraphicalValue(neuron)
+                spikes[i] = neuron.isSpike
+            }
+        }
+
+        fun draw() {
+            for (i in nodes.indices) {
+                nodes[i].applyState(activations[i], graphicalValues[i], spikes[i])
+            }
+        }
+    }
+}
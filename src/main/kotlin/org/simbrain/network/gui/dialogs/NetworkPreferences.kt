@@ -44,6 +44,10 @@ object NetworkPreferences: PreferenceHolder() {
     @UserParameter(label = "Wand radius", tab = "GUI")
     var wandRadius by IntegerPreference(40)
 
+    @UserParameter(label = "Frame rate", description = "Maximum number of times per second the network is redrawn " +
+            "while it runs", tab = "GUI")
+    var frameRate by IntegerPreference(30)
+
     @UserParameter(label = "Default self connection allowed")
     var selfConnectionAllowed by BooleanPreference(false)
 
@@ -54,4 +58,8 @@ object NetworkPreferences: PreferenceHolder() {
     @UserParameter(label = "Default learning rate", tab = "Model")
     var defaultLearningRate by DoublePreference(.1)
 
+    @UserParameter(label = "Save networks as binary snapshots", description = "Smaller and faster to save and open " +
+            "than xml, but not human readable", tab = "Model")
+    var saveAsSnapshot by BooleanPreference(false)
+
 }
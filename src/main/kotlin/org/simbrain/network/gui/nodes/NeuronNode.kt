@@ -27,6 +27,7 @@ import org.simbrain.network.NetworkModel
 import org.simbrain.network.core.Neuron
 import org.simbrain.network.core.NeuronUpdateRule
 import org.simbrain.network.gui.NetworkPanel
+import org.simbrain.network.gui.NetworkRenderer
 import org.simbrain.network.gui.dialogs.NetworkPreferences
 import org.simbrain.network.gui.neuronContextMenu
 import org.simbrain.network.gui.neuronDialog
@@ -132,12 +133,13 @@ class NeuronNode(net: NetworkPanel?, val neuron: Neuron) : ScreenElement(net), P
 
         // Handle events
         val events = neuron.events
-        events.deleted.on(Dispatchers.Swing) { n: NetworkModel? -> removeFromParent() }
-        events.activationChanged.on(Dispatchers.Swing) { _, _ ->
-            updateColor()
-            updateText()
+        networkPanel.renderer.add(this)
+        events.deleted.on(Dispatchers.Swing) { n: NetworkModel? ->
+            networkPanel.renderer.remove(this)
+            removeFromParent()
         }
-        events.spiked.on(Dispatchers.Swing) { updateSpikeColor() }
+        // Activations and spikes are drawn by the renderer. This only marks the panel as needing a new frame.
+        events.activationChanged.on(wait = true) { _, _ -> networkPanel.renderer.requestFrame() }
         events.colorChanged.on(Dispatchers.Swing) { updateColor() }
         events.labelChanged.on(Dispatchers.Swing) { _, _ ->
             updateTextLabel()
@@ -180,23 +182,22 @@ class NeuronNode(net: NetworkPanel?, val neuron: Neuron) : ScreenElement(net), P
      * Determine what font to use for this neuron based in its activation level.
      * TODO: Redo by scaling the text object.
      */
-    private fun updateText() {
+    private fun updateText(act: Double = neuron.activation) {
         if (!isTextVisible) {
             return
         }
         // Todo: a bit of a performance drain.
-        val act = neuron.activation
         activationText.scale = 1.0
         setActivationTextPosition()
         priorityText.scale = 1.0
         setPriorityTextPosition()
         priorityText.text = "" + neuron.updatePriority // todo: respond
         // to listener
-        if (java.lang.Double.isNaN(neuron.activation)) {
+        if (java.lang.Double.isNaN(act)) {
             activationText.text = "NaN"
             activationText.scale(.7)
             activationText.translate(-4.0, 3.0)
-        } else if (act > 0 && neuron.activation < 1) { // Between 0 and
+        } else if (act > 0 && act < 1) { // Between 0 and
             // 1
             activationText.font = NEURON_FONT_BOLD
             var text = Utils.round(act, 1)
@@ -273,11 +274,13 @@ class NeuronNode(net: NetworkPanel?, val neuron: Neuron) : ScreenElement(net), P
     /**
      * Sets the color of this neuron based on its activation level.
      */
-    private fun updateColor() {
-        if (neuron.isSpike) {
+    private fun updateColor(
+        activation: Double = neuron.updateRule.getGraphicalValue(neuron),
+        spike: Boolean = neuron.isSpike
+    ) {
+        if (spike) {
             return
         }
-        val activation = neuron.updateRule.getGraphicalValue(neuron)
         // Force to blank if 0 (or close to it)
         val gLow = neuron.updateRule.graphicalLowerBound
         val gUp = neuron.updateRule.graphicalUpperBound
@@ -314,9 +317,9 @@ class NeuronNode(net: NetworkPanel?, val neuron: Neuron) : ScreenElement(net), P
     /**
      * When spiking change the color of the line around the node.
      */
-    private fun updateSpikeColor() {
+    private fun updateSpikeColor(spike: Boolean = neuron.isSpike) {
         if (!customStrokeColor) {
-            if (neuron.isSpike) {
+            if (spike) {
                 mainShape.strokePaint = spikingColor
                 mainShape.paint = spikingColor
             } else {
@@ -327,6 +330,15 @@ class NeuronNode(net: NetworkPanel?, val neuron: Neuron) : ScreenElement(net), P
         }
     }
 
+    /**
+     * Show neuron state captured by the [NetworkRenderer].
+     */
+    fun applyState(activation: Double, graphicalValue: Double, spike: Boolean) {
+        updateSpikeColor(spike)
+        updateColor(graphicalValue, spike)
+        updateText(activation)
+    }
+
     /**
      * Update the text label.
      */
@@ -198,7 +198,7 @@ class DeepNet(
         } else {
             outputs = Matrix(outputSize(), 1)
         }
-        events.updated.fireAndForget()
+        network.fireUpdated(this)
         inputs.mul(0.0) // clear inputs
     }
 
@@ -23,6 +23,7 @@ import org.simbrain.network.core.Synapse
 import org.simbrain.network.core.SynapseUpdateRule
 import org.simbrain.network.gui.dialogs.NetworkPreferences.defaultLearningRate
 import org.simbrain.network.matrix.NeuronArray
+import org.simbrain.network.matrix.SparseWeightMatrix
 import org.simbrain.network.matrix.WeightMatrix
 import org.simbrain.network.util.EmptyMatrixData
 import org.simbrain.network.util.EmptyScalarData
@@ -76,6 +77,16 @@ class OjaRule : SynapseUpdateRule<EmptyScalarData, EmptyMatrixData>() {
             val hebbTerm = output.mt(input)
             val weightDecayTerm = wm.broadcastMultiply(output)
             wm.add(hebbTerm.sub(weightDecayTerm).mul(learningRate))
+        } else if (connector is SparseWeightMatrix) {
+            // Same update for existing entries only
+            val input = connector.getSource().outputs
+            val output = connector.getTarget().outputs
+            val values = connector.values
+            for (i in 0 until connector.numRows) {
+                for (k in connector.rowStart[i] until connector.rowStart[i + 1]) {
+                    values[k] += learningRate * (output[i, 0] * input[connector.columns[k], 0] - values[k] * output[i, 0])
+                }
+            }
         }
     }
 }
\ No newline at end of file
@@ -61,7 +61,7 @@ class SmileClassifier(
         classifier.apply {
             fit(trainingData.featureVectors, trainingData.getIntegerTargets())
         }
-        events.updated.fireAndForget()
+        network.fireUpdated(this)
     }
 
     /**
@@ -80,7 +80,7 @@ class SmileClassifier(
                 }
             }
         }
-        events.updated.fireAndForget()
+        network.fireUpdated(this)
         inputs.mul(0.0) // clear inputs
     }
 
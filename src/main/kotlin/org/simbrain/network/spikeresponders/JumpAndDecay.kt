@@ -21,6 +21,7 @@ package org.simbrain.network.spikeresponders
 import org.simbrain.network.core.Connector
 import org.simbrain.network.core.Synapse
 import org.simbrain.network.matrix.NeuronArray
+import org.simbrain.network.matrix.SparseWeightMatrix
 import org.simbrain.network.matrix.WeightMatrix
 import org.simbrain.network.synapse_update_rules.spikeresponders.SpikeResponder
 import org.simbrain.network.util.MatrixDataHolder
@@ -74,9 +75,18 @@ class JumpAndDecay : SpikeResponder() {
     }
 
     override fun apply(conn: Connector, responderData: MatrixDataHolder) {
-        val wm = conn.let { if (it is WeightMatrix) it else return }
         val na = conn.source.let { if (it is NeuronArray) it else return }
         val spikeData = na.dataHolder.let { if (it is SpikingMatrixData) it else return }
+        if (conn is SparseWeightMatrix) {
+            if (na.updateRule.isSpikingRule) {
+                val psrs = conn.psrs
+                for (k in 0 until conn.numEntries) {
+                    psrs[k] = jumpAndDecay(spikeData.spikes[conn.columns[k]], psrs[k], conn.values[k], na.network.timeStep)
+                }
+            }
+            return
+        }
+        val wm = conn.let { if (it is WeightMatrix) it else return }
         if (na.updateRule.isSpikingRule) {
             for (i in 0 until wm.weightMatrix.nrow()) {
                 for (j in 0 until wm.weightMatrix.ncol()) {
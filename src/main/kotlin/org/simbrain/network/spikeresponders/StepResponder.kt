@@ -21,6 +21,7 @@ package org.simbrain.network.spikeresponders
 import org.simbrain.network.core.Connector
 import org.simbrain.network.core.Synapse
 import org.simbrain.network.matrix.NeuronArray
+import org.simbrain.network.matrix.SparseWeightMatrix
 import org.simbrain.network.matrix.WeightMatrix
 import org.simbrain.network.synapse_update_rules.spikeresponders.SpikeResponder
 import org.simbrain.network.util.MatrixDataHolder
@@ -53,10 +54,29 @@ class StepResponder(
 ) : SpikeResponder() {
 
     override fun apply(conn: Connector, data: MatrixDataHolder) {
-        val wm = conn.let { if (it is WeightMatrix) it else return }
         val na = conn.source.let { if (it is NeuronArray) it else return }
         val stepResponseData = data.let { if (it is StepMatrixData) it else return }
         val spikeData = na.dataHolder.let { if (it is SpikingMatrixData) it else return }
+        if (conn is SparseWeightMatrix) {
+            if (na.updateRule.isSpikingRule) {
+                // Sparse matrices have one counter column per entry
+                val counters = stepResponseData.counterMatrix
+                val psrs = conn.psrs
+                for (k in 0 until conn.numEntries) {
+                    if (spikeData.spikes[conn.columns[k]]) {
+                        counters[0, k] = responseDuration.toDouble()
+                        psrs[k] = responseHeight * conn.values[k]
+                    } else {
+                        counters[0, k] = maxOf(counters[0, k] - 1, 0.0)
+                    }
+                    if (counters[0, k] <= 0) {
+                        psrs[k] = 0.0
+                    }
+                }
+            }
+            return
+        }
+        val wm = conn.let { if (it is WeightMatrix) it else return }
         if (na.updateRule.isSpikingRule) {
             spikeData.spikes.forEachIndexed { col, spiked ->
                 if (spiked) {
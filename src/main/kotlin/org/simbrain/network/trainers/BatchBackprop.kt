@@ -0,0 +1,164 @@
+package org.simbrain.network.trainers
+
+import org.simbrain.network.matrix.WeightMatrix
+import org.simbrain.network.neuron_update_rules.interfaces.DifferentiableUpdateRule
+import org.simbrain.network.util.BiasedMatrixData
+import smile.math.blas.Transpose.NO_TRANSPOSE
+import smile.math.blas.Transpose.TRANSPOSE
+import smile.math.matrix.Matrix
+import kotlin.math.min
+
+/**
+ * Backprop through a chain of weight matrices (as in [List.backpropError]) on many rows of a dataset at once.
+ *
+ * Rows are pushed through the network together as the columns of activation matrices, so each layer is updated with a
+ * single matrix-matrix product (a BLAS gemm call) rather than one matrix-vector product and update event per row. The
+ * network's own neuron arrays are not updated; activations are computed directly from the update rules using
+ * [DifferentiableUpdateRule.applyToBatch] and derivatives are taken at the net input, biases included.
+ *
+ * Weight and bias changes are summed over all rows of a batch and applied at the end, so every row sees the same
+ * weights. Large batches are processed in chunks of at most [maxChunkSize] rows. Buffers for each chunk size are
+ * kept between calls.
+ */
+class BatchBackprop(val weightMatrices: List<WeightMatrix>, val maxChunkSize: Int = 1024) {
+
+    /**
+     * Neuron arrays from input to output.
+     */
+    private val layers = listOf(weightMatrices.first().src) + weightMatrices.map { it.tar }
+
+    private val weightGradients = weightMatrices.map { Matrix(it.tar.size(), it.src.size()) }
+
+    private val biasGradients = weightMatrices.map { Matrix(it.tar.size(), 1) }
+
+    private val buffers = HashMap<Int, Buffers>()
+
+    /**
+     * Matrices for one chunk of rows, with one column per row.
+     */
+    private inner class Buffers(size: Int) {
+
+        /**
+         * Activations of each layer, beginning with the inputs.
+         */
+        val activations = layers.map { Matrix(it.size(), size) }
+
+        /**
+         * Net inputs of each non-input layer, which are replaced by their derivatives during the backward pass.
+         */
+        val netInputs = weightMatrices.map { Matrix(it.tar.size(), size) }
+
+        /**
+         * Errors of each layer. Not used for the input layer.
+         */
+        val errors = layers.map { Matrix(it.size(), size) }
+    }
+
+    /**
+     * True if all non-input layers can be updated in batches.
+     */
+    val isSupported get() = layers.drop(1).all { it.updateRule is DifferentiableUpdateRule }
+
+    /**
+     * Train on the given rows of a dataset, rows[from until to], as one batch with the given learning rate. Returns the
+     * summed squared error over the batch before training, or null if the update rules of the network do not support
+     * batches, in which case nothing is changed.
+     */
+    fun train(inputs: Matrix, targets: Matrix, rows: IntArray, from: Int, to: Int, epsilon: Double): Double? {
+        if (!isSupported) {
+            return null
+        }
+        var error = 0.0
+        var start = from
+        while (start < to) {
+            val size = min(maxChunkSize, to - start)
+            val chunk = buffers.getOrPut(size) { Buffers(size) }
+            if (!forward(chunk, inputs, rows, start, size)) {
+                clearGradients()
+                return null
+            }
+            error += backward(chunk, targets, rows, start, size)
+            start += size
+        }
+        applyGradients(epsilon)
+        return error
+    }
+
+    private fun forward(chunk: Buffers, inputs: Matrix, rows: IntArray, start: Int, size: Int): Boolean {
+        val inputActivations = chunk.activations[0]
+        for (j in 0 until size) {
+            val row = rows[start + j]
+            for (i in 0 until inputActivations.nrow()) {
+                inputActivations[i, j] = inputs[row, i]
+            }
+        }
+        for ((k, wm) in weightMatrices.withIndex()) {
+            val netInput = chunk.netInputs[k]
+            netInput.mm(NO_TRANSPOSE, wm.weightMatrix, NO_TRANSPOSE, chunk.activations[k], 1.0, 0.0)
+            val biases = (wm.tar.dataHolder as? BiasedMatrixData)?.biases
+            val rule = wm.tar.updateRule as DifferentiableUpdateRule
+            if (!rule.applyToBatch(netInput, biases, chunk.activations[k + 1])) {
+                return false
+            }
+            if (biases != null) {
+                for (j in 0 until size) {
+                    for (i in 0 until netInput.nrow()) {
+                        netInput.add(i, j, biases[i, 0])
+                    }
+                }
+            }
+        }
+        return true
+    }
+
+    /**
+     * Backpropagate the error of a chunk, adding to the gradients, and return the summed squared error.
+     */
+    private fun backward(chunk: Buffers, targets: Matrix, rows: IntArray, start: Int, size: Int): Double {
+        var sse = 0.0
+        val outputs = chunk.activations.last()
+        val outputErrors = chunk.errors.last()
+        for (j in 0 until size) {
+            val row = rows[start + j]
+            for (i in 0 until outputs.nrow()) {
+                val error = targets[row, i] - outputs[i, j]
+                sse += error * error
+                outputErrors[i, j] = error
+            }
+        }
+        for (k in weightMatrices.indices.reversed()) {
+            val wm = weightMatrices[k]
+            val errors = chunk.errors[k + 1]
+            val derivatives = chunk.netInputs[k]
+            (wm.tar.updateRule as DifferentiableUpdateRule).getDerivative(derivatives, derivatives)
+            val biasGradient = biasGradients[k]
+            for (j in 0 until size) {
+                for (i in 0 until errors.nrow()) {
+                    val delta = errors[i, j] * derivatives[i, j]
+                    errors[i, j] = delta
+                    biasGradient.add(i, 0, delta)
+                }
+            }
+            weightGradients[k].mm(NO_TRANSPOSE, errors, TRANSPOSE, chunk.activations[k], 1.0, 1.0)
+            if (k > 0) {
+                chunk.errors[k].mm(TRANSPOSE, wm.weightMatrix, NO_TRANSPOSE, errors, 1.0, 0.0)
+            }
+        }
+        return sse
+    }
+
+    private fun applyGradients(epsilon: Double) {
+        for ((k, wm) in weightMatrices.withIndex()) {
+            wm.weightMatrix.add(weightGradients[k].mul(epsilon))
+            (wm.tar.dataHolder as? BiasedMatrixData)?.biases?.add(biasGradients[k].mul(epsilon))
+            wm.events.updated.fireAndForget()
+            wm.tar.events.updated.fireAndForget()
+        }
+        clearGradients()
+    }
+
+    private fun clearGradients() {
+        weightGradients.forEach { it.fill(0.0) }
+        biasGradients.forEach { it.fill(0.0) }
+    }
+}
@@ -21,6 +21,7 @@ import org.simbrain.network.subnetworks.SRNNetwork
 import org.simbrain.util.UserParameter
 import org.simbrain.util.propertyeditor.EditableObject
 import org.simbrain.util.rowVectorTransposed
+import kotlin.math.min
 import kotlin.random.Random
 
 
@@ -37,6 +38,13 @@ abstract class IterableTrainer2(val net: Trainable2): EditableObject {
     @UserParameter(label = "Update type", order = 1)
     var updateType = UpdateMethod.STOCHASTIC
 
+    @UserParameter(label = "Batch size", description = "Rows per batch when using mini-batch updates", minimumValue = 1.0, order = 2)
+    var batchSize = 32
+        set(value) {
+            require(value > 0) { "Batch size must be positive" }
+            field = value
+        }
+
     var iteration = 0
 
     var error = 0.0
@@ -71,11 +79,14 @@ abstract class IterableTrainer2(val net: Trainable2): EditableObject {
         if (updateType == UpdateMethod.STOCHASTIC) {
             trainRow(Random.nextInt(net.trainingSet.inputs.nrow()))
         } else if (updateType == UpdateMethod.EPOCH) {
-            // TODO: Batch updating
+            val rows = IntArray(net.trainingSet.size) { it }
+            error = trainBatch(rows, 0, rows.size) ?: trainRows(rows, 0, rows.size)
+        } else if (updateType == UpdateMethod.MINI_BATCH) {
+            val rows = IntArray(net.trainingSet.size) { it }.apply { shuffle() }
             var totalError = 0.0
-            for (i in 0 until net.trainingSet.size) {
-                trainRow(i)
-                totalError += error
+            for (start in rows.indices step batchSize) {
+                val end = min(start + batchSize, rows.size)
+                totalError += trainBatch(rows, start, end) ?: trainRows(rows, start, end)
             }
             error = totalError
         }
@@ -84,6 +95,21 @@ abstract class IterableTrainer2(val net: Trainable2): EditableObject {
 
     abstract fun trainRow(rowNum: Int)
 
+    /**
+     * Train on rows[from until to] of the training set as one batch, and return the summed error. Returns null if
+     * batches are not supported, in which case the rows are trained one at a time.
+     */
+    open fun trainBatch(rows: IntArray, from: Int, to: Int): Double? = null
+
+    private fun trainRows(rows: IntArray, from: Int, to: Int): Double {
+        var totalError = 0.0
+        for (i in from until to) {
+            trainRow(rows[i])
+            totalError += error
+        }
+        return totalError
+    }
+
     open fun applyInputs(rowNum: Int) {
         net.inputLayer.activations = net.trainingSet.inputs.rowVectorTransposed(rowNum)
         net.update()
@@ -94,6 +120,7 @@ abstract class IterableTrainer2(val net: Trainable2): EditableObject {
     // TODO: Better name?
     enum class UpdateMethod {
         EPOCH { override fun toString() = "Epoch (whole dataset per iteration)" },
+        MINI_BATCH { override fun toString() = "Mini-batch (shuffled batches of the dataset per iteration)" },
         STOCHASTIC { override fun toString() = "Stochastic (random row per iteration)" },
         SINGLE { override fun toString() = "Single (one row per iteration)" }
     }
@@ -124,6 +151,8 @@ class LMSTrainer2(val lmsNet: LMSNetwork) : IterableTrainer2(lmsNet) {
 
 class BackpropTrainer2(val bp: BackpropNetwork) : IterableTrainer2(bp) {
 
+    private val batchBackprop by lazy { BatchBackprop(bp.wmList) }
+
     override fun trainRow(rowNum: Int) {
         bp.inputLayer.setActivations(bp.trainingSet.inputs.row(rowNum))
         val targetVec = bp.trainingSet.targets.rowVectorTransposed(rowNum)
@@ -131,6 +160,10 @@ class BackpropTrainer2(val bp: BackpropNetwork) : IterableTrainer2(bp) {
         error = bp.wmList.backpropError(targetVec)
     }
 
+    override fun trainBatch(rows: IntArray, from: Int, to: Int): Double? {
+        return batchBackprop.train(bp.trainingSet.inputs, bp.trainingSet.targets, rows, from, to, learningRate)
+    }
+
     override fun randomize() {
         bp.randomize()
     }
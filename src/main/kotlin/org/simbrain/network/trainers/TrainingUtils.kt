@@ -168,18 +168,19 @@ fun WeightMatrixTree.backpropError(targetValues: Matrix, epsilon: Double = .0001
     targetValues.validateSameShape(outputWeightLayer.tar.outputs)
 
     val error = outputWeightLayer.tar.outputs sse targetValues
-    var errorVectors: Map<NeuronArray, Matrix> = mapOf(outputWeightLayer.tar to outputWeightLayer.tar.getError(targetValues))
-    // TODO: Creating a map every iteration is a potential performance drain.
-    tree.reversed().forEach { wms ->
-        errorVectors = wms.associate { wm ->
-            val tar = wm.tar
-            val errorVector = errorVectors[tar]!!
+    var errorVectors = currentErrors.apply { clear() }
+    var nextErrorVectors = nextErrors
+    errorVectors[outputWeightLayer.tar] = outputWeightLayer.tar.getError(targetValues)
+    for (i in tree.indices.reversed()) {
+        nextErrorVectors.clear()
+        for (wm in tree[i]) {
+            val errorVector = errorVectors[wm.tar]!!
             val deriv = (wm.tar.updateRule as DifferentiableUpdateRule).getDerivative(wm.tar.inputs)
             errorVector.mul(deriv)
             wm.tar.updateBiases(errorVector, epsilon)
-            wm.src to wm.backpropError(errorVector, epsilon)
+            nextErrorVectors[wm.src] = wm.backpropError(errorVector, epsilon)
         }
-
+        errorVectors = nextErrorVectors.also { nextErrorVectors = errorVectors }
     }
     return error
 }
@@ -276,4 +277,11 @@ class WeightMatrixTree(start: List<Layer>, end: Layer) {
         .toList()
     val outputWeightLayer: WeightMatrix = tree.last().first()
 
+    /**
+     * Error vectors of the layers on either side of the weight layer being backpropagated, reused between calls to
+     * [backpropError].
+     */
+    internal val currentErrors = HashMap<NeuronArray, Matrix>()
+    internal val nextErrors = HashMap<NeuronArray, Matrix>()
+
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package org.simbrain.network.update_actions
+
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.SpikePropagator
+import org.simbrain.workspace.updater.UpdateAction
+
+/**
+ * Buffered update in which spikes between loose spiking neurons are propagated as events (see [SpikePropagator]).
+ * Produces the same results as [BufferedUpdate], apart from STDP between spikes, but is much faster for large,
+ * sparsely firing spiking networks.
+ */
+class EventDrivenUpdate(private val network: Network) : UpdateAction("Loose spiking neurons and synapses (event driven)", "Event-driven buffered update of loose spiking neurons") {
+    override suspend fun run() {
+        network.eventDrivenUpdate()
+    }
+}
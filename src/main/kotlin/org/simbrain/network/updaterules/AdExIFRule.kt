@@ -269,9 +269,10 @@ open class AdExIFRule : SpikingNeuronUpdateRule<AdexData, AdexMatrixData>(), Noi
 
     override fun apply(na: Layer, data: AdexMatrixData) {
         if (na is NeuronArray) {
+            val excitInputs = DoubleArray(na.inputSize())
+            val inhibInputs = DoubleArray(na.inputSize())
+            na.addSignedInputsTo(excitInputs, inhibInputs)
             for (i in 0 until na.size()) {
-                val excitInputs = na.excitatoryInputs
-                val inhibInputs = na.inhibitoryInputs
                 val (spiked, v, w) = adExRule(
                     na.activations.get(i, 0),
                     data.w.get(i),
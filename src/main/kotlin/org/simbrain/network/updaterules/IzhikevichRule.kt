@@ -18,14 +18,17 @@
  */
 package org.simbrain.network.updaterules
 
+import org.simbrain.network.core.Layer
 import org.simbrain.network.core.Neuron
 import org.simbrain.network.core.SpikingNeuronUpdateRule
+import org.simbrain.network.matrix.NeuronArray
 import org.simbrain.network.updaterules.interfaces.NoisyUpdateRule
 import org.simbrain.network.util.SpikingMatrixData
 import org.simbrain.network.util.SpikingScalarData
 import org.simbrain.util.UserParameter
 import org.simbrain.util.stats.ProbabilityDistribution
 import org.simbrain.util.stats.distributions.UniformRealDistribution
+import org.simbrain.workspace.Producible
 
 /**
  * **IzhikevichNeuron**. Default values correspond to "tonic spiking". TODO:
@@ -33,7 +36,7 @@ import org.simbrain.util.stats.distributions.UniformRealDistribution
  * different types. Students could just look it up, but this would be
  * faster/cooler. Just a thought.
  */
-class IzhikevichRule : SpikingNeuronUpdateRule<SpikingScalarData, SpikingMatrixData>(), NoisyUpdateRule {
+class IzhikevichRule : SpikingNeuronUpdateRule<SpikingScalarData, IzhikevichMatrixData>(), NoisyUpdateRule {
 
     private var recovery = 0.0
 
@@ -128,6 +131,38 @@ class IzhikevichRule : SpikingNeuronUpdateRule<SpikingScalarData, SpikingMatrixD
         neuron.activation = value
     }
 
+    override fun apply(na: Layer, data: IzhikevichMatrixData) {
+        if (na is NeuronArray) {
+            val timeStep = na.network.timeStep
+            val time = na.network.time
+            val activations = na.activations
+            val inputs = na.inputs
+            val recovery = data.recovery
+            for (i in 0 until na.size()) {
+                val activation = activations[i, 0]
+                var input = inputs[i, 0] + iBg
+                if (addNoise) {
+                    input += noiseGenerator.sampleDouble()
+                }
+                var u = recovery[i] + timeStep * (a * (b * activation - recovery[i]))
+                var value = activation + timeStep * (.04 * (activation * activation) + 5 * activation + 140 - u +
+                        input)
+                val spiked = value >= threshold
+                if (spiked) {
+                    value = c
+                    u += d
+                }
+                recovery[i] = u
+                data.setHasSpiked(i, spiked, time)
+                activations[i, 0] = value
+            }
+        }
+    }
+
+    override fun createMatrixData(size: Int): IzhikevichMatrixData {
+        return IzhikevichMatrixData(size)
+    }
+
     override fun getRandomValue(): Double {
         // Equal chance of spiking or not spiking, taking on any value between
         // the resting potential and the threshold if not.
@@ -154,4 +189,11 @@ class IzhikevichRule : SpikingNeuronUpdateRule<SpikingScalarData, SpikingMatrixD
     }
 }
 
-
+class IzhikevichMatrixData(size: Int) : SpikingMatrixData(size) {
+    @get:Producible
+    var recovery = DoubleArray(size)
+    override fun copy() = IzhikevichMatrixData(size).also {
+        commonCopy(it)
+        it.recovery = recovery.copyOf()
+    }
+}
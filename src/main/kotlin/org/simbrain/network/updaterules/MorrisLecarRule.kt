@@ -1,18 +1,21 @@
 package org.simbrain.network.updaterules
 
+import org.simbrain.network.core.Layer
 import org.simbrain.network.core.Neuron
 import org.simbrain.network.core.SpikingNeuronUpdateRule
+import org.simbrain.network.matrix.NeuronArray
 import org.simbrain.network.updaterules.interfaces.NoisyUpdateRule
 import org.simbrain.network.util.SpikingMatrixData
 import org.simbrain.network.util.SpikingScalarData
 import org.simbrain.util.UserParameter
 import org.simbrain.util.stats.ProbabilityDistribution
 import org.simbrain.util.stats.distributions.NormalDistribution
+import org.simbrain.workspace.Producible
 
 /**
  * @author Zoë Tosi
  */
-class MorrisLecarRule : SpikingNeuronUpdateRule<MorrisLecarData, SpikingMatrixData>(), NoisyUpdateRule {
+class MorrisLecarRule : SpikingNeuronUpdateRule<MorrisLecarData, MorrisLecarMatrixData>(), NoisyUpdateRule {
     /**
      * Calcium channel conductance (micro Siemens/cm^2).
      */
@@ -208,6 +211,28 @@ class MorrisLecarRule : SpikingNeuronUpdateRule<MorrisLecarData, SpikingMatrixDa
         neuron.activation = vMembrane
     }
 
+    override fun apply(na: Layer, data: MorrisLecarMatrixData) {
+        if (na is NeuronArray) {
+            val dt = na.network.timeStep
+            val time = na.network.time
+            val activations = na.activations
+            val inputs = na.inputs
+            val w_K = data.w_K
+            for (i in 0 until na.size()) {
+                val i_syn = inputs[i, 0]
+                var vMembrane = activations[i, 0]
+                val dVdt = dVdt(vMembrane, i_syn, w_K[i])
+                val dWdt = dWdt(vMembrane, w_K[i])
+                val vmFut = vMembrane + dt * dVdt
+                val wKFut = w_K[i] + dt * dWdt
+                vMembrane = vMembrane + dt / 2 * (dVdt + dVdt(vmFut, i_syn, w_K[i]))
+                w_K[i] = w_K[i] + dt / 2 * (dWdt + dWdt(vMembrane, wKFut))
+                data.setHasSpiked(i, vMembrane > threshold, time)
+                activations[i, 0] = vMembrane
+            }
+        }
+    }
+
     private fun dVdt(vMembrane: Double, i_syn: Double, w_K: Double): Double {
         val i_Ca = g_Ca * membraneFunction(vMembrane) * (vMembrane - vRest_Ca)
         val i_K = g_K * w_K * (vMembrane - vRest_k)
@@ -228,6 +253,10 @@ class MorrisLecarRule : SpikingNeuronUpdateRule<MorrisLecarData, SpikingMatrixDa
         return MorrisLecarData()
     }
 
+    override fun createMatrixData(size: Int): MorrisLecarMatrixData {
+        return MorrisLecarMatrixData(size)
+    }
+
     private fun membraneFunction(vMembrane: Double): Double {
         return 0.5 * (1 + Math.tanh((vMembrane - v_m1) / v_m2))
     }
@@ -389,4 +418,13 @@ class MorrisLecarData(
     override fun copy(): MorrisLecarData {
         return MorrisLecarData(w_K)
     }
-}
\ No newline at end of file
+}
+
+class MorrisLecarMatrixData(size: Int) : SpikingMatrixData(size) {
+    @get:Producible
+    var w_K = DoubleArray(size)
+    override fun copy() = MorrisLecarMatrixData(size).also {
+        commonCopy(it)
+        it.w_K = w_K.copyOf()
+    }
+}
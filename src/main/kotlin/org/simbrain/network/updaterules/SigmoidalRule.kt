@@ -26,6 +26,7 @@ import org.simbrain.network.neuron_update_rules.AbstractSigmoidalRule
 import org.simbrain.network.util.BiasedMatrixData
 import org.simbrain.network.util.BiasedScalarData
 import org.simbrain.util.add
+import smile.math.matrix.Matrix
 
 /**
  * Discrete sigmoidal provides various implementations of a standard sigmoidal neuron.
@@ -49,11 +50,28 @@ class SigmoidalRule : AbstractSigmoidalRule() {
 
     override fun apply(arr: Layer, data: BiasedMatrixData) {
         val array = arr as NeuronArray
-        val weightedInputs = array.inputs.add(data.biases)
-        if (addNoise) {
-            weightedInputs.add(noiseGenerator.sampleDouble(array.size()))
+        val inputs = array.inputs
+        val activations = array.activations
+        for (i in 0 until array.size()) {
+            var weightedInput = inputs[i, 0] + data.biases[i, 0]
+            if (addNoise) {
+                weightedInput += noiseGenerator.sampleDouble()
+            }
+            activations[i, 0] = sFunction.valueOf(weightedInput, lowerBound, upperBound, slope)
+        }
+    }
+
+    override fun applyToBatch(inputs: Matrix, biases: Matrix?, outputs: Matrix): Boolean {
+        for (j in 0 until inputs.ncol()) {
+            for (i in 0 until inputs.nrow()) {
+                var weightedInput = inputs[i, j] + (biases?.get(i, 0) ?: 0.0)
+                if (addNoise) {
+                    weightedInput += noiseGenerator.sampleDouble()
+                }
+                outputs[i, j] = sFunction.valueOf(weightedInput, upperBound, lowerBound, slope)
+            }
         }
-        array.activations = sFunction.valueOf(weightedInputs, lowerBound, upperBound, slope)
+        return true
     }
 
     override fun deepCopy(): SigmoidalRule {
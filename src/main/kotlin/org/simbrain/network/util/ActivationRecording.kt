@@ -0,0 +1,445 @@
+package org.simbrain.network.util
+
+import java.io.Closeable
+import java.io.File
+import java.io.IOException
+import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.nio.channels.Channels
+import java.nio.channels.FileChannel
+import java.nio.channels.WritableByteChannel
+import java.nio.file.StandardOpenOption.*
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.zip.DataFormatException
+import java.util.zip.Deflater
+import java.util.zip.Inflater
+
+/**
+ * How activations are stored in a binary recording.
+ */
+enum class RecordingFormat {
+    /**
+     * All activations of each step as 4 byte floats.
+     */
+    FLOAT32,
+
+    /**
+     * All activations of each step as 8 byte doubles.
+     */
+    FLOAT64,
+
+    /**
+     * Only (time, neuron index) pairs for spikes.
+     */
+    SPIKES
+}
+
+private const val MAGIC = 0x53425243 // "SBRC"
+private const val VERSION = 1
+private const val FILE_HEADER_BYTES = 16
+private const val CHUNK_HEADER_BYTES = 32
+
+/**
+ * Writes activations or spikes to a compressed binary file. Values are buffered in chunks on the calling thread, and
+ * full chunks are compressed and written by a background thread, so recording a step costs little more than copying
+ * the activations. A small pool of chunks is reused; if the writer falls behind, recording blocks until a chunk is
+ * free rather than allocating more.
+ *
+ * The file has a 16 byte header (magic number, version, format, number of neurons) followed by chunks. Each chunk has
+ * a 32 byte header (number of steps or spikes, raw and compressed sizes, first and last time) followed by deflated
+ * data: the times, then either the activations of each step or the index of each spike. Use
+ * [ActivationRecordingReader] to read it.
+ *
+ * If writing fails, the error is thrown by the next call that records values, and by [close].
+ */
+class ActivationRecordingWriter private constructor(
+    private val channel: WritableByteChannel,
+    val numNeurons: Int,
+    val format: RecordingFormat,
+    /**
+     * Steps per chunk for activations, or spikes per chunk for spikes.
+     */
+    val chunkSize: Int,
+) : Closeable {
+
+    @JvmOverloads
+    @Throws(IOException::class)
+    constructor(
+        file: File,
+        numNeurons: Int,
+        format: RecordingFormat,
+        chunkSize: Int = defaultChunkSize(numNeurons, format)
+    ) : this(FileChannel.open(file.toPath(), CREATE, WRITE, TRUNCATE_EXISTING), numNeurons, format, chunkSize)
+
+    /**
+     * Write the recording to a stream, which is closed when the recording is closed.
+     */
+    @JvmOverloads
+    @Throws(IOException::class)
+    constructor(
+        output: OutputStream,
+        numNeurons: Int,
+        format: RecordingFormat,
+        chunkSize: Int = defaultChunkSize(numNeurons, format)
+    ) : this(Channels.newChannel(output), numNeurons, format, chunkSize)
+
+    private inner class Chunk(capacity: Int) {
+        val times = DoubleArray(capacity)
+        val values = DoubleArray(if (format == RecordingFormat.SPIKES) 0 else times.size * numNeurons)
+        val indices = IntArray(if (format == RecordingFormat.SPIKES) times.size else 0)
+        var count = 0
+    }
+
+    private val free = ArrayBlockingQueue<Chunk>(3)
+
+    private val full = ArrayBlockingQueue<Chunk>(3)
+
+    /**
+     * Chunk used to signal the writer thread to finish.
+     */
+    private val endOfStream = Chunk(0)
+
+    private var current: Chunk
+
+    @Volatile
+    private var error: IOException? = null
+
+    private var closed = false
+
+    private val writerThread: Thread
+
+    init {
+        repeat(3) { free.add(Chunk(chunkSize.coerceAtLeast(1))) }
+        current = free.take()
+        val header = ByteBuffer.allocate(FILE_HEADER_BYTES)
+            .putInt(MAGIC).putInt(VERSION).putInt(format.ordinal).putInt(numNeurons)
+        header.flip()
+        while (header.hasRemaining()) {
+            channel.write(header)
+        }
+        writerThread = Thread(::writeChunks, "Activation recording writer").apply {
+            isDaemon = true
+            start()
+        }
+    }
+
+    /**
+     * Record the activations of one step. Only for [RecordingFormat.FLOAT32] and [RecordingFormat.FLOAT64].
+     */
+    @Throws(IOException::class)
+    fun writeActivations(time: Double, activations: DoubleArray) {
+        check(format != RecordingFormat.SPIKES) { "Spike recordings can't hold activations" }
+        checkOpen()
+        val chunk = current
+        chunk.times[chunk.count] = time
+        System.arraycopy(activations, 0, chunk.values, chunk.count * numNeurons, numNeurons)
+        chunk.count++
+        if (chunk.count == chunk.times.size) {
+            submit()
+        }
+    }
+
+    /**
+     * Record the neurons that spiked at a given time: the first count entries of [spiking]. Only for
+     * [RecordingFormat.SPIKES].
+     */
+    @Throws(IOException::class)
+    fun writeSpikes(time: Double, spiking: IntArray, count: Int) {
+        check(format == RecordingFormat.SPIKES) { "Activation recordings can't hold spikes" }
+        checkOpen()
+        for (k in 0 until count) {
+            val chunk = current
+            chunk.times[chunk.count] = time
+            chunk.indices[chunk.count] = spiking[k]
+            chunk.count++
+            if (chunk.count == chunk.times.size) {
+                submit()
+            }
+        }
+    }
+
+    private fun checkOpen() {
+        check(!closed) { "Recording is closed" }
+        error?.let { throw it }
+    }
+
+    private fun submit() {
+        full.put(current)
+        current = free.take()
+        error?.let { throw it }
+    }
+
+    /**
+     * Write any buffered values and wait for the writer thread to finish.
+     */
+    @Throws(IOException::class)
+    override fun close() {
+        if (closed) {
+            return
+        }
+        closed = true
+        if (current.count > 0) {
+            full.put(current)
+        }
+        full.put(endOfStream)
+        writerThread.join()
+        channel.close()
+        error?.let { throw it }
+    }
+
+    private fun writeChunks() {
+        val valueBytes = when (format) {
+            RecordingFormat.FLOAT32 -> 4
+            RecordingFormat.FLOAT64 -> 8
+            RecordingFormat.SPIKES -> 4
+        }
+        val maxRaw = chunkSize.coerceAtLeast(1) *
+                (8 + valueBytes * (if (format == RecordingFormat.SPIKES) 1 else numNeurons))
+        val raw = ByteBuffer.allocate(maxRaw)
+        var compressed = ByteArray(maxRaw + maxRaw / 100 + 64)
+        val header = ByteBuffer.allocate(CHUNK_HEADER_BYTES)
+        val deflater = Deflater(Deflater.BEST_SPEED)
+        try {
+            while (true) {
+                val chunk = full.take()
+                if (chunk === endOfStream) {
+                    break
+                }
+                // After a failure, chunks are still recycled so that recording does not block and can report the error
+                if (error == null) {
+                    try {
+                        raw.clear()
+                        for (i in 0 until chunk.count) {
+                            raw.putDouble(chunk.times[i])
+                        }
+                        when (format) {
+                            RecordingFormat.FLOAT32 -> for (i in 0 until chunk.count * numNeurons) {
+                                raw.putFloat(chunk.values[i].toFloat())
+                            }
+                            RecordingFormat.FLOAT64 -> for (i in 0 until chunk.count * numNeurons) {
+                                raw.putDouble(chunk.values[i])
+                            }
+                            RecordingFormat.SPIKES -> for (i in 0 until chunk.count) {
+                                raw.putInt(chunk.indices[i])
+                            }
+                        }
+                        deflater.reset()
+                        deflater.setInput(raw.array(), 0, raw.position())
+                        deflater.finish()
+                        var length = 0
+                        while (!deflater.finished()) {
+                            if (length == compressed.size) {
+                                compressed = compressed.copyOf(compressed.size * 2)
+                            }
+                            length += deflater.deflate(compressed, length, compressed.size - length)
+                        }
+                        header.clear()
+                        header.putInt(chunk.count).putInt(raw.position()).putInt(length).putInt(0)
+                            .putDouble(chunk.times[0]).putDouble(chunk.times[chunk.count - 1])
+                        header.flip()
+                        val data = ByteBuffer.wrap(compressed, 0, length)
+                        while (header.hasRemaining()) {
+                            channel.write(header)
+                        }
+                        while (data.hasRemaining()) {
+                            channel.write(data)
+                        }
+                    } catch (e: Throwable) {
+                        error = e as? IOException ?: IOException("Failed to write activation recording", e)
+                    }
+                }
+                chunk.count = 0
+                free.put(chunk)
+            }
+        } finally {
+            deflater.end()
+        }
+    }
+
+    companion object {
+        private fun defaultChunkSize(numNeurons: Int, format: RecordingFormat) =
+            if (format == RecordingFormat.SPIKES) 1 shl 16 else (1 shl 20) / numNeurons.coerceAtLeast(1)
+    }
+}
+
+/**
+ * Activations of some neurons over a range of steps. values[step][k] is the activation of the k'th requested neuron.
+ */
+class ActivationSlice(val times: DoubleArray, val values: Array<DoubleArray>)
+
+/**
+ * Spikes of some neurons over a range of time, in the order they were recorded.
+ */
+class SpikeSlice(val times: DoubleArray, val indices: IntArray)
+
+/**
+ * Reads files written by [ActivationRecordingWriter]. Only chunk headers are read when the file is opened; chunks are
+ * memory mapped and decompressed as needed, so slices of recordings much larger than memory can be read.
+ */
+class ActivationRecordingReader @Throws(IOException::class) constructor(file: File) : Closeable {
+
+    private val channel = FileChannel.open(file.toPath(), READ)
+
+    val format: RecordingFormat
+
+    val numNeurons: Int
+
+    private val chunkOffsets = ArrayList<Long>()
+    private val chunkCounts = ArrayList<Int>()
+    private val chunkFirstTimes = ArrayList<Double>()
+    private val chunkLastTimes = ArrayList<Double>()
+
+    /**
+     * Number of steps for activations, or number of spikes.
+     */
+    val size: Long
+
+    init {
+        val header = ByteBuffer.allocate(FILE_HEADER_BYTES)
+        readFully(header, 0)
+        header.flip()
+        if (header.int != MAGIC) {
+            throw IOException("Not an activation recording: $file")
+        }
+        val version = header.int
+        if (version != VERSION) {
+            throw IOException("Unsupported recording version $version")
+        }
+        format = RecordingFormat.values()[header.int]
+        numNeurons = header.int
+
+        var offset = FILE_HEADER_BYTES.toLong()
+        var total = 0L
+        val chunkHeader = ByteBuffer.allocate(CHUNK_HEADER_BYTES)
+        // A recording that was not closed may end with a partially written chunk, which is ignored
+        while (offset + CHUNK_HEADER_BYTES <= channel.size()) {
+            chunkHeader.clear()
+            readFully(chunkHeader, offset)
+            chunkHeader.flip()
+            val count = chunkHeader.int
+            chunkHeader.int
+            val compressedLength = chunkHeader.int
+            chunkHeader.int
+            if (offset + CHUNK_HEADER_BYTES + compressedLength > channel.size()) {
+                break
+            }
+            chunkOffsets.add(offset)
+            chunkCounts.add(count)
+            chunkFirstTimes.add(chunkHeader.double)
+            chunkLastTimes.add(chunkHeader.double)
+            total += count
+            offset += CHUNK_HEADER_BYTES + compressedLength
+        }
+        size = total
+    }
+
+    private fun readFully(buffer: ByteBuffer, position: Long) {
+        var read = 0
+        while (buffer.hasRemaining()) {
+            val n = channel.read(buffer, position + read)
+            if (n < 0) {
+                throw IOException("Unexpected end of recording")
+            }
+            read += n
+        }
+    }
+
+    /**
+     * Decompress the chunk at the given index.
+     */
+    private fun readChunk(index: Int): ByteBuffer {
+        val offset = chunkOffsets[index]
+        val header = channel.map(FileChannel.MapMode.READ_ONLY, offset, CHUNK_HEADER_BYTES.toLong())
+        header.int
+        val rawLength = header.int
+        val compressedLength = header.int
+        val data = channel.map(FileChannel.MapMode.READ_ONLY, offset + CHUNK_HEADER_BYTES, compressedLength.toLong())
+        val raw = ByteArray(rawLength)
+        val inflater = Inflater()
+        try {
+            inflater.setInput(data)
+            var length = 0
+            while (length < rawLength && !inflater.finished()) {
+                val n = inflater.inflate(raw, length, rawLength - length)
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw IOException("Truncated chunk in recording")
+                }
+                length += n
+            }
+        } catch (e: DataFormatException) {
+            throw IOException("Corrupt chunk in recording", e)
+        } finally {
+            inflater.end()
+        }
+        return ByteBuffer.wrap(raw)
+    }
+
+    private fun overlappingChunks(from: Double, to: Double) = chunkOffsets.indices.filter {
+        chunkLastTimes[it] >= from && chunkFirstTimes[it] <= to
+    }
+
+    /**
+     * Returns the activations of the given neurons (all by default) for steps with times in [from, to].
+     */
+    @JvmOverloads
+    fun readActivations(
+        from: Double = Double.NEGATIVE_INFINITY,
+        to: Double = Double.POSITIVE_INFINITY,
+        neurons: IntArray = IntArray(numNeurons) { it }
+    ): ActivationSlice {
+        check(format != RecordingFormat.SPIKES) { "Recording contains spikes" }
+        val valueBytes = if (format == RecordingFormat.FLOAT32) 4 else 8
+        val times = ArrayList<Double>()
+        val values = ArrayList<DoubleArray>()
+        for (c in overlappingChunks(from, to)) {
+            val raw = readChunk(c)
+            val count = chunkCounts[c]
+            val valuesStart = count * 8
+            for (step in 0 until count) {
+                val time = raw.getDouble(step * 8)
+                if (time < from || time > to) {
+                    continue
+                }
+                times.add(time)
+                val stepStart = valuesStart + step * numNeurons * valueBytes
+                values.add(DoubleArray(neurons.size) { k ->
+                    val position = stepStart + neurons[k] * valueBytes
+                    if (valueBytes == 4) raw.getFloat(position).toDouble() else raw.getDouble(position)
+                })
+            }
+        }
+        return ActivationSlice(times.toDoubleArray(), values.toTypedArray())
+    }
+
+    /**
+     * Returns the spikes of the given neurons (all by default) with times in [from, to].
+     */
+    @JvmOverloads
+    fun readSpikes(
+        from: Double = Double.NEGATIVE_INFINITY,
+        to: Double = Double.POSITIVE_INFINITY,
+        neurons: IntArray? = null
+    ): SpikeSlice {
+        check(format == RecordingFormat.SPIKES) { "Recording contains activations" }
+        val include = neurons?.let { BooleanArray(numNeurons).apply { it.forEach { i -> this[i] = true } } }
+        val times = ArrayList<Double>()
+        val indices = ArrayList<Int>()
+        for (c in overlappingChunks(from, to)) {
+            val raw = readChunk(c)
+            val count = chunkCounts[c]
+            for (k in 0 until count) {
+                val time = raw.getDouble(k * 8)
+                val index = raw.getInt(count * 8 + k * 4)
+                if (time >= from && time <= to && (include == null || include[index])) {
+                    times.add(time)
+                    indices.add(index)
+                }
+            }
+        }
+        return SpikeSlice(times.toDoubleArray(), indices.toIntArray())
+    }
+
+    override fun close() {
+        channel.close()
+    }
+}
@@ -19,7 +19,7 @@ object EmptyMatrixData : MatrixDataHolder {
     override fun toString(): String = ""
 }
 
-class BiasedMatrixData(var size: Int) : MatrixDataHolder {
+open class BiasedMatrixData(var size: Int) : MatrixDataHolder {
     @UserParameter(label = "Biases", description = "Biases for each neuron")
     var biases = Matrix(size, 1)
     override fun copy() = BiasedMatrixData(size).also {
@@ -62,6 +62,29 @@ class NakaMatrixData(var size: Int) : MatrixDataHolder {
     }
 }
 
+/**
+ * Biases along with the integrated net activations of continuous sigmoidal neurons, which are passed through the
+ * sigmoid to give their activations.
+ */
+class ContinuousSigmoidalMatrixData(size: Int) : BiasedMatrixData(size) {
+    var netActivations = DoubleArray(size)
+    override fun copy() = ContinuousSigmoidalMatrixData(size).also {
+        it.biases = biases.clone()
+        it.netActivations = netActivations.copyOf()
+    }
+}
+
+class HodgkinHuxleyMatrixData(var size: Int) : MatrixDataHolder {
+    var n = DoubleArray(size)
+    var m = DoubleArray(size)
+    var h = DoubleArray(size)
+    override fun copy() = HodgkinHuxleyMatrixData(size).also {
+        it.n = n.copyOf()
+        it.m = m.copyOf()
+        it.h = h.copyOf()
+    }
+}
+
 /**
  * Holders for scalar data used in scalar update rules, like [NeuronUpdateRule] and [SynapseUpdateRule].
  */
@@ -18,6 +18,11 @@ import java.util.function.Consumer
  *   A wait option on handlers can be used if the fire function that triggers it, should block, i.e. wait for the
  *   event handling to finish before continuing execution.
  *
+ *   Handlers with no dispatcher that are waited on are run inline, on the thread (or in the coroutine) that fires
+ *   the event, since the firing code has to wait for them anyway. If an event has no handlers, or only inline
+ *   non-suspending handlers, firing it does not create any coroutines. Events fired on every network update rely on
+ *   this.
+ *
  * For examples see [TrainerEvents2]
  */
 open class Events2: CoroutineScope {
@@ -26,11 +31,6 @@ open class Events2: CoroutineScope {
 
     override val coroutineContext = Dispatchers.Default + job
 
-    /**
-     * Associates events to their listeners
-     */
-    private val eventMapping = HashMap<EventObject, ConcurrentLinkedQueue<EventObjectHandler>>()
-
     enum class TimingMode {
         Throttle, Debounce
     }
@@ -48,20 +48,67 @@ open class Events2: CoroutineScope {
 
         private var job: Job? = null
 
+        /**
+         * Handlers registered on this event.
+         */
+        private val handlers = ConcurrentLinkedQueue<EventObjectHandler>()
+
+        /**
+         * Number of registered handlers. Checked before doing any work when the event is fired.
+         */
+        @Volatile
+        var listenerCount = 0
+            private set
+
+        val hasListeners get() = listenerCount > 0
+
+        /**
+         * True if every handler is a non-suspending inline handler (see [EventObjectHandler.isInline]), so that a
+         * blocking fire can call them directly without starting a coroutine.
+         */
+        @Volatile
+        private var allHandlersBlockingInline = true
+
+        private fun addHandler(eventObjectHandler: EventObjectHandler) {
+            synchronized(handlers) {
+                handlers.add(eventObjectHandler)
+                if (!eventObjectHandler.isInline || eventObjectHandler.blockingHandler == null) {
+                    allHandlersBlockingInline = false
+                }
+                listenerCount++
+            }
+        }
+
         protected fun onSuspendHelper(dispatcher: CoroutineDispatcher?, wait: Boolean, run: suspend (new: Any?, old: Any?) -> Unit) {
-            val eventObjectHandler = EventObjectHandler(dispatcher, wait, run)
-            eventMapping.getOrPut(this@EventObject) { ConcurrentLinkedQueue() }.add(eventObjectHandler)
+            addHandler(EventObjectHandler(dispatcher, wait, run))
         }
 
         protected fun onHelper(dispatcher: CoroutineDispatcher?, wait: Boolean, run: (new: Any?, old: Any?) -> Unit) {
-            val eventObjectHandler = EventObjectHandler(dispatcher, wait, run)
-            eventMapping.getOrPut(this@EventObject) { ConcurrentLinkedQueue() }.add(eventObjectHandler)
+            addHandler(EventObjectHandler(dispatcher, wait, run, blockingHandler = run))
         }
 
-        private suspend inline fun runAllHandlers(crossinline run: suspend (suspend (new: Any?, old: Any?) -> Unit) -> Unit) = eventMapping[this@EventObject]
-            ?.map { (dispatcher, wait, handler, stackTrace) ->
+        /**
+         * True if firing can skip coroutines entirely, because there is no throttling or debouncing and every handler
+         * can be called directly.
+         */
+        protected val canFireInline get() = interval == 0 && allHandlersBlockingInline
+
+        /**
+         * Call every handler directly on the current thread. Only valid when [canFireInline] is true.
+         */
+        protected fun fireInline(new: Any?, old: Any?) {
+            handlers.forEach { handler ->
+                runCatchingHandlerException { handler.blockingHandler!!(new, old) }
+            }
+        }
+
+        private suspend inline fun runAllHandlers(crossinline run: suspend (suspend (new: Any?, old: Any?) -> Unit) -> Unit) = handlers
+            .map { eventObjectHandler ->
+                val (dispatcher, wait, handler, stackTrace) = eventObjectHandler
                 try {
-                    if (dispatcher != null) {
+                    if (eventObjectHandler.isInline) {
+                        runCatchingHandlerException { run(handler) }
+                    } else if (dispatcher != null) {
                         launch(dispatcher) { run(handler) }.let { if (wait) withTimeout(60*1000) { it.join() } else it }
                     } else {
                         launch { run(handler) }.let { if (wait) withTimeout(60*1000) { it.join() } else it }
@@ -69,9 +116,12 @@ open class Events2: CoroutineScope {
                 } catch (e: TimeoutCancellationException) {
                     throw IllegalStateException("Event time out on dispatcher $dispatcher. Event handler created by ${stackTrace.contentDeepToString()}")
                 }
-            }?.filterIsInstance<Job>()
+            }.filterIsInstance<Job>()
 
         protected suspend fun fireAndSuspendHelper(run: suspend (suspend (new: Any?, old: Any?) -> Unit) -> Unit) {
+            if (!hasListeners) {
+                return
+            }
             val now = System.currentTimeMillis()
             if (interval == 0) {
                 runAllHandlers(run)
@@ -95,12 +145,30 @@ open class Events2: CoroutineScope {
         }
 
         protected fun batchFireAndSuspendHelper(new: Any?, old: Any?): Job {
-            val now = System.currentTimeMillis()
+            if (!hasListeners) {
+                return completedJob
+            }
             new?.let { batchNew.add(it) }
             old?.let { batchOld.add(it) }
+            return launchBatch()
+        }
+
+        /**
+         * Add a whole collection to the batch and run the handlers once for it.
+         */
+        protected fun batchFireAllAndSuspendHelper(new: Collection<Any?>): Job {
+            if (!hasListeners || new.isEmpty()) {
+                return completedJob
+            }
+            new.forEach { it?.let { batchNew.add(it) } }
+            return launchBatch()
+        }
+
+        private fun launchBatch(): Job {
+            val now = System.currentTimeMillis()
             if (interval == 0) {
                 return launch {
-                    runAllHandlers { handler -> handler(batchNew, batchOld) }?.joinAll()
+                    runAllHandlers { handler -> handler(batchNew, batchOld) }.joinAll()
                     batchNew.clear()
                     batchOld.clear()
                 }
@@ -109,7 +177,7 @@ open class Events2: CoroutineScope {
                 TimingMode.Throttle -> launch {
                     if (now >= intervalEndTime) {
                         intervalEndTime = now + interval
-                        runAllHandlers { handler -> handler(batchNew, batchOld) }?.joinAll()
+                        runAllHandlers { handler -> handler(batchNew, batchOld) }.joinAll()
                         batchNew.clear()
                         batchOld.clear()
                     }
@@ -118,7 +186,7 @@ open class Events2: CoroutineScope {
                     job?.cancel()
                     job = launch {
                         delay(interval.toLong())
-                        runAllHandlers { handler -> handler(batchNew, batchOld) }?.joinAll()
+                        runAllHandlers { handler -> handler(batchNew, batchOld) }.joinAll()
                         batchNew.clear()
                         batchOld.clear()
                     }
@@ -163,6 +231,13 @@ open class Events2: CoroutineScope {
          * Java fire and block. Fire event and wait for it to terminate before continuing.
          */
         fun fireAndBlock() {
+            if (!hasListeners) {
+                return
+            }
+            if (canFireInline) {
+                fireInline(null, null)
+                return
+            }
             runBlocking {
                 fire()
             }
@@ -193,6 +268,13 @@ open class Events2: CoroutineScope {
         suspend fun fire(new: T) = fireAndSuspendHelper { handler -> handler(new, null) }
 
         fun fireAndBlock(new: T) {
+            if (!hasListeners) {
+                return
+            }
+            if (canFireInline) {
+                fireInline(new, null)
+                return
+            }
             runBlocking {
                 fire(new)
             }
@@ -218,7 +300,15 @@ open class Events2: CoroutineScope {
 
         fun fire(new: T) = batchFireAndSuspendHelper(new, null)
 
+        /**
+         * Fire once for a whole collection, rather than once per item.
+         */
+        fun fireAll(new: Collection<T>) = batchFireAllAndSuspendHelper(new)
+
         fun fireAndBlock(new: T) {
+            if (!hasListeners) {
+                return
+            }
             runBlocking {
                 fire(new).join()
             }
@@ -249,6 +339,13 @@ open class Events2: CoroutineScope {
         suspend fun fire(old: T) = fireAndSuspendHelper { handler -> handler(null, old) }
 
         fun fireAndBlock(old: T) {
+            if (!hasListeners) {
+                return
+            }
+            if (canFireInline) {
+                fireInline(null, old)
+                return
+            }
             runBlocking {
                 fire(old)
             }
@@ -264,7 +361,7 @@ open class Events2: CoroutineScope {
 
         @Suppress("UNCHECKED_CAST")
 
-        fun on(dispatcher: CoroutineDispatcher? = null, wait: Boolean = false, handler: (new: T, old: T) -> Unit) = onSuspendHelper(dispatcher, wait) {
+        fun on(dispatcher: CoroutineDispatcher? = null, wait: Boolean = false, handler: (new: T, old: T) -> Unit) = onHelper(dispatcher, wait) {
                 new, old -> handler(new as T, old as T)
         }
 
@@ -280,6 +377,13 @@ open class Events2: CoroutineScope {
         suspend fun fire(new: T, old: T) = fireAndSuspendHelper { handler -> if (new != old) handler(new, old) }
 
         fun fireAndBlock(new: T, old: T) {
+            if (!hasListeners || new == old) {
+                return
+            }
+            if (canFireInline) {
+                fireInline(new, old)
+                return
+            }
             runBlocking {
                 fire(new, old)
             }
@@ -306,6 +410,9 @@ open class Events2: CoroutineScope {
         suspend fun fire(new: T, old: T) = batchFireAndSuspendHelper(new, old)
 
         fun fireAndBlock(new: T, old: T) {
+            if (!hasListeners) {
+                return
+            }
             runBlocking {
                 fire(new, old)
             }
@@ -318,8 +425,19 @@ data class EventObjectHandler(
     val dispatcher: CoroutineDispatcher?,
     val wait: Boolean,
     val handler: suspend (new: Any?, old: Any?) -> Unit,
-    val stackTraceElements: Array<StackTraceElement>? = if (useEventDebug) Thread.getAllStackTraces()[Thread.currentThread()] else null
+    val stackTraceElements: Array<StackTraceElement>? = if (useEventDebug) Thread.getAllStackTraces()[Thread.currentThread()] else null,
+    /**
+     * Non-suspending form of [handler], when the handler was registered with a non-suspending function.
+     */
+    val blockingHandler: ((new: Any?, old: Any?) -> Unit)? = null
 ) {
+
+    /**
+     * Handlers with no dispatcher that are waited on are run directly by the firing code rather than in a new
+     * coroutine, since the firing code would wait for them anyway.
+     */
+    val isInline get() = dispatcher == null && wait
+
     override fun equals(other: Any?): Boolean {
         if (this === other) return true
         if (javaClass != other?.javaClass) return false
@@ -341,6 +459,25 @@ data class EventObjectHandler(
     }
 }
 
+/**
+ * Returned by batch events fired with no handlers.
+ */
+private val completedJob: Job = Job().apply { complete() }
+
+/**
+ * Run an inline event handler. As with handlers launched in a coroutine, an exception in the handler is reported
+ * but not thrown to the code that fired the event.
+ */
+private inline fun runCatchingHandlerException(block: () -> Unit) {
+    try {
+        block()
+    } catch (e: CancellationException) {
+        throw e
+    } catch (e: Exception) {
+        e.printStackTrace()
+    }
+}
+
 /**
  * If set to true stack traces are printed out on event timeouts.
  */
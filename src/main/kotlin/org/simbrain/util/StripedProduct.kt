@@ -0,0 +1,88 @@
+package org.simbrain.util
+
+import smile.math.matrix.Matrix
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.RecursiveAction
+
+/**
+ * Matrices with fewer entries than this are multiplied on the calling thread by [StripedProduct].
+ */
+const val PARALLEL_PRODUCT_THRESHOLD = 1 shl 16
+
+/**
+ * Minimum number of rows in a stripe.
+ */
+private const val MIN_STRIPE_ROWS = 64
+
+/**
+ * Adds the product of a fixed size matrix and a column vector to another column vector in place. The rows of large
+ * matrices are split into stripes which are multiplied in parallel on the common fork-join pool.
+ *
+ * Stripe tasks and their buffers are created once and reused, so repeated products do not allocate. A product should
+ * only be used by one thread at a time.
+ */
+class StripedProduct(val rows: Int, val cols: Int) {
+
+    private val stripes: Array<Stripe>
+
+    private var matrix = Matrix(0, 0)
+    private var vector = Matrix(0, 0)
+    private var result = Matrix(0, 0)
+
+    init {
+        val numStripes = if (rows.toLong() * cols < PARALLEL_PRODUCT_THRESHOLD) {
+            1
+        } else {
+            minOf(ForkJoinPool.getCommonPoolParallelism() * 4, rows / MIN_STRIPE_ROWS).coerceAtLeast(1)
+        }
+        stripes = Array(numStripes) {
+            Stripe((rows.toLong() * it / numStripes).toInt(), (rows.toLong() * (it + 1) / numStripes).toInt())
+        }
+    }
+
+    val numStripes get() = stripes.size
+
+    /**
+     * Add matrix * vector to result, where matrix is rows x cols and vector and result are columns.
+     */
+    fun addProduct(matrix: Matrix, vector: Matrix, result: Matrix) {
+        require(matrix.nrow() == rows && matrix.ncol() == cols) {
+            "Matrix is ${matrix.nrow()}x${matrix.ncol()} but product is ${rows}x$cols"
+        }
+        require(vector.nrow() >= cols && result.nrow() >= rows) { "Vector or result too small" }
+        this.matrix = matrix
+        this.vector = vector
+        this.result = result
+        for (stripe in stripes) {
+            stripe.reinitialize()
+        }
+        for (k in 1 until stripes.size) {
+            stripes[k].fork()
+        }
+        stripes[0].invoke()
+        for (k in 1 until stripes.size) {
+            stripes[k].join()
+        }
+    }
+
+    /**
+     * Multiplies rows [start, end). Smile matrices are column major, so columns are traversed in the outer loop.
+     */
+    private inner class Stripe(val start: Int, val end: Int) : RecursiveAction() {
+
+        private val sums = DoubleArray(end - start)
+
+        override fun compute() {
+            sums.fill(0.0)
+            for (j in 0 until cols) {
+                val x = vector[j, 0]
+                for (i in start until end) {
+                    sums[i - start] += matrix[i, j] * x
+                }
+            }
+            for (i in start until end) {
+                result.add(i, 0, sums[i - start])
+            }
+        }
+    }
+}
@@ -39,6 +39,14 @@ abstract class DecayFunction(
     //     return 0.0
     // }
 
+    /**
+     * Distance beyond which [getScalingFactor] is below the given threshold, i.e. outside of which the object can be
+     * ignored. By default [dispersion] from the peak.
+     */
+    open fun cutoffDistance(threshold: Double): Double {
+        return peakDistance + dispersion
+    }
+
     /**
      * Distance from peak.
      *
@@ -1,7 +1,9 @@
 package org.simbrain.util.decayfunctions
 
 import kotlin.math.exp
+import kotlin.math.ln
 import kotlin.math.pow
+import kotlin.math.sqrt
 
 /**
  * Gaussian decay.
@@ -22,6 +24,13 @@ class GaussianDecayFunction @JvmOverloads constructor(dispersion: Double = 70.0)
         return exp(-.5 * ((distance - mean) / std).pow(2.0))
     }
 
+    override fun cutoffDistance(threshold: Double): Double {
+        if (threshold >= 1) {
+            return peakDistance
+        }
+        return peakDistance + dispersion / 2 * sqrt(-2 * ln(threshold))
+    }
+
     override fun copy(): GaussianDecayFunction {
         return GaussianDecayFunction(dispersion)
             .also {
@@ -1,10 +1,18 @@
 package org.simbrain.util.geneticalgorithm2
 
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.async
 import kotlinx.coroutines.awaitAll
 import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
 import org.simbrain.util.sampleWithReplacement
 import org.simbrain.workspace.Workspace
+import java.util.IdentityHashMap
+import kotlin.coroutines.AbstractCoroutineContextElement
+import kotlin.coroutines.CoroutineContext
+import kotlin.coroutines.coroutineContext
 import kotlin.math.roundToInt
 import kotlin.random.Random
 
@@ -45,44 +53,136 @@ class Chromosome2<P, G : Gene2<P>>(genes: List<G>) : MutableList<G> by ArrayList
     operator fun plus(other: Chromosome2<P, G>) = Chromosome2(buildList { addAll(this@Chromosome2); addAll(other); })
 }
 
+/**
+ * Coroutine context element holding the random number generator of the agent being evaluated by [evaluator2].
+ */
+class AgentRandom(val random: Random) : AbstractCoroutineContextElement(AgentRandom) {
+    companion object Key : CoroutineContext.Key<AgentRandom>
+}
+
+/**
+ * Random number generator for use in [EvoSim.eval]. Each agent gets its own stream, seeded from the evaluator's seed,
+ * the generation, and the agent's position in the population, so results do not depend on how many agents are
+ * evaluated at once. Outside of an evaluation this is the default generator.
+ */
+suspend fun agentRandom(): Random = coroutineContext[AgentRandom]?.random ?: Random
+
 /**
  * The main evolutionary code.
  * Assumes fitness, i.e. bigger numbers are better. For "error", the eval function should return a negative number.
  * Returns all simulations from the last generation of the run.
  *
- * @param populatingFunction initial evolutionary sim
+ * Runs are reproducible for a given seed, provided the sims get their randomness from their own seeded generators or
+ * from [agentRandom].
+ *
+ * @param populatingFunction initial evolutionary sim, given its index in the population
  * @param populationSize stays constant during the run
  * @param eliminationRatio how many sims to eliminate each generation.
  * @param stoppingFunction a function that determines when to stop running the sim. Generally check a generation
  * number and for fitness.
  * @param peek code to run each iteration, for example to update a progress bar
+ * @param seed master seed of the run. Each island's selection and each agent's [agentRandom] are derived from it.
+ * @param parallelism maximum number of sims evaluated at the same time, on [Dispatchers.Default]
+ * @param islands number of sub-populations that evolve separately apart from migration
+ * @param migrationInterval number of generations between migrations, when each island sends copies of its best sims
+ * to the next island, replacing its newest offspring
+ * @param migrationCount number of sims each island sends per migration
+ * @param reevaluateSurvivors if false, survivors are carried over as they are, with their fitness, instead of being
+ * copied and evaluated again. Only use with deterministic eval functions.
  */
 suspend fun evaluator2(
-
     populatingFunction: (index: Int) -> EvoSim,
     populationSize: Int,
     eliminationRatio: Double,
     stoppingFunction: GenerationFitnessPair.() -> Boolean,
     peek: GenerationFitnessPair.() -> Unit = {},
     seed: Long = Random.nextLong(),
-    random: Random = Random(seed)
+    parallelism: Int = Runtime.getRuntime().availableProcessors(),
+    islands: Int = 1,
+    migrationInterval: Int = 10,
+    migrationCount: Int = 1,
+    reevaluateSurvivors: Boolean = true
 ): List<EvoSim> = coroutineScope {
+    require(islands in 1..populationSize) { "Number of islands must be between 1 and the population size" }
+    val workers = Semaphore(parallelism)
+    // Generation 0 is never evaluated, so these do not overlap with the agents' seeds
+    val islandRandoms = List(islands) { island -> Random(agentSeed(seed, 0, island, 0)) }
     var generation = 0
-    var population = List(populationSize) { populatingFunction(generation) }
+    var nextIndex = 0
+    var populations = List(islands) { island ->
+        List(populationSize / islands + if (island < populationSize % islands) 1 else 0) {
+            populatingFunction(nextIndex++)
+        }
+    }
+    val knownFitness = IdentityHashMap<EvoSim, Double>()
     do {
         generation++
-        val fitnessScores = population.map { async { it.eval() } }.awaitAll()
-        val agentFitnessPair = (population zip fitnessScores).shuffled().sortedByDescending { it.second }
-        val eliminationCount = (agentFitnessPair.size * eliminationRatio).roundToInt()
-        val survivors = agentFitnessPair.take(populationSize - eliminationCount).map { (sim) -> sim }
-        population = (survivors.map { it.copy() } + survivors.sampleWithReplacement(random).take(eliminationCount)
-            .toList().map {
-                it.copy().apply {
-                    mutate()
+        val start = System.nanoTime()
+        val currentGeneration = generation
+        var evaluations = 0
+        val fitnessScores = populations.mapIndexed { island, population ->
+            population.mapIndexed { index, sim ->
+                val fitness = knownFitness[sim]
+                if (fitness != null) {
+                    CompletableDeferred(fitness)
+                } else {
+                    evaluations++
+                    val agentRandom = AgentRandom(Random(agentSeed(seed, currentGeneration, island, index)))
+                    async(Dispatchers.Default + agentRandom) { workers.withPermit { sim.eval() } }
                 }
-            })
-        val generationFitnessPair = GenerationFitnessPair(generation, agentFitnessPair.map { it.second })
+            }
+        }.map { it.awaitAll() }
+        knownFitness.clear()
+
+        val rankings = (populations zip fitnessScores).mapIndexed { island, (population, scores) ->
+            (population zip scores).shuffled(islandRandoms[island]).sortedByDescending { it.second }
+        }
+        populations = rankings.mapIndexed { island, ranked ->
+            val eliminationCount = (ranked.size * eliminationRatio).roundToInt()
+            val survivors = ranked.take(ranked.size - eliminationCount)
+            val carried = if (reevaluateSurvivors) {
+                survivors.map { (sim) -> sim.copy() }
+            } else {
+                survivors.map { (sim, fitness) -> sim.also { knownFitness[it] = fitness } }
+            }
+            carried + survivors.map { (sim) -> sim }.sampleWithReplacement(islandRandoms[island]).take(eliminationCount)
+                .toList().map {
+                    it.copy().apply {
+                        mutate()
+                    }
+                }
+        }
+        if (islands > 1 && generation % migrationInterval == 0) {
+            populations = populations.mapIndexed { island, population ->
+                val source = rankings[(island + islands - 1) % islands]
+                val migrants = source.take(minOf(migrationCount, population.size)).map { (sim) -> sim.copy() }
+                population.dropLast(migrants.size) + migrants
+            }
+            knownFitness.keys.retainAll(populations.flatten().toSet())
+        }
+
+        val generationFitnessPair = GenerationFitnessPair(
+            generation,
+            fitnessScores.flatten().sortedDescending(),
+            System.nanoTime() - start,
+            evaluations
+        )
         peek(generationFitnessPair)
     } while (!stoppingFunction(generationFitnessPair))
-    population
-}
\ No newline at end of file
+    populations.flatten()
+}
+
+/**
+ * Mixes the parts of an agent's identity into a seed, using the SplitMix64 finalizer so that nearby inputs give
+ * unrelated streams.
+ */
+private fun agentSeed(seed: Long, generation: Int, island: Int, index: Int): Long {
+    var z = seed
+    for (part in intArrayOf(generation, island, index)) {
+        z = (z xor part.toLong()) * -0x61c8864680b583ebL
+        z = (z xor (z ushr 30)) * -0x40a7b892e31b1a47L
+        z = (z xor (z ushr 27)) * -0x6b2fb644ecceee15L
+        z = z xor (z ushr 31)
+    }
+    return z
+}
@@ -46,7 +46,18 @@ suspend fun <P : NetworkModel, G : NetworkGene2<P>>
     return Chromosome2.map { it.express(this@express) }
 }
 
-data class GenerationFitnessPair(val generation: Int, val fitnessScores: List<Double>) {
+/**
+ * Fitness scores of a generation, best first, with the wall time taken to evaluate and reproduce it and the number of
+ * sims evaluated (sims carried over with a known fitness are not evaluated again).
+ */
+data class GenerationFitnessPair(
+    val generation: Int,
+    val fitnessScores: List<Double>,
+    val wallTimeNanos: Long = 0,
+    val evaluations: Int = fitnessScores.size
+) {
+
+    val evaluationsPerSecond get() = if (wallTimeNanos == 0L) 0.0 else evaluations * 1e9 / wallTimeNanos
 
     /**
      * Example: give it 5 and it returns the 5th percentile. 0 for the best.
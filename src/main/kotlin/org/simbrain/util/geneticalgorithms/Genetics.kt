@@ -2,6 +2,8 @@ package org.simbrain.util.geneticalgorithms
 
 import kotlinx.coroutines.*
 import kotlinx.coroutines.flow.*
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
 import org.simbrain.workspace.Workspace
 import java.util.*
 import kotlin.contracts.ExperimentalContracts
@@ -376,9 +378,21 @@ class Evaluator(agentBuilder: AgentBuilder) {
     }
 
     /**
-     * The initial, immutable list of agents.
+     * Maximum number of agents built and evaluated at the same time, on [Dispatchers.Default].
      */
-    private val initialPopulation = generateSequence(agentBuilder.copy()) { it.copy() }.take(populationSize).toList()
+    var parallelism: Int = Runtime.getRuntime().availableProcessors()
+
+    /**
+     * Seed for choosing which survivors reproduce.
+     */
+    var seed: Long = Random.nextLong()
+
+    /**
+     * The initial, immutable list of agents. Created when the run starts so that [populationSize] can be set first.
+     */
+    private val initialPopulation by lazy {
+        generateSequence(agentBuilder.copy()) { it.copy() }.take(populationSize).toList()
+    }
 
     /**
      * Condition in which to stop the evolution.
@@ -412,14 +426,19 @@ class Evaluator(agentBuilder: AgentBuilder) {
          * Begins yielding values when evolution.start() is called.
          */
         private var generations = sequence {
+            val random = Random(seed)
+            val workers = Semaphore(parallelism)
             var population = initialPopulation
             do {
-                val builderFitnessPairs = runBlocking {
+                // The sequence runs on the caller's thread, so evaluations are dispatched to a pool
+                val builderFitnessPairs = runBlocking(Dispatchers.Default) {
                     population.map {
                         async {
-                            val build = it.build()
-                            val score = build.eval()
-                            BuilderFitnessPair(it.copy(), score)
+                            workers.withPermit {
+                                val build = it.build()
+                                val score = build.eval()
+                                BuilderFitnessPair(it.copy(), score)
+                            }
                         }
                     }.awaitAll()
                         .sortedBy { if (optimizationMethod == OptimizationMethod.MAXIMIZE_FITNESS) -it.fitness else it.fitness }
@@ -431,7 +450,7 @@ class Evaluator(agentBuilder: AgentBuilder) {
 
                 // Concatenate (1) the most-fit survivors and (2) a random sample of mutated offspring of
                 // those survivors to replenish the population
-                population = survivors.map { it.agentBuilder } + (survivors.uniformSample()
+                population = survivors.map { it.agentBuilder } + (survivors.uniformSample(random)
                     .take(populationSize - survivors.size)
                     .map { it.agentBuilder.copy().apply { mutate() } }
                     .toList())
@@ -492,11 +511,9 @@ fun evaluator(agentBuilder: AgentBuilder, block: Evaluator.() -> Unit) =
  * Helper function to uniformly sample builder fitness papers. Used to choose survivors
  * for replenishing a population.
  */
-fun List<BuilderFitnessPair>.uniformSample() = sequence {
+fun List<BuilderFitnessPair>.uniformSample(random: Random = Random) = sequence {
     while (true) {
-        // TODO: use evaluator random
-        val index = (Math.random() * size).toInt()
-        yield(this@uniformSample[index])
+        yield(this@uniformSample[random.nextInt(size)])
     }
 }
 
@@ -19,6 +19,16 @@ class Tile(@XStreamAsAttribute @UserParameter(label = "ID", order = 0, editable
     @Transient
     @UserParameter(label = "Type", description = "type", order = 20)
     var type: String = "Type $id"
+        set(value) {
+            field = value
+            typeChanged?.invoke()
+        }
+
+    /**
+     * Called when [type] is edited. Set by the [TileMap] that uses this tile, so it can discard its tile type fields.
+     */
+    @Transient
+    internal var typeChanged: (() -> Unit)? = null
 
     /**
      * Human readable name associated to some tile ids. It's up to the person making the tmx file to provide these.
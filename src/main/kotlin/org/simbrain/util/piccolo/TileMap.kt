@@ -101,6 +101,12 @@ class TileMap(width: Int, height: Int) {
     @Transient
     private var idTileMapping = HashMap<Int, Tile>()
 
+    /**
+     * Fields of tile types queried so far, by type. See [getTileTypeField].
+     */
+    @Transient
+    private var tileTypeFields = HashMap<String, TileTypeField>()
+
     @XStreamImplicit
     @XStreamAlias("layers")
     private val _layers = mutableListOf(TileMapLayer("Default Layer", width, height, true))
@@ -173,6 +179,7 @@ class TileMap(width: Int, height: Int) {
                 layer[i, j] = tileId
             }
         }
+        invalidateTileTypeFields()
         layer.render()
     }
 
@@ -182,8 +189,34 @@ class TileMap(width: Int, height: Int) {
 
     // TODO: should not be able to edit tile map layers that don't belong to this map
     fun TileMapLayer.setTile(x: Int, y: Int, tileID: Int) {
+        val oldTileID = this[x, y]
         this[x, y] = tileID
-        render()
+        if (oldTileID == tileID) {
+            return
+        }
+        if (tileTypeFields.isNotEmpty() && this in layers) {
+            val oldType = getTile(oldTileID).type
+            val newType = getTile(tileID).type
+            if (oldType != newType) {
+                tileTypeFields[oldType]?.addLayerCount(x, y, -1)
+                tileTypeFields[newType]?.addLayerCount(x, y, 1)
+            }
+        }
+        renderTile(x, y)
+    }
+
+    /**
+     * Redraw one tile of a layer. Listeners are told once about a batch of redrawn tiles, and get the region to
+     * repaint from [TileMapLayer.takeDirtyRegion].
+     */
+    private fun TileMapLayer.renderTile(x: Int, y: Int) {
+        if (guiEnabled) {
+            if (layerImage == null) {
+                render()
+            } else if (renderTile(tileSets, x, y)) {
+                events.tilesChanged.fireAndForget()
+            }
+        }
     }
 
     private fun TileMapLayer.render() {
@@ -196,6 +229,7 @@ class TileMap(width: Int, height: Int) {
 
     fun addLayer(layer: TileMapLayer): TileMapLayer {
         _layers.add(layer)
+        invalidateTileTypeFields()
         events.layerAdded.fireAndForget()
         return layer
     }
@@ -212,10 +246,36 @@ class TileMap(width: Int, height: Int) {
     fun hasTileIdAtPixel(id: Int, x: Double, y: Double) =
             getTileStackAtPixel(x, y).any { t: Tile -> t.id == id }
 
+    /**
+     * Returns where the tiles of a type are in this map. The field is computed on first use and then kept up to date
+     * by [setTile]. Editing a tile's [Tile.type] discards all fields.
+     */
+    fun getTileTypeField(type: String) = tileTypeFields.getOrPut(type) {
+        TileTypeField(type, width, height).also { field ->
+            for (layer in layers) {
+                for (j in 0 until height) {
+                    for (i in 0 until width) {
+                        if (getTile(layer[i, j]).type == type) {
+                            field.addLayerCount(i, j, 1)
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Discard the tile type fields, so they are recomputed when next used. Must be called if layers are changed
+     * without [setTile].
+     */
+    fun invalidateTileTypeFields() {
+        tileTypeFields.clear()
+    }
+
     fun getTile(gid: Int) = idTileMapping.getOrPut(gid) {
         tileSetRanges
             .firstOrNull { (range, _) -> gid in range }
-            ?.let { (_, tileSet) -> tileSet[gid] } ?: zeroTile
+            ?.let { (_, tileSet) -> tileSet[gid].also { it.typeChanged = ::invalidateTileTypeFields } } ?: zeroTile
     }
 
     fun tileImage(gid: Int) = tileSetRanges
@@ -306,6 +366,7 @@ class TileMap(width: Int, height: Int) {
             it.clear(width, height)
             it.renderImage(tileSets, true)
         }
+        invalidateTileTypeFields()
         events.mapSizeChanged.fireAndBlock()
     }
 
@@ -316,6 +377,7 @@ class TileMap(width: Int, height: Int) {
         events = TileMapEvents2()
         tileSetRanges = tileSets.map { it.firstgid..(it.tilecount + it.firstgid) to it }
         idTileMapping = HashMap()
+        tileTypeFields = HashMap()
         return this
     }
 
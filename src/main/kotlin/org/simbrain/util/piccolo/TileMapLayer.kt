@@ -13,6 +13,8 @@ import com.thoughtworks.xstream.io.HierarchicalStreamReader
 import com.thoughtworks.xstream.io.HierarchicalStreamWriter
 import com.thoughtworks.xstream.mapper.Mapper
 import org.piccolo2d.nodes.PImage
+import java.awt.AlphaComposite
+import java.awt.Rectangle
 import java.awt.RenderingHints
 import java.awt.image.BufferedImage
 import java.io.ByteArrayInputStream
@@ -57,6 +59,22 @@ class TileMapLayer(
     var layerImage: PImage? = null
         private set
 
+    /**
+     * The image drawn by [layerImage], which single tiles are redrawn into by [renderTile].
+     */
+    @Transient
+    private var renderedImage: BufferedImage? = null
+
+    /**
+     * Pixel region of [layerImage] redrawn since it was last taken with [takeDirtyRegion].
+     */
+    @Transient
+    private var dirtyRegion: Rectangle? = null
+
+    private fun tileWidth(tileSets: List<TileSet>) = if (tileSets.isNotEmpty()) tileSets[0].tilewidth else 32
+
+    private fun tileHeight(tileSets: List<TileSet>) = if (tileSets.isNotEmpty()) tileSets[0].tileheight else 32
+
     /**
      * Render one layer of a tileset.
      *
@@ -67,8 +85,8 @@ class TileMapLayer(
     fun renderImage(tileSets: List<TileSet>, forced: Boolean = false): PImage {
         if (layerImage == null || forced) {
 
-            val tileWidth = if (tileSets.isNotEmpty()) tileSets[0].tilewidth else 32
-            val tileHeight = if (tileSets.isNotEmpty()) tileSets[0].tileheight else 32
+            val tileWidth = tileWidth(tileSets)
+            val tileHeight = tileHeight(tileSets)
             val layerImage = BufferedImage(width * tileWidth, height * tileHeight, BufferedImage.TYPE_INT_ARGB)
             with(layerImage.createGraphics()) {
                 setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED)
@@ -80,6 +98,7 @@ class TileMapLayer(
                 }
                 dispose()
             }
+            renderedImage = layerImage
             return PImage(layerImage).also {
                 it.pickable = false
                 this.layerImage = it
@@ -89,6 +108,47 @@ class TileMapLayer(
         }
     }
 
+    /**
+     * Redraw a single tile of the rendered image in place and add it to the dirty region. Does nothing if the layer
+     * has not been rendered yet.
+     *
+     * @param tileSets the tileset to use on this layer
+     * @param x tile coordinate x
+     * @param y tile coordinate y
+     * @return true if the dirty region was empty before this call, so that listeners have to be told about it
+     */
+    fun renderTile(tileSets: List<TileSet>, x: Int, y: Int): Boolean {
+        val image = renderedImage ?: return false
+        val tileWidth = tileWidth(tileSets)
+        val tileHeight = tileHeight(tileSets)
+        with(image.createGraphics()) {
+            setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED)
+            composite = AlphaComposite.Clear
+            fillRect(x * tileWidth, y * tileHeight, tileWidth, tileHeight)
+            composite = AlphaComposite.SrcOver
+            drawImage(tileSets[0].getTileImage(this@TileMapLayer[x, y]), x * tileWidth, y * tileHeight, null)
+            dispose()
+        }
+        val tileBounds = Rectangle(x * tileWidth, y * tileHeight, tileWidth, tileHeight)
+        synchronized(this) {
+            val region = dirtyRegion
+            return if (region == null) {
+                dirtyRegion = tileBounds
+                true
+            } else {
+                region.add(tileBounds)
+                false
+            }
+        }
+    }
+
+    /**
+     * Returns the pixel region redrawn by [renderTile] since the last call, or null if nothing was redrawn, and clears
+     * it.
+     */
+    @Synchronized
+    fun takeDirtyRegion(): Rectangle? = dirtyRegion.also { dirtyRegion = null }
+
     /**
      * Return true if the tiles on this layer are set to have collision bounds.
      *
@@ -0,0 +1,110 @@
+package org.simbrain.util.piccolo
+
+/**
+ * Tracks where the tiles of one type are in a [TileMap]. A location has the type if a tile on any layer at that
+ * location has it. Checking one location takes constant time, and counting the locations in a rectangle takes
+ * O(log(width) log(height)) time using a two dimensional Fenwick tree. Like [TileMapLayer.get], coordinates wrap
+ * around the edges of the map.
+ *
+ * Fields are created by [TileMap.getTileTypeField] and kept up to date by [TileMap.setTile].
+ */
+class TileTypeField(val type: String, val width: Int, val height: Int) {
+
+    /**
+     * Number of layers with a tile of this type at each location, row by row.
+     */
+    private val layerCounts = IntArray(width * height)
+
+    /**
+     * Fenwick tree over the locations with a non-zero layer count, 1-based.
+     */
+    private val tree = IntArray((width + 1) * (height + 1))
+
+    private infix fun Int.wrap(other: Int) = (this % other).let { if (it < 0) it + other else it }
+
+    /**
+     * True if some layer has a tile of this type at the given tile coordinate.
+     */
+    fun has(x: Int, y: Int) = width > 0 && height > 0 && layerCounts[(y wrap height) * width + (x wrap width)] > 0
+
+    /**
+     * Record that a layer gained (delta = 1) or lost (delta = -1) a tile of this type at a location.
+     */
+    internal fun addLayerCount(x: Int, y: Int, delta: Int) {
+        val index = y * width + x
+        val before = layerCounts[index]
+        layerCounts[index] += delta
+        if (before == 0 && delta > 0) {
+            updateTree(x, y, 1)
+        } else if (before > 0 && layerCounts[index] == 0) {
+            updateTree(x, y, -1)
+        }
+    }
+
+    private fun updateTree(x: Int, y: Int, delta: Int) {
+        var i = x + 1
+        while (i <= width) {
+            var j = y + 1
+            while (j <= height) {
+                tree[j * (width + 1) + i] += delta
+                j += j and -j
+            }
+            i += i and -i
+        }
+    }
+
+    /**
+     * Number of locations with this type in [0, x) by [0, y).
+     */
+    private fun prefixCount(x: Int, y: Int): Int {
+        var sum = 0
+        var i = x
+        while (i > 0) {
+            var j = y
+            while (j > 0) {
+                sum += tree[j * (width + 1) + i]
+                j -= j and -j
+            }
+            i -= i and -i
+        }
+        return sum
+    }
+
+    /**
+     * Number of locations with this type in a rectangle of the map that does not wrap. Bounds are inclusive.
+     */
+    private fun countInMap(x0: Int, y0: Int, x1: Int, y1: Int) =
+        prefixCount(x1 + 1, y1 + 1) - prefixCount(x0, y1 + 1) - prefixCount(x1 + 1, y0) + prefixCount(x0, y0)
+
+    /**
+     * Number of locations with this type in the rectangle from (x0, y0) to (x1, y1), inclusive. The rectangle may
+     * extend past the edges of the map, in which case it wraps around; locations covered more than once are counted
+     * once.
+     */
+    fun count(x0: Int, y0: Int, x1: Int, y1: Int): Int {
+        if (width == 0 || height == 0 || x1 < x0 || y1 < y0) {
+            return 0
+        }
+        val xRanges = wrappedRanges(x0, x1, width)
+        val yRanges = wrappedRanges(y0, y1, height)
+        var sum = 0
+        for (xr in xRanges) {
+            for (yr in yRanges) {
+                sum += countInMap(xr.first, yr.first, xr.last, yr.last)
+            }
+        }
+        return sum
+    }
+
+    /**
+     * Split a range that may extend past [0, size) into at most two ranges inside it.
+     */
+    private fun wrappedRanges(from: Int, to: Int, size: Int): List<IntRange> {
+        if (to - from + 1 >= size) {
+            return listOf(0 until size)
+        }
+        val start = from wrap size
+        val end = to wrap size
+        return if (start <= end) listOf(start..end) else listOf(start until size, 0..end)
+    }
+}
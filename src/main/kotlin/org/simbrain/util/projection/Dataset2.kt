@@ -53,6 +53,16 @@ class Dataset2(val dimension: Int) {
         }
     }
 
+    /**
+     * Perturb a single point if it overlaps any other point downstairs. See [perturbOverlappingPoints].
+     */
+    fun perturbIfOverlapping(point: DataPoint2, perturbation: Double = 0.1, epsilon: Double = 1e-6) {
+        if (kdTree.any { it !== point && it.downstairsPoint.euclideanDistance(point.downstairsPoint) < epsilon }) {
+            point.downstairsPoint[0] += Random.nextDouble(-perturbation, +perturbation)
+            point.downstairsPoint[1] += Random.nextDouble(-perturbation, +perturbation)
+        }
+    }
+
     override fun toString() = """
         |upstairs:
         |${kdTree.joinToString("\n|") { it.upstairsPoint.contentToString() }}
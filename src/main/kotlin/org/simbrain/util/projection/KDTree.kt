@@ -5,194 +5,313 @@ import com.thoughtworks.xstream.converters.MarshallingContext
 import com.thoughtworks.xstream.converters.UnmarshallingContext
 import com.thoughtworks.xstream.io.HierarchicalStreamReader
 import com.thoughtworks.xstream.io.HierarchicalStreamWriter
-import java.util.*
-import kotlin.math.abs
-
+import java.util.stream.IntStream
+import kotlin.math.sqrt
+
+/**
+ * A KD-tree over the upstairs points of a [Dataset2], used for nearest neighbor queries.
+ *
+ * Points are held in a small number of static blocks, each an implicit balanced KD-tree stored in arrays: the node
+ * for the index range [lo, hi) is the median at (lo + hi) / 2, split on axis depth % [dimension], with its left
+ * subtree in [lo, mid) and its right subtree in (mid, hi). Coordinates are copied into one flat array per block so
+ * searches touch contiguous memory. Blocks are rebuilt in bulk as points are added, in the style of a binary counter
+ * (the "logarithmic method"): a new point forms a block of size one, and blocks of equal or smaller size are merged and
+ * rebuilt. This keeps every block balanced however points arrive, with O(log n) blocks and amortized O(log² n) work
+ * per insertion.
+ *
+ * Queries write into a reusable [Neighbors] buffer and do not allocate. Iteration is in insertion order, over the live
+ * points; see [iterator].
+ */
 class KDTree(val dimension: Int) : Iterable<DataPoint2> {
 
+    /**
+     * All points, in insertion order.
+     */
     @Transient
-    private var pointCount = 0
-    val size get() = pointCount
-
-    private data class Node(
-        var point: DataPoint2,
-        val axis: Int,
-        var left: Node? = null,
-        var right: Node? = null
-    )
+    private var points = ArrayList<DataPoint2>()
 
+    val size get() = points.size
+
+    /**
+     * Static sub-trees, in decreasing order of size.
+     */
     @Transient
-    private var root: Node? = null
+    private var blocks = ArrayList<Block>()
 
-    private fun buildTree(points: List<DataPoint2>, depth: Int): Node? {
-        if (points.isEmpty()) {
-            return null
-        }
+    /**
+     * Number of coordinates per point, taken from the first point.
+     */
+    @Transient
+    private var stride = -1
 
-        val axis = depth % dimension
-        val sortedPoints = points.sortedBy { it.upstairsPoint[axis] }
-        val median = sortedPoints.size / 2
+    /**
+     * Buffer used by the single-query convenience methods.
+     */
+    @Transient
+    private var localNeighbors = ThreadLocal.withInitial { Neighbors(1) }
 
-        return Node(
-            point = sortedPoints[median],
-            axis = axis,
-            left = buildTree(sortedPoints.subList(0, median), depth + 1),
-            right = buildTree(sortedPoints.subList(median + 1, sortedPoints.size), depth + 1)
-        )
-    }
+    private class Block(val members: Array<DataPoint2>, val coords: DoubleArray)
 
     fun insert(point: DataPoint2) {
-        root = insert(root, point, 0)
-        pointCount++
+        checkStride(point)
+        points.add(point)
+        var carry = ArrayList<DataPoint2>()
+        carry.add(point)
+        while (blocks.isNotEmpty() && blocks.last().members.size <= carry.size) {
+            carry.addAll(blocks.removeLast().members)
+        }
+        blocks.add(buildBlock(carry))
     }
 
-    private fun insert(node: Node?, point: DataPoint2, depth: Int): Node {
-        if (node == null) {
-            return Node(point, depth % dimension)
+    /**
+     * Add many points and then rebuild into a single balanced tree.
+     */
+    fun insertAll(newPoints: Collection<DataPoint2>) {
+        newPoints.forEach {
+            checkStride(it)
+            points.add(it)
         }
+        rebuild()
+    }
 
-        val axis = node.axis
-        val currentNode = node.point.upstairsPoint[axis]
-        val newPoint = point.upstairsPoint[axis]
-
-        if (newPoint < currentNode) {
-            node.left = insert(node.left, point, depth + 1)
-        } else {
-            node.right = insert(node.right, point, depth + 1)
+    /**
+     * Rebuild all points into a single balanced block.
+     */
+    fun rebuild() {
+        blocks.clear()
+        if (points.isNotEmpty()) {
+            blocks.add(buildBlock(ArrayList(points)))
         }
-
-        return node
     }
 
-    private data class SearchNode(
-        val node: Node,
-        val distance: Double
-    ) : Comparable<SearchNode> {
-        override fun compareTo(other: SearchNode): Int {
-            return -distance.compareTo(other.distance)
+    private fun checkStride(point: DataPoint2) {
+        if (stride < 0) {
+            stride = point.upstairsPoint.size
+        } else if (point.upstairsPoint.size != stride) {
+            throw IllegalArgumentException("Point has ${point.upstairsPoint.size} dimensions but the tree has $stride")
         }
     }
 
-    fun findClosestPoint(target: DataPoint2) = findClosestNPoints(target, 1).firstOrNull()
-
-    fun findClosestNPoints(target: DataPoint2, n: Int): List<DataPoint2> {
-        val closestNPoints = PriorityQueue<SearchNode>()
+    private val splitDimensions get() = minOf(dimension, stride)
+
+    /**
+     * Arrange points into an implicit tree by recursively partitioning around medians.
+     */
+    private fun buildBlock(blockPoints: ArrayList<DataPoint2>): Block {
+        val members = blockPoints.toTypedArray()
+        partition(members, 0, members.size, 0)
+        val coords = DoubleArray(members.size * stride)
+        members.forEachIndexed { i, point -> System.arraycopy(point.upstairsPoint, 0, coords, i * stride, stride) }
+        return Block(members, coords)
+    }
 
-        fun searchClosest(node: Node?, depth: Int) {
-            if (node == null) {
-                return
-            }
+    private fun partition(members: Array<DataPoint2>, lo: Int, hi: Int, depth: Int) {
+        if (hi - lo < 2) return
+        val axis = depth % splitDimensions
+        val mid = (lo + hi) ushr 1
+        select(members, lo, hi - 1, mid, axis)
+        partition(members, lo, mid, depth + 1)
+        partition(members, mid + 1, hi, depth + 1)
+    }
 
-            val distance = target.euclideanDistance(node.point)
-            if (closestNPoints.size < n || distance < closestNPoints.peek().distance) {
-                if (closestNPoints.size == n) {
-                    closestNPoints.poll()
+    /**
+     * Quickselect: reorder members[left..right] so that the k'th is in sorted position on the axis, with smaller or
+     * equal values before it and larger or equal values after it.
+     */
+    private fun select(members: Array<DataPoint2>, left: Int, right: Int, k: Int, axis: Int) {
+        var lo = left
+        var hi = right
+        while (hi > lo) {
+            val pivot = members[(lo + hi) ushr 1].upstairsPoint[axis]
+            var i = lo
+            var j = hi
+            while (i <= j) {
+                while (members[i].upstairsPoint[axis] < pivot) i++
+                while (members[j].upstairsPoint[axis] > pivot) j--
+                if (i <= j) {
+                    val tmp = members[i]
+                    members[i] = members[j]
+                    members[j] = tmp
+                    i++
+                    j--
                 }
-                closestNPoints.offer(SearchNode(node, distance))
             }
+            when {
+                k <= j -> hi = j
+                k >= i -> lo = i
+                else -> return
+            }
+        }
+    }
+
+    fun findClosestPoint(target: DataPoint2): DataPoint2? {
+        val neighbors = localNeighbors.get()
+        findClosestNPoints(target.upstairsPoint, 1, neighbors)
+        return if (neighbors.size > 0) neighbors.point(0) else null
+    }
 
-            val axis = node.axis
-            val diff = target.upstairsPoint[axis] - node.point.upstairsPoint[axis]
-            val (nearNode, farNode) = if (diff < 0) {
-                node.left to node.right
-            } else {
-                node.right to node.left
+    /**
+     * Returns up to n closest points to the target, nearest first.
+     */
+    fun findClosestNPoints(target: DataPoint2, n: Int): List<DataPoint2> =
+        findClosestNPoints(target.upstairsPoint, n, Neighbors(n)).toList()
+
+    /**
+     * Find up to n closest points to the target, nearest first, and write them into the provided buffer, which is
+     * returned. Does not allocate if the buffer's capacity is at least n.
+     */
+    fun findClosestNPoints(target: DoubleArray, n: Int, result: Neighbors): Neighbors {
+        result.reset(n)
+        if (stride > 0) {
+            for (block in blocks) {
+                search(block, target, result, 0, block.members.size, 0)
             }
+        }
+        return result
+    }
 
-            searchClosest(nearNode, depth + 1)
+    /**
+     * Find the n closest points to each of several targets. Large batches are run on the fork-join pool. Result
+     * buffers can be passed in to be reused across calls.
+     */
+    @JvmOverloads
+    fun findClosestNPoints(
+        targets: List<DoubleArray>,
+        n: Int,
+        results: List<Neighbors> = List(targets.size) { Neighbors(n) }
+    ): List<Neighbors> {
+        require(results.size >= targets.size) { "Need a result buffer for each target" }
+        if (targets.size < PARALLEL_BATCH_SIZE) {
+            targets.forEachIndexed { i, target -> findClosestNPoints(target, n, results[i]) }
+        } else {
+            IntStream.range(0, targets.size).parallel().forEach { findClosestNPoints(targets[it], n, results[it]) }
+        }
+        return results
+    }
 
-            if (abs(diff) < closestNPoints.peek().distance || closestNPoints.size < n) {
-                searchClosest(farNode, depth + 1)
+    private fun search(block: Block, target: DoubleArray, result: Neighbors, lo: Int, hi: Int, depth: Int) {
+        if (lo >= hi) return
+        val mid = (lo + hi) ushr 1
+        val coords = block.coords
+        val base = mid * stride
+
+        // Squared distance, abandoned once it is worse than the current n'th closest
+        val worst = result.worstSquaredDistance
+        var distance = 0.0
+        var d = 0
+        while (d < stride && distance < worst) {
+            val diff = target[d] - coords[base + d]
+            distance += diff * diff
+            d++
+        }
+        if (distance < worst) {
+            result.offer(block.members[mid], distance)
+        }
+
+        val axis = depth % splitDimensions
+        val diff = target[axis] - coords[base + axis]
+        if (diff < 0) {
+            search(block, target, result, lo, mid, depth + 1)
+            if (diff * diff < result.worstSquaredDistance) {
+                search(block, target, result, mid + 1, hi, depth + 1)
+            }
+        } else {
+            search(block, target, result, mid + 1, hi, depth + 1)
+            if (diff * diff < result.worstSquaredDistance) {
+                search(block, target, result, lo, mid, depth + 1)
             }
         }
+    }
 
-        searchClosest(root, 0)
+    /**
+     * Iterates over the points in insertion order without copying them. The tree must not be modified while an
+     * iteration is in progress; this is detected on a best-effort basis and throws [ConcurrentModificationException].
+     */
+    override fun iterator(): Iterator<DataPoint2> = object : Iterator<DataPoint2> by points.iterator() {}
 
-        return closestNPoints.map { it.node.point }
+    /**
+     * Delete a point with the same upstairs values as the target. Returns true if one was found.
+     */
+    fun delete(target: DataPoint2): Boolean {
+        val index = points.indexOfFirst { it.upstairsPoint.contentEquals(target.upstairsPoint) }
+        if (index < 0) {
+            return false
+        }
+        points.removeAt(index)
+        rebuild()
+        return true
     }
 
-    private fun inOrderTraversal(node: Node?, action: (DataPoint2) -> Unit) {
-        if (node == null) return
-        inOrderTraversal(node.left, action)
-        action(node.point)
-        inOrderTraversal(node.right, action)
+    fun clear() {
+        points.clear()
+        blocks.clear()
+        stride = -1
     }
 
-    override fun iterator(): Iterator<DataPoint2> {
-        val nodes = mutableListOf<DataPoint2>()
-        inOrderTraversal(root) { nodes.add(it) }
-        return nodes.iterator()
+    companion object {
+
+        /**
+         * Batches of at least this many queries are run in parallel.
+         */
+        private const val PARALLEL_BATCH_SIZE = 64
     }
 
-    private fun findMinimum(node: Node?, targetAxis: Int, searchAxis: Int): Node? {
-        if (node == null) return null
-        if (searchAxis == targetAxis) {
-            return findMinimum(node.left, targetAxis, (searchAxis + 1) % dimension) ?: node
-        }
+}
 
-        val leftMin = findMinimum(node.left, targetAxis, (searchAxis + 1) % dimension)
-        val rightMin = findMinimum(node.right, targetAxis, (searchAxis + 1) % dimension)
+/**
+ * Reusable buffer for the result of a nearest neighbor query: points and their squared distances from the target,
+ * nearest first.
+ */
+class Neighbors(capacity: Int) {
 
-        return listOfNotNull(node, leftMin, rightMin)
-            .minByOrNull { it.point.upstairsPoint[targetAxis] }
-    }
+    private var points = arrayOfNulls<DataPoint2>(capacity)
 
-    fun delete(target: DataPoint2): Boolean {
-        return delete(null, root, target, 0) != null
-    }
+    private var squaredDistances = DoubleArray(capacity)
 
-    private fun delete(parent: Node?, node: Node?, target: DataPoint2, depth: Int): Node? {
-        if (node == null) {
-            return null
-        }
+    private var maxSize = capacity
 
-        val axis = depth % dimension
-
-        if (node.point.upstairsPoint.contentEquals(target.upstairsPoint)) {
-            pointCount--
-            if (node.right != null) {
-                val minNode = findMinimum(node.right, axis, (depth + 1) % dimension)!!
-                node.point = minNode.point
-                node.right = delete(node, node.right, minNode.point, depth + 1)
-            } else if (node.left != null) {
-                if (parent == null) {
-                    root = node.left
-                } else {
-                    if (parent.left == node) {
-                        parent.left = node.left
-                    } else {
-                        parent.right = node.left
-                    }
-                }
-                return node.left
-            } else {
-                if (parent == null) {
-                    root = null
-                } else {
-                    if (parent.left == node) {
-                        parent.left = null
-                    } else {
-                        parent.right = null
-                    }
-                }
-                return null
-            }
+    var size = 0
+        private set
+
+    /**
+     * Squared distance a point must be under to be added.
+     */
+    val worstSquaredDistance get() = if (size < maxSize) Double.POSITIVE_INFINITY else squaredDistances[size - 1]
+
+    fun point(i: Int) = points[i]!!
+
+    fun distance(i: Int) = sqrt(squaredDistances[i])
+
+    /**
+     * Empty the buffer and set how many points it should hold, growing it if needed.
+     */
+    fun reset(n: Int) {
+        if (n > points.size) {
+            points = arrayOfNulls(n)
+            squaredDistances = DoubleArray(n)
         } else {
-            if (target.upstairsPoint[axis] < node.point.upstairsPoint[axis]) {
-                delete(node, node.left, target, depth + 1)
-            } else {
-                delete(node, node.right, target, depth + 1)
-            }
+            points.fill(null, 0, size)
         }
-
-        return node
+        maxSize = n
+        size = 0
     }
 
-    fun clear() {
-        root = null
-        pointCount = 0
+    /**
+     * Insert a point in order of distance, dropping the farthest if full.
+     */
+    fun offer(point: DataPoint2, squaredDistance: Double) {
+        if (squaredDistance >= worstSquaredDistance) return
+        var i = if (size < maxSize) size++ else size - 1
+        while (i > 0 && squaredDistances[i - 1] > squaredDistance) {
+            points[i] = points[i - 1]
+            squaredDistances[i] = squaredDistances[i - 1]
+            i--
+        }
+        points[i] = point
+        squaredDistances[i] = squaredDistance
     }
 
+    fun toList() = List(size) { point(it) }
 }
 
 
@@ -219,7 +338,7 @@ class KDTreeConvertor : Converter {
         val datapoints = context.convertAnother(reader.value, ArrayList::class.java) as List<DataPoint2>
         reader.moveUp()
         val kdTree = KDTree(dims)
-        datapoints.forEach { kdTree.insert(it) }
+        kdTree.insertAll(datapoints)
         return kdTree
     }
 }
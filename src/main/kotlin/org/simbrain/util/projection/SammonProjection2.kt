@@ -1,8 +1,18 @@
 package org.simbrain.util.projection
 
 import org.simbrain.util.UserParameter
+import java.util.stream.IntStream
 import kotlin.math.pow
+import kotlin.math.sqrt
 
+/**
+ * Sammon mapping, which iteratively moves points downstairs to minimize the difference between their upstairs and
+ * downstairs distances.
+ *
+ * Upstairs distances are kept in a [TriangularDistanceMatrix] in the order points were added, and grow by one row
+ * when a point is added. Each iteration computes downstairs distances and the gradient for every point in parallel
+ * (when there are enough points), and then moves all points at once.
+ */
 class SammonProjection2: ProjectionMethod2(), IterableProjectionMethod2 {
 
     val downstairsInitializationMethod = CoordinateProjection2()
@@ -11,14 +21,52 @@ class SammonProjection2: ProjectionMethod2(), IterableProjectionMethod2 {
     @UserParameter(label = "Epsilon", minimumValue = 0.0, increment = .1)
     var epsilon = 100.0
 
+    /**
+     * Points in the order their rows were added to [upstairsDistances].
+     */
+    @Transient
+    private var points = ArrayList<DataPoint2>()
+
+    /**
+     * The dataset [points] were taken from.
+     */
+    @Transient
+    private var trackedDataset: Dataset2? = null
+
+    @Transient
+    private var upstairsDistances = TriangularDistanceMatrix()
+
+    @Transient
+    private var downstairsDistances = TriangularDistanceMatrix()
+
+    /**
+     * Sum of upstairs distances over all ordered pairs of distinct points.
+     */
+    @Transient
+    private var upstairsDistanceSum = 0.0
+
+    /**
+     * Downstairs coordinates of all points, and the step for each, packed point by point.
+     */
+    @Transient
+    private var positions = DoubleArray(0)
+
+    @Transient
+    private var steps = DoubleArray(0)
+
     override fun init(dataset: Dataset2) {
         initDistances(dataset)
     }
 
     private fun initDistances(dataset: Dataset2) {
         synchronized(dataset) {
-            upstairsDistances = dataset.computeUpstairsDistances()
-            upstairsDistanceSum = upstairsDistances?.sumOf { it.sum() }
+            trackedDataset = dataset
+            points = ArrayList(dataset.kdTree.toList())
+            upstairsDistances = TriangularDistanceMatrix()
+            upstairsDistanceSum = 0.0
+            points.forEach { point ->
+                upstairsDistanceSum += 2 * upstairsDistances.addPoint { j -> point.euclideanDistance(points[j]) }
+            }
             dataset.perturbOverlappingPoints()
         }
     }
@@ -30,53 +78,120 @@ class SammonProjection2: ProjectionMethod2(), IterableProjectionMethod2 {
             } else {
                 downstairsInitializationMethod2.addPoint(dataset, point)
             }
-            initDistances(dataset)
+            if (isTracking(dataset, dataset.kdTree.size - 1)) {
+                upstairsDistanceSum += 2 * upstairsDistances.addPoint { j -> point.euclideanDistance(points[j]) }
+                points.add(point)
+                dataset.perturbIfOverlapping(point)
+            } else {
+                initDistances(dataset)
+            }
         }
     }
 
-    var upstairsDistances: List<List<Double>>? = null
-    var downstairsDistances: List<List<Double>>? = null
-    var upstairsDistanceSum: Double? = null
+    /**
+     * Whether [points] holds the given number of points from this dataset. If not (e.g. the dataset was replaced or
+     * points were removed), distances must be recomputed.
+     */
+    private fun isTracking(dataset: Dataset2, numPoints: Int) = trackedDataset === dataset && points.size == numPoints
 
     override fun iterate(dataset: Dataset2) {
         synchronized(dataset) {
             if (dataset.kdTree.size < 2) return
-            downstairsDistances = dataset.computeDownstairsDistances()
-            dataset.kdTree.forEachIndexed { j, p1 ->
-                var partialSum = 0.0
-                (0 until p1.downstairsPoint.size).forEach { d ->
-                    dataset.kdTree.forEachIndexed { i, p2 ->
+            if (!isTracking(dataset, dataset.kdTree.size)) {
+                initDistances(dataset)
+            }
+
+            val n = points.size
+            val dims = points[0].downstairsPoint.size
+            if (positions.size != n * dims) {
+                positions = DoubleArray(n * dims)
+                steps = DoubleArray(n * dims)
+            }
+            points.forEachIndexed { i, point -> System.arraycopy(point.downstairsPoint, 0, positions, i * dims, dims) }
+
+            downstairsDistances.resize(n)
+            forEachPoint(n) { i ->
+                for (j in 0 until i) {
+                    var sumOfSquares = 0.0
+                    for (d in 0 until dims) {
+                        val diff = positions[i * dims + d] - positions[j * dims + d]
+                        sumOfSquares += diff * diff
+                    }
+                    downstairsDistances[i, j] = sqrt(sumOfSquares)
+                }
+            }
+
+            // Gradient step, computed for all points from the current positions
+            val scale = epsilon * 2 / upstairsDistanceSum
+            forEachPoint(n) { j ->
+                for (d in 0 until dims) {
+                    var partialSum = 0.0
+                    for (i in 0 until n) {
                         if (i != j) {
-                            partialSum += (
-                                    (upstairsDistances!![i][j] - downstairsDistances!![i][j])
-                                            * (p2.downstairsPoint[d] - p1.downstairsPoint[d])
-                                    ) / upstairsDistances!![i][j] / downstairsDistances!![i][j]
+                            val upstairs = upstairsDistances[i, j]
+                            val downstairs = downstairsDistances[i, j]
+                            if (upstairs > 0 && downstairs > 0) {
+                                partialSum += (upstairs - downstairs) *
+                                        (positions[i * dims + d] - positions[j * dims + d]) / upstairs / downstairs
+                            }
                         }
                     }
-
-                    p1.downstairsPoint[d] = p1.downstairsPoint[d] - ((epsilon * 2 * partialSum) / upstairsDistanceSum!!)
+                    steps[j * dims + d] = scale * partialSum
+                }
+            }
+            points.forEachIndexed { j, point ->
+                for (d in 0 until dims) {
+                    point.downstairsPoint[d] -= steps[j * dims + d]
                 }
             }
 
             // Computes Closeness
             error = 0.0
-            for (i in 0 until dataset.kdTree.size) {
-                for (j in i + 1 until dataset.kdTree.size) {
-                    error += (upstairsDistances!![i][j] - downstairsDistances!![i][j]).pow(2) / upstairsDistances!![i][j]
+            for (i in 0 until n) {
+                for (j in i + 1 until n) {
+                    val upstairs = upstairsDistances[i, j]
+                    if (upstairs > 0) {
+                        error += (upstairs - downstairsDistances[i, j]).pow(2) / upstairs
+                    }
                 }
             }
-            // println(e / upstairsDistanceSum!!)
+        }
+    }
+
+    /**
+     * Run an action for each point index, on the fork-join pool if there are enough points to make it worthwhile.
+     */
+    private inline fun forEachPoint(n: Int, crossinline action: (Int) -> Unit) {
+        if (n < PARALLEL_THRESHOLD) {
+            for (i in 0 until n) action(i)
+        } else {
+            IntStream.range(0, n).parallel().forEach { action(it) }
         }
     }
 
     override var error = 0.0
 
+    private fun readResolve(): Any {
+        points = ArrayList()
+        upstairsDistances = TriangularDistanceMatrix()
+        downstairsDistances = TriangularDistanceMatrix()
+        positions = DoubleArray(0)
+        steps = DoubleArray(0)
+        return this
+    }
+
     override val name = "Sammon"
 
     override fun copy() = SammonProjection2()
 
     // Kotlin hack to support "static method in superclass"
     companion object {
+
+        /**
+         * Below this number of points iterations run on the calling thread.
+         */
+        private const val PARALLEL_THRESHOLD = 200
+
         @JvmStatic
         fun getTypes(): List<Class<*>> {
             return ProjectionMethod2.getTypes()
@@ -0,0 +1,79 @@
+package org.simbrain.util.projection
+
+/**
+ * A symmetric matrix of distances between points, with zeros on the diagonal, stored as its lower triangle packed row
+ * by row into a single double array. Row i holds the distances from point i to points 0 until i, so adding a point
+ * only appends one row.
+ */
+class TriangularDistanceMatrix {
+
+    private var data = DoubleArray(0)
+
+    /**
+     * Number of points.
+     */
+    var size = 0
+        private set
+
+    operator fun get(i: Int, j: Int) = when {
+        i > j -> data[rowStart(i) + j]
+        i < j -> data[rowStart(j) + i]
+        else -> 0.0
+    }
+
+    operator fun set(i: Int, j: Int, value: Double) {
+        when {
+            i > j -> data[rowStart(i) + j] = value
+            i < j -> data[rowStart(j) + i] = value
+            else -> throw IllegalArgumentException("Diagonal entries are always zero")
+        }
+    }
+
+    /**
+     * Add a point, given a function returning its distance to each existing point. Returns the sum of the new
+     * distances.
+     */
+    inline fun addPoint(distanceTo: (Int) -> Double): Double {
+        val newPoint = size
+        resize(newPoint + 1)
+        var sum = 0.0
+        for (j in 0 until newPoint) {
+            val distance = distanceTo(j)
+            this[newPoint, j] = distance
+            sum += distance
+        }
+        return sum
+    }
+
+    /**
+     * Change the number of points. Existing distances are kept and new ones are zero until set.
+     */
+    fun resize(newSize: Int) {
+        val required = rowStart(newSize)
+        if (required > data.size) {
+            data = data.copyOf(maxOf(required, data.size + data.size / 2))
+        }
+        if (newSize < size) {
+            data.fill(0.0, required, rowStart(size))
+        }
+        size = newSize
+    }
+
+    /**
+     * Remove all points.
+     */
+    fun clear() = resize(0)
+
+    /**
+     * Sum of the distances between each pair of points, counting each pair once.
+     */
+    fun sum(): Double {
+        var sum = 0.0
+        for (k in 0 until rowStart(size)) {
+            sum += data[k]
+        }
+        return sum
+    }
+
+    private fun rowStart(i: Int) = i * (i - 1) / 2
+}
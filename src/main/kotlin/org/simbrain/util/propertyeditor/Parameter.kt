@@ -23,6 +23,7 @@ import smile.math.matrix.Matrix
 import java.awt.Color
 import java.math.BigDecimal
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
 import kotlin.reflect.*
 import kotlin.reflect.full.*
 import kotlin.reflect.jvm.isAccessible
@@ -258,7 +259,7 @@ class Parameter(property: KProperty1<*, *>) : Comparable<Parameter> {
          * Static cache of annotated fields for a class.
          * Avoids multiple runs of expensive reflection code.
          */
-        private val classParameters: MutableMap<KClass<*>, Set<Parameter>> = HashMap()
+        private val classParameters: MutableMap<KClass<*>, Set<Parameter>> = ConcurrentHashMap()
 
         /**
          * Get the available [Parameter]s ([UserParameter] annotated
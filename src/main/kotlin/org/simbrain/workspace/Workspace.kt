@@ -383,7 +383,7 @@ class Workspace: CoroutineScope {
         try {
             if (theFile != null) {
                 clearWorkspace()
-                serializer.deserialize(FileInputStream(theFile))
+                serializer.deserialize(theFile)
                 currentFile = theFile
                 setWorkspaceChanged(false)
                 events.workspaceOpened.fireAndForget()
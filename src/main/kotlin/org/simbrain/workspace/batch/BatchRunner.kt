@@ -0,0 +1,373 @@
+package org.simbrain.workspace.batch
+
+import kotlinx.coroutines.*
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import org.simbrain.util.propertyeditor.Parameter
+import org.simbrain.workspace.AttributeContainer
+import org.simbrain.workspace.Producer
+import org.simbrain.workspace.Workspace
+import org.simbrain.workspace.serialization.WorkspaceSerializer
+import java.io.ByteArrayInputStream
+import java.io.File
+import java.math.BigDecimal
+import kotlin.math.roundToInt
+import kotlin.math.roundToLong
+import kotlin.random.Random
+import kotlin.reflect.jvm.jvmErasure
+import kotlin.system.exitProcess
+
+/**
+ * A set of parameter settings to run a workspace with. Each setting maps parameter targets to values.
+ *
+ * A target names a [org.simbrain.util.UserParameter] field as `component/container/property`, e.g.
+ * `Network1/Neuron_3/updateRule.slope`. The component is matched by name and the container by
+ * [AttributeContainer.id], or `*` to set the property on every container in the component that has it. The property
+ * may be a dotted path through object-typed parameters like update rules.
+ *
+ * Values can be given as strings, numbers, booleans, or enum constants, and are converted to the parameter's type.
+ */
+interface ParameterSweep {
+    fun settings(): List<Map<String, Any>>
+}
+
+/**
+ * Every combination of the given values (their cartesian product). With no targets there is one empty setting, so
+ * that the workspace is run as saved.
+ */
+class GridSweep(val values: Map<String, List<Any>>) : ParameterSweep {
+    override fun settings() = values.entries.fold(listOf(mapOf<String, Any>())) { settings, (target, options) ->
+        settings.flatMap { setting -> options.map { setting + (target to it) } }
+    }
+}
+
+/**
+ * A fixed number of settings with each parameter drawn uniformly from a range. Integer parameters are rounded.
+ */
+class RandomSweep @JvmOverloads constructor(
+    val samples: Int,
+    val ranges: Map<String, ClosedFloatingPointRange<Double>>,
+    val seed: Long = Random.nextLong()
+) : ParameterSweep {
+    override fun settings(): List<Map<String, Any>> {
+        val random = Random(seed)
+        return List(samples) {
+            ranges.mapValues { (_, range) ->
+                if (range.start == range.endInclusive) range.start else random.nextDouble(range.start, range.endInclusive)
+            }
+        }
+    }
+}
+
+/**
+ * One run of a batch: a parameter setting and which replica of that setting it is.
+ */
+class BatchRun(val index: Int, val replica: Int, val setting: Map<String, Any>)
+
+/**
+ * The measured producer values of a run at a workspace time.
+ */
+class BatchRecord(val run: BatchRun, val time: Int, val values: List<Any?>)
+
+/**
+ * Runs a saved workspace many times without the desktop, for parameter studies. Each run deserializes its own
+ * [Workspace] (and so has its own coroutine context), applies a setting from a [ParameterSweep], iterates, and
+ * records the values of the measured producers. Runs are independent, so up to [parallelism] of them are run at once.
+ *
+ * Measures name producers as `component/container/method`, e.g. `Network1/Neuron_3/getActivation`.
+ *
+ * Usage from the command line is described in [main].
+ */
+class BatchRunner @JvmOverloads constructor(
+    /**
+     * The workspace, in the zip format written by [WorkspaceSerializer].
+     */
+    private val zipData: ByteArray,
+    val iterations: Int,
+    val measures: List<String>,
+    /**
+     * Number of runs of each setting.
+     */
+    val replicas: Int = 1,
+    /**
+     * Record measures every this many iterations. If 0, they are only recorded at the end of a run.
+     */
+    val recordInterval: Int = 0,
+    val parallelism: Int = Runtime.getRuntime().availableProcessors()
+) {
+
+    /**
+     * Runs the workspace saved in a zip file. See the primary constructor for the parameters.
+     */
+    @JvmOverloads
+    constructor(
+        file: File,
+        iterations: Int,
+        measures: List<String>,
+        replicas: Int = 1,
+        recordInterval: Int = 0,
+        parallelism: Int = Runtime.getRuntime().availableProcessors()
+    ) : this(file.readBytes(), iterations, measures, replicas, recordInterval, parallelism)
+
+    init {
+        require(iterations >= 0) { "Iterations must not be negative" }
+        require(replicas >= 1) { "There must be at least one replica" }
+        require(recordInterval >= 0) { "Record interval must not be negative" }
+        require(parallelism >= 1) { "Parallelism must be at least 1" }
+    }
+
+    /**
+     * Run every setting of the sweep [replicas] times. Records are returned in run order.
+     */
+    suspend fun run(sweep: ParameterSweep = GridSweep(emptyMap())): List<BatchRecord> = coroutineScope {
+        val runs = sweep.settings().flatMapIndexed { settingIndex, setting ->
+            List(replicas) { replica -> BatchRun(settingIndex * replicas + replica, replica, setting) }
+        }
+        val workers = Semaphore(parallelism)
+        runs.map { run ->
+            async(Dispatchers.Default) { workers.withPermit { runOnce(run) } }
+        }.awaitAll().flatten()
+    }
+
+    /**
+     * Blocking version of [run] for use from Java.
+     */
+    @JvmOverloads
+    fun runAndWait(sweep: ParameterSweep = GridSweep(emptyMap())) = runBlocking { run(sweep) }
+
+    private suspend fun runOnce(run: BatchRun): List<BatchRecord> {
+        val workspace = Workspace()
+        try {
+            WorkspaceSerializer(workspace).deserialize(ByteArrayInputStream(zipData), true)
+            run.setting.forEach { (target, value) -> workspace.setParameter(target, value) }
+            val producers = measures.map { workspace.findProducer(it) }
+            fun record() = BatchRecord(run, workspace.time, producers.map { it.value })
+
+            val records = ArrayList<BatchRecord>()
+            if (recordInterval > 0) {
+                var remaining = iterations
+                while (remaining > 0) {
+                    val steps = minOf(recordInterval, remaining)
+                    workspace.iterateSuspend(steps)
+                    remaining -= steps
+                    records.add(record())
+                }
+            } else {
+                workspace.iterateSuspend(iterations)
+                records.add(record())
+            }
+            return records
+        } finally {
+            workspace.cancel()
+        }
+    }
+
+    companion object {
+
+        /**
+         * Write records as csv, one line per record: the run index, replica, workspace time, each sweep target,
+         * then each measure. Array valued measures are written as space separated values in one column.
+         */
+        @JvmStatic
+        fun writeCsv(records: List<BatchRecord>, measures: List<String>, file: File) {
+            val targets = records.flatMap { it.run.setting.keys }.distinct()
+            file.bufferedWriter().use { writer ->
+                writer.appendLine((listOf("run", "replica", "time") + targets + measures).joinToString(",") { it.csvEscape() })
+                records.forEach { record ->
+                    val cells = listOf(record.run.index, record.run.replica, record.time) +
+                            targets.map { record.run.setting[it] } + record.values
+                    writer.appendLine(cells.joinToString(",") { it.toCsvCell() })
+                }
+            }
+        }
+
+        private fun Any?.toCsvCell() = when (this) {
+            null -> ""
+            is DoubleArray -> joinToString(" ")
+            is IntArray -> joinToString(" ")
+            is Array<*> -> joinToString(" ")
+            else -> toString().csvEscape()
+        }
+
+        private fun String.csvEscape() = if (any { it == ',' || it == '"' || it == '\n' }) {
+            "\"${replace("\"", "\"\"")}\""
+        } else this
+    }
+}
+
+/**
+ * Split a `component/container/rest` target into its three parts.
+ */
+private fun splitTarget(target: String): Triple<String, String, String> {
+    val parts = target.split("/", limit = 3)
+    require(parts.size == 3 && parts.all { it.isNotEmpty() }) {
+        "Target $target should have the form component/container/name"
+    }
+    return Triple(parts[0], parts[1], parts[2])
+}
+
+private fun Workspace.findContainers(componentName: String, containerId: String): List<AttributeContainer> {
+    val component = getComponent(componentName)
+        ?: throw IllegalArgumentException("No component named $componentName")
+    val containers = if (containerId == "*") {
+        component.attributeContainers
+    } else {
+        component.attributeContainers.filter { it.id.equals(containerId, ignoreCase = true) }
+    }
+    require(containers.isNotEmpty()) { "No container $containerId in $componentName" }
+    return containers
+}
+
+/**
+ * Set the [org.simbrain.util.UserParameter] named by a sweep target.
+ */
+fun Workspace.setParameter(target: String, value: Any) {
+    val (componentName, containerId, propertyPath) = splitTarget(target)
+    val path = propertyPath.split(".")
+    var found = false
+    for (container in findContainers(componentName, containerId)) {
+        var obj: Any = container
+        var parameter = findParameter(obj, path[0], containerId != "*") ?: continue
+        for (name in path.drop(1)) {
+            obj = parameter.getFieldValue(obj) ?: throw IllegalArgumentException("${parameter.name} is null in $target")
+            parameter = findParameter(obj, name, true)!!
+        }
+        parameter.setFieldValue(obj, parameter.convert(value))
+        found = true
+    }
+    require(found) { "No container in $componentName has a parameter named ${path[0]}" }
+}
+
+private fun findParameter(obj: Any, name: String, required: Boolean): Parameter? {
+    val parameter = Parameter.getParameters(obj::class).firstOrNull { it.name == name }
+    require(parameter != null || !required) { "${obj::class.simpleName} has no user parameter named $name" }
+    return parameter
+}
+
+/**
+ * Convert a sweep value to the type of this parameter.
+ */
+internal fun Parameter.convert(value: Any): Any {
+    val typeClass = type.jvmErasure
+    return when {
+        typeClass.isInstance(value) -> value
+        isNumeric -> {
+            val number = (value as? Number)?.toDouble() ?: value.toString().trim().toDouble()
+            when (typeClass) {
+                Double::class -> number
+                Float::class -> number.toFloat()
+                Int::class -> number.roundToInt()
+                Long::class -> number.roundToLong()
+                Short::class -> number.roundToInt().toShort()
+                Byte::class -> number.roundToInt().toByte()
+                BigDecimal::class -> BigDecimal.valueOf(number)
+                else -> throw IllegalArgumentException("Unsupported numeric type $typeClass for $name")
+            }
+        }
+        isBoolean -> value.toString().trim().toBooleanStrict()
+        isEnum -> typeClass.java.enumConstants.firstOrNull {
+            (it as Enum<*>).name.equals(value.toString().trim(), ignoreCase = true)
+        } ?: throw IllegalArgumentException("$value is not a value of $typeClass")
+        isString -> value.toString()
+        else -> throw IllegalArgumentException("Parameter $name of type $typeClass can not be swept")
+    }
+}
+
+/**
+ * Find the producer named by a measure.
+ */
+fun Workspace.findProducer(measure: String): Producer {
+    val (componentName, containerId, methodName) = splitTarget(measure)
+    val container = findContainers(componentName, containerId).first()
+    return with(couplingManager) { container.getProducer(methodName) }
+}
+
+private const val usage = """Usage: BatchRunner <workspace.zip> [options]
+  --iterations n        iterations per run (default 1000)
+  --replicas n          runs of each parameter setting (default 1)
+  --threads n           runs to execute at once (default: number of processors)
+  --record-every n      record measures every n iterations instead of only at the end
+  --measure target      producer to record, as component/container/method, e.g. Network1/Neuron_3/getActivation
+  --grid target=v1,v2   values of a parameter, as component/container/property; settings are all combinations
+  --random target=a:b   draw a parameter uniformly from [a, b] for each of --samples settings
+  --samples n           number of random settings (default 10)
+  --seed n              seed for random settings
+  --output file         results csv (default results.csv)
+Options other than the workspace may be repeated where that makes sense (--measure, --grid, --random)."""
+
+/**
+ * Command line entry point. See [usage], or run with no arguments. For example
+ *
+ * ```
+ * gradle runBatch -Pargs="simulations/workspaces/hebbFF.zip --iterations 500 --replicas 20
+ *     --grid Network1/Synapse_1/strength=0.5,1 --measure Network1/Neuron_2/getActivation"
+ * ```
+ */
+suspend fun main(args: Array<String>) {
+    if (args.isEmpty() || args[0].startsWith("--")) {
+        System.err.println(usage)
+        exitProcess(1)
+    }
+    val workspaceFile = File(args[0])
+    var iterations = 1000
+    var replicas = 1
+    var threads = Runtime.getRuntime().availableProcessors()
+    var recordInterval = 0
+    var samples = 10
+    var seed: Long? = null
+    var output = File("results.csv")
+    val measures = ArrayList<String>()
+    val grid = LinkedHashMap<String, List<Any>>()
+    val ranges = LinkedHashMap<String, ClosedFloatingPointRange<Double>>()
+
+    fun String.assignment(): Pair<String, String> {
+        val equals = lastIndexOf('=')
+        require(equals > 0) { "Expected target=values but got $this" }
+        return substring(0, equals) to substring(equals + 1)
+    }
+
+    try {
+        var i = 1
+        while (i < args.size) {
+            val option = args[i]
+            val value = args.getOrNull(i + 1) ?: throw IllegalArgumentException("Missing value for $option")
+            when (option) {
+                "--iterations" -> iterations = value.toInt()
+                "--replicas" -> replicas = value.toInt()
+                "--threads" -> threads = value.toInt()
+                "--record-every" -> recordInterval = value.toInt()
+                "--samples" -> samples = value.toInt()
+                "--seed" -> seed = value.toLong()
+                "--output" -> output = File(value)
+                "--measure" -> measures.add(value)
+                "--grid" -> value.assignment().let { (target, values) -> grid[target] = values.split(",") }
+                "--random" -> value.assignment().let { (target, range) ->
+                    val bounds = range.split(":")
+                    require(bounds.size == 2) { "Expected a range like 0:1 but got $range" }
+                    ranges[target] = bounds[0].toDouble()..bounds[1].toDouble()
+                }
+                else -> throw IllegalArgumentException("Unknown option $option")
+            }
+            i += 2
+        }
+        require(grid.isEmpty() || ranges.isEmpty()) { "Use either --grid or --random, not both" }
+    } catch (e: IllegalArgumentException) {
+        System.err.println(e.message)
+        System.err.println(usage)
+        exitProcess(1)
+    }
+
+    val sweep = if (ranges.isNotEmpty()) {
+        RandomSweep(samples, ranges, seed ?: Random.nextLong())
+    } else {
+        GridSweep(grid)
+    }
+    val runner = BatchRunner(workspaceFile, iterations, measures, replicas, recordInterval, threads)
+    val start = System.nanoTime()
+    val records = runner.run(sweep)
+    BatchRunner.writeCsv(records, measures, output)
+    val seconds = (System.nanoTime() - start) / 1e9
+    println("Wrote ${records.size} records from ${records.map { it.run.index }.distinct().size} runs " +
+            "to ${output.path} in ${"%.1f".format(seconds)}s")
+    exitProcess(0)
+}
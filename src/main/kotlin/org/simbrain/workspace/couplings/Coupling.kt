@@ -21,6 +21,11 @@ import java.lang.reflect.Type
  */
 class Coupling private constructor(val producer: Producer, val consumer: Consumer) {
 
+    /**
+     * Whether values can be passed as primitive doubles, without boxing.
+     */
+    private val isDoubleCoupling = producer.isDoubleValued && consumer.isDoubleValued
+
     /**
      * This is the main action!  Set the value of the consumer based on the
      * value of the producer.
@@ -30,7 +35,11 @@ class Coupling private constructor(val producer: Producer, val consumer: Consume
      * (cf http://www.javapractices.com/topic/TopicAction.do?Id=15)).
      */
     fun update() {
-        consumer.setValue(producer.value)
+        if (isDoubleCoupling) {
+            consumer.setDoubleValue(producer.doubleValue)
+        } else {
+            consumer.setValue(producer.value)
+        }
     }
 
     val type: Type
@@ -5,7 +5,8 @@ import java.lang.reflect.Method
 
 /**
  * Cache method objects for each [AttributeContainer]. Reflection is still used to create Method objects but they are
- * cached here for quick access.
+ * cached here for quick access. Compiled accessors for each method (see [AttributeAccessors]) are also created once
+ * and shared by every producer or consumer using that method, so that coupling updates do not go through reflection.
  *
  * A utility class for [CouplingManager]. Provides optimized ways to access specific sets of producers and consumers.
  * These methods should not be called directly and this class should not be instantiated outside of CouplingManager.
@@ -89,8 +90,13 @@ class CouplingCache(val couplingManager: CouplingManager) {
         val customPriorityMethod = javaClass.findMethod(annotation.customPriorityMethod)
         val priority = customPriorityMethod?.invoke(this) as? Int ?: annotation.priority
 
+        val getter = AttributeAccessors.getter(method)
+        val doubleGetter = if (AttributeAccessors.isDouble(method.returnType)) {
+            AttributeAccessors.doubleGetter(method)
+        } else null
 
         fun (attributeContainer: AttributeContainer) = Producer.builder(attributeContainer, method)
+                .accessors(getter, doubleGetter)
                 .description(annotation.description)
                 .priority(priority)
                 .customDescription(customDescription)
@@ -117,7 +123,13 @@ class CouplingCache(val couplingManager: CouplingManager) {
         val customPriorityMethod = javaClass.findMethod(annotation.customPriorityMethod)
         val priority = customPriorityMethod?.invoke(this) as? Int ?: annotation.priority
 
+        val setter = AttributeAccessors.setter(method)
+        val doubleSetter = if (AttributeAccessors.isDouble(method.parameterTypes[0])) {
+            AttributeAccessors.doubleSetter(method)
+        } else null
+
         fun (attributeContainer: AttributeContainer) = Consumer.builder(attributeContainer, method)
+                .accessors(setter, doubleSetter)
                 .priority(priority)
                 .description(annotation.description)
                 .customDescription(customDescription)
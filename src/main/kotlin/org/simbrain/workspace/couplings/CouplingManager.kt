@@ -1,8 +1,5 @@
 package org.simbrain.workspace.couplings
 
-import kotlinx.coroutines.async
-import kotlinx.coroutines.awaitAll
-import kotlinx.coroutines.coroutineScope
 import org.simbrain.util.cartesianProduct
 import org.simbrain.workspace.*
 import java.lang.reflect.Method
@@ -42,6 +39,13 @@ class CouplingManager(val workspace: Workspace) {
      */
     val couplings: Set<Coupling> = _couplings
 
+    /**
+     * Incremented whenever a coupling is added or removed, so that caches of [couplings] can tell when they are stale.
+     */
+    @Volatile
+    var version = 0L
+        private set
+
     /**
      * Couplings associated with an [AttributeContainer]. For faster lookup.
      */
@@ -189,6 +193,7 @@ class CouplingManager(val workspace: Workspace) {
      */
     fun createCoupling(producer: Producer?, consumer: Consumer?) = Coupling.create(producer, consumer).also {
         _couplings.add(it)
+        version++
         attributeContainerCouplings.getOrPut(it.producer.baseObject) { LinkedHashSet() }.add(it)
         attributeContainerCouplings.getOrPut(it.consumer.baseObject) { LinkedHashSet() }.add(it)
         events.couplingAdded.fireAndForget(it)
@@ -284,12 +289,11 @@ class CouplingManager(val workspace: Workspace) {
     }
 
     /**
-     * Update all couplings by setting the consumers to take the values of their producers.
+     * Update all couplings by setting the consumers to take the values of their producers, in the order the couplings
+     * were created. See [org.simbrain.workspace.updater.UpdateScheduler] for parallel update.
      */
-    suspend fun updateCouplings() {
-        coroutineScope {
-            couplings.map { async { it.update() } }.awaitAll()
-        }
+    fun updateCouplings() {
+        couplings.forEach { it.update() }
     }
 
     /**
@@ -304,6 +308,7 @@ class CouplingManager(val workspace: Workspace) {
 
     private fun removeCouplingWithoutFiringEvent(coupling: Coupling) {
         _couplings.remove(coupling)
+        version++
         attributeContainerCouplings[coupling.producer.baseObject]?.let {
             it.remove(coupling)
             if (it.isEmpty()) {
@@ -320,6 +325,7 @@ class CouplingManager(val workspace: Workspace) {
 
     fun removeAttributeContainer(attributeContainer: AttributeContainer) {
         attributeContainerCouplings[attributeContainer]?.let {
+            version++
             it.forEach { coupling ->
                 _couplings.remove(coupling)
                 if (coupling.consumer.baseObject !== attributeContainer) {
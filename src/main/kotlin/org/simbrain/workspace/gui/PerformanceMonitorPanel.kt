@@ -1,17 +1,11 @@
 package org.simbrain.workspace.gui
 
-import kotlinx.coroutines.Dispatchers
-import kotlinx.coroutines.launch
 import org.simbrain.util.format
 import org.simbrain.workspace.Workspace
 import org.simbrain.workspace.updater.*
 import java.awt.BorderLayout
 import java.awt.Font
-import java.lang.Long.max
-import java.lang.Long.min
-import java.util.*
 import javax.swing.*
-import kotlin.math.roundToLong
 
 /**
  * Display update action performance and thread monitor.
@@ -22,12 +16,10 @@ class PerformanceMonitorPanel(private val workspace: Workspace) : JPanel(BorderL
 
     private val contentPanel = JPanel()
 
-    data class TimerProperties(val identifier: String, val min: Long, val avg: Long, val max: Long, var markForDeletion: Boolean = true)
-    data class ThreadAction(val threadName: String, val actionName: String, var markForDeletion: Boolean = true)
-
-    private val timers: MutableMap<Any, TimerProperties> = LinkedHashMap()
-
-    private val threadActions: MutableMap<String, ThreadAction> = TreeMap()
+    /**
+     * Timer counts at the last refresh, so that only timers that have run since then are shown.
+     */
+    private val lastCounts = HashMap<String, Long>()
 
     /**
      * Constructor for viewer panel.
@@ -54,51 +46,32 @@ class PerformanceMonitorPanel(private val workspace: Workspace) : JPanel(BorderL
 
         this.add("Center", contentPanel)
 
-        workspace.launch(Dispatchers.Default) {
-            PerformanceMonitor.flow.collect { (identifier, name, threadName, nanoTime) ->
-                val properties = timers.getOrPut(identifier) { TimerProperties(name, nanoTime, nanoTime, nanoTime) }
-                val (_, min, avg, max) = properties
-                timers[identifier] = properties.copy(
-                    min = min(min, nanoTime),
-                    avg = (0.99 * avg + 0.01 * nanoTime).roundToLong(),
-                    max = max(max, nanoTime),
-                    markForDeletion = false
-                )
-                threadActions[threadName] = ThreadAction(threadName, name, markForDeletion = false)
-            }
-        }
-
         workspace.addNonRemovableAction("performance monitor") {
-            timers.entries.filter { (_, record) ->
-                record.markForDeletion
-            }.forEach { (key) -> timers.remove(key) }
-
-            threadActions.entries.filter { (_, record) ->
-                record.markForDeletion
-            }.forEach { (key) -> threadActions.remove(key) }
+            val timers = PerformanceMonitor.snapshot().filter { timer ->
+                (lastCounts.put(timer.name, timer.count) ?: 0L) < timer.count
+            }
 
-            timersList.model = DefaultListModel<String>().apply { addAll(timers.values.map { record ->
-                record.markForDeletion = true
-                val (recordName, min, avg, max) = record
+            timersList.model = DefaultListModel<String>().apply { addAll(timers.map { timer ->
                 fun Long.toSecondString()  = (this / 1e9).format(5)
-                val minSeconds = min.toSecondString()
-                val avgSeconds = avg.toSecondString()
-                val maxSeconds = max.toSecondString()
                 val maxLabelLength = 50
-                val formattedRecordName = if (recordName.length > maxLabelLength - 3) {
-                    recordName.substring(0, maxLabelLength - 3) + "..."
+                val formattedRecordName = if (timer.name.length > maxLabelLength - 3) {
+                    timer.name.substring(0, maxLabelLength - 3) + "..."
                 } else {
-                    recordName
+                    timer.name
                 }
-                "%-${maxLabelLength}s min:%s avg:%s max:%s".format(formattedRecordName, minSeconds, avgSeconds, maxSeconds)
+                "%-${maxLabelLength}s min:%s p50:%s p99:%s max:%s".format(
+                    formattedRecordName,
+                    timer.min.toSecondString(),
+                    timer.p50.toSecondString(),
+                    timer.p99.toSecondString(),
+                    timer.max.toSecondString()
+                )
             }) }
             timersList.repaint()
-            threadsList.model = DefaultListModel<String>().apply { addAll(threadActions.values.map { record ->
-                record.markForDeletion = true
-                val (threadName, name) = record
-                "$threadName: $name"
-            }) }
+            threadsList.model = DefaultListModel<String>().apply { addAll(
+                PerformanceMonitor.threadActivity().map { (threadName, name) -> "$threadName: $name" }
+            ) }
         }
 
     }
-}
\ No newline at end of file
+}
@@ -1,39 +1,50 @@
 package org.simbrain.workspace.updater
 
-import kotlinx.coroutines.flow.MutableSharedFlow
-import kotlinx.coroutines.flow.asSharedFlow
 import org.simbrain.workspace.gui.PerformanceMonitorPanel
-import kotlin.system.measureNanoTime
+import java.io.File
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.atomic.LongAdder
 
 /**
  * A singleton object that can be used to track how long blocks of code take to execute. Used by the
- * [PerformanceMonitorPanel] to display performance statistics.
+ * [PerformanceMonitorPanel] to display performance statistics, and can be exported to CSV or JSON, e.g. from headless
+ * simulations.
+ *
+ * Timings are accumulated by name in a [PerformanceTimer], which keeps a fixed-size latency histogram along with the
+ * count, total, min and max. Recording a time takes a few atomic operations and does not allocate or lock once a timer
+ * and thread have been seen, so the monitor is cheap enough to leave on.
  */
 object PerformanceMonitor {
 
     /**
-     * The monitor consumes resources so by default it is disabled. It is only enabled when the
-     * [PerformanceMonitorPanel] is visible.
+     * Whether times are recorded.
      */
-    var enabled = false
+    @Volatile
+    var enabled = true
 
     /**
-     * Asynchronously buffers measured events for tracking their performance stats.
+     * Timers by name.
      */
-    private val mutableSharedFlow = MutableSharedFlow<PerformanceMetrics>()
-    val flow = mutableSharedFlow.asSharedFlow()
+    private val timers = ConcurrentHashMap<String, PerformanceTimer>()
+
+    /**
+     * The name of the last block recorded on each thread.
+     */
+    private val threadActivity = ConcurrentHashMap<String, String>()
 
     /**
      * Record the time a provided block takes to execute.
      */
     suspend fun record(
         /**
-         * An object which identifies the "type" of the event, so that statistics can be gathered like average, max,
-         * and min time it takes that type of event to execute.
+         * An object which identifies the "type" of the event. Only used to provide a default name.
          */
         identifier: Any,
         /**
-         * String description for [PerformanceMonitorPanel].
+         * Name of the timer that the time is added to, so that statistics can be gathered like average, max,
+         * and min time it takes that type of event to execute.
          */
         name: String = identifier.toString(),
         /**
@@ -42,17 +53,109 @@ object PerformanceMonitor {
         block: suspend () -> Unit
     ) {
         if (enabled) {
-            val nanoTime = measureNanoTime {
-                block()
-            }
-            val thread = Thread.currentThread()
+            val start = System.nanoTime()
+            block()
+            report(name, System.nanoTime() - start)
+        } else {
+            block()
+        }
+    }
 
-            mutableSharedFlow.emit(PerformanceMetrics(identifier, name, thread.name, nanoTime))
+    /**
+     * Record the time a provided block takes to execute, adding it to a timer obtained from [timer]. Unlike the named
+     * version this does not build a name on every call, so it is better suited to code that runs every update.
+     */
+    suspend fun record(timer: PerformanceTimer, block: suspend () -> Unit) {
+        if (enabled) {
+            val start = System.nanoTime()
+            block()
+            report(timer, System.nanoTime() - start)
         } else {
             block()
         }
     }
 
+    /**
+     * Add a time measured elsewhere to the named timer, attributed to the current thread.
+     */
+    fun report(name: String, nanoTime: Long) {
+        if (!enabled) {
+            return
+        }
+        report(timer(name), nanoTime)
+    }
+
+    /**
+     * Add a time measured elsewhere to a timer obtained from [timer], attributed to the current thread. Timers can be
+     * kept across [reset]s; they are registered again when next used.
+     */
+    fun report(timer: PerformanceTimer, nanoTime: Long) {
+        if (!enabled) {
+            return
+        }
+        val current = timers[timer.name] ?: timers.putIfAbsent(timer.name, timer) ?: timer
+        val threadName = Thread.currentThread().name
+        current.add(nanoTime, threadName)
+        threadActivity[threadName] = timer.name
+    }
+
+    /**
+     * Returns the timer with the given name, creating it if needed. Code that records often can keep the timer and
+     * pass it to [record] or [report].
+     */
+    fun timer(name: String): PerformanceTimer = timers[name] ?: timers.computeIfAbsent(name) { PerformanceTimer(it) }
+
+    /**
+     * Current statistics for every timer, sorted by name.
+     */
+    fun snapshot(): List<TimerSnapshot> = timers.values.map { it.snapshot() }.sortedBy { it.name }
+
+    /**
+     * The name of the last block recorded on each thread, by thread name.
+     */
+    fun threadActivity(): Map<String, String> = threadActivity.toSortedMap()
+
+    /**
+     * Remove all timers.
+     */
+    fun reset() {
+        timers.clear()
+        threadActivity.clear()
+    }
+
+    /**
+     * Returns one line per timer, with the thread column set to "all", followed by one line per thread that ran it.
+     * Percentiles, min and max are only given for the timer as a whole. Times are in nanoseconds.
+     */
+    fun toCsv() = buildString {
+        appendLine("name,thread,count,total,mean,min,p50,p99,max")
+        snapshot().forEach { timer ->
+            val name = timer.name.csvEscape()
+            appendLine("$name,all,${timer.count},${timer.totalNanos},${timer.mean.toLong()}," +
+                    "${timer.min},${timer.p50},${timer.p99},${timer.max}")
+            timer.threads.forEach { (thread, times) ->
+                val mean = if (times.count == 0L) 0 else times.totalNanos / times.count
+                appendLine("$name,${thread.csvEscape()},${times.count},${times.totalNanos},$mean,,,,")
+            }
+        }
+    }
+
+    /**
+     * Returns an array of timer objects with their per-thread breakdown. Times are in nanoseconds.
+     */
+    fun toJson() = snapshot().joinToString(",\n", "[\n", "\n]\n") { timer ->
+        val threads = timer.threads.entries.joinToString(", ") { (thread, times) ->
+            "{\"thread\": ${thread.jsonEscape()}, \"count\": ${times.count}, \"total\": ${times.totalNanos}}"
+        }
+        "  {\"name\": ${timer.name.jsonEscape()}, \"count\": ${timer.count}, \"total\": ${timer.totalNanos}, " +
+                "\"min\": ${timer.min}, \"mean\": ${timer.mean.toLong()}, \"p50\": ${timer.p50}, \"p99\": ${timer.p99}, " +
+                "\"max\": ${timer.max}, \"threads\": [$threads]}"
+    }
+
+    fun writeCsv(file: File) = file.writeText(toCsv())
+
+    fun writeJson(file: File) = file.writeText(toJson())
+
     /**
      * Convenient way to invoke actions and record their performance.
      */
@@ -61,6 +164,164 @@ object PerformanceMonitor {
             run()
         }
     }
+
+    private fun String.csvEscape() = if (any { it == ',' || it == '"' || it == '\n' }) {
+        "\"${replace("\"", "\"\"")}\""
+    } else this
+
+    private fun String.jsonEscape() = buildString {
+        append('"')
+        this@jsonEscape.forEach {
+            when {
+                it == '"' || it == '\\' -> append('\\').append(it)
+                it < ' ' -> append("\\u%04x".format(it.code))
+                else -> append(it)
+            }
+        }
+        append('"')
+    }
 }
 
-data class PerformanceMetrics(val identifier: Any, val name: String, val threadName: String, val nanoTime: Long);
\ No newline at end of file
+/**
+ * Accumulates execution times for one named block of code. All updates are lock-free.
+ *
+ * Times are counted in a log-linear histogram in the style of HdrHistogram: each power of two is divided into
+ * [SUB_BUCKETS] equal buckets, so percentiles are accurate to within about 6%. Times above [MAX_TRACKABLE] nanoseconds
+ * (about 18 minutes) are counted in the last bucket.
+ */
+class PerformanceTimer(val name: String) {
+
+    private val buckets = AtomicLongArray(NUM_BUCKETS)
+
+    private val count = LongAdder()
+
+    private val total = LongAdder()
+
+    private val min = AtomicLong(Long.MAX_VALUE)
+
+    private val max = AtomicLong(0)
+
+    private val threads = ConcurrentHashMap<String, ThreadTimes>()
+
+    /**
+     * Add a time in nanoseconds.
+     */
+    fun add(nanoTime: Long, threadName: String = Thread.currentThread().name) {
+        val time = nanoTime.coerceIn(0, MAX_TRACKABLE)
+        buckets.incrementAndGet(bucketIndex(time))
+        count.increment()
+        total.add(time)
+        if (time < min.get()) {
+            min.accumulateAndGet(time) { a, b -> minOf(a, b) }
+        }
+        if (time > max.get()) {
+            max.accumulateAndGet(time) { a, b -> maxOf(a, b) }
+        }
+        val threadTimes = threads[threadName] ?: threads.computeIfAbsent(threadName) { ThreadTimes() }
+        threadTimes.count.increment()
+        threadTimes.total.add(time)
+    }
+
+    /**
+     * Approximate time below which the given fraction of recorded times fall.
+     */
+    fun percentile(fraction: Double): Long {
+        val counts = LongArray(NUM_BUCKETS) { buckets[it] }
+        val n = counts.sum()
+        if (n == 0L) {
+            return 0
+        }
+        val rank = maxOf(1L, kotlin.math.ceil(fraction * n).toLong())
+        var seen = 0L
+        for (i in counts.indices) {
+            seen += counts[i]
+            if (seen >= rank) {
+                return (bucketLowerBound(i) + bucketWidth(i) / 2).coerceIn(min.get(), max.get())
+            }
+        }
+        return max.get()
+    }
+
+    fun snapshot(): TimerSnapshot {
+        val n = count.sum()
+        return TimerSnapshot(
+            name = name,
+            count = n,
+            totalNanos = total.sum(),
+            min = if (n == 0L) 0 else min.get(),
+            max = max.get(),
+            p50 = percentile(.5),
+            p99 = percentile(.99),
+            threads = threads.entries.associate { (thread, times) ->
+                thread to ThreadSnapshot(times.count.sum(), times.total.sum())
+            }.toSortedMap()
+        )
+    }
+
+    private class ThreadTimes {
+        val count = LongAdder()
+        val total = LongAdder()
+    }
+
+    companion object {
+
+        private const val SUB_BUCKET_BITS = 4
+
+        const val SUB_BUCKETS = 1 shl SUB_BUCKET_BITS
+
+        const val MAX_TRACKABLE = (1L shl 40) - 1
+
+        private val NUM_BUCKETS = bucketIndex(MAX_TRACKABLE) + 1
+
+        /**
+         * Values below [SUB_BUCKETS] get a bucket each. Above that, the bucket is determined by the position of the
+         * highest bit and the [SUB_BUCKET_BITS] bits below it.
+         */
+        fun bucketIndex(value: Long): Int {
+            if (value < SUB_BUCKETS) {
+                return value.toInt()
+            }
+            val exponent = 63 - java.lang.Long.numberOfLeadingZeros(value)
+            val subBucket = (value ushr (exponent - SUB_BUCKET_BITS)).toInt() and (SUB_BUCKETS - 1)
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket
+        }
+
+        fun bucketLowerBound(index: Int): Long {
+            if (index < SUB_BUCKETS) {
+                return index.toLong()
+            }
+            val exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1
+            val subBucket = index % SUB_BUCKETS
+            return (SUB_BUCKETS + subBucket).toLong() shl (exponent - SUB_BUCKET_BITS)
+        }
+
+        fun bucketWidth(index: Int): Long {
+            if (index < SUB_BUCKETS) {
+                return 1
+            }
+            val exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1
+            return 1L shl (exponent - SUB_BUCKET_BITS)
+        }
+    }
+}
+
+/**
+ * Statistics of a [PerformanceTimer] at a point in time. Times are in nanoseconds.
+ */
+data class TimerSnapshot(
+    val name: String,
+    val count: Long,
+    val totalNanos: Long,
+    val min: Long,
+    val max: Long,
+    val p50: Long,
+    val p99: Long,
+    val threads: Map<String, ThreadSnapshot>
+) {
+    val mean get() = if (count == 0L) 0.0 else totalNanos.toDouble() / count
+}
+
+/**
+ * The count and total time of a [PerformanceTimer] on one thread.
+ */
+data class ThreadSnapshot(val count: Long, val totalNanos: Long)
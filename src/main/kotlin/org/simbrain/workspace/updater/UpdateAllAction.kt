@@ -4,6 +4,8 @@ import kotlinx.coroutines.async
 import kotlinx.coroutines.awaitAll
 import kotlinx.coroutines.coroutineScope
 import org.pmw.tinylog.Logger
+import org.simbrain.workspace.WorkspaceComponent
+import java.util.*
 
 /**
  * This is the default action for all workspace updates.
@@ -13,14 +15,22 @@ import org.pmw.tinylog.Logger
  */
 class UpdateAllAction(@Transient val updater: WorkspaceUpdater) : UpdateAction(description = "Update All Components and Couplings") {
 
+    /**
+     * Performance timers for each component's update, with the component name they were made for. See
+     * [componentTimer].
+     */
+    @Transient
+    private var componentTimers: WeakHashMap<WorkspaceComponent, Pair<String, PerformanceTimer>>? = null
+
     override suspend fun run(): Unit = coroutineScope {
         val components = updater.components
         updateCouplings()
         components
             .filter { it.updateOn }
             .map {
+            val timer = componentTimer(it)
             async {
-               PerformanceMonitor.record("Updating Component ${it.name}") {
+               PerformanceMonitor.record(timer) {
                    it.update()
                }
             }
@@ -28,10 +38,28 @@ class UpdateAllAction(@Transient val updater: WorkspaceUpdater) : UpdateAction(d
     }
 
     /**
-     * Update couplings.
+     * Returns the timer for a component's update, made again if the component has been renamed.
+     */
+    private fun componentTimer(component: WorkspaceComponent): PerformanceTimer {
+        val timers = componentTimers ?: WeakHashMap<WorkspaceComponent, Pair<String, PerformanceTimer>>().also {
+            componentTimers = it
+        }
+        return timers[component]?.takeIf { (name, _) -> name == component.name }?.second
+            ?: PerformanceMonitor.timer("Updating Component ${component.name}").also {
+                timers[component] = component.name to it
+            }
+    }
+
+    /**
+     * Update couplings, either in parallel waves or serially in the order they were created. See
+     * [WorkspaceUpdater.isParallel].
      */
     suspend fun updateCouplings() {
-        updater.workspace.couplingManager.updateCouplings()
+        if (updater.isParallel) {
+            updater.scheduler.updateCouplings()
+        } else {
+            updater.workspace.couplingManager.updateCouplings()
+        }
         Logger.trace("couplings updated")
         updater.events.couplingsUpdates.fireAndForget()
     }
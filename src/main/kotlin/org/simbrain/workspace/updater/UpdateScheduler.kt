@@ -0,0 +1,175 @@
+package org.simbrain.workspace.updater
+
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import org.simbrain.workspace.AttributeContainer
+import org.simbrain.workspace.WorkspaceComponent
+import org.simbrain.workspace.couplings.Coupling
+import org.simbrain.workspace.couplings.CouplingManager
+import java.util.*
+
+/**
+ * Schedules workspace update actions and couplings so that independent ones run in parallel. Used by
+ * [WorkspaceUpdater] when [WorkspaceUpdater.isParallel] is true.
+ *
+ * Each action or coupling reads and writes a set of workspace components. A coupling reads the component of its
+ * producer and writes the component of its consumer, and a component update writes its component. Together with the
+ * order of the list these define a dependency graph: an item depends on every earlier item that writes something it
+ * reads or writes, or reads something it writes. Items are grouped into topological "waves", where every item in a
+ * wave depends only on items in earlier waves, so running the waves in order, with the items in each wave in parallel,
+ * gives the same result as running the list serially. Actions whose effects are not known (including
+ * [UpdateAllAction], which is parallel internally) act as barriers that run alone.
+ *
+ * Waves are cached and recomputed when actions, couplings, or components are added or removed.
+ */
+class UpdateScheduler(val updater: WorkspaceUpdater) {
+
+    /**
+     * What an action or coupling reads and writes. Null footprints mark barriers.
+     */
+    private class Footprint(val reads: List<Any>, val writes: List<Any>)
+
+    @Volatile
+    private var actionWaves: List<List<UpdateAction>>? = null
+
+    @Volatile
+    private var couplingWaves: List<List<Coupling>>? = null
+
+    /**
+     * Coupling manager and its [CouplingManager.version] when [couplingWaves] was computed. The workspace replaces its
+     * coupling manager when it is cleared, so both are checked rather than listening to one manager's events.
+     */
+    private var couplingManager: CouplingManager? = null
+
+    private var couplingVersion = -1L
+
+    /**
+     * Maps attribute containers to the components that own them. Built as needed when waves are computed.
+     */
+    private var containerComponents = IdentityHashMap<AttributeContainer, WorkspaceComponent>()
+
+    init {
+        val workspace = updater.workspace
+        workspace.events.componentAdded.on(wait = true) { invalidate() }
+        workspace.events.componentRemoved.on(wait = true) { invalidate() }
+        updater.updateManager.addListener(object : UpdateActionManager.UpdateManagerListener {
+            override fun actionAdded(action: UpdateAction) = invalidate()
+            override fun actionRemoved(action: UpdateAction) = invalidate()
+            override fun actionOrderChanged() = invalidate()
+        })
+    }
+
+    /**
+     * Discard cached waves.
+     */
+    fun invalidate() {
+        actionWaves = null
+        couplingWaves = null
+    }
+
+    /**
+     * The workspace update actions, followed by the non-removable actions, grouped into waves.
+     */
+    val actionSchedule: List<List<UpdateAction>>
+        get() = actionWaves ?: computeWaves(updater.updateManager.actionList + updater.updateManager.nonRemovableActions) {
+            when (it) {
+                is UpdateCoupling -> it.coupling.footprint()
+                is UpdateComponent -> Footprint(listOf(), listOf(it.component))
+                else -> null
+            }
+        }.also { actionWaves = it }
+
+    /**
+     * All couplings, in the order they were created, grouped into waves.
+     */
+    val couplingSchedule: List<List<Coupling>>
+        get() {
+            val manager = updater.workspace.couplingManager
+            val version = manager.version
+            return couplingWaves?.takeIf { manager === couplingManager && version == couplingVersion }
+                ?: computeWaves(manager.couplings.toList()) { it.footprint() }.also {
+                    couplingWaves = it
+                    couplingManager = manager
+                    couplingVersion = version
+                }
+        }
+
+    /**
+     * Run the workspace update actions wave by wave.
+     */
+    suspend fun runActions(run: suspend (UpdateAction) -> Unit) = runWaves(actionSchedule, run)
+
+    /**
+     * Update all couplings wave by wave.
+     */
+    suspend fun updateCouplings() = runWaves(couplingSchedule) { it.update() }
+
+    private suspend fun <T> runWaves(waves: List<List<T>>, run: suspend (T) -> Unit) = coroutineScope {
+        for (wave in waves) {
+            if (wave.size == 1) {
+                run(wave[0])
+            } else {
+                wave.map { async { run(it) } }.awaitAll()
+            }
+        }
+    }
+
+    /**
+     * Assign each item to the earliest wave after all the items it depends on.
+     */
+    private fun <T> computeWaves(items: List<T>, footprintOf: (T) -> Footprint?): List<List<T>> {
+        containerComponents = IdentityHashMap<AttributeContainer, WorkspaceComponent>().apply {
+            updater.components.forEach { component ->
+                component.attributeContainers.forEach { put(it, component) }
+            }
+        }
+
+        // Latest wave that reads or writes each resource
+        val lastRead = HashMap<Any, Int>()
+        val lastWrite = HashMap<Any, Int>()
+        // Every item must come after the most recent barrier
+        var floor = 0
+        var maxWave = -1
+        val waves = ArrayList<MutableList<T>>()
+
+        for (item in items) {
+            val footprint = footprintOf(item)
+            val wave = if (footprint == null) {
+                maxWave + 1
+            } else {
+                var earliest = floor
+                footprint.reads.forEach { earliest = maxOf(earliest, (lastWrite[it] ?: -1) + 1) }
+                footprint.writes.forEach {
+                    earliest = maxOf(earliest, (lastWrite[it] ?: -1) + 1, (lastRead[it] ?: -1) + 1)
+                }
+                footprint.reads.forEach { lastRead.merge(it, earliest) { a, b -> maxOf(a, b) } }
+                footprint.writes.forEach { lastWrite.merge(it, earliest) { a, b -> maxOf(a, b) } }
+                earliest
+            }
+            if (footprint == null) {
+                floor = wave + 1
+            }
+            maxWave = maxOf(maxWave, wave)
+            if (wave == waves.size) {
+                waves.add(ArrayList())
+            }
+            waves[wave].add(item)
+        }
+        return waves
+    }
+
+    /**
+     * A coupling reads its producer's component and writes its consumer's component. Containers that are not found in
+     * any component are treated as resources of their own.
+     */
+    private fun Coupling.footprint(): Footprint {
+        val source = containerComponents[producer.baseObject] ?: producer.baseObject
+        val target = containerComponents[consumer.baseObject] ?: consumer.baseObject
+        return if (source === target) {
+            Footprint(listOf(), listOf(target))
+        } else {
+            Footprint(listOf(source), listOf(target))
+        }
+    }
+}
@@ -46,6 +46,18 @@ class WorkspaceUpdater(val workspace: Workspace) {
      */
     val updateManager: UpdateActionManager = UpdateActionManager(this)
 
+    /**
+     * If true, update actions and couplings that do not depend on each other are run in parallel, using [scheduler].
+     * Otherwise (the default) actions are run one at a time in list order and couplings in the order they were
+     * created, which is deterministic.
+     */
+    var isParallel = false
+
+    /**
+     * Groups actions and couplings into waves that can run in parallel. Used when [isParallel] is true.
+     */
+    val scheduler = UpdateScheduler(this)
+
     /**
      * Reset time to 0.
      */
@@ -162,13 +174,21 @@ class WorkspaceUpdater(val workspace: Workspace) {
     /**
      * Executes the main workspace update.
      */
-    private suspend fun doUpdate() {
+    private suspend fun doUpdate() = PerformanceMonitor.record(this, "Workspace update") {
         time++
         Logger.trace("starting: $time")
         withContext(workspace.coroutineContext) {
-            for (action in updateManager.actionList + updateManager.nonRemovableActions) {
-                with(PerformanceMonitor) {
-                    action()
+            if (isParallel) {
+                scheduler.runActions { action ->
+                    with(PerformanceMonitor) {
+                        action()
+                    }
+                }
+            } else {
+                for (action in updateManager.actionList + updateManager.nonRemovableActions) {
+                    with(PerformanceMonitor) {
+                        action()
+                    }
                 }
             }
         }
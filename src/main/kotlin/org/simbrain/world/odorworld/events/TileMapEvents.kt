@@ -9,5 +9,10 @@ import org.simbrain.util.Events2
 class TileMapEvents2: Events2() {
     val layerAdded = NoArgEvent()
     val layerImageChanged = ChangedEvent<PImage?>()
+
+    /**
+     * Tiles were redrawn in place. See [org.simbrain.util.piccolo.TileMapLayer.takeDirtyRegion].
+     */
+    val tilesChanged = NoArgEvent()
     val mapSizeChanged = NoArgEvent()
 }
\ No newline at end of file
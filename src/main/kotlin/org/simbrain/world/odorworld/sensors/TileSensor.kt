@@ -3,9 +3,12 @@ package org.simbrain.world.odorworld.sensors
 import org.simbrain.util.UserParameter
 import org.simbrain.util.decayfunctions.DecayFunction
 import org.simbrain.util.decayfunctions.LinearDecayFunction
-import org.simbrain.util.piccolo.*
-import org.simbrain.util.plus
+import org.simbrain.util.piccolo.TileMap
+import org.simbrain.util.piccolo.getRelativeGridLocationsInRadius
 import org.simbrain.world.odorworld.entities.OdorWorldEntity
+import kotlin.math.abs
+import kotlin.math.floor
+import kotlin.math.hypot
 
 /**
  * Sensor that reacts when an object of a given type is near it.
@@ -31,26 +34,74 @@ class TileSensor @JvmOverloads constructor(
     override var decayFunction: DecayFunction = LinearDecayFunction(70.0)
         set(value) {
             field = value
-            relativeGridCoordinates = null // invalidate pre-computed grid coordinates
+            relativeGridOffsets = null // invalidate pre-computed grid coordinates
         }
 
     /**
-     * Cached relative grid coordinates this sensor should check
+     * Cached relative grid coordinates this sensor should check, as x, y pairs.
      */
-    private var relativeGridCoordinates: List<GridCoordinate>? = null
+    @Transient
+    private var relativeGridOffsets: IntArray? = null
+
+    /**
+     * Dispersion and tile size [relativeGridOffsets] were computed for, since the decay function can be edited in
+     * place.
+     */
+    @Transient
+    private var offsetsDispersion = 0.0
+    @Transient
+    private var offsetsTileWidth = 0
+    @Transient
+    private var offsetsTileHeight = 0
+
+    /**
+     * Largest absolute x and y offset in [relativeGridOffsets].
+     */
+    @Transient
+    private var maxOffsetX = 0
+    @Transient
+    private var maxOffsetY = 0
 
     override var showDispersion = false
 
+    private fun TileMap.getRelativeGridOffsets(): IntArray {
+        val dispersion = decayFunction.dispersion
+        relativeGridOffsets?.let {
+            if (offsetsDispersion == dispersion && offsetsTileWidth == tileWidth && offsetsTileHeight == tileHeight) {
+                return it
+            }
+        }
+        val coordinates = getRelativeGridLocationsInRadius(dispersion).map { it.int }.toList()
+        maxOffsetX = coordinates.maxOfOrNull { abs(it.x) } ?: 0
+        maxOffsetY = coordinates.maxOfOrNull { abs(it.y) } ?: 0
+        offsetsDispersion = dispersion
+        offsetsTileWidth = tileWidth
+        offsetsTileHeight = tileHeight
+        return coordinates.flatMap { listOf(it.x, it.y) }.toIntArray().also { relativeGridOffsets = it }
+    }
+
     override fun update(parent: OdorWorldEntity) {
-        currentValue = 0.0
         val sensorLocation = computeAbsoluteLocation(parent)
         currentValue = with(parent.world.tileMap) {
-            getRelativeGridLocationsInRadius(decayFunction.dispersion)
-                .map { it + sensorLocation.asPixelCoordinate().toGridCoordinate() }
-                .map { it.asGridCoordinate() to getTileStackAt(it.x.toInt(), it.y.toInt()) }
-                .filter { (_, tiles) -> tiles.any { it.type == tileType } }
-                .map { (pos) -> pos.toPixelCoordinate().distance(sensorLocation) }
-                .sumOf { decayFunction.getScalingFactor(it) * baseValue }
+            val offsets = getRelativeGridOffsets()
+            val field = getTileTypeField(tileType)
+            val sensorX = floor(sensorLocation.x / tileWidth).toInt()
+            val sensorY = floor(sensorLocation.y / tileHeight).toInt()
+            // Most of the time no tile of the type is nearby, which the field can tell without visiting the tiles
+            if (field.count(sensorX - maxOffsetX, sensorY - maxOffsetY, sensorX + maxOffsetX, sensorY + maxOffsetY) == 0) {
+                0.0
+            } else {
+                var sum = 0.0
+                for (k in offsets.indices step 2) {
+                    val x = sensorX + offsets[k]
+                    val y = sensorY + offsets[k + 1]
+                    if (field.has(x, y)) {
+                        val distance = hypot((x + 0.5) * tileWidth - sensorLocation.x, (y + 0.5) * tileHeight - sensorLocation.y)
+                        sum += decayFunction.getScalingFactor(distance) * baseValue
+                    }
+                }
+                sum
+            }
         }
     }
 
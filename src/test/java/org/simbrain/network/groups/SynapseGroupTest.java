@@ -2,9 +2,14 @@ package org.simbrain.network.groups;
 
 import org.junit.jupiter.api.Test;
 import org.simbrain.network.connections.AllToAll;
+import org.simbrain.network.connections.ConnectionStrategy;
 import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Synapse;
 import org.simbrain.network.core.SynapseGroup2;
 
+import java.lang.reflect.Constructor;
+import java.util.Set;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public class SynapseGroupTest {
@@ -18,6 +23,38 @@ public class SynapseGroupTest {
         assertEquals(sg.size(), 4);
     }
 
+    @Test
+    public void testFlatSynapsesFollowGroupChanges() throws ReflectiveOperationException {
+        Network net = new Network();
+        NeuronGroup source = new NeuronGroup(net, 2);
+        NeuronGroup target = new NeuronGroup(net, 2);
+        // Legacy synapse groups are only created by copying, so use the private constructor
+        Constructor<SynapseGroup> constructor = SynapseGroup.class.getDeclaredConstructor(
+                NeuronGroup.class, NeuronGroup.class, ConnectionStrategy.class);
+        constructor.setAccessible(true);
+        SynapseGroup sg = constructor.newInstance(source, target, new AllToAll());
+        Subnetwork subnetwork = new Subnetwork(net) {};
+        subnetwork.addModel(sg);
+        net.addNetworkModelAsync(subnetwork);
+        assertEquals(0, net.getFlatSynapseList().size());
+
+        Synapse s1 = new Synapse(source.getNeuron(0), target.getNeuron(0));
+        Synapse s2 = new Synapse(source.getNeuron(1), target.getNeuron(1));
+        Synapse s3 = new Synapse(source.getNeuron(0), target.getNeuron(1));
+        sg.addExcitatorySynapse(s1);
+        sg.addInhibitorySynapse(s2);
+        sg.addSynapse(s3);
+        assertEquals(Set.of(s1, s2, s3), Set.copyOf(net.getFlatSynapseList()));
+
+        sg.removeSynapse(s1);
+        assertEquals(Set.of(s2, s3), Set.copyOf(net.getFlatSynapseList()));
+
+        s2.forceSetStrength(0);
+        s3.forceSetStrength(1);
+        sg.prune();
+        assertEquals(Set.of(s3), Set.copyOf(net.getFlatSynapseList()));
+    }
+
     /**
      * When the source neuron group is spiking and the target neuron group is not, the
      * prototype synapses should have spike responders.
@@ -109,6 +109,21 @@ public class WeightMatrixTest {
         // TODO: Test with spike responders so that we can check for positive inhib outputs, the more standard case
     }
 
+    @Test
+    public void testSignedOutputs() {
+        na1.setActivations(new double[]{1, 2});
+        var na3 = new NeuronArray(net, 3);
+        WeightMatrix wm2 = new WeightMatrix(net, na1, na3);
+        wm2.setWeights(new double[]{5, -1, 1, 1,-1,-1});
+        // Weights changed without an update event are used
+        wm2.getWeightMatrix().set(2, 1, 3);
+        double[] excitatory = new double[]{1, 1, 1};
+        double[] inhibitory = new double[3];
+        wm2.addSignedOutputsTo(excitatory, inhibitory);
+        assertArrayEquals(new double[]{6,4,7}, excitatory);
+        assertArrayEquals(new double[]{-2,0,-1}, inhibitory);
+    }
+
     @Test
     public void testArrayToNeuronGroup() {
         na1.setActivations(new double[]{.5, -.5});
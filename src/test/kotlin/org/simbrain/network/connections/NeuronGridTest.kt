@@ -0,0 +1,61 @@
+package org.simbrain.network.connections
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.Neuron
+import org.simbrain.util.decayfunctions.StepDecayFunction
+import java.util.*
+import kotlin.math.hypot
+import kotlin.random.Random
+
+class NeuronGridTest {
+
+    val net = Network()
+
+    /**
+     * Neurons on a square lattice with the given spacing.
+     */
+    private fun sheet(side: Int, spacing: Double) = List(side * side) {
+        Neuron(net).apply { setLocation(it % side * spacing, it / side * spacing) }
+    }
+
+    @Test
+    fun `neurons within radius match a brute force search`() {
+        val random = Random(1)
+        val neurons = List(500) {
+            Neuron(net).apply { setLocation(random.nextDouble(-100.0, 400.0), random.nextDouble(0.0, 50.0)) }
+        }
+        val grid = NeuronGrid(neurons, 20.0)
+        listOf(0.0, 5.0, 20.0, 75.0, Double.POSITIVE_INFINITY).forEach { radius ->
+            neurons.take(20).forEach { center ->
+                val found = mutableSetOf<Int>()
+                grid.forEachWithin(center, radius) { found.add(it) }
+                val expected = neurons.indices.filter {
+                    hypot(neurons[it].x - center.x, neurons[it].y - center.y) <= radius
+                }.toSet()
+                assertEquals(expected, found)
+            }
+        }
+    }
+
+    @Test
+    fun `step decay connects each neuron to its lattice neighbors`() {
+        val neurons = sheet(20, 10.0)
+        val synapses = createRadialSynapses(neurons, neurons, StepDecayFunction(10.5))
+        // 4 neighbors each, minus one for each edge neuron and two for each corner
+        assertEquals(20 * 20 * 4 - 4 * 20, synapses.size)
+        synapses.forEach { assertEquals(10.0, hypot(it.source.x - it.target.x, it.source.y - it.target.y), 1e-9) }
+    }
+
+    @Test
+    fun `same seed gives the same synapses`() {
+        val neurons = sheet(40, 10.0)
+        fun connect() = createRadialNoPolaritySynapses(neurons, neurons, .8, 30.0, SplittableRandom(7))
+            .map { neurons.indexOf(it.source) to neurons.indexOf(it.target) }
+        val first = connect()
+        assertEquals(first, connect())
+        // No self connections
+        assertEquals(0, first.count { (src, tar) -> src == tar })
+    }
+}
@@ -0,0 +1,36 @@
+package org.simbrain.network.connections
+
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.Neuron
+import org.simbrain.util.SimbrainConstants.Polarity
+import org.simbrain.util.decayfunctions.GaussianDecayFunction
+import org.simbrain.util.timeNanos
+import java.util.*
+
+/**
+ * Connects square sheets of 5k to 50k neurons, spaced 10 pixels apart, to themselves with
+ * [createRadialPolarizedSynapses] and with distance based [createRadialSynapses], and prints the synapse counts and
+ * times. Since candidates are found through a [NeuronGrid], times should grow about linearly with the number of neurons.
+ */
+fun main() {
+    val net = Network()
+    for (numNeurons in listOf(5_000, 10_000, 20_000, 50_000)) {
+        val side = Math.sqrt(numNeurons.toDouble()).toInt()
+        val neurons = List(side * side) { Neuron(net).apply { setLocation(it % side * 10.0, it / side * 10.0) } }
+        neurons.forEachIndexed { i, n -> n.polarity = if (i % 5 == 0) Polarity.INHIBITORY else Polarity.EXCITATORY }
+
+        var count = 0
+        val gaussianTime = timeNanos {
+            count = createRadialPolarizedSynapses(neurons, neurons, lambda = 30.0, random = SplittableRandom(1)).size
+        }
+        var distanceCount = 0
+        val distanceTime = timeNanos {
+            distanceCount = createRadialSynapses(neurons, neurons, GaussianDecayFunction(40.0), SplittableRandom(1)).size
+        }
+        println(
+            "%,d neurons: radial gaussian %,d synapses in %.0f ms, distance based %,d synapses in %.0f ms".format(
+                neurons.size, count, gaussianTime / 1e6, distanceCount, distanceTime / 1e6
+            )
+        )
+    }
+}
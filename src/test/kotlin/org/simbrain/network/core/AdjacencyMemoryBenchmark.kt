@@ -0,0 +1,48 @@
+package org.simbrain.network.core
+
+import kotlin.random.Random
+
+/**
+ * Rough heap benchmark for neurons and their fan-in / fan-out ([SynapseAdjacency]). Not run as part of the test
+ * suite. Run with a large heap, e.g. -Xmx8g, and optionally pass the number of synapses per neuron as an argument.
+ *
+ * Prints bytes per neuron and bytes per synapse for 10k, 100k, and 1M neurons.
+ */
+fun main(args: Array<String>) {
+    val synapsesPerNeuron = args.firstOrNull()?.toInt() ?: 2
+    for (numNeurons in listOf(10_000, 100_000, 1_000_000)) {
+        val net = Network()
+        val random = Random(42)
+
+        val baseline = usedHeap()
+        val neurons = List(numNeurons) { Neuron(net) }
+        val afterNeurons = usedHeap()
+
+        val synapses = ArrayList<Synapse>(numNeurons * synapsesPerNeuron)
+        neurons.forEach { target ->
+            repeat(synapsesPerNeuron) {
+                synapses.add(Synapse(neurons[random.nextInt(numNeurons)], target))
+            }
+        }
+        val afterSynapses = usedHeap()
+
+        val bytesPerNeuron = (afterNeurons - baseline).toDouble() / numNeurons
+        val bytesPerSynapse = (afterSynapses - afterNeurons).toDouble() / synapses.size
+        println(
+            "%,d neurons: %.1f bytes/neuron, %.1f bytes/synapse (%,d synapses), adjacency arrays %,d bytes".format(
+                numNeurons, bytesPerNeuron, bytesPerSynapse, synapses.size, net.adjacency.estimatedSizeInBytes
+            )
+        )
+        // Keep everything reachable until measured
+        check(neurons.size + synapses.size > 0)
+    }
+}
+
+private fun usedHeap(): Long {
+    val runtime = Runtime.getRuntime()
+    repeat(3) {
+        System.gc()
+        Thread.sleep(100)
+    }
+    return runtime.totalMemory() - runtime.freeMemory()
+}
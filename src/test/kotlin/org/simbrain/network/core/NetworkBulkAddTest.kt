@@ -0,0 +1,51 @@
+package org.simbrain.network.core
+
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.simbrain.network.NetworkModel
+
+class NetworkBulkAddTest {
+
+    private val net = Network()
+
+    @Test
+    fun `bulk add registers models and fires one event`() {
+        val batches = mutableListOf<List<NetworkModel>>()
+        net.events.modelAdded.on(wait = true) { batches.add(it.toList()) }
+        val neurons = List(1000) { Neuron(net).apply { updatePriority = 1000 - it } }
+        val synapses = (1 until 1000).map { Synapse(neurons[it - 1], neurons[it]) }
+        runBlocking { net.addNetworkModelsInBulk(neurons + synapses).join() }
+
+        assertEquals(1, batches.size)
+        assertEquals(neurons + synapses, batches[0])
+        assertEquals(1000, net.freeNeurons.size)
+        assertEquals(999, net.freeSynapses.size)
+        assertEquals(1000, neurons.map { it.id }.toSet().size)
+
+        // Priority list is complete and sorted
+        assertEquals(1000, net.prioritySortedNeuronList.size)
+        assertEquals(neurons.reversed(), net.prioritySortedNeuronList)
+    }
+
+    @Test
+    fun `models added in bulk can be deleted`() {
+        val neurons = List(3) { Neuron(net) }
+        net.addNetworkModelsInBulk(neurons)
+        neurons[1].delete()
+        assertEquals(2, net.freeNeurons.size)
+        assertFalse(neurons[1] in net.freeNeurons)
+        assertTrue(neurons[0] in net.freeNeurons)
+    }
+
+    @Test
+    fun `duplicate synapses in one batch are added once`() {
+        val n1 = Neuron(net)
+        val n2 = Neuron(net)
+        net.addNetworkModelsInBulk(listOf(n1, n2))
+        net.addNetworkModelsInBulk(listOf(Synapse(n1, n2), Synapse(n1, n2)))
+        assertEquals(1, net.freeSynapses.size)
+    }
+}
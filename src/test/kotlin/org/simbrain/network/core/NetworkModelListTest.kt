@@ -0,0 +1,51 @@
+package org.simbrain.network.core
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNotSame
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.simbrain.network.groups.NeuronGroup
+import org.simbrain.network.matrix.NeuronArray
+
+class NetworkModelListTest {
+
+    private val net = Network()
+
+    @Test
+    fun `flat views are cached until the list changes`() {
+        val n1 = Neuron(net)
+        net.addNetworkModelsAsync(n1)
+        val all = net.allModels
+        assertSame(all, net.allModels)
+        assertSame(net.flatNeuronList, net.flatNeuronList)
+
+        val n2 = Neuron(net)
+        net.addNetworkModelsAsync(n2)
+        assertNotSame(all, net.allModels)
+        assertEquals(listOf(n1, n2), net.flatNeuronList)
+
+        n1.delete()
+        assertEquals(listOf(n2), net.allModels)
+    }
+
+    @Test
+    fun `removed models are no longer updated asynchronously`() {
+        val list = NetworkModelList()
+        val na = NeuronArray(net, 2)
+        list.add(na)
+        assertTrue(na in list.getAsyncModels())
+        list.remove(na)
+        assertFalse(na in list.getAsyncModels())
+    }
+
+    @Test
+    fun `flat neurons follow neuron group contents`() {
+        val ng = NeuronGroup(net, 3)
+        net.addNetworkModelsAsync(ng)
+        assertEquals(3, net.flatNeuronList.size)
+        ng.removeNeuron(ng.getNeuron(0))
+        assertEquals(2, net.flatNeuronList.size)
+    }
+}
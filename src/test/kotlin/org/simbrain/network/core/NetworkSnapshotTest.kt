@@ -0,0 +1,88 @@
+package org.simbrain.network.core
+
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotSame
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import org.simbrain.network.groups.NeuronCollection
+import org.simbrain.network.groups.NeuronGroup
+import org.simbrain.network.matrix.NeuronArray
+import org.simbrain.network.matrix.WeightMatrix
+import java.io.File
+
+class NetworkSnapshotTest {
+
+    @TempDir
+    lateinit var dir: File
+
+    private val net = Network()
+    private val n1 = Neuron(net).apply { label = "n1"; forceSetActivation(.5); x = 10.0; isClamped = true }
+    private val n2 = Neuron(net).apply { label = "n2" }
+    private val s1 = Synapse(n1, n2).apply { forceSetStrength(-.25) }
+    private val group = NeuronGroup(net, 3)
+    private val s2 = Synapse(group.getNeuron(0), n2).apply { forceSetStrength(2.0) }
+    private val collection = NeuronCollection(net, listOf(n1, n2))
+    private val na1 = NeuronArray(net, 4)
+    private val na2 = NeuronArray(net, 2)
+    private val wm = WeightMatrix(net, na1, na2).apply { setWeights(DoubleArray(8) { it * .1 }) }
+
+    init {
+        net.addNetworkModelsAsync(n1, n2, s1, group, s2, collection, na1, na2, wm)
+    }
+
+    @Test
+    fun `copy restores free neurons and synapses`() {
+        val copy = net.copy()
+        val (c1, c2) = copy.getModels<Neuron>().sortedBy { it.label }
+        assertEquals(.5, c1.activation)
+        assertEquals(10.0, c1.x)
+        assertTrue(c1.isClamped)
+        assertSame(copy, c1.network)
+
+        val cs1 = copy.getModels<Synapse>().first { it.source === c1 }
+        assertEquals(-.25, cs1.strength)
+        assertSame(c2, cs1.target)
+        assertEquals(2, c2.fanIn.size)
+        assertTrue(c2 in c1.fanOut)
+    }
+
+    @Test
+    fun `copy restores groups and matrices`() {
+        val copy = net.copy()
+        val copyGroup = copy.getModels<NeuronGroup>().single()
+        assertEquals(3, copyGroup.neuronList.size)
+        val cs2 = copy.getModels<Synapse>().first { it.strength == 2.0 }
+        assertSame(copyGroup.getNeuron(0), cs2.source)
+
+        val copyCollection = copy.getModels<NeuronCollection>().single()
+        assertEquals(copy.getModels<Neuron>().toSet(), copyCollection.neuronList.toSet())
+
+        val copyMatrix = copy.getModels<WeightMatrix>().single()
+        assertArrayEquals(wm.weightMatrix.toArray(), copyMatrix.weightMatrix.toArray())
+    }
+
+    @Test
+    fun `copy is independent of the original`() {
+        val copy = net.copy()
+        val c1 = copy.getModels<Neuron>().first { it.label == "n1" }
+        assertNotSame(n1, c1)
+        assertNotSame(n1.updateRule, c1.updateRule)
+        c1.forceSetActivation(-1.0)
+        assertEquals(.5, n1.activation)
+    }
+
+    @Test
+    fun `snapshot files are detected and smaller than xml`() {
+        val file = File(dir, "net.sbn")
+        NetworkSnapshot.write(net, file)
+        assertTrue(file.inputStream().buffered().use { NetworkSnapshot.isSnapshot(it) })
+        assertTrue(file.length() < getNetworkXStream().toXML(net).length)
+
+        val read = NetworkSnapshot.read(file)
+        assertEquals(net.allModels.size, read.allModels.size)
+        assertEquals(-.25, read.getModels<Synapse>().first { it.source.label == "n1" }.strength)
+    }
+}
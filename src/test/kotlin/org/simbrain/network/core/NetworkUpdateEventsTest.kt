@@ -0,0 +1,50 @@
+package org.simbrain.network.core
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.simbrain.network.NetworkModel
+import org.simbrain.network.matrix.NeuronArray
+import org.simbrain.network.matrix.WeightMatrix
+import org.simbrain.workspace.updater.updateAction
+
+class NetworkUpdateEventsTest {
+
+    private val net = Network()
+    private val na1 = NeuronArray(net, 2)
+    private val na2 = NeuronArray(net, 2)
+    private val wm = WeightMatrix(net, na1, na2)
+
+    init {
+        net.addNetworkModelsAsync(na1, na2, wm)
+    }
+
+    @Test
+    fun `model updated events are fired once per step`() {
+        var na2Updates = 0
+        val batches = mutableListOf<List<NetworkModel>>()
+        na2.events.updated.on(wait = true) { na2Updates++ }
+        net.events.modelsUpdated.on(wait = true) { batches.add(it) }
+
+        // na2 is updated by the buffered update and then changed again by this action
+        net.updateManager.addAction(updateAction("Set activations") {
+            na2.setActivations(doubleArrayOf(1.0, 1.0))
+        })
+        net.update()
+        assertEquals(1, na2Updates)
+        assertEquals(1, batches.size)
+        assertEquals(setOf(na1, na2), batches[0].toSet())
+    }
+
+    @Test
+    fun `model updated events are fired immediately outside of update`() {
+        var na2Updates = 0
+        var batches = 0
+        na2.events.updated.on(wait = true) { na2Updates++ }
+        net.events.modelsUpdated.on(wait = true) { batches++ }
+        na2.setActivations(doubleArrayOf(1.0, 1.0))
+        na2.clear()
+        assertEquals(2, na2Updates)
+        assertEquals(0, batches)
+    }
+
+}
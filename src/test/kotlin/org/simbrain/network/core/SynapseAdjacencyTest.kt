@@ -0,0 +1,72 @@
+package org.simbrain.network.core
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+
+class SynapseAdjacencyTest {
+
+    val net = Network()
+
+    @Test
+    fun `fan in and fan out track added and removed synapses`() {
+        val (n1, n2, n3) = List(3) { Neuron(net).also { net.addNetworkModelAsync(it) } }
+        val s1 = net.addSynapse(n1, n3)
+        val s2 = net.addSynapse(n2, n3)
+        assertEquals(listOf(s1, s2), n3.fanIn)
+        assertEquals(s1, n1.fanOut[n3])
+        assertNull(n1.fanOut[n2])
+        s1.delete()
+        assertEquals(listOf(s2), n3.fanIn)
+        assertTrue(n1.fanOut.isEmpty())
+    }
+
+    @Test
+    fun `segments keep their order when they grow`() {
+        val target = Neuron(net).also { net.addNetworkModelAsync(it) }
+        val sources = List(50) { Neuron(net).also { net.addNetworkModelAsync(it) } }
+        // Interleave with another neuron's fan-in so that segments have to move
+        val other = Neuron(net).also { net.addNetworkModelAsync(it) }
+        val synapses = sources.map { src ->
+            net.addSynapse(src, other)
+            net.addSynapse(src, target)
+        }
+        assertEquals(synapses, target.fanIn)
+        assertEquals(50, other.fanIn.size)
+        sources.forEach { assertEquals(2, it.fanOut.size) }
+    }
+
+    @Test
+    fun `large fan outs are found by target`() {
+        val source = Neuron(net).also { net.addNetworkModelAsync(it) }
+        val targets = List(SynapseAdjacency.FAN_OUT_INDEX_THRESHOLD * 3) { Neuron(net).also { net.addNetworkModelAsync(it) } }
+        val synapses = targets.map { net.addSynapse(source, it) }
+        targets.zip(synapses).forEach { (target, synapse) -> assertSame(synapse, source.fanOut[target]) }
+        synapses[5].delete()
+        assertNull(source.fanOut[targets[5]])
+        assertFalse(source.fanOut.containsKey(targets[5]))
+        assertEquals(targets.size - 1, source.fanOut.size)
+        val replacement = net.addSynapse(source, targets[5])
+        assertSame(replacement, source.fanOut[targets[5]])
+        assertEquals(synapses - synapses[5] + replacement, source.fanOut.values.toList())
+    }
+
+    @Test
+    fun `deleted neurons release their index`() {
+        val adjacency = SynapseAdjacency()
+        val a = adjacency.register()
+        adjacency.release(a)
+        assertEquals(a, adjacency.register())
+        assertEquals(1, adjacency.numNodes)
+    }
+
+    @Test
+    fun `weighted inputs are summed over the fan in`() {
+        val (n1, n2, n3) = List(3) { Neuron(net).also { net.addNetworkModelAsync(it) } }
+        net.addSynapse(n1, n3).strength = 2.0
+        net.addSynapse(n2, n3).strength = 3.0
+        n1.forceSetActivation(1.0)
+        n2.forceSetActivation(1.0)
+        n3.updateInputs()
+        assertEquals(5.0, n3.input)
+    }
+}
@@ -0,0 +1,129 @@
+package org.simbrain.network.matrix
+
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.simbrain.network.core.Network
+import org.simbrain.network.neuron_update_rules.LinearRule
+import org.simbrain.network.spikeresponders.ConvolvedJumpAndDecay
+import org.simbrain.network.spikeresponders.RiseAndDecay
+import org.simbrain.network.synapse_update_rules.spikeresponders.SpikeResponder
+import org.simbrain.network.synapse_update_rules.HebbianRule
+import org.simbrain.network.updaterules.IntegrateAndFireRule
+import org.simbrain.network.util.SpikingMatrixData
+import org.simbrain.util.toDoubleArray
+import smile.math.matrix.Matrix
+import kotlin.math.abs
+import kotlin.random.Random
+
+class SparseWeightMatrixTest {
+
+    val net = Network()
+    val source = NeuronArray(net, 20)
+    val target = NeuronArray(net, 10)
+
+    /**
+     * A random dense matrix with about 80% zeros.
+     */
+    private fun sparseDense(random: Random) = Matrix.of(Array(10) {
+        DoubleArray(20) { if (random.nextDouble() < .2) random.nextDouble(-1.0, 1.0) else 0.0 }
+    })
+
+    @Test
+    fun `output matches dense weight matrix`() {
+        val dense = sparseDense(Random(1))
+        val sparse = SparseWeightMatrix(net, source, target, dense)
+        val wm = WeightMatrix(net, source, target).apply { setMatrixValues(dense) }
+        assertEquals(dense.toArray().sumOf { row -> row.count { it != 0.0 } }, sparse.numEntries)
+        assertArrayEquals(wm.output.toDoubleArray(), sparse.output.toDoubleArray(), 1e-12)
+        assertArrayEquals(wm.excitatoryOutputs, sparse.excitatoryOutputs, 1e-12)
+        assertArrayEquals(wm.inhibitoryOutputs, sparse.inhibitoryOutputs, 1e-12)
+        assertArrayEquals(dense.toArray().flatMap { it.asList() }.toDoubleArray(), sparse.weights, 0.0)
+    }
+
+    @Test
+    fun `downsampled image keeps largest entries`() {
+        val dense = sparseDense(Random(5))
+        val sparse = SparseWeightMatrix(net, source, target, dense)
+        assertArrayEquals(sparse.weights, sparse.downsample(100, 100), 0.0)
+
+        // 2 x 4 blocks of the 10 x 20 matrix
+        val cells = sparse.downsample(5, 5)
+        assertEquals(25, cells.size)
+        for (r in 0 until 5) {
+            for (c in 0 until 5) {
+                val block = (2 * r until 2 * r + 2).flatMap { i -> (4 * c until 4 * c + 4).map { j -> dense[i, j] } }
+                assertEquals(block.maxByOrNull { abs(it) }, cells[r * 5 + c])
+            }
+        }
+    }
+
+    @Test
+    fun `diagonal by default`() {
+        val sparse = SparseWeightMatrix(net, source, target)
+        assertEquals(10, sparse.numEntries)
+        assertEquals(1.0, sparse.get(3, 3))
+        assertEquals(0.0, sparse.get(3, 4))
+    }
+
+    @Test
+    fun `random entries are sorted and reproducible`() {
+        val a = SparseWeightMatrix(net, NeuronArray(net, 1000), NeuronArray(net, 1000), .01, java.util.Random(1))
+        val b = SparseWeightMatrix(net, NeuronArray(net, 1000), NeuronArray(net, 1000), .01, java.util.Random(1))
+        assertArrayEquals(a.columns, b.columns)
+        assertArrayEquals(a.rowStart, b.rowStart)
+        assertTrue(a.numEntries in 9000..11000, "${a.numEntries} entries")
+        for (i in 0 until a.numRows) {
+            for (k in a.rowStart[i] + 1 until a.rowStart[i + 1]) {
+                assertTrue(a.columns[k - 1] < a.columns[k])
+            }
+        }
+    }
+
+    @Test
+    fun `network update uses sparse matrix`() {
+        val dense = sparseDense(Random(2))
+        SparseWeightMatrix(net, source, target, dense)
+        net.addNetworkModelsAsync(source, target)
+        target.updateRule = LinearRule().apply { clippingType = LinearRule.ClippingType.NoClipping }
+        source.isClamped = true
+        val expected = dense.mm(source.activations)
+        net.update()
+        assertArrayEquals(expected.toDoubleArray(), target.activationArray, 1e-12)
+    }
+
+    @Test
+    fun `hebbian learning only changes existing entries`() {
+        val dense = sparseDense(Random(3))
+        val sparse = SparseWeightMatrix(net, source, target, dense)
+        sparse.learningRule = HebbianRule().apply { learningRate = .1 }
+        source.setActivations(DoubleArray(20) { 1.0 })
+        target.setActivations(DoubleArray(10) { 1.0 })
+        sparse.update()
+        for (i in 0 until 10) {
+            for (j in 0 until 20) {
+                val expected = if (dense[i, j] == 0.0) 0.0 else dense[i, j] + .1
+                assertEquals(expected, sparse.get(i, j), 1e-12)
+            }
+        }
+    }
+
+    @Test
+    fun `spike responders match dense weight matrix`() {
+        source.updateRule = IntegrateAndFireRule()
+        val spikes = (source.dataHolder as SpikingMatrixData).spikes
+        listOf<() -> SpikeResponder>(::RiseAndDecay, ::ConvolvedJumpAndDecay).forEach { responder ->
+            val dense = sparseDense(Random(4))
+            val sparse = SparseWeightMatrix(net, source, target, dense).apply { spikeResponder = responder() }
+            val wm = WeightMatrix(net, source, target).apply {
+                setMatrixValues(dense)
+                spikeResponder = responder()
+            }
+            repeat(3) { step ->
+                spikes.indices.forEach { spikes[it] = (it + step) % 3 == 0 }
+                assertArrayEquals(wm.output.toDoubleArray(), sparse.output.toDoubleArray(), 1e-12)
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.simbrain.network.trainers
+
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import org.simbrain.network.core.Network
+import org.simbrain.network.neuron_update_rules.LinearRule
+import org.simbrain.network.subnetworks.BackpropNetwork
+import org.simbrain.network.updaterules.SigmoidalRule
+import org.simbrain.network.util.BiasedMatrixData
+import smile.math.matrix.Matrix
+import kotlin.random.Random
+
+class BatchBackpropTest {
+
+    val net = Network()
+
+    @Test
+    fun `epoch update applies the summed gradient`() {
+        val bp = BackpropNetwork(net, intArrayOf(2, 3), null)
+        bp.outputLayer.updateRule = LinearRule().apply { clippingType = LinearRule.ClippingType.NoClipping }
+        val inputs = Matrix.of(arrayOf(doubleArrayOf(0.0, 1.0), doubleArrayOf(1.0, 1.0), doubleArrayOf(.5, -1.0)))
+        val targets = Matrix.of(arrayOf(doubleArrayOf(1.0, 0.0, -1.0), doubleArrayOf(0.0, 1.0, 0.0),
+            doubleArrayOf(.5, .5, .5)))
+        bp.trainingSet = MatrixDataset(inputs, targets)
+        bp.randomize()
+        val wm = bp.wmList.first()
+        val weights = wm.weightMatrix.clone()
+        val biases = (bp.outputLayer.dataHolder as BiasedMatrixData).biases.clone()
+
+        // Expected change: epsilon * E X^T for weights and epsilon * E 1 for biases, where E = T^T - (W X^T + b)
+        val outputs = weights.mm(inputs.transpose())
+        for (j in 0 until outputs.ncol()) {
+            for (i in 0 until outputs.nrow()) {
+                outputs.add(i, j, biases[i, 0])
+            }
+        }
+        val errors = targets.transpose().sub(outputs)
+        val epsilon = bp.trainer.learningRate
+        val expectedWeights = weights.add(errors.mm(inputs).mul(epsilon))
+        val expectedBiases = biases.add(Matrix.column(DoubleArray(3) { i -> (0 until 3).sumOf { errors[i, it] } })
+            .mul(epsilon))
+
+        bp.trainer.updateType = IterableTrainer2.UpdateMethod.EPOCH
+        runBlocking { bp.trainer.iterate() }
+        assertEquals(errors.toArray().sumOf { row -> row.sumOf { it * it } }, bp.trainer.error, 1e-10)
+        assertArrayEquals(expectedWeights.toArray().flatMap { it.asList() }.toDoubleArray(),
+            wm.weightMatrix.toArray().flatMap { it.asList() }.toDoubleArray(), 1e-10)
+        assertArrayEquals(expectedBiases.col(0), (bp.outputLayer.dataHolder as BiasedMatrixData).biases.col(0), 1e-10)
+    }
+
+    @Test
+    fun `mini-batch training reduces error`() {
+        val bp = BackpropNetwork(net, intArrayOf(4, 8, 4), null)
+        bp.layerList[1].updateRule = SigmoidalRule()
+        bp.randomize()
+        bp.trainer.updateType = IterableTrainer2.UpdateMethod.MINI_BATCH
+        bp.trainer.batchSize = 2
+        bp.trainer.learningRate = .1
+        runBlocking { bp.trainer.iterate() }
+        val initialError = bp.trainer.error
+        runBlocking { bp.trainer.iterate(500) }
+        assertTrue(bp.trainer.error < initialError / 2, "${bp.trainer.error} < $initialError / 2")
+    }
+
+    @Test
+    fun `chunks give the same result as one batch`() {
+        val random = Random(1)
+        val inputs = Matrix.of(Array(50) { DoubleArray(3) { random.nextDouble() } })
+        val targets = Matrix.of(Array(50) { DoubleArray(2) { random.nextDouble() } })
+        val results = listOf(1000, 7).map { chunkSize ->
+            val bp = BackpropNetwork(Network(), intArrayOf(3, 5, 2), null)
+            bp.trainingSet = MatrixDataset(inputs, targets)
+            bp.wmList.forEach { it.weightMatrix.fill(.1) }
+            val batch = BatchBackprop(bp.wmList, chunkSize)
+            val error = batch.train(inputs, targets, IntArray(50) { it }, 0, 50, .01)!!
+            error to bp.wmList.flatMap { wm -> wm.weightMatrix.toArray().flatMap { it.asList() } }
+        }
+        assertEquals(results[0].first, results[1].first, 1e-10)
+        assertArrayEquals(results[0].second.toDoubleArray(), results[1].second.toDoubleArray(), 1e-10)
+    }
+
+    @Test
+    fun `batch size must be positive`() {
+        val bp = BackpropNetwork(net, intArrayOf(2, 2), null)
+        assertThrows<IllegalArgumentException> { bp.trainer.batchSize = 0 }
+        assertEquals(32, bp.trainer.batchSize)
+    }
+}
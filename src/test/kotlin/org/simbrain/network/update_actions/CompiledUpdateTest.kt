@@ -0,0 +1,81 @@
+package org.simbrain.network.update_actions
+
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.Neuron
+import org.simbrain.network.core.addSynapse
+import org.simbrain.network.neuron_update_rules.BinaryRule
+import kotlin.random.Random
+
+class CompiledUpdateTest {
+
+    /**
+     * Build the same small random network in two copies, one using buffered update and the other compiled update.
+     */
+    private fun buildNetwork(compiled: Boolean): Pair<Network, List<Neuron>> {
+        val net = Network()
+        if (compiled) {
+            net.updateManager.clear()
+            net.updateManager.addAction(CompiledUpdate(net))
+        }
+        val random = Random(1)
+        val neurons = List(20) { Neuron(net).also { net.addNetworkModelAsync(it) } }
+        repeat(60) {
+            net.addSynapse(neurons[random.nextInt(20)], neurons[random.nextInt(20)]) {
+                forceSetStrength(random.nextDouble(-1.0, 1.0))
+            }
+        }
+        neurons.forEachIndexed { i, n -> n.forceSetActivation(i / 20.0) }
+        return net to neurons
+    }
+
+    @Test
+    fun `compiled update matches buffered update`() {
+        val (buffered, bufferedNeurons) = buildNetwork(false)
+        val (compiled, compiledNeurons) = buildNetwork(true)
+        repeat(10) {
+            buffered.update()
+            compiled.update()
+            assertArrayEquals(
+                bufferedNeurons.map { it.activation }.toDoubleArray(),
+                compiledNeurons.map { it.activation }.toDoubleArray(),
+                1e-10
+            )
+        }
+    }
+
+    @Test
+    fun `weight changes are picked up after compiling`() {
+        val net = Network()
+        net.updateManager.clear()
+        net.updateManager.addAction(CompiledUpdate(net))
+        val n1 = Neuron(net).also { net.addNetworkModelAsync(it) }
+        val n2 = Neuron(net).also { net.addNetworkModelAsync(it) }
+        val s = net.addSynapse(n1, n2)
+        n1.isClamped = true
+        n1.forceSetActivation(1.0)
+        net.update()
+        assertEquals(1.0, n2.activation)
+        s.strength = 0.5
+        net.update()
+        assertEquals(0.5, n2.activation)
+        net.addSynapse(n2, n2)
+        net.update()
+        assertEquals(1.0, n2.activation)
+    }
+
+    @Test
+    fun `rule changes recompile without rebuilding the model views`() {
+        val (net, neurons) = buildNetwork(true)
+        net.update()
+        val models = net.allModels
+        neurons[0].updateRule = BinaryRule()
+        net.update()
+        assertSame(models, net.allModels)
+        assertTrue(neurons[0].activation == -1.0 || neurons[0].activation == 1.0)
+    }
+}
@@ -0,0 +1,109 @@
+package org.simbrain.network.update_actions
+
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.Neuron
+import org.simbrain.network.core.SpikePropagator
+import org.simbrain.network.core.addSynapse
+import org.simbrain.network.spikeresponders.JumpAndDecay
+import org.simbrain.network.spikeresponders.StepResponder
+import org.simbrain.network.updaterules.IntegrateAndFireRule
+import kotlin.random.Random
+
+class EventDrivenUpdateTest {
+
+    /**
+     * Build the same random integrate and fire network in two copies, one using buffered update and the other event
+     * driven update.
+     */
+    private fun buildNetwork(eventDriven: Boolean): Pair<Network, List<Neuron>> {
+        val net = Network()
+        if (eventDriven) {
+            net.updateManager.clear()
+            net.updateManager.addAction(EventDrivenUpdate(net))
+        }
+        val random = Random(1)
+        val neurons = List(30) {
+            val rule = IntegrateAndFireRule().apply { backgroundCurrent = random.nextDouble(15.0, 30.0) }
+            Neuron(net, rule).also { net.addNetworkModelAsync(it) }
+        }
+        repeat(150) {
+            net.addSynapse(neurons[random.nextInt(30)], neurons[random.nextInt(30)]) {
+                forceSetStrength(random.nextDouble(-5.0, 5.0))
+                spikeResponder = if (random.nextBoolean()) {
+                    JumpAndDecay().apply { timeConstant = if (random.nextBoolean()) 3.0 else 5.0 }
+                } else {
+                    StepResponder().apply { responseDuration = random.nextInt(1, 5) }
+                }
+            }
+        }
+        neurons.forEach { it.forceSetActivation(random.nextDouble(-70.0, -50.0)) }
+        return net to neurons
+    }
+
+    @Test
+    fun `event driven update matches buffered update`() {
+        val (buffered, bufferedNeurons) = buildNetwork(false)
+        val (eventDriven, eventDrivenNeurons) = buildNetwork(true)
+        var spikes = 0
+        repeat(300) {
+            buffered.update()
+            eventDriven.update()
+            assertArrayEquals(
+                bufferedNeurons.map { it.activation }.toDoubleArray(),
+                eventDrivenNeurons.map { it.activation }.toDoubleArray(),
+                1e-6
+            )
+            spikes += eventDrivenNeurons.count { it.isSpike }
+        }
+        assertTrue(spikes > 0)
+    }
+
+    @Test
+    fun `clearing activations keeps matching buffered update`() {
+        val (buffered, bufferedNeurons) = buildNetwork(false)
+        val (eventDriven, eventDrivenNeurons) = buildNetwork(true)
+        repeat(100) {
+            buffered.update()
+            eventDriven.update()
+        }
+        buffered.clearActivations()
+        eventDriven.clearActivations()
+        repeat(100) {
+            buffered.update()
+            eventDriven.update()
+            assertArrayEquals(
+                bufferedNeurons.map { it.activation }.toDoubleArray(),
+                eventDrivenNeurons.map { it.activation }.toDoubleArray(),
+                1e-6
+            )
+        }
+    }
+
+    @Test
+    fun `delayed spikes arrive after the delay`() {
+        val net = Network()
+        val source = Neuron(net, IntegrateAndFireRule().apply { backgroundCurrent = 1000.0 })
+        val target = Neuron(net, IntegrateAndFireRule().apply { backgroundCurrent = 0.0 })
+        net.addNetworkModelAsync(source)
+        net.addNetworkModelAsync(target)
+        val synapse = net.addSynapse(source, target) {
+            forceSetStrength(2.0)
+            spikeResponder = JumpAndDecay()
+            delay = 3
+        }
+        val propagator = SpikePropagator(net)
+        val psrs = List(5) {
+            propagator.updateInputs()
+            propagator.update()
+            propagator.syncSynapses()
+            synapse.psr
+        }
+        assertEquals(1, propagator.numEventSynapses)
+        // Spike in step 1, delivered from step 2 with a delay of 3
+        assertEquals(listOf(0.0, 0.0, 0.0, 0.0, 2.0), psrs)
+    }
+}
@@ -0,0 +1,81 @@
+package org.simbrain.network.updaterules
+
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Test
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.Neuron
+import org.simbrain.network.core.NeuronUpdateRule
+import org.simbrain.network.matrix.NeuronArray
+import org.simbrain.network.neuron_update_rules.*
+import org.simbrain.network.util.SpikingMatrixData
+import kotlin.random.Random
+
+/**
+ * Checks that array versions of update rules match the neuron versions when given the same inputs.
+ */
+class ArrayUpdateRulesTest {
+
+    val net = Network()
+
+    private fun assertArrayMatchesNeurons(
+        initialActivation: Double,
+        inputRange: ClosedFloatingPointRange<Double>,
+        createRule: () -> NeuronUpdateRule<*, *>
+    ) {
+        val size = 10
+        // Each neuron gets its own rule, since some rules keep their state in the rule
+        val neurons = List(size) { Neuron(net, createRule()).apply { forceSetActivation(initialActivation) } }
+        val array = NeuronArray(net, size).apply {
+            updateRule = createRule()
+            setActivations(DoubleArray(size) { initialActivation })
+        }
+        val random = Random(1)
+        repeat(200) {
+            val inputs = DoubleArray(size) { random.nextDouble(inputRange.start, inputRange.endInclusive) }
+            neurons.forEachIndexed { i, n -> n.addInputValue(inputs[i]) }
+            array.addInputs(inputs)
+            neurons.forEach { it.update() }
+            array.update()
+            assertArrayEquals(neurons.map { it.activation }.toDoubleArray(), array.activationArray, 1e-9)
+            val data = array.dataHolder
+            if (data is SpikingMatrixData) {
+                assertArrayEquals(neurons.map { it.isSpike }.toBooleanArray(), data.spikes)
+            }
+        }
+    }
+
+    @Test
+    fun `izhikevich array matches neurons`() {
+        assertArrayMatchesNeurons(-65.0, 0.0..10.0) { IzhikevichRule().apply { a = .02; b = .2; c = -65.0; d = 6.0 } }
+    }
+
+    @Test
+    fun `morris lecar array matches neurons`() {
+        assertArrayMatchesNeurons(-60.0, 0.0..100.0) { MorrisLecarRule() }
+    }
+
+    @Test
+    fun `hodgkin huxley array matches neurons`() {
+        assertArrayMatchesNeurons(0.0, -10.0..10.0) { HodgkinHuxleyRule() }
+    }
+
+    @Test
+    fun `iac array matches neurons`() {
+        assertArrayMatchesNeurons(0.0, -1.0..1.0) { IACRule() }
+    }
+
+    @Test
+    fun `running average array matches neurons`() {
+        assertArrayMatchesNeurons(0.0, -1.0..1.0) { RunningAverageRule() }
+    }
+
+    @Test
+    fun `three value array matches neurons`() {
+        assertArrayMatchesNeurons(0.0, -2.0..2.0) { ThreeValueRule() }
+    }
+
+    @Test
+    fun `continuous sigmoidal array matches neurons`() {
+        assertArrayMatchesNeurons(0.0, -1.0..1.0) { ContinuousSigmoidalRule() }
+    }
+}
@@ -0,0 +1,109 @@
+package org.simbrain.network.util
+
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTimeoutPreemptively
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import org.junit.jupiter.api.io.TempDir
+import org.simbrain.network.core.Network
+import org.simbrain.network.groups.NeuronGroup
+import java.io.File
+import java.io.IOException
+import java.io.OutputStream
+import java.time.Duration
+
+class ActivationRecordingTest {
+
+    @TempDir
+    lateinit var dir: File
+
+    @Test
+    fun `activations round trip across chunks`() {
+        val file = File(dir, "acts.sbr")
+        ActivationRecordingWriter(file, 3, RecordingFormat.FLOAT64, 4).use { writer ->
+            for (step in 0 until 10) {
+                writer.writeActivations(step * .5, doubleArrayOf(step.toDouble(), -step.toDouble(), step / 3.0))
+            }
+        }
+        ActivationRecordingReader(file).use { reader ->
+            assertEquals(RecordingFormat.FLOAT64, reader.format)
+            assertEquals(3, reader.numNeurons)
+            assertEquals(10L, reader.size)
+            val all = reader.readActivations()
+            assertEquals(10, all.times.size)
+            assertArrayEquals(doubleArrayOf(9.0, -9.0, 3.0), all.values[9])
+
+            // Steps 3 to 6, neurons 2 and 0
+            val slice = reader.readActivations(1.5, 3.0, intArrayOf(2, 0))
+            assertArrayEquals(doubleArrayOf(1.5, 2.0, 2.5, 3.0), slice.times)
+            assertArrayEquals(doubleArrayOf(5 / 3.0, 5.0), slice.values[2])
+        }
+    }
+
+    @Test
+    fun `float recording keeps float precision`() {
+        val file = File(dir, "acts.sbr")
+        ActivationRecordingWriter(file, 2, RecordingFormat.FLOAT32).use { writer ->
+            writer.writeActivations(0.0, doubleArrayOf(.1, .2))
+        }
+        ActivationRecordingReader(file).use { reader ->
+            assertArrayEquals(doubleArrayOf(.1, .2), reader.readActivations().values[0], 1e-7)
+        }
+    }
+
+    @Test
+    fun `spikes round trip with neuron subset`() {
+        val file = File(dir, "spikes.sbr")
+        ActivationRecordingWriter(file, 5, RecordingFormat.SPIKES, 3).use { writer ->
+            writer.writeSpikes(1.0, intArrayOf(0, 3, 4), 2)
+            writer.writeSpikes(2.0, intArrayOf(1, 3, 4), 3)
+            writer.writeSpikes(3.0, intArrayOf(3), 1)
+        }
+        ActivationRecordingReader(file).use { reader ->
+            assertEquals(6L, reader.size)
+            val slice = reader.readSpikes(1.5, 3.0, intArrayOf(3, 4))
+            assertArrayEquals(doubleArrayOf(2.0, 2.0, 3.0), slice.times)
+            assertArrayEquals(intArrayOf(3, 4, 3), slice.indices)
+        }
+    }
+
+    @Test
+    fun `write errors are reported instead of blocking`() {
+        // Accepts the file header, then fails
+        val output = object : OutputStream() {
+            var written = 0
+            override fun write(b: Int) = write(byteArrayOf(b.toByte()), 0, 1)
+            override fun write(b: ByteArray, off: Int, len: Int) {
+                if (written + len > 16) {
+                    throw IOException("Disk full")
+                }
+                written += len
+            }
+        }
+        val writer = ActivationRecordingWriter(output, 2, RecordingFormat.FLOAT64, 1)
+        assertTimeoutPreemptively(Duration.ofSeconds(10)) {
+            val error = assertThrows<IOException> {
+                repeat(100) { writer.writeActivations(it.toDouble(), doubleArrayOf(1.0, 2.0)) }
+            }
+            assertEquals("Disk full", error.message)
+            assertThrows<IOException> { writer.close() }
+        }
+    }
+
+    @Test
+    fun `recorder writes binary recording during network updates`() {
+        val net = Network()
+        val ng = NeuronGroup(net, 4)
+        net.addNetworkModelsAsync(ng)
+        ng.neuronList.forEachIndexed { i, n -> n.addInputValue(i.toDouble()) }
+        val file = File(dir, "group.sbr")
+        ng.activationRecorder.startRecording(file)
+        repeat(5) { net.update() }
+        ng.activationRecorder.stopRecording()
+        ActivationRecordingReader(file).use { reader ->
+            assertEquals(5L, reader.size)
+            assertArrayEquals(ng.activations, reader.readActivations().values[4])
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package org.simbrain.util
+
+/**
+ * Helpers for the `main` benchmarks in the test sources.
+ */
+
+/**
+ * Runs a block and returns the elapsed wall clock time in nanoseconds.
+ */
+inline fun timeNanos(block: () -> Unit): Long {
+    val start = System.nanoTime()
+    block()
+    return System.nanoTime() - start
+}
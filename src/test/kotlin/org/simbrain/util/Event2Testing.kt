@@ -15,6 +15,8 @@ class TestEvents : Events2() {
     val blockingEvent = NoArgEvent()
     val longFireAndForgetEvent = NoArgEvent()
     val changedEvent = ChangedEvent<String>()
+    val inlineEvent = ChangedEvent<Double>()
+    val unobservedEvent = ChangedEvent<Double>()
 }
 
 class Event2Testing {
@@ -115,4 +117,23 @@ class Event2Testing {
         testEvents2.changedEvent.fireAndBlock("test", "test2")
         assert(fired) { "event should have fired" }
     }
-}
\ No newline at end of file
+
+    @Test
+    fun `events with no listeners do nothing`() {
+        assertEquals(0, testEvents2.unobservedEvent.listenerCount)
+        repeat(1000) {
+            testEvents2.unobservedEvent.fireAndBlock(it.toDouble(), -1.0)
+        }
+    }
+
+    @Test
+    fun `waited handlers with no dispatcher run on the firing thread`() {
+        var handlerThread: Thread? = null
+        testEvents2.inlineEvent.on(wait = true) { _, _ ->
+            handlerThread = Thread.currentThread()
+        }
+        assertEquals(1, testEvents2.inlineEvent.listenerCount)
+        testEvents2.inlineEvent.fireAndBlock(1.0, 0.0)
+        assertEquals(Thread.currentThread(), handlerThread)
+    }
+}
@@ -0,0 +1,57 @@
+package org.simbrain.util
+
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.simbrain.network.core.Network
+import org.simbrain.network.matrix.NeuronArray
+import org.simbrain.network.matrix.WeightMatrix
+import smile.math.matrix.Matrix
+import kotlin.random.Random
+
+class StripedProductTest {
+
+    private val random = Random(1)
+
+    private fun randomMatrix(rows: Int, cols: Int) = Matrix.of(Array(rows) { DoubleArray(cols) { random.nextDouble(-1.0, 1.0) } })
+
+    @Test
+    fun `small product matches mm and adds to result`() {
+        val matrix = randomMatrix(5, 3)
+        val vector = randomMatrix(3, 1)
+        val result = Matrix(5, 1).apply { fill(1.0) }
+        val product = StripedProduct(5, 3)
+        assertEquals(1, product.numStripes)
+        product.addProduct(matrix, vector, result)
+        product.addProduct(matrix, vector, result)
+        val expected = matrix.mm(vector).mul(2.0).add(1.0)
+        assertArrayEquals(expected.col(0), result.col(0), 1e-12)
+    }
+
+    @Test
+    fun `large product is striped and matches mm`() {
+        val matrix = randomMatrix(1000, 300)
+        val vector = randomMatrix(300, 1)
+        val result = Matrix(1000, 1)
+        val product = StripedProduct(1000, 300)
+        assertTrue(product.numStripes > 1)
+        repeat(3) {
+            result.fill(0.0)
+            product.addProduct(matrix, vector, result)
+            assertArrayEquals(matrix.mm(vector).col(0), result.col(0), 1e-10)
+        }
+    }
+
+    @Test
+    fun `weight matrix output added in place matches output`() {
+        val net = Network()
+        val source = NeuronArray(net, 400)
+        val target = NeuronArray(net, 300)
+        val wm = WeightMatrix(net, source, target)
+        wm.randomize()
+        val result = Matrix(300, 1)
+        wm.addOutputTo(result)
+        assertArrayEquals(wm.output.col(0), result.col(0), 1e-10)
+    }
+}
@@ -0,0 +1,94 @@
+package org.simbrain.util.geneticalgorithm2
+
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.yield
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.simbrain.workspace.Workspace
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.coroutines.CoroutineContext
+import kotlin.coroutines.EmptyCoroutineContext
+import kotlin.math.abs
+import kotlin.random.Random
+
+class Evaluator2Test {
+
+    /**
+     * Evolves a number towards 10, with a little evaluation noise.
+     */
+    private class NumberSim(var value: Double, val random: Random) : EvoSim {
+        override fun mutate() {
+            value += random.nextDouble(-1.0, 1.0)
+        }
+
+        override suspend fun build() {}
+
+        override fun visualize(workspace: Workspace) = this
+
+        override fun copy() = NumberSim(value, Random(random.nextLong()))
+
+        override suspend fun eval(): Double {
+            yield()
+            return -abs(value - 10) + agentRandom().nextDouble() * .01
+        }
+    }
+
+    private fun run(parallelism: Int, islands: Int = 1, context: CoroutineContext = Dispatchers.Default) = runBlocking(context) {
+        val history = mutableListOf<List<Double>>()
+        evaluator2(
+            populatingFunction = { NumberSim(0.0, Random(it.toLong())) },
+            populationSize = 30,
+            eliminationRatio = 0.5,
+            stoppingFunction = { generation == 20 },
+            peek = { history.add(fitnessScores) },
+            seed = 42,
+            parallelism = parallelism,
+            islands = islands,
+            migrationInterval = 5
+        )
+        history
+    }
+
+    @Test
+    fun `results do not depend on parallelism`() {
+        assertEquals(run(1), run(8))
+        assertEquals(run(1, islands = 3), run(8, islands = 3))
+    }
+
+    @Test
+    fun `evaluations run in parallel when called from a single thread`() {
+        val running = AtomicInteger()
+        val maxRunning = AtomicInteger()
+        class BlockingSim : EvoSim {
+            override fun mutate() {}
+            override suspend fun build() {}
+            override fun visualize(workspace: Workspace) = this
+            override fun copy() = BlockingSim()
+            override suspend fun eval(): Double {
+                maxRunning.accumulateAndGet(running.incrementAndGet()) { a, b -> maxOf(a, b) }
+                Thread.sleep(20)
+                running.decrementAndGet()
+                return 0.0
+            }
+        }
+        runBlocking {
+            evaluator2({ BlockingSim() }, 8, .5, { generation == 1 }, parallelism = 4, seed = 1)
+        }
+        assertTrue(maxRunning.get() > 1, "at most ${maxRunning.get()} evaluations at once")
+        assertTrue(maxRunning.get() <= 4)
+    }
+
+    @Test
+    fun `results do not depend on the calling dispatcher`() {
+        assertEquals(run(4, islands = 3), run(4, islands = 3, context = EmptyCoroutineContext))
+    }
+
+    @Test
+    fun `island model improves fitness`() {
+        val history = run(4, islands = 3)
+        assertEquals(30, history.last().size)
+        assertTrue(history.last().first() > history.first().first())
+    }
+}
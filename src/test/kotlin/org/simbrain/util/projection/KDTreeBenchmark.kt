@@ -0,0 +1,48 @@
+package org.simbrain.util.projection
+
+import org.simbrain.util.timeNanos
+import kotlin.random.Random
+
+/**
+ * Fills a [KDTree] with 10k, 100k, and 1M random points and prints the cost of inserting, of single and batched
+ * 3-nearest-neighbor queries near existing points, and of a rebuild followed by the same queries. The number of
+ * dimensions can be passed as an argument (default 25).
+ */
+fun main(args: Array<String>) {
+    val dimensions = args.firstOrNull()?.toInt() ?: 25
+    val numQueries = 1_000
+    val k = 3
+    for (numPoints in listOf(10_000, 100_000, 1_000_000)) {
+        val random = Random(42)
+        val points = List(numPoints) { DataPoint2(DoubleArray(dimensions) { random.nextDouble() }) }
+        // Queries near existing points, as when a projector sees a familiar state
+        val targets = List(numQueries) {
+            val point = points[random.nextInt(numPoints)].upstairsPoint
+            DoubleArray(dimensions) { point[it] + random.nextDouble() * .01 }
+        }
+
+        val kdTree = KDTree(dimensions)
+        val insertTime = timeNanos { points.forEach { kdTree.insert(it) } }
+
+        val neighbors = Neighbors(k)
+        val queryTime = timeNanos { targets.forEach { kdTree.findClosestNPoints(it, k, neighbors) } }
+
+        val results = List(numQueries) { Neighbors(k) }
+        val batchTime = timeNanos { kdTree.findClosestNPoints(targets, k, results) }
+
+        val rebuildTime = timeNanos { kdTree.rebuild() }
+        val rebuiltQueryTime = timeNanos { targets.forEach { kdTree.findClosestNPoints(it, k, neighbors) } }
+
+        println(
+            ("%,d points, %d dims: insert %.2f µs/point, query %.1f µs, batched query %.1f µs, " +
+                    "rebuild %.0f ms, query after rebuild %.1f µs").format(
+                numPoints, dimensions,
+                insertTime / 1e3 / numPoints,
+                queryTime / 1e3 / numQueries,
+                batchTime / 1e3 / numQueries,
+                rebuildTime / 1e6,
+                rebuiltQueryTime / 1e3 / numQueries
+            )
+        )
+    }
+}
@@ -1,6 +1,10 @@
 package org.simbrain.util.projection
 
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertThrows
 import org.junit.jupiter.api.Test
+import org.simbrain.util.euclideanDistance
+import kotlin.random.Random
 
 class KDTreeTest {
 
@@ -37,6 +41,18 @@ class KDTreeTest {
     }
 
 
+    @Test
+    fun `iterators are read only and detect modification`() {
+        val tree = KDTree(2)
+        tree.insertAll(List(4) { DataPoint2(doubleArrayOf(it.toDouble(), 0.0)) })
+        val iterator = tree.iterator() as MutableIterator<DataPoint2>
+        iterator.next()
+        assertThrows(UnsupportedOperationException::class.java) { iterator.remove() }
+        assertEquals(4, tree.size)
+        tree.insert(DataPoint2(doubleArrayOf(5.0, 0.0)))
+        assertThrows(ConcurrentModificationException::class.java) { iterator.next() }
+    }
+
     @Test
     fun `findClosestPoints finds closest points`() {
         val projector = Projector2(4)
@@ -65,4 +81,38 @@ class KDTreeTest {
             println("Closest point: $point")
         }
     }
-}
\ No newline at end of file
+
+    private fun bruteForce(points: List<DataPoint2>, target: DoubleArray, n: Int) = points
+        .sortedBy { it.upstairsPoint.euclideanDistance(target) }
+        .take(n)
+        .map { it.upstairsPoint.euclideanDistance(target) }
+
+    @Test
+    fun `nearest neighbors match brute force`() {
+        val random = Random(3)
+        val points = List(500) { DataPoint2(DoubleArray(6) { random.nextDouble() }) }
+        val kdTree = KDTree(6)
+        points.forEach { kdTree.insert(it) }
+        repeat(50) {
+            val target = DoubleArray(6) { random.nextDouble() }
+            val found = kdTree.findClosestNPoints(DataPoint2(target), 5).map { it.upstairsPoint.euclideanDistance(target) }
+            assertEquals(bruteForce(points, target, 5), found)
+        }
+        assertEquals(points, kdTree.toList())
+    }
+
+    @Test
+    fun `batched queries match single queries after deletion`() {
+        val random = Random(4)
+        val points = List(300) { DataPoint2(DoubleArray(4) { random.nextDouble() }) }
+        val kdTree = KDTree(4)
+        kdTree.insertAll(points)
+        kdTree.delete(points[0])
+        val targets = List(100) { DoubleArray(4) { random.nextDouble() } }
+        val results = kdTree.findClosestNPoints(targets, 3)
+        targets.forEachIndexed { i, target ->
+            val expected = bruteForce(points.drop(1), target, 3)
+            assertEquals(expected, List(results[i].size) { results[i].distance(it) })
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.simbrain.util.projection
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import kotlin.random.Random
+
+class SammonProjection2Test {
+
+    @Test
+    fun `triangular matrix is symmetric and grows by rows`() {
+        val matrix = TriangularDistanceMatrix()
+        repeat(4) { i -> matrix.addPoint { j -> (10 * i + j).toDouble() } }
+        assertEquals(4, matrix.size)
+        assertEquals(0.0, matrix[2, 2])
+        assertEquals(21.0, matrix[2, 1])
+        assertEquals(21.0, matrix[1, 2])
+        assertEquals(30.0, matrix[0, 3])
+        assertEquals(10.0 + 20 + 21 + 30 + 31 + 32, matrix.sum())
+        matrix.resize(2)
+        assertEquals(10.0, matrix.sum())
+    }
+
+    @Test
+    fun `iterating reduces error`() {
+        val random = Random(1)
+        val projector = Projector2(5)
+        projector.projectionMethod = SammonProjection2().apply { epsilon = 1.0 }
+        repeat(40) {
+            projector.addDataPoint(DoubleArray(5) { random.nextDouble() })
+        }
+        val sammon = projector.projectionMethod as SammonProjection2
+        sammon.iterate(projector.dataset)
+        val initialError = sammon.error
+        repeat(50) { sammon.iterate(projector.dataset) }
+        assertTrue(sammon.error < initialError, "${sammon.error} < $initialError")
+    }
+
+    @Test
+    fun `incremental distances match a full recompute`() {
+        val random = Random(2)
+        val projector = Projector2(3)
+        val incremental = SammonProjection2().apply { epsilon = 1.0 }
+        projector.projectionMethod = incremental
+        repeat(20) {
+            projector.addDataPoint(DoubleArray(3) { random.nextDouble() })
+        }
+        val downstairs = projector.dataset.computeDownstairsArray().map { it.copyOf() }.toTypedArray()
+
+        // Error is computed before the step, so both should agree when starting from the same positions
+        incremental.iterate(projector.dataset)
+        val incrementalError = incremental.error
+        projector.dataset.setDownstairsData(downstairs)
+        val recomputed = SammonProjection2().apply { epsilon = 1.0 }
+        recomputed.init(projector.dataset)
+        projector.dataset.setDownstairsData(downstairs)
+        recomputed.iterate(projector.dataset)
+        assertEquals(recomputed.error, incrementalError, 1e-9)
+    }
+}
@@ -241,4 +241,22 @@ class CouplingTest {
         assertEquals(.5, neuron2.activation, 0.0)
         assertEquals(.5, neuron3.activation, 0.0)
     }
+
+    @Test
+    fun `double producers and consumers pass values without boxing`() {
+        val neuron1 = Neuron(network)
+        val neuron2 = Neuron(network)
+        neuron1.forceSetActivation(.7)
+        with(couplingManager) {
+            val producer = neuron1.getProducer("getActivation")
+            val consumer = neuron2.getConsumer("forceSetActivation")
+            assertTrue(producer.isDoubleValued && consumer.isDoubleValued)
+            assertEquals(.7, producer.doubleValue, 0.0)
+            assertEquals(.7, producer.value)
+            consumer.setDoubleValue(.3)
+            assertEquals(.3, neuron2.activation, 0.0)
+            createCoupling(producer, consumer).update()
+            assertEquals(.7, neuron2.activation, 0.0)
+        }
+    }
 }
@@ -0,0 +1,84 @@
+package org.simbrain.workspace.batch
+
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import org.junit.jupiter.api.io.TempDir
+import org.simbrain.network.NetworkComponent
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.Neuron
+import org.simbrain.network.core.Synapse
+import org.simbrain.workspace.Workspace
+import org.simbrain.workspace.serialization.WorkspaceSerializer
+import java.io.ByteArrayOutputStream
+import java.io.File
+
+class BatchRunnerTest {
+
+    @TempDir
+    lateinit var dir: File
+
+    private val net = Network()
+    private val source = Neuron(net).apply { isClamped = true; forceSetActivation(1.0) }
+    private val target = Neuron(net)
+    private val synapse = Synapse(source, target)
+
+    private val zipData: ByteArray
+
+    init {
+        net.addNetworkModelsAsync(source, target, synapse)
+        val workspace = Workspace()
+        workspace.addWorkspaceComponent(NetworkComponent("Net", net))
+        zipData = ByteArrayOutputStream().also { WorkspaceSerializer(workspace).serialize(it, true) }.toByteArray()
+    }
+
+    private val measure = "Net/${target.id}/getActivation"
+
+    @Test
+    fun `grid sweep runs every combination and replica`() {
+        val runner = BatchRunner(zipData, 2, listOf(measure), replicas = 3, parallelism = 2)
+        val sweep = GridSweep(mapOf(
+            "Net/${synapse.id}/strength" to listOf(.25, .5),
+            "Net/${target.id}/updateRule.slope" to listOf("1", 2)
+        ))
+        val records = runBlocking { runner.run(sweep) }
+
+        assertEquals(12, records.size)
+        assertEquals((0 until 12).toList(), records.map { it.run.index })
+        records.forEach { record ->
+            val strength = record.run.setting["Net/${synapse.id}/strength"] as Double
+            val slope = record.run.setting["Net/${target.id}/updateRule.slope"].toString().toDouble()
+            assertEquals(2, record.time)
+            assertEquals(strength * slope, record.values[0] as Double, 1e-9)
+        }
+    }
+
+    @Test
+    fun `records are taken at each interval and written as csv`() {
+        val runner = BatchRunner(zipData, 5, listOf(measure), recordInterval = 2)
+        val records = runner.runAndWait(RandomSweep(2, mapOf("Net/*/strength" to .1..0.9), seed = 1))
+        assertEquals(listOf(2, 4, 5, 2, 4, 5), records.map { it.time })
+
+        val file = File(dir, "results.csv")
+        BatchRunner.writeCsv(records, listOf(measure), file)
+        val lines = file.readLines()
+        assertEquals("run,replica,time,Net/*/strength,$measure", lines[0])
+        assertEquals(7, lines.size)
+    }
+
+    @Test
+    fun `workspace files take the same options`() {
+        val file = File(dir, "workspace.zip").apply { writeBytes(zipData) }
+        val runner = BatchRunner(file, 5, listOf(measure), replicas = 2, recordInterval = 2, parallelism = 1)
+        assertEquals(listOf(2, 4, 5, 2, 4, 5), runner.runAndWait().map { it.time })
+    }
+
+    @Test
+    fun `unknown parameters are rejected`() {
+        val runner = BatchRunner(zipData, 1, listOf(measure))
+        assertThrows<IllegalArgumentException> {
+            runner.runAndWait(GridSweep(mapOf("Net/${target.id}/notAParameter" to listOf(1))))
+        }
+    }
+}
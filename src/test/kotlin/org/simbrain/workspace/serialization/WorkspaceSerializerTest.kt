@@ -0,0 +1,70 @@
+package org.simbrain.workspace.serialization
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import org.simbrain.network.NetworkComponent
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.Neuron
+import org.simbrain.workspace.Workspace
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.util.zip.ZipEntry
+import java.util.zip.ZipInputStream
+import java.util.zip.ZipOutputStream
+
+class WorkspaceSerializerTest {
+
+    @TempDir
+    lateinit var dir: File
+
+    private val zipData: ByteArray
+
+    init {
+        val workspace = Workspace()
+        val neurons = (1..3).map { i ->
+            val net = Network()
+            val neuron = Neuron(net).apply { label = "n$i"; forceSetActivation(i.toDouble()) }
+            net.addNetworkModelsAsync(neuron)
+            workspace.addWorkspaceComponent(NetworkComponent("Net $i", net))
+            neuron
+        }
+        with(workspace.couplingManager) {
+            createCoupling(neurons[0].getProducer("getActivation"), neurons[2].getConsumer("addInputValue"))
+        }
+        zipData = ByteArrayOutputStream().also { WorkspaceSerializer(workspace).serialize(it, true) }.toByteArray()
+    }
+
+    private fun Workspace.check() {
+        assertEquals(listOf("Net 1", "Net 2", "Net 3"), componentList.map { it.name })
+        val activations = componentList.map { (it as NetworkComponent).network.flatNeuronList.single().activation }
+        assertEquals(listOf(1.0, 2.0, 3.0), activations)
+        assertEquals(1, couplings.size)
+    }
+
+    @Test
+    fun `workspace is restored from a file`() {
+        val file = File(dir, "workspace.zip").apply { writeBytes(zipData) }
+        val workspace = Workspace()
+        val serializer = WorkspaceSerializer(workspace)
+        serializer.deserialize(file, true)
+        workspace.check()
+        assertEquals(listOf("Net 1", "Net 2", "Net 3"), serializer.componentLoadTimes.keys.toList())
+    }
+
+    @Test
+    fun `workspace is restored from a stream with contents in a subdirectory`() {
+        val nested = ByteArrayOutputStream()
+        ZipOutputStream(nested).use { out ->
+            val zip = ZipInputStream(ByteArrayInputStream(zipData))
+            generateSequence { zip.nextEntry }.forEach { entry ->
+                out.putNextEntry(ZipEntry("sim/${entry.name}"))
+                zip.copyTo(out)
+            }
+        }
+        val workspace = Workspace()
+        WorkspaceSerializer(workspace).deserialize(ByteArrayInputStream(nested.toByteArray()), true)
+        workspace.check()
+    }
+}
@@ -0,0 +1,61 @@
+package org.simbrain.workspace.updater
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import kotlin.math.abs
+
+class PerformanceMonitorTest {
+
+    @Test
+    fun `bucket bounds contain their values`() {
+        listOf(0L, 1L, 15L, 16L, 17L, 100L, 12345L, 1_000_000_007L, PerformanceTimer.MAX_TRACKABLE).forEach {
+            val index = PerformanceTimer.bucketIndex(it)
+            val lower = PerformanceTimer.bucketLowerBound(index)
+            assertTrue(it >= lower && it < lower + PerformanceTimer.bucketWidth(index), "$it in bucket $index")
+        }
+    }
+
+    @Test
+    fun `percentiles are within histogram precision`() {
+        val timer = PerformanceTimer("test")
+        (1..1000L).forEach { timer.add(it * 1000) }
+        val snapshot = timer.snapshot()
+        assertEquals(1000, snapshot.count)
+        assertEquals(1000, snapshot.min)
+        assertEquals(1_000_000, snapshot.max)
+        assertTrue(abs(snapshot.p50 - 500_000) < 500_000 / PerformanceTimer.SUB_BUCKETS, "p50 ${snapshot.p50}")
+        assertTrue(abs(snapshot.p99 - 990_000) < 990_000 / PerformanceTimer.SUB_BUCKETS, "p99 ${snapshot.p99}")
+    }
+
+    @Test
+    fun `times are broken down by thread`() {
+        val timer = PerformanceTimer("test")
+        timer.add(10, "a")
+        timer.add(20, "a")
+        timer.add(30, "b")
+        val threads = timer.snapshot().threads
+        assertEquals(ThreadSnapshot(2, 30), threads["a"])
+        assertEquals(ThreadSnapshot(1, 30), threads["b"])
+    }
+
+    @Test
+    fun `reported times are exported`() {
+        PerformanceMonitor.report("monitor test, exported", 1000)
+        val csv = PerformanceMonitor.toCsv().lines()
+        assertEquals("name,thread,count,total,mean,min,p50,p99,max", csv[0])
+        assertTrue(csv.any { it.startsWith("\"monitor test, exported\",all,1,1000,1000,1000,") })
+        assertTrue(PerformanceMonitor.toJson().contains("\"name\": \"monitor test, exported\", \"count\": 1"))
+    }
+
+    @Test
+    fun `kept timers are registered again after a reset`() {
+        val timer = PerformanceMonitor.timer("monitor test, kept")
+        PerformanceMonitor.report(timer, 10)
+        PerformanceMonitor.reset()
+        PerformanceMonitor.report(timer, 20)
+        assertSame(timer, PerformanceMonitor.timer("monitor test, kept"))
+        assertEquals(2, timer.snapshot().count)
+    }
+}
@@ -0,0 +1,73 @@
+package org.simbrain.workspace.updater
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.simbrain.network.NetworkComponent
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.Neuron
+import org.simbrain.workspace.Workspace
+import org.simbrain.workspace.couplings.Coupling
+
+class UpdateSchedulerTest {
+
+    private val workspace = Workspace()
+
+    private val neurons = List(3) { i ->
+        val network = Network()
+        workspace.addWorkspaceComponent(NetworkComponent("net$i", network))
+        Neuron(network).also { network.addNetworkModelAsync(it) }
+    }
+
+    private fun couple(source: Neuron, target: Neuron) = with(workspace.couplingManager) {
+        createCoupling(source.getProducer("getActivation"), target.getConsumer("addInputValue"))
+    }
+
+    @Test
+    fun `independent couplings share a wave and dependent couplings wait`() {
+        val (n0, n1, n2) = neurons
+        val c1 = couple(n0, n1)
+        val c2 = couple(n0, n2)
+        // Reads a network written by c2 and writes a network written by c1
+        val c3 = couple(n2, n1)
+        assertEquals(listOf(listOf(c1, c2), listOf(c3)), workspace.updater.scheduler.couplingSchedule)
+    }
+
+    @Test
+    fun `schedule is recomputed when couplings change`() {
+        val (n0, n1, n2) = neurons
+        val c1 = couple(n0, n1)
+        assertEquals(listOf(listOf(c1)), workspace.updater.scheduler.couplingSchedule)
+        val c2 = couple(n0, n2)
+        assertEquals(listOf(listOf(c1, c2)), workspace.updater.scheduler.couplingSchedule)
+        workspace.couplingManager.removeCoupling(c1)
+        assertEquals(listOf(listOf(c2)), workspace.updater.scheduler.couplingSchedule)
+    }
+
+    @Test
+    fun `schedule follows couplings after the workspace is cleared`() {
+        val (n0, n1, n2) = neurons
+        couple(n0, n1)
+        workspace.updater.scheduler.couplingSchedule
+        workspace.clearWorkspace()
+        assertEquals(listOf<List<Coupling>>(), workspace.updater.scheduler.couplingSchedule)
+
+        // Same count as before, different coupling
+        val c2 = couple(n2, n0)
+        assertEquals(listOf(listOf(c2)), workspace.updater.scheduler.couplingSchedule)
+        workspace.couplingManager.removeCoupling(c2)
+        val c3 = couple(n1, n2)
+        assertEquals(listOf(listOf(c3)), workspace.updater.scheduler.couplingSchedule)
+    }
+
+    @Test
+    fun `parallel update matches serial update`() {
+        val (n0, n1, n2) = neurons
+        n0.forceSetActivation(.5)
+        n2.forceSetActivation(-.2)
+        couple(n0, n1)
+        couple(n2, n1)
+        workspace.updater.isParallel = true
+        workspace.simpleIterate()
+        assertEquals(.3, n1.activation, 1e-12)
+    }
+}
@@ -1,8 +1,11 @@
 package org.simbrain.world.odorworld
 
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.Test
 import org.simbrain.util.piccolo.*
+import kotlin.random.Random
 
 class TileMapTest {
 
@@ -70,4 +73,49 @@ class TileMapTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    fun `tile type field follows edited tiles`() {
+        world.tileMap = loadTileMap("empty.tmx")
+        with(world.tileMap) {
+            val type = getTile(2).type
+            val field = getTileTypeField(type)
+            fun hasType(x: Int, y: Int) = getTileStackAt(x, y).any { it.type == type }
+            val random = Random(1)
+            repeat(200) {
+                setTile(random.nextInt(width), random.nextInt(height), random.nextInt(4))
+            }
+            for (y in 0 until height) {
+                for (x in 0 until width) {
+                    assertEquals(hasType(x, y), field.has(x, y))
+                }
+            }
+            val expected = (-1..2).sumOf { y -> (-2..3).count { x -> hasType(x, y) } }
+            // Rectangle wraps around the top left corner
+            assertEquals(expected, field.count(-2, -1, 3, 2))
+        }
+    }
+
+    @Test
+    fun `tile type field follows edited tile types`() {
+        world.tileMap = loadTileMap("empty.tmx")
+        with(world.tileMap) {
+            getTile(2).type = "edited 2"
+            getTile(3).type = "edited 3"
+            setTile(1, 1, 2)
+            setTile(2, 1, 3)
+            assertFalse(getTileTypeField("edited 2").has(2, 1))
+
+            // As done by the tile editor dialog
+            getTile(3).type = "edited 2"
+            val field = getTileTypeField("edited 2")
+            assertTrue(field.has(1, 1))
+            assertTrue(field.has(2, 1))
+            for (y in 0 until height) {
+                for (x in 0 until width) {
+                    assertEquals(getTileStackAt(x, y).any { it.type == "edited 2" }, field.has(x, y))
+                }
+            }
+        }
+    }
+
+}